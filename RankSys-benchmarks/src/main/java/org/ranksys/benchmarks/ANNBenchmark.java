@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import es.uam.eps.ir.ranksys.fast.FastRecommendation;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.rec.MFRecommender;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ranksys.mf.ann.HNSWIndex;
+
+/**
+ * Benchmark of matrix factorization recommendations with exact scoring of all items against approximate retrieval of candidates from a {@link HNSWIndex}. The recall of the approximate recommendations with respect to the exact ones is logged during the setup, so that latency and recall can be compared for different values of ef.
+ *
+ * @author agent (agent@local)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ANNBenchmark {
+
+    private static final Logger LOG = Logger.getLogger(ANNBenchmark.class.getName());
+
+    /**
+     * Number of users.
+     */
+    @Param("1000")
+    public int numUsers;
+
+    /**
+     * Number of items.
+     */
+    @Param("20000")
+    public int numItems;
+
+    /**
+     * Number of latent factors.
+     */
+    @Param("50")
+    public int k;
+
+    /**
+     * Length of the recommendations.
+     */
+    @Param("100")
+    public int maxLength;
+
+    /**
+     * Maximum number of links per node of the index.
+     */
+    @Param("16")
+    public int m;
+
+    /**
+     * Size of the candidate lists during the construction of the index.
+     */
+    @Param("200")
+    public int efConstruction;
+
+    /**
+     * Number of candidates retrieved from the index.
+     */
+    @Param({"100", "400"})
+    public int ef;
+
+    /**
+     * Seed of the random factorization.
+     */
+    @Param("1")
+    public long seed;
+
+    private MFRecommender<Integer, Integer> exact;
+    private MFRecommender<Integer, Integer> approximate;
+    private int nextUser;
+
+    /**
+     * Builds a random factorization, its index and the exact and approximate recommenders, and logs the recall of the latter.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        FastUserIndex<Integer> users = SimpleFastUserIndex.load(IntStream.range(0, numUsers).boxed());
+        FastItemIndex<Integer> items = SimpleFastItemIndex.load(IntStream.range(0, numItems).boxed());
+        Random rnd = new Random(seed);
+        Factorization<Integer, Integer> factorization = new Factorization<>(users, items, k, x -> rnd.nextGaussian());
+
+        HNSWIndex index = new HNSWIndex(factorization.getItemMatrix(), m, efConstruction, seed);
+        exact = new MFRecommender<>(users, items, factorization);
+        approximate = new MFRecommender<>(users, items, factorization, index, ef);
+
+        int hits = 0;
+        for (int uidx = 0; uidx < numUsers; uidx++) {
+            IntOpenHashSet expected = new IntOpenHashSet();
+            exact.getRecommendation(uidx, maxLength, iidx -> true).getIidxs().forEach(t -> expected.add(t.v1));
+            hits += approximate.getRecommendation(uidx, maxLength, iidx -> true).getIidxs().stream()
+                    .filter(t -> expected.contains(t.v1))
+                    .count();
+        }
+        LOG.info(String.format("recall@%d with ef=%d: %.4f", maxLength, ef, hits / (double) (numUsers * maxLength)));
+
+        nextUser = 0;
+    }
+
+    private int nextUidx() {
+        int uidx = nextUser;
+        nextUser = (nextUser + 1) % numUsers;
+
+        return uidx;
+    }
+
+    /**
+     * Scores all the items for the next user.
+     *
+     * @return recommendation
+     */
+    @Benchmark
+    public FastRecommendation exact() {
+        return exact.getRecommendation(nextUidx(), maxLength, iidx -> true);
+    }
+
+    /**
+     * Re-scores the candidates retrieved from the index for the next user.
+     *
+     * @return recommendation
+     */
+    @Benchmark
+    public FastRecommendation approximate() {
+        return approximate.getRecommendation(nextUidx(), maxLength, iidx -> true);
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import es.uam.eps.ir.ranksys.core.Recommendation;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.rec.MFRecommender;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.jooq.lambda.tuple.Tuple3;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.ranksys.compression.codecs.dsi.FixedLengthBitStreamCODEC;
+import org.ranksys.compression.codecs.lemire.IntegratedFORVBCODEC;
+import org.ranksys.compression.preferences.RatingCODECPreferenceData;
+import org.ranksys.fast.preference.CSRPreferenceData;
+import org.ranksys.fast.preference.MappedPreferenceData;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Base benchmark state holding a synthetic power-law dataset generated by {@link SyntheticData}. The size and skew of the dataset are JMH parameters, so they can be changed from the command line with -p.
+ *
+ * @author agent (agent@local)
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractSyntheticBenchmark {
+
+    /**
+     * Number of users.
+     */
+    @Param("5000")
+    public int numUsers;
+
+    /**
+     * Number of items.
+     */
+    @Param("2000")
+    public int numItems;
+
+    /**
+     * Number of preferences.
+     */
+    @Param("200000")
+    public int numPreferences;
+
+    /**
+     * Exponent of the power laws of user activity and item popularity.
+     */
+    @Param("1.0")
+    public double exponent;
+
+    /**
+     * Seed of the data generator.
+     */
+    @Param("1")
+    public long seed;
+
+    /**
+     * User index.
+     */
+    protected FastUserIndex<Integer> users;
+
+    /**
+     * Item index.
+     */
+    protected FastItemIndex<Integer> items;
+
+    /**
+     * Generated preferences.
+     */
+    protected List<Tuple3<Integer, Integer, Double>> tuples;
+
+    /**
+     * Generated preferences as a SimpleFastPreferenceData.
+     */
+    protected SimpleFastPreferenceData<Integer, Integer> data;
+
+    private int[] targetUsers;
+    private int[] targetItems;
+    private int nextUser;
+    private int nextItem;
+
+    /**
+     * Generates the dataset.
+     */
+    @Setup(Level.Trial)
+    public void setupData() {
+        users = SimpleFastUserIndex.load(IntStream.range(0, numUsers).boxed());
+        items = SimpleFastItemIndex.load(IntStream.range(0, numItems).boxed());
+        tuples = SyntheticData.preferences(numUsers, numItems, numPreferences, exponent, seed);
+        data = SimpleFastPreferenceData.load(tuples.stream(), users, items);
+
+        // head and tail users/items are interleaved so that every short run
+        // sees a representative mix of row lengths
+        Random rnd = new Random(seed);
+        targetUsers = IntArrays.shuffle(data.getUidxWithPreferences().toArray(), rnd);
+        targetItems = IntArrays.shuffle(data.getIidxWithPreferences().toArray(), rnd);
+        nextUser = 0;
+        nextItem = 0;
+    }
+
+    /**
+     * Returns the next user with preferences in a fixed, shuffled cycle.
+     *
+     * @return index of user
+     */
+    protected int nextUidx() {
+        int uidx = targetUsers[nextUser];
+        nextUser = (nextUser + 1) % targetUsers.length;
+
+        return uidx;
+    }
+
+    /**
+     * Returns the next item with preferences in a fixed, shuffled cycle.
+     *
+     * @return index of item
+     */
+    protected int nextIidx() {
+        int iidx = targetItems[nextItem];
+        nextItem = (nextItem + 1) % targetItems.length;
+
+        return iidx;
+    }
+
+    /**
+     * Copies the generated preferences into one of the available storages: simple (SimpleFastPreferenceData), csr (CSRPreferenceData), codec (RatingCODECPreferenceData with FOR and fixed-length codes) or mapped (MappedPreferenceData over a temporary file).
+     *
+     * @param storage name of the storage
+     * @return preference data
+     * @throws IOException when I/O problems with the mapped storage
+     */
+    protected FastPreferenceData<Integer, Integer> storage(String storage) throws IOException {
+        switch (storage) {
+            case "simple":
+                return SimpleFastPreferenceData.load(tuples.stream(), users, items);
+            case "csr":
+                return CSRPreferenceData.load(tuples.stream(), users, items);
+            case "codec":
+                return new RatingCODECPreferenceData<>(data, users, items, new IntegratedFORVBCODEC(), new IntegratedFORVBCODEC(), new FixedLengthBitStreamCODEC(3));
+            case "mapped":
+                String path = mappedFile().getPath();
+                MappedPreferenceData.write(data, path);
+                return MappedPreferenceData.load(path, users, items);
+            default:
+                throw new IllegalArgumentException("unknown storage " + storage);
+        }
+    }
+
+    /**
+     * Generates recommendations for a number of users with preferences, using a random matrix factorization so that rankings are arbitrary but reproducible.
+     *
+     * @param numRecommendations number of recommendations
+     * @param length length of the recommendations
+     * @return list of recommendations
+     */
+    protected List<Recommendation<Integer, Integer>> recommendations(int numRecommendations, int length) {
+        Random rnd = new Random(seed);
+        Factorization<Integer, Integer> factorization = new Factorization<>(users, items, 20, x -> rnd.nextGaussian());
+        MFRecommender<Integer, Integer> recommender = new MFRecommender<>(users, items, factorization);
+
+        return IntStream.of(targetUsers)
+                .limit(numRecommendations)
+                .mapToObj(uidx -> recommender.getRecommendation(users.uidx2user(uidx), length))
+                .collect(toList());
+    }
+
+    /**
+     * Temporary file for the mapped storage, deleted on exit.
+     *
+     * @return temporary file
+     * @throws IOException when the file cannot be created
+     */
+    protected static File mappedFile() throws IOException {
+        File file = File.createTempFile("ranksys-benchmarks", ".prefs");
+        file.deleteOnExit();
+
+        return file;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ranksys.compression.codecs.CODEC;
+import org.ranksys.compression.codecs.NullCODEC;
+import org.ranksys.compression.codecs.catena.GroupVByteCODEC;
+import org.ranksys.compression.codecs.dsi.EliasFanoBitStreamCODEC;
+import org.ranksys.compression.codecs.dsi.FixedLengthBitStreamCODEC;
+import org.ranksys.compression.codecs.dsi.GammaBitStreamCODEC;
+import org.ranksys.compression.codecs.dsi.RiceBitStreamCODEC;
+import org.ranksys.compression.codecs.dsi.ZetaBitStreamCODEC;
+import org.ranksys.compression.codecs.lemire.FORVBCODEC;
+import org.ranksys.compression.codecs.lemire.FastPFORVBCODEC;
+import org.ranksys.compression.codecs.lemire.IntegratedFORVBCODEC;
+import org.ranksys.compression.codecs.lemire.IntegratedVByteCODEC;
+import org.ranksys.compression.codecs.lemire.NewPFDVBCODEC;
+import org.ranksys.compression.codecs.lemire.OptPFDVBCODEC;
+import org.ranksys.compression.codecs.lemire.Simple16CODEC;
+import org.ranksys.compression.codecs.lemire.VByteCODEC;
+
+import static org.ranksys.compression.util.Delta.delta;
+
+/**
+ * Benchmark of the compression and decompression of the sorted index lists of the non-empty user or item rows, which are d-gapped for the CODECs that are not integrated. Each operation processes all the rows.
+ *
+ * @author agent (agent@local)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CODECBenchmark extends AbstractSyntheticBenchmark {
+
+    /**
+     * CODEC.
+     */
+    @Param({"null", "vbyte", "ivbyte", "for", "ifor", "pfor", "newpfd", "optpfd", "s16", "gvbyte", "gamma", "zeta", "rice", "ef", "fixed"})
+    public String codec;
+
+    /**
+     * Rows of the users or the items.
+     */
+    @Param({"user", "item"})
+    public String side;
+
+    private CODEC<Object> cod;
+    private int[][] lists;
+    private Object[] encoded;
+    private int[] buffer;
+
+    /**
+     * Builds the CODEC and the lists to be compressed.
+     */
+    @Setup(Level.Trial)
+    public void setupCODEC() {
+        cod = codec(codec, 32 - Integer.numberOfLeadingZeros(Math.max(numUsers, numItems)));
+
+        boolean item = "item".equals(side);
+        lists = (item ? data.getIidxWithPreferences() : data.getUidxWithPreferences())
+                .mapToObj(idx -> {
+                    IntArrayList list = new IntArrayList();
+                    if (item) {
+                        data.forEachIidxUidx(idx, list::add);
+                    } else {
+                        data.forEachUidxIidx(idx, list::add);
+                    }
+                    int[] a = list.toIntArray();
+                    Arrays.sort(a);
+                    if (!cod.isIntegrated()) {
+                        delta(a, 0, a.length);
+                    }
+                    return a;
+                })
+                .toArray(int[][]::new);
+        int maxLength = Arrays.stream(lists).mapToInt(a -> a.length).max().orElse(0);
+
+        encoded = co();
+        buffer = new int[maxLength];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CODEC<Object> codec(String name, int b) {
+        CODEC<?> c;
+        switch (name) {
+            case "null":
+                c = new NullCODEC();
+                break;
+            case "vbyte":
+                c = new VByteCODEC();
+                break;
+            case "ivbyte":
+                c = new IntegratedVByteCODEC();
+                break;
+            case "for":
+                c = new FORVBCODEC();
+                break;
+            case "ifor":
+                c = new IntegratedFORVBCODEC();
+                break;
+            case "pfor":
+                c = new FastPFORVBCODEC();
+                break;
+            case "newpfd":
+                c = new NewPFDVBCODEC();
+                break;
+            case "optpfd":
+                c = new OptPFDVBCODEC();
+                break;
+            case "s16":
+                c = new Simple16CODEC();
+                break;
+            case "gvbyte":
+                c = new GroupVByteCODEC();
+                break;
+            case "gamma":
+                c = new GammaBitStreamCODEC();
+                break;
+            case "zeta":
+                c = new ZetaBitStreamCODEC(3);
+                break;
+            case "rice":
+                c = new RiceBitStreamCODEC();
+                break;
+            case "ef":
+                c = new EliasFanoBitStreamCODEC();
+                break;
+            case "fixed":
+                c = new FixedLengthBitStreamCODEC(b);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown CODEC " + name);
+        }
+
+        return (CODEC<Object>) c;
+    }
+
+    /**
+     * Compresses all the lists.
+     *
+     * @return compressed lists
+     */
+    @Benchmark
+    public Object[] co() {
+        Object[] out = new Object[lists.length];
+        for (int idx = 0; idx < lists.length; idx++) {
+            out[idx] = cod.co(lists[idx], 0, lists[idx].length);
+        }
+
+        return out;
+    }
+
+    /**
+     * Decompresses all the lists.
+     *
+     * @param bh blackhole
+     */
+    @Benchmark
+    public void dec(Blackhole bh) {
+        for (int idx = 0; idx < lists.length; idx++) {
+            cod.dec(encoded[idx], buffer, 0, lists[idx].length);
+            bh.consume(buffer);
+        }
+    }
+}
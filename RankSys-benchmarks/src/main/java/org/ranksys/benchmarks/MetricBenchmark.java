@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import es.uam.eps.ir.ranksys.core.Recommendation;
+import es.uam.eps.ir.ranksys.core.feature.SimpleFeatureData;
+import es.uam.eps.ir.ranksys.core.preference.PreferenceData;
+import es.uam.eps.ir.ranksys.diversity.distance.metrics.EILD;
+import es.uam.eps.ir.ranksys.diversity.sales.metrics.GiniIndex;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.ranksys.metrics.SystemMetric;
+import es.uam.eps.ir.ranksys.metrics.basic.AverageRecommendationMetric;
+import es.uam.eps.ir.ranksys.metrics.basic.NDCG;
+import es.uam.eps.ir.ranksys.metrics.basic.Precision;
+import es.uam.eps.ir.ranksys.metrics.rank.NoDiscountModel;
+import es.uam.eps.ir.ranksys.metrics.rel.BinaryRelevanceModel;
+import es.uam.eps.ir.ranksys.metrics.rel.NoRelevanceModel;
+import es.uam.eps.ir.ranksys.novdiv.distance.JaccardFeatureItemDistanceModel;
+import es.uam.eps.ir.ranksys.novelty.longtail.PCItemNovelty;
+import es.uam.eps.ir.ranksys.novelty.longtail.metrics.EPC;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the evaluation of a set of recommendations, with test preferences drawn from the same distribution as the training ones.
+ *
+ * @author agent (agent@local)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetricBenchmark extends AbstractSyntheticBenchmark {
+
+    /**
+     * Metric: precision, ndcg, epc, eild or gini.
+     */
+    @Param({"precision", "ndcg", "epc", "eild", "gini"})
+    public String metric;
+
+    /**
+     * Cutoff of the metric.
+     */
+    @Param("10")
+    public int cutoff;
+
+    /**
+     * Number of evaluated recommendations.
+     */
+    @Param("1000")
+    public int numRecommendations;
+
+    private SystemMetric<Integer, Integer> sysMetric;
+    private List<Recommendation<Integer, Integer>> recs;
+
+    /**
+     * Builds the metric and the recommendations to be evaluated.
+     */
+    @Setup(Level.Trial)
+    public void setupMetric() {
+        PreferenceData<Integer, Integer> testData = SimpleFastPreferenceData.load(SyntheticData.preferences(numUsers, numItems, numPreferences / 4, exponent, seed + 1).stream(), users, items);
+        double threshold = 4.0;
+
+        switch (metric) {
+            case "precision":
+                sysMetric = new AverageRecommendationMetric<>(new Precision<>(cutoff, new BinaryRelevanceModel<>(false, testData, threshold)), numRecommendations);
+                break;
+            case "ndcg":
+                sysMetric = new AverageRecommendationMetric<>(new NDCG<>(cutoff, new NDCG.NDCGRelevanceModel<>(false, testData, threshold)), numRecommendations);
+                break;
+            case "epc":
+                sysMetric = new AverageRecommendationMetric<>(new EPC<>(cutoff, new PCItemNovelty<>(data), new NoRelevanceModel<>(), new NoDiscountModel()), numRecommendations);
+                break;
+            case "eild":
+                JaccardFeatureItemDistanceModel<Integer, String> dist = new JaccardFeatureItemDistanceModel<>(SimpleFeatureData.load(SyntheticData.features(numItems, 50, 5, exponent, seed).stream()));
+                sysMetric = new AverageRecommendationMetric<>(new EILD<>(cutoff, dist, new NoRelevanceModel<>(), new NoDiscountModel()), numRecommendations);
+                break;
+            case "gini":
+                sysMetric = new GiniIndex<>(cutoff, numItems);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown metric " + metric);
+        }
+
+        recs = recommendations(numRecommendations, 100);
+    }
+
+    /**
+     * Evaluates all the recommendations.
+     *
+     * @return value of the metric
+     */
+    @Benchmark
+    public double evaluate() {
+        sysMetric.reset();
+        recs.forEach(sysMetric::add);
+
+        return sysMetric.evaluate();
+    }
+}
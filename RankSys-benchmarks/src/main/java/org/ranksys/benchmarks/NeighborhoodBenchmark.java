@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
+import es.uam.eps.ir.ranksys.nn.neighborhood.CachedNeighborhood;
+import es.uam.eps.ir.ranksys.nn.neighborhood.TopKNeighborhood;
+import es.uam.eps.ir.ranksys.nn.sim.AllPairsTopK;
+import es.uam.eps.ir.ranksys.nn.sim.Similarities;
+import es.uam.eps.ir.ranksys.nn.sim.Similarity;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the top-k item neighborhoods, both per row and for the construction of a whole cached neighborhood.
+ *
+ * @author agent (agent@local)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NeighborhoodBenchmark extends AbstractSyntheticBenchmark {
+
+    /**
+     * Size of the neighborhoods.
+     */
+    @Param({"10", "100"})
+    public int k;
+
+    /**
+     * Dense or sparse accumulation of the similarities.
+     */
+    @Param({"true", "false"})
+    public boolean dense;
+
+    private Similarity sim;
+    private TopKNeighborhood topK;
+
+    /**
+     * Builds the top-k neighborhood over the item cosine similarity.
+     */
+    @Setup(Level.Trial)
+    public void setupNeighborhood() {
+        sim = Similarities.vectorCosine(new TransposedPreferenceData<>(data), dense);
+        topK = new TopKNeighborhood(sim, k);
+    }
+
+    /**
+     * Computes the neighbors of the next item.
+     *
+     * @return sum of the similarities of the neighbors
+     */
+    @Benchmark
+    public double topKRow() {
+        return topK.getNeighbors(nextIidx()).mapToDouble(t -> t.v2).sum();
+    }
+
+    /**
+     * Computes and caches the neighbors of all items.
+     *
+     * @return cached neighborhood
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CachedNeighborhood cached() {
+        return new CachedNeighborhood(numItems, topK);
+    }
+
+    /**
+     * Computes the neighbors of all items in batch with {@link AllPairsTopK}.
+     *
+     * @return cached neighborhood
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CachedNeighborhood allPairs() {
+        return new AllPairsTopK(sim, k).compute();
+    }
+}
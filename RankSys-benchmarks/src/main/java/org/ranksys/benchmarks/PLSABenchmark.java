@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.plsa.PLSAFactorizer;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling benchmark of the expectation and maximization steps of {@link PLSAFactorizer} with the number of threads. The steps run in a fork-join pool of the given parallelism, which their parallel streams inherit.
+ *
+ * @author agent (agent@local)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PLSABenchmark extends AbstractSyntheticBenchmark {
+
+    /**
+     * Number of aspects.
+     */
+    @Param("50")
+    public int k;
+
+    /**
+     * Number of threads.
+     */
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /**
+     * Whether the maximization step runs in parallel.
+     */
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private BenchmarkPLSAFactorizer factorizer;
+    private Factorization<Integer, Integer> factorization;
+    private ForkJoinPool pool;
+
+    /**
+     * Runs a first iteration of PLSA to get hold of its variational probabilities, and creates the pool.
+     */
+    @Setup(Level.Trial)
+    public void setupPLSA() {
+        Random rnd = new Random(seed);
+        factorization = new Factorization<>(users, items, k, x -> rnd.nextDouble());
+        factorizer = new BenchmarkPLSAFactorizer();
+        factorizer.factorize(factorization, data);
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Shuts down the pool.
+     */
+    @TearDown(Level.Trial)
+    public void tearDownPLSA() {
+        pool.shutdown();
+    }
+
+    /**
+     * Expectation step.
+     *
+     * @throws InterruptedException when interrupted
+     * @throws ExecutionException when the step fails
+     */
+    @Benchmark
+    public void expectation() throws InterruptedException, ExecutionException {
+        pool.submit(() -> factorizer.expectation()).get();
+    }
+
+    /**
+     * Maximization step.
+     *
+     * @throws InterruptedException when interrupted
+     * @throws ExecutionException when the step fails
+     */
+    @Benchmark
+    public void maximization() throws InterruptedException, ExecutionException {
+        pool.submit(() -> factorizer.maximization()).get();
+    }
+
+    /**
+     * PLSA factorizer with a single iteration that keeps its variational probabilities, so that the steps can be run afterwards.
+     */
+    private class BenchmarkPLSAFactorizer extends PLSAFactorizer<Integer, Integer> {
+
+        private PLSAPreferenceData<Integer, Integer> qzData;
+
+        BenchmarkPLSAFactorizer() {
+            super(1, parallel);
+        }
+
+        @Override
+        protected void expectation(DoubleMatrix2D pz_u, DoubleMatrix2D piz, PLSAPreferenceData<Integer, Integer> qzData) {
+            this.qzData = qzData;
+            super.expectation(pz_u, piz, qzData);
+        }
+
+        void expectation() {
+            expectation(factorization.getUserMatrix(), factorization.getItemMatrix(), qzData);
+        }
+
+        void maximization() {
+            maximization(factorization.getUserMatrix(), factorization.getItemMatrix(), qzData);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ranksys.fast.preference.MappedPreferenceData;
+
+/**
+ * Benchmark of the loading and scanning of the preference data storages.
+ *
+ * @author agent (agent@local)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PreferenceDataBenchmark extends AbstractSyntheticBenchmark {
+
+    /**
+     * Storage of the preferences.
+     */
+    @Param({"simple", "csr", "codec", "mapped"})
+    public String storage;
+
+    private FastPreferenceData<Integer, Integer> prefs;
+    private String mappedPath;
+
+    /**
+     * Builds the preference data to be scanned.
+     *
+     * @throws IOException when I/O problems with the mapped storage
+     */
+    @Setup(Level.Trial)
+    public void setupStorage() throws IOException {
+        prefs = storage(storage);
+        if ("mapped".equals(storage)) {
+            mappedPath = mappedFile().getPath();
+            MappedPreferenceData.write(data, mappedPath);
+        }
+    }
+
+    /**
+     * Loads the preferences into the storage. For the mapped storage only the mapping of an existing file is measured.
+     *
+     * @return preference data
+     * @throws IOException when I/O problems with the mapped storage
+     */
+    @Benchmark
+    public FastPreferenceData<Integer, Integer> load() throws IOException {
+        if ("mapped".equals(storage)) {
+            return MappedPreferenceData.load(mappedPath, users, items);
+        } else {
+            return storage(storage);
+        }
+    }
+
+    /**
+     * Scans all the user rows through the callback interface.
+     *
+     * @return checksum of the scan
+     */
+    @Benchmark
+    public double forEachUser() {
+        double[] sum = new double[1];
+        for (int uidx = 0; uidx < prefs.numUsers(); uidx++) {
+            prefs.forEachUidxPref(uidx, (iidx, v) -> sum[0] += iidx * v);
+        }
+
+        return sum[0];
+    }
+
+    /**
+     * Scans all the item rows through the callback interface.
+     *
+     * @return checksum of the scan
+     */
+    @Benchmark
+    public double forEachItem() {
+        double[] sum = new double[1];
+        for (int iidx = 0; iidx < prefs.numItems(); iidx++) {
+            prefs.forEachIidxPref(iidx, (uidx, v) -> sum[0] += uidx * v);
+        }
+
+        return sum[0];
+    }
+
+    /**
+     * Scans all the user rows through streams of IdxPref.
+     *
+     * @return checksum of the scan
+     */
+    @Benchmark
+    public double streamUsers() {
+        return prefs.getUidxWithPreferences()
+                .mapToDouble(uidx -> prefs.getUidxPreferences(uidx)
+                        .mapToDouble(p -> p.v1 * p.v2)
+                        .sum())
+                .sum();
+    }
+}
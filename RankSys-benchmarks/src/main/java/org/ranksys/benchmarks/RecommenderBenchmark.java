@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import es.uam.eps.ir.ranksys.fast.FastRecommendation;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.rec.MFRecommender;
+import es.uam.eps.ir.ranksys.nn.item.ItemNeighborhoodRecommender;
+import es.uam.eps.ir.ranksys.nn.item.neighborhood.ItemNeighborhoods;
+import es.uam.eps.ir.ranksys.nn.item.sim.ItemSimilarities;
+import es.uam.eps.ir.ranksys.nn.user.UserNeighborhoodRecommender;
+import es.uam.eps.ir.ranksys.nn.user.neighborhood.UserNeighborhoods;
+import es.uam.eps.ir.ranksys.nn.user.sim.UserSimilarities;
+import es.uam.eps.ir.ranksys.rec.fast.FastBatchRecommender;
+import es.uam.eps.ir.ranksys.rec.fast.FastRecommender;
+import es.uam.eps.ir.ranksys.rec.runner.fast.FastFilters;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ranksys.fm.PreferenceFM;
+import org.ranksys.fm.rec.FMRecommender;
+import org.ranksys.javafm.FM;
+import org.ranksys.lda.LDAModelEstimator;
+import org.ranksys.lda.LDARecommender;
+
+/**
+ * Benchmark of the generation of the recommendation of a single user. Neighborhoods are cached and the factorisation machine and matrix factorization models are random, so that only the cost of scoring and ranking is measured.
+ *
+ * @author agent (agent@local)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecommenderBenchmark extends AbstractSyntheticBenchmark {
+
+    /**
+     * Recommender: ub, ib, mf, fm or lda.
+     */
+    @Param({"ub", "ib", "mf", "fm", "lda"})
+    public String recommender;
+
+    /**
+     * Size of the neighborhoods or number of latent factors/topics.
+     */
+    @Param("50")
+    public int k;
+
+    /**
+     * Length of the recommendations.
+     */
+    @Param("100")
+    public int maxLength;
+
+    /**
+     * Number of users in the blocks of batch recommendations.
+     */
+    @Param("64")
+    public int batchSize;
+
+    private FastRecommender<Integer, Integer> rec;
+    private Function<Integer, IntPredicate> filter;
+
+    /**
+     * Builds the recommender.
+     *
+     * @throws IOException when LDA estimation fails
+     */
+    @Setup(Level.Trial)
+    public void setupRecommender() throws IOException {
+        Random rnd = new Random(seed);
+        switch (recommender) {
+            case "ub":
+                rec = new UserNeighborhoodRecommender<>(data, UserNeighborhoods.cached(UserNeighborhoods.topK(UserSimilarities.vectorCosine(data, true), k)), 1);
+                break;
+            case "ib":
+                rec = new ItemNeighborhoodRecommender<>(data, ItemNeighborhoods.cached(ItemNeighborhoods.topK(ItemSimilarities.vectorCosine(data, true), k)), 1);
+                break;
+            case "mf":
+                rec = new MFRecommender<>(users, items, new Factorization<>(users, items, k, x -> rnd.nextGaussian() * 0.1));
+                break;
+            case "fm":
+                rec = new FMRecommender<>(new PreferenceFM<>(users, items, new FM(numUsers + numItems, k, rnd, 0.1)));
+                break;
+            case "lda":
+                rec = new LDARecommender<>(users, items, LDAModelEstimator.estimate(data, k, 1.0, 0.01, 20, 10));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown recommender " + recommender);
+        }
+        filter = FastFilters.notInTrain(data);
+    }
+
+    /**
+     * Generates the recommendation of the next user, excluding the items in her training preferences.
+     *
+     * @return recommendation
+     */
+    @Benchmark
+    public FastRecommendation getRecommendation() {
+        int uidx = nextUidx();
+
+        return rec.getRecommendation(uidx, maxLength, filter.apply(users.uidx2user(uidx)));
+    }
+
+    /**
+     * Generates the recommendations of the next block of users, in a single call for batch recommenders and one by one otherwise.
+     *
+     * @return recommendations
+     */
+    @Benchmark
+    public List<FastRecommendation> getRecommendations() {
+        int[] uidxs = new int[batchSize];
+        for (int b = 0; b < batchSize; b++) {
+            uidxs[b] = nextUidx();
+        }
+
+        if (rec instanceof FastBatchRecommender) {
+            return ((FastBatchRecommender<Integer, Integer>) rec).getRecommendations(uidxs, maxLength, uidx -> filter.apply(users.uidx2user(uidx)));
+        } else {
+            List<FastRecommendation> recs = new ArrayList<>(batchSize);
+            for (int uidx : uidxs) {
+                recs.add(rec.getRecommendation(uidx, maxLength, filter.apply(users.uidx2user(uidx))));
+            }
+            return recs;
+        }
+    }
+}
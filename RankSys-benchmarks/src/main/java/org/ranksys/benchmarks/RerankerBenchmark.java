@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import es.uam.eps.ir.ranksys.core.Recommendation;
+import es.uam.eps.ir.ranksys.core.feature.FeatureData;
+import es.uam.eps.ir.ranksys.core.feature.SimpleFeatureData;
+import es.uam.eps.ir.ranksys.diversity.distance.reranking.MMR;
+import es.uam.eps.ir.ranksys.diversity.intentaware.FeatureIntentModel;
+import es.uam.eps.ir.ranksys.diversity.intentaware.ScoresAspectModel;
+import es.uam.eps.ir.ranksys.diversity.intentaware.reranking.XQuAD;
+import es.uam.eps.ir.ranksys.novdiv.distance.JaccardFeatureItemDistanceModel;
+import es.uam.eps.ir.ranksys.novdiv.reranking.Reranker;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the greedy diversification rerankers over recommendations of synthetic items with synthetic features.
+ *
+ * @author agent (agent@local)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RerankerBenchmark extends AbstractSyntheticBenchmark {
+
+    /**
+     * Reranker: mmr or xquad.
+     */
+    @Param({"mmr", "xquad"})
+    public String reranker;
+
+    /**
+     * Trade-off between relevance and diversity.
+     */
+    @Param("0.5")
+    public double lambda;
+
+    /**
+     * Number of items that are greedily reranked.
+     */
+    @Param({"20", "100"})
+    public int cutoff;
+
+    /**
+     * Length of the input recommendations.
+     */
+    @Param("100")
+    public int length;
+
+    /**
+     * Number of features.
+     */
+    @Param("50")
+    public int numFeatures;
+
+    private Reranker<Integer, Integer> rer;
+    private List<Recommendation<Integer, Integer>> recs;
+    private int next;
+
+    /**
+     * Builds the reranker and the recommendations to be reranked.
+     */
+    @Setup(Level.Trial)
+    public void setupReranker() {
+        FeatureData<Integer, String, Double> featureData = SimpleFeatureData.load(SyntheticData.features(numItems, numFeatures, 5, exponent, seed).stream());
+
+        switch (reranker) {
+            case "mmr":
+                rer = new MMR<>(lambda, cutoff, new JaccardFeatureItemDistanceModel<>(featureData));
+                break;
+            case "xquad":
+                rer = new XQuAD<>(new ScoresAspectModel<>(new FeatureIntentModel<>(data, featureData)), lambda, cutoff, true);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown reranker " + reranker);
+        }
+
+        recs = recommendations(1000, length);
+        next = 0;
+    }
+
+    /**
+     * Reranks the next recommendation.
+     *
+     * @return reranked recommendation
+     */
+    @Benchmark
+    public Recommendation<Integer, Integer> rerankRecommendation() {
+        Recommendation<Integer, Integer> rec = recs.get(next);
+        next = (next + 1) % recs.size();
+
+        return rer.rerankRecommendation(rec, length);
+    }
+}
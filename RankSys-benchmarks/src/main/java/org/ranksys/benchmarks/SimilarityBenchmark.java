@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
+import es.uam.eps.ir.ranksys.nn.sim.Similarities;
+import es.uam.eps.ir.ranksys.nn.sim.Similarity;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the computation of a row of similarities, either dense or sparse, for users or items.
+ *
+ * @author agent (agent@local)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SimilarityBenchmark extends AbstractSyntheticBenchmark {
+
+    /**
+     * Storage of the preferences.
+     */
+    @Param({"simple", "csr", "codec"})
+    public String storage;
+
+    /**
+     * Similarity: vectorCosine or setJaccard.
+     */
+    @Param({"vectorCosine", "setJaccard"})
+    public String similarity;
+
+    /**
+     * Dense or sparse accumulation of the row.
+     */
+    @Param({"true", "false"})
+    public boolean dense;
+
+    /**
+     * Users or items.
+     */
+    @Param({"user", "item"})
+    public String side;
+
+    private Similarity sim;
+
+    /**
+     * Builds the similarity.
+     *
+     * @throws IOException when I/O problems with the storage
+     */
+    @Setup(Level.Trial)
+    public void setupSimilarity() throws IOException {
+        FastPreferenceData<Integer, Integer> prefs = storage(storage);
+        if ("item".equals(side)) {
+            prefs = new TransposedPreferenceData<>(prefs);
+        }
+
+        switch (similarity) {
+            case "vectorCosine":
+                sim = Similarities.vectorCosine(prefs, dense);
+                break;
+            case "setJaccard":
+                sim = Similarities.setJaccard(prefs, dense);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown similarity " + similarity);
+        }
+    }
+
+    /**
+     * Computes the similarities of the next user or item.
+     *
+     * @return sum of the similarities
+     */
+    @Benchmark
+    public double similarElems() {
+        int idx = "item".equals(side) ? nextIidx() : nextUidx();
+
+        return sim.similarElems(idx).mapToDouble(t -> t.v2).sum();
+    }
+}
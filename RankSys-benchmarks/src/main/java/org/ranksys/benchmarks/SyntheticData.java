@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.benchmarks;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.jooq.lambda.tuple.Tuple3;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Generator of seeded synthetic datasets whose user activity and item popularity follow power laws, so that benchmarks are reproducible without external data. Users and items are identified by consecutive integers, the lowest ones being the most active/popular.
+ *
+ * @author agent (agent@local)
+ */
+public class SyntheticData {
+
+    /**
+     * Generates a list of distinct user-item preferences with integer ratings between 1 and 5. Both users and items are sampled from Zipf distributions with the same exponent.
+     *
+     * @param numUsers number of users
+     * @param numItems number of items
+     * @param numPreferences number of preferences, at most half of all the user-item pairs
+     * @param exponent exponent of the Zipf distributions
+     * @param seed seed of the random number generator
+     * @return list of (user, item, rating) tuples
+     */
+    public static List<Tuple3<Integer, Integer, Double>> preferences(int numUsers, int numItems, int numPreferences, double exponent, long seed) {
+        if (numPreferences > (long) numUsers * numItems / 2) {
+            throw new IllegalArgumentException("too many preferences for " + numUsers + " users and " + numItems + " items");
+        }
+
+        Random rnd = new Random(seed);
+        double[] userCdf = zipfCdf(numUsers, exponent);
+        double[] itemCdf = zipfCdf(numItems, exponent);
+
+        LongOpenHashSet pairs = new LongOpenHashSet(numPreferences);
+        List<Tuple3<Integer, Integer, Double>> tuples = new ArrayList<>(numPreferences);
+        while (tuples.size() < numPreferences) {
+            int u = sample(userCdf, rnd);
+            int i = sample(itemCdf, rnd);
+            if (pairs.add((long) u * numItems + i)) {
+                tuples.add(tuple(u, i, 1.0 + rnd.nextInt(5)));
+            }
+        }
+
+        return tuples;
+    }
+
+    /**
+     * Generates a list of binary item features. Each item gets between 1 and maxFeatures distinct features, sampled from a Zipf distribution.
+     *
+     * @param numItems number of items
+     * @param numFeatures number of features
+     * @param maxFeatures maximum number of features per item
+     * @param exponent exponent of the Zipf distribution
+     * @param seed seed of the random number generator
+     * @return list of (item, feature, 1.0) tuples
+     */
+    public static List<Tuple3<Integer, String, Double>> features(int numItems, int numFeatures, int maxFeatures, double exponent, long seed) {
+        Random rnd = new Random(seed);
+        double[] featureCdf = zipfCdf(numFeatures, exponent);
+
+        List<Tuple3<Integer, String, Double>> tuples = new ArrayList<>();
+        IntOpenHashSet fs = new IntOpenHashSet();
+        for (int i = 0; i < numItems; i++) {
+            int n = 1 + rnd.nextInt(Math.min(maxFeatures, numFeatures));
+            fs.clear();
+            while (fs.size() < n) {
+                fs.add(sample(featureCdf, rnd));
+            }
+            for (int f : fs) {
+                tuples.add(tuple(i, "f" + f, 1.0));
+            }
+        }
+
+        return tuples;
+    }
+
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0.0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, Random rnd) {
+        int k = Arrays.binarySearch(cdf, rnd.nextDouble());
+
+        return Math.min(k < 0 ? -k - 1 : k, cdf.length - 1);
+    }
+}
@@ -12,13 +12,17 @@ import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntIterators;
 import org.ranksys.compression.codecs.CODEC;
+import org.ranksys.core.util.function.IntDoubleConsumer;
 import org.ranksys.core.util.iterators.ArrayIntIterator;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 
 import static java.util.stream.IntStream.of;
@@ -46,6 +50,8 @@ import org.ranksys.fast.preference.IteratorsAbstractFastPreferenceData;
  */
 public abstract class AbstractCODECPreferenceData<U, I, Cu, Ci> extends IteratorsAbstractFastPreferenceData<U, I> implements FastPreferenceData<U, I> {
 
+    private static final ThreadLocal<DecodeBuffers> BUFFERS = ThreadLocal.withInitial(DecodeBuffers::new);
+
     /**
      * CODEC for user preferences.
      */
@@ -155,11 +161,152 @@ public abstract class AbstractCODECPreferenceData<U, I, Cu, Ci> extends Iterator
             return IntIterators.EMPTY_ITERATOR;
         }
         int[] idxs = new int[len];
+        decIdx(cidxs, idxs, len, x_codec);
+        return new ArrayIntIterator(idxs);
+    }
+
+    private static <Cx> void decIdx(Cx cidxs, int[] idxs, int len, CODEC<Cx> x_codec) {
         x_codec.dec(cidxs, idxs, 0, len);
         if (!x_codec.isIntegrated()) {
             atled(idxs, 0, len);
         }
-        return new ArrayIntIterator(idxs);
+    }
+
+    @Override
+    public void forEachUidxIidx(int uidx, IntConsumer action) {
+        forEachIdx(u_idxs[uidx], u_len[uidx], u_codec, action);
+    }
+
+    @Override
+    public void forEachIidxUidx(int iidx, IntConsumer action) {
+        forEachIdx(i_idxs[iidx], i_len[iidx], i_codec, action);
+    }
+
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer action) {
+        int len = u_len[uidx];
+        if (len == 0) {
+            return;
+        }
+        DecodeBuffers buffers = BUFFERS.get().push(len);
+        try {
+            decIdx(u_idxs[uidx], buffers.idxs(), len, u_codec);
+            decUidxVs(uidx, buffers.ints(), buffers.vs());
+            buffers.forEach(len, action);
+        } finally {
+            buffers.pop();
+        }
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer action) {
+        int len = i_len[iidx];
+        if (len == 0) {
+            return;
+        }
+        DecodeBuffers buffers = BUFFERS.get().push(len);
+        try {
+            decIdx(i_idxs[iidx], buffers.idxs(), len, i_codec);
+            decIidxVs(iidx, buffers.ints(), buffers.vs());
+            buffers.forEach(len, action);
+        } finally {
+            buffers.pop();
+        }
+    }
+
+    private static <Cx> void forEachIdx(Cx cidxs, int len, CODEC<Cx> x_codec, IntConsumer action) {
+        if (len == 0) {
+            return;
+        }
+        DecodeBuffers buffers = BUFFERS.get().push(len);
+        try {
+            int[] idxs = buffers.idxs();
+            decIdx(cidxs, idxs, len, x_codec);
+            for (int k = 0; k < len; k++) {
+                action.accept(idxs[k]);
+            }
+        } finally {
+            buffers.pop();
+        }
+    }
+
+    /**
+     * Decodes the values of the preferences of a user into an array. Sub-classes should override it to avoid creating the iterator of {@link #getUidxVs(int)}.
+     *
+     * @param uidx user index
+     * @param buffer auxiliary array of at least numItems(uidx) elements
+     * @param vs array of at least numItems(uidx) elements where values are decoded
+     */
+    protected void decUidxVs(int uidx, int[] buffer, double[] vs) {
+        DoubleIterator it = getUidxVs(uidx);
+        for (int k = 0; it.hasNext(); k++) {
+            vs[k] = it.nextDouble();
+        }
+    }
+
+    /**
+     * Decodes the values of the preferences for an item into an array. Sub-classes should override it to avoid creating the iterator of {@link #getIidxVs(int)}.
+     *
+     * @param iidx item index
+     * @param buffer auxiliary array of at least numUsers(iidx) elements
+     * @param vs array of at least numUsers(iidx) elements where values are decoded
+     */
+    protected void decIidxVs(int iidx, int[] buffer, double[] vs) {
+        DoubleIterator it = getIidxVs(iidx);
+        for (int k = 0; it.hasNext(); k++) {
+            vs[k] = it.nextDouble();
+        }
+    }
+
+    /**
+     * Per-thread stack of decoding arrays, reused across calls. It is a stack so that nested iterations (e.g. over the users of each item of a user) do not overwrite each other's arrays.
+     */
+    private static class DecodeBuffers {
+
+        private int[][] idxs = new int[0][];
+        private int[][] ints = new int[0][];
+        private double[][] vs = new double[0][];
+        private int depth = -1;
+
+        public DecodeBuffers push(int len) {
+            depth++;
+            if (depth == idxs.length) {
+                idxs = Arrays.copyOf(idxs, depth + 1);
+                ints = Arrays.copyOf(ints, depth + 1);
+                vs = Arrays.copyOf(vs, depth + 1);
+            }
+            if (idxs[depth] == null || idxs[depth].length < len) {
+                int capacity = Math.max(len, 2 * (idxs[depth] == null ? 0 : idxs[depth].length));
+                idxs[depth] = new int[capacity];
+                ints[depth] = new int[capacity];
+                vs[depth] = new double[capacity];
+            }
+            return this;
+        }
+
+        public void pop() {
+            depth--;
+        }
+
+        public int[] idxs() {
+            return idxs[depth];
+        }
+
+        public int[] ints() {
+            return ints[depth];
+        }
+
+        public double[] vs() {
+            return vs[depth];
+        }
+
+        public void forEach(int len, IntDoubleConsumer action) {
+            int[] _idxs = idxs[depth];
+            double[] _vs = vs[depth];
+            for (int k = 0; k < len; k++) {
+                action.accept(_idxs[k], _vs[k]);
+            }
+        }
     }
 
 }
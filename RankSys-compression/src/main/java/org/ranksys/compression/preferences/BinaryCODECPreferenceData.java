@@ -165,4 +165,14 @@ public class BinaryCODECPreferenceData<U, I, Cu, Ci> extends AbstractCODECPrefer
         return new ArrayDoubleIterator(vs);
     }
 
+    @Override
+    protected void decUidxVs(int uidx, int[] buffer, double[] vs) {
+        Arrays.fill(vs, 0, u_len[uidx], 1.0);
+    }
+
+    @Override
+    protected void decIidxVs(int iidx, int[] buffer, double[] vs) {
+        Arrays.fill(vs, 0, i_len[iidx], 1.0);
+    }
+
 }
@@ -225,4 +225,21 @@ public class RatingCODECPreferenceData<U, I, Cu, Ci, Cv> extends AbstractCODECPr
         return new ArrayDoubleIterator(vsd);
     }
 
+    @Override
+    protected void decUidxVs(int uidx, int[] buffer, double[] vs) {
+        decVs(u_vs[uidx], u_len[uidx], r_codec, buffer, vs);
+    }
+
+    @Override
+    protected void decIidxVs(int iidx, int[] buffer, double[] vs) {
+        decVs(i_vs[iidx], i_len[iidx], r_codec, buffer, vs);
+    }
+
+    private static <Cv> void decVs(Cv cvs, int len, CODEC<Cv> r_codec, int[] buffer, double[] vs) {
+        r_codec.dec(cvs, buffer, 0, len);
+        for (int i = 0; i < len; i++) {
+            vs[i] = buffer[i];
+        }
+    }
+
 }
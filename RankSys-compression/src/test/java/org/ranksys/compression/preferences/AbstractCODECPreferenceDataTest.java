@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.compression.preferences;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.jooq.lambda.tuple.Tuple3;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ranksys.compression.codecs.dsi.FixedLengthBitStreamCODEC;
+import org.ranksys.compression.codecs.dsi.GammaBitStreamCODEC;
+import org.ranksys.compression.codecs.lemire.IntegratedFORVBCODEC;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Unit test for the forEach* methods of AbstractCODECPreferenceData.
+ *
+ * @author agent (agent@local)
+ */
+public class AbstractCODECPreferenceDataTest {
+
+    private final FastUserIndex<Integer> uIndex = SimpleFastUserIndex.load(IntStream.range(0, 40).boxed());
+    private final FastItemIndex<Integer> iIndex = SimpleFastItemIndex.load(IntStream.range(0, 60).boxed());
+
+    private SimpleFastPreferenceData<Integer, Integer> randomData() {
+        Random rnd = new Random(1L);
+        List<Tuple3<Integer, Integer, Double>> tuples = new ArrayList<>();
+        for (int u = 0; u < uIndex.numUsers() - 1; u++) {
+            for (int i = 0; i < iIndex.numItems() - 1; i++) {
+                if (rnd.nextDouble() < 0.2) {
+                    tuples.add(tuple(u, i, (double) rnd.nextInt(5) + 1));
+                }
+            }
+        }
+        return SimpleFastPreferenceData.load(tuples.stream(), uIndex, iIndex);
+    }
+
+    private static List<IdxPref> uidxPrefs(FastPreferenceData<?, ?> data, int uidx) {
+        List<IdxPref> prefs = new ArrayList<>();
+        data.forEachUidxPref(uidx, (iidx, v) -> prefs.add(new IdxPref(iidx, v)));
+        return prefs;
+    }
+
+    private static List<IdxPref> iidxPrefs(FastPreferenceData<?, ?> data, int iidx) {
+        List<IdxPref> prefs = new ArrayList<>();
+        data.forEachIidxPref(iidx, (uidx, v) -> prefs.add(new IdxPref(uidx, v)));
+        return prefs;
+    }
+
+    private static void assertForEach(FastPreferenceData<?, ?> data) {
+        for (int uidx = 0; uidx < data.numUsers(); uidx++) {
+            List<IdxPref> expected = data.numItems(uidx) == 0 ? new ArrayList<>() : data.getUidxPreferences(uidx).collect(Collectors.toList());
+            Assert.assertEquals(expected, uidxPrefs(data, uidx));
+
+            List<Integer> idxs = new ArrayList<>();
+            data.forEachUidxIidx(uidx, idxs::add);
+            Assert.assertEquals(expected.stream().map(p -> p.v1).collect(Collectors.toList()), idxs);
+        }
+        for (int iidx = 0; iidx < data.numItems(); iidx++) {
+            List<IdxPref> expected = data.numUsers(iidx) == 0 ? new ArrayList<>() : data.getIidxPreferences(iidx).collect(Collectors.toList());
+            Assert.assertEquals(expected, iidxPrefs(data, iidx));
+
+            List<Integer> idxs = new ArrayList<>();
+            data.forEachIidxUidx(iidx, idxs::add);
+            Assert.assertEquals(expected.stream().map(p -> p.v1).collect(Collectors.toList()), idxs);
+        }
+    }
+
+    /**
+     * Tests that the forEach* methods match the streams of preferences of rating and binary data.
+     */
+    @Test
+    public void forEachTest() {
+        SimpleFastPreferenceData<Integer, Integer> data = randomData();
+
+        assertForEach(new RatingCODECPreferenceData<>(data, uIndex, iIndex, new GammaBitStreamCODEC(), new IntegratedFORVBCODEC(), new FixedLengthBitStreamCODEC(3)));
+        assertForEach(new BinaryCODECPreferenceData<>(data, uIndex, iIndex, new IntegratedFORVBCODEC(), new GammaBitStreamCODEC()));
+    }
+
+    /**
+     * Tests that nested iterations, which share the per-thread decoding buffers, do not overwrite each other.
+     */
+    @Test
+    public void nestedForEachTest() {
+        SimpleFastPreferenceData<Integer, Integer> data = randomData();
+        RatingCODECPreferenceData<Integer, Integer, ?, ?, ?> codecData = new RatingCODECPreferenceData<>(data, uIndex, iIndex, new GammaBitStreamCODEC(), new IntegratedFORVBCODEC(), new FixedLengthBitStreamCODEC(3));
+
+        for (int uidx = 0; uidx < codecData.numUsers(); uidx++) {
+            List<IdxPref> expectedU = uidxPrefs(codecData, uidx);
+            List<IdxPref> actualU = new ArrayList<>();
+            codecData.forEachUidxPref(uidx, (iidx, v) -> {
+                actualU.add(new IdxPref(iidx, v));
+
+                List<IdxPref> expectedI = codecData.getIidxPreferences(iidx).collect(Collectors.toList());
+                List<IdxPref> actualI = new ArrayList<>();
+                codecData.forEachIidxPref(iidx, (vidx, w) -> {
+                    actualI.add(new IdxPref(vidx, w));
+
+                    List<Integer> expectedV = codecData.getUidxPreferences(vidx).map(p -> p.v1).collect(Collectors.toList());
+                    List<Integer> actualV = new ArrayList<>();
+                    codecData.forEachUidxIidx(vidx, actualV::add);
+                    Assert.assertEquals(expectedV, actualV);
+                });
+                Assert.assertEquals(expectedI, actualI);
+            });
+            Assert.assertEquals(expectedU, actualU);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.core.util.function;
+
+/**
+ * Operation that accepts an int and a double and returns no result. Primitive specialization of BiConsumer for index-value pairs.
+ *
+ * @author agent (agent@local)
+ */
+@FunctionalInterface
+public interface IntDoubleConsumer {
+
+    /**
+     * Performs this operation on the given arguments.
+     *
+     * @param i int argument
+     * @param v double argument
+     */
+    void accept(int i, double v);
+}
@@ -17,7 +17,8 @@ import it.unimi.dsi.fastutil.ints.IntIterator;
 public class ArrayIntIterator implements IntIterator {
 
     private final int[] a;
-    private int i = 0;
+    private final int to;
+    private int i;
 
     /**
      * Constructor.
@@ -25,7 +26,20 @@ public class ArrayIntIterator implements IntIterator {
      * @param a array to iterate over
      */
     public ArrayIntIterator(int[] a) {
+        this(a, 0, a.length);
+    }
+
+    /**
+     * Constructor for a range of the array.
+     *
+     * @param a array to iterate over
+     * @param from index of the first element (inclusive)
+     * @param to index of the last element (exclusive)
+     */
+    public ArrayIntIterator(int[] a, int from, int to) {
         this.a = a;
+        this.i = from;
+        this.to = to;
     }
 
     @Override
@@ -36,7 +50,7 @@ public class ArrayIntIterator implements IntIterator {
     @Override
     public int skip(int n) {
         int j = 0;
-        while (i < a.length && j < n) {
+        while (i < to && j < n) {
             i++;
             j++;
         }
@@ -46,7 +60,7 @@ public class ArrayIntIterator implements IntIterator {
 
     @Override
     public boolean hasNext() {
-        return i < a.length;
+        return i < to;
     }
 
     @Override
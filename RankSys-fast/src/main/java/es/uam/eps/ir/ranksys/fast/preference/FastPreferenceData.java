@@ -13,8 +13,10 @@ import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.core.preference.PreferenceData;
 import it.unimi.dsi.fastutil.doubles.DoubleIterator;
 import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import org.ranksys.core.util.function.IntDoubleConsumer;
 
 /**
  * Fast version of PreferenceData, where preferences for users and items are
@@ -113,4 +115,74 @@ public interface FastPreferenceData<U, I> extends PreferenceData<U, I>, FastUser
      * @return yes/no
      */
     boolean useIteratorsPreferentially();
+
+    /**
+     * Performs an action for each item idx-value pair of the preferences of a user, without creating IdxPref objects. Implementations should override it to avoid creating any temporary object.
+     *
+     * @param uidx user index
+     * @param action action on the item idx and the value of each preference
+     */
+    default void forEachUidxPref(int uidx, IntDoubleConsumer action) {
+        if (useIteratorsPreferentially()) {
+            IntIterator iidxs = getUidxIidxs(uidx);
+            DoubleIterator ivs = getUidxVs(uidx);
+            while (iidxs.hasNext()) {
+                action.accept(iidxs.nextInt(), ivs.nextDouble());
+            }
+        } else {
+            getUidxPreferences(uidx).forEach(p -> action.accept(p.v1, p.v2));
+        }
+    }
+
+    /**
+     * Performs an action for each user idx-value pair of the preferences for an item, without creating IdxPref objects. Implementations should override it to avoid creating any temporary object.
+     *
+     * @param iidx item index
+     * @param action action on the user idx and the value of each preference
+     */
+    default void forEachIidxPref(int iidx, IntDoubleConsumer action) {
+        if (useIteratorsPreferentially()) {
+            IntIterator uidxs = getIidxUidxs(iidx);
+            DoubleIterator uvs = getIidxVs(iidx);
+            while (uidxs.hasNext()) {
+                action.accept(uidxs.nextInt(), uvs.nextDouble());
+            }
+        } else {
+            getIidxPreferences(iidx).forEach(p -> action.accept(p.v1, p.v2));
+        }
+    }
+
+    /**
+     * Performs an action for each item idx of the preferences of a user.
+     *
+     * @param uidx user index
+     * @param action action on the item idx of each preference
+     */
+    default void forEachUidxIidx(int uidx, IntConsumer action) {
+        if (useIteratorsPreferentially()) {
+            IntIterator idxs = getUidxIidxs(uidx);
+            while (idxs.hasNext()) {
+                action.accept(idxs.nextInt());
+            }
+        } else {
+            getUidxPreferences(uidx).forEach(p -> action.accept(p.v1));
+        }
+    }
+
+    /**
+     * Performs an action for each user idx of the preferences for an item.
+     *
+     * @param iidx item index
+     * @param action action on the user idx of each preference
+     */
+    default void forEachIidxUidx(int iidx, IntConsumer action) {
+        if (useIteratorsPreferentially()) {
+            IntIterator idxs = getIidxUidxs(iidx);
+            while (idxs.hasNext()) {
+                action.accept(idxs.nextInt());
+            }
+        } else {
+            getIidxPreferences(iidx).forEach(p -> action.accept(p.v1));
+        }
+    }
 }
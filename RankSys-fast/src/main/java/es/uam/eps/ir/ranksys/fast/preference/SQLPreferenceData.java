@@ -8,15 +8,25 @@
 package es.uam.eps.ir.ranksys.fast.preference;
 
 import es.uam.eps.ir.ranksys.core.preference.IdPref;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import org.jooq.*;
 import org.jooq.impl.DSL;
 import org.ranksys.core.preference.MutablePreferenceData;
 import org.ranksys.core.util.iterators.StreamDoubleIterator;
 import org.ranksys.core.util.iterators.StreamIntIterator;
+import org.ranksys.fast.preference.CSRPreferenceData;
 
 import javax.sql.DataSource;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -29,18 +39,55 @@ import static org.jooq.impl.DSL.*;
  */
 public class SQLPreferenceData implements FastPreferenceData<String, String>, MutablePreferenceData<String, String> {
 
-    private final static Table<Record> USERS = DSL.table(name("USERS"));
-    private final static Field<String> USER_ID = DSL.field(name("USER_ID"), String.class);
-    private final static Field<Integer> UIDX = DSL.field(name("UIDX"), int.class);
-    private final static Table<Record> ITEMS = DSL.table(name("ITEMS"));
-    private final static Field<String> ITEM_ID = DSL.field(name("ITEM_ID"), String.class);
-    private final static Field<Integer> IIDX = DSL.field(name("IIDX"), int.class);
-    private final static Field<Double> V = DSL.field(name("V"), double.class);
+    private static final Logger LOG = Logger.getLogger(SQLPreferenceData.class.getName());
+
+    /**
+     * Table of users.
+     */
+    protected final static Table<Record> USERS = DSL.table(name("USERS"));
+
+    /**
+     * User id field.
+     */
+    protected final static Field<String> USER_ID = DSL.field(name("USER_ID"), String.class);
+
+    /**
+     * User index field.
+     */
+    protected final static Field<Integer> UIDX = DSL.field(name("UIDX"), int.class);
+
+    /**
+     * Table of items.
+     */
+    protected final static Table<Record> ITEMS = DSL.table(name("ITEMS"));
+
+    /**
+     * Item id field.
+     */
+    protected final static Field<String> ITEM_ID = DSL.field(name("ITEM_ID"), String.class);
+
+    /**
+     * Item index field.
+     */
+    protected final static Field<Integer> IIDX = DSL.field(name("IIDX"), int.class);
+
+    /**
+     * Preference value field.
+     */
+    protected final static Field<Double> V = DSL.field(name("V"), double.class);
+
     private final static Sequence<Integer> SEQ_UIDX = DSL.sequence(name("SEQ_UIDX"), int.class);
     private final static Sequence<Integer> SEQ_IIDX = DSL.sequence(name("SEQ_IIDX"), int.class);
 
-    private final DSLContext dsl;
-    private final Table<Record> DATA;
+    /**
+     * jOOQ context.
+     */
+    protected final DSLContext dsl;
+
+    /**
+     * Table of preferences.
+     */
+    protected final Table<Record> DATA;
 
     /**
      * Constructor.
@@ -386,6 +433,75 @@ public class SQLPreferenceData implements FastPreferenceData<String, String>, Mu
         return false;
     }
 
+    /**
+     * Copies the preferences into an in-memory CSRPreferenceData with a default fetch size of 10,000 rows.
+     *
+     * @return in-memory copy of the preference data
+     */
+    public CSRPreferenceData<String, String> snapshot() {
+        return snapshot(10_000);
+    }
+
+    /**
+     * Copies the preferences into an in-memory CSRPreferenceData. The users, the items and the preferences are read in a single transaction, the latter with a single query in user and item order, whose rows are fetched lazily in batches of the given size instead of being materialised by the driver. The transaction also disables auto-commit, which some drivers, such as PostgreSQL's, require to stream the results. Users and items are indexed in the order of their indices in the database.
+     * <br>
+     * The three reads are only consistent with each other under the repeatable read or serializable isolation levels. Under weaker levels, preferences of users or items added after the indices were read are skipped, instead of being attributed to other users or items.
+     *
+     * @param fetchSize number of rows fetched from the database at a time
+     * @return in-memory copy of the preference data
+     */
+    public CSRPreferenceData<String, String> snapshot(int fetchSize) {
+        long time0 = System.nanoTime();
+
+        CSRPreferenceData<String, String> data = dsl.transactionResult(conf -> {
+            DSLContext tx = DSL.using(conf);
+
+            Result<Record2<Integer, String>> users = tx.select(UIDX, USER_ID).from(USERS).orderBy(UIDX).fetch();
+            Result<Record2<Integer, String>> items = tx.select(IIDX, ITEM_ID).from(ITEMS).orderBy(IIDX).fetch();
+            FastUserIndex<String> uIndex = SimpleFastUserIndex.load(users.stream().map(Record2::value2));
+            FastItemIndex<String> iIndex = SimpleFastItemIndex.load(items.stream().map(Record2::value2));
+            Int2IntOpenHashMap uidxMap = new Int2IntOpenHashMap(users.size());
+            uidxMap.defaultReturnValue(-1);
+            users.forEach(r -> uidxMap.put(r.value1().intValue(), uidxMap.size()));
+            Int2IntOpenHashMap iidxMap = new Int2IntOpenHashMap(items.size());
+            iidxMap.defaultReturnValue(-1);
+            items.forEach(r -> iidxMap.put(r.value1().intValue(), iidxMap.size()));
+
+            IntArrayList uidxs = new IntArrayList();
+            IntArrayList iidxs = new IntArrayList();
+            DoubleArrayList vs = new DoubleArrayList();
+            int skipped = 0;
+            try (Cursor<Record3<Integer, Integer, Double>> cursor = tx
+                    .select(UIDX, IIDX, V)
+                    .from(DATA)
+                    .orderBy(UIDX, IIDX)
+                    .fetchSize(fetchSize)
+                    .fetchLazy()) {
+                for (Record3<Integer, Integer, Double> r : cursor) {
+                    int uidx = uidxMap.get(r.value1().intValue());
+                    int iidx = iidxMap.get(r.value2().intValue());
+                    if (uidx < 0 || iidx < 0) {
+                        skipped++;
+                        continue;
+                    }
+                    uidxs.add(uidx);
+                    iidxs.add(iidx);
+                    vs.add(r.value3().doubleValue());
+                }
+            }
+            if (skipped > 0) {
+                LOG.log(Level.WARNING, String.format("snapshot skipped %d preferences of unknown users or items", skipped));
+            }
+
+            return CSRPreferenceData.load(uidxs.elements(), iidxs.elements(), vs.elements(), uidxs.size(), uIndex, iIndex);
+        });
+
+        double time = (System.nanoTime() - time0) / 1_000_000_000.0;
+        LOG.log(Level.INFO, String.format("snapshot n = %d t = %.2fs r = %.0f rows/s", data.numPreferences(), time, data.numPreferences() / time));
+
+        return data;
+    }
+
     /**
      * Creates empty tables for their use in SQLPreferenceData
      *
@@ -21,12 +21,14 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.jooq.lambda.function.Function4;
 import org.jooq.lambda.tuple.Tuple3;
 import org.jooq.lambda.tuple.Tuple4;
+import org.ranksys.core.util.function.IntDoubleConsumer;
 import org.ranksys.fast.preference.FastPointWisePreferenceData;
 import org.ranksys.fast.preference.StreamsAbstractFastPreferenceData;
 
@@ -120,6 +122,43 @@ public class SimpleFastPreferenceData<U, I> extends StreamsAbstractFastPreferenc
         }
     }
 
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer action) {
+        forEachPref(uidxList.get(uidx), action);
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer action) {
+        forEachPref(iidxList.get(iidx), action);
+    }
+
+    @Override
+    public void forEachUidxIidx(int uidx, IntConsumer action) {
+        forEachIdx(uidxList.get(uidx), action);
+    }
+
+    @Override
+    public void forEachIidxUidx(int iidx, IntConsumer action) {
+        forEachIdx(iidxList.get(iidx), action);
+    }
+
+    private static void forEachPref(List<IdxPref> list, IntDoubleConsumer action) {
+        if (list != null) {
+            for (int k = 0; k < list.size(); k++) {
+                IdxPref p = list.get(k);
+                action.accept(p.v1, p.v2);
+            }
+        }
+    }
+
+    private static void forEachIdx(List<IdxPref> list, IntConsumer action) {
+        if (list != null) {
+            for (int k = 0; k < list.size(); k++) {
+                action.accept(list.get(k).v1);
+            }
+        }
+    }
+
     @Override
     public int numPreferences() {
         return numPreferences;
@@ -12,10 +12,12 @@ import es.uam.eps.ir.ranksys.core.preference.IdPref;
 import it.unimi.dsi.fastutil.doubles.DoubleIterator;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.jooq.lambda.function.Function2;
+import org.ranksys.core.util.function.IntDoubleConsumer;
 import org.ranksys.fast.preference.FastPointWisePreferenceData;
 
 /**
@@ -226,4 +228,24 @@ public class TransposedPreferenceData<I, U> implements FastPreferenceData<I, U>,
         return d.useIteratorsPreferentially();
     }
 
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer action) {
+        d.forEachIidxPref(uidx, action);
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer action) {
+        d.forEachUidxPref(iidx, action);
+    }
+
+    @Override
+    public void forEachUidxIidx(int uidx, IntConsumer action) {
+        d.forEachIidxUidx(uidx, action);
+    }
+
+    @Override
+    public void forEachIidxUidx(int iidx, IntConsumer action) {
+        d.forEachUidxIidx(iidx, action);
+    }
+
 }
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.fast.utils.topn;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import static org.ranksys.core.util.tuples.Tuples.tuple;
+
+/**
+ * Bounded min-heap to keep just the top-n greatest integer-double pairs according to the value of the double. Unlike {@link IntDoubleTopN}, pairs are never boxed: they are stored in two parallel arrays, candidates below the current minimum are rejected with a single comparison and the heap can be reused with {@link #reset()}. Ties are broken by the integer, as in {@link IntDoubleTopN}.
+ *
+ * @author agent (agent@local)
+ */
+public class PrimitiveIntDoubleTopN {
+
+    private int[] keys;
+    private double[] values;
+    private int capacity;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity maximum capacity of the heap
+     */
+    public PrimitiveIntDoubleTopN(int capacity) {
+        this.keys = new int[capacity];
+        this.values = new double[capacity];
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    /**
+     * Empties the heap, keeping its capacity.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * Empties the heap and changes its capacity, growing the arrays if necessary.
+     *
+     * @param capacity new maximum capacity of the heap
+     */
+    public void reset(int capacity) {
+        if (capacity > keys.length) {
+            keys = new int[capacity];
+            values = new double[capacity];
+        }
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of pairs in the heap.
+     *
+     * @return number of pairs in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum capacity of the heap.
+     *
+     * @return maximum capacity of the heap
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the value below which candidates are rejected: the minimum value in the heap when it is full, negative infinity otherwise, and positive infinity for a heap of capacity 0. Callers can use it to skip computing scores that cannot enter the heap.
+     *
+     * @return current threshold
+     */
+    public double threshold() {
+        if (capacity == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return size < capacity ? Double.NEGATIVE_INFINITY : values[0];
+    }
+
+    /**
+     * Tries to add an integer-double pair to the heap.
+     *
+     * @param key integer to be added
+     * @param value double to be added
+     * @return true if the pair was added to the heap, false otherwise
+     */
+    public boolean add(int key, double value) {
+        if (size < capacity) {
+            int i = size;
+            keys[i] = key;
+            values[i] = value;
+            while (i > 0) {
+                int j = (i - 1) / 2;
+                if (compare(j, i) <= 0) {
+                    break;
+                }
+                swap(i, j);
+                i = j;
+            }
+            size++;
+
+            return true;
+        } else {
+            if (size == 0 || value < values[0] || compare(values[0], keys[0], value, key) >= 0) {
+                return false;
+            }
+            keys[0] = key;
+            values[0] = value;
+            siftDown(0, size);
+
+            return true;
+        }
+    }
+
+    /**
+     * Sorts the pairs of the heap in descending order. After sorting, the heap has to be reset before adding more pairs.
+     */
+    public void sort() {
+        for (int n = size - 1; n > 0; n--) {
+            swap(0, n);
+            siftDown(0, n);
+        }
+    }
+
+    /**
+     * Returns the integer of the i-th pair in the heap, or in the ranking after {@link #sort()}.
+     *
+     * @param i position
+     * @return integer of the pair
+     */
+    public int getKeyAt(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Returns the double of the i-th pair in the heap, or in the ranking after {@link #sort()}.
+     *
+     * @param i position
+     * @return double of the pair
+     */
+    public double getValueAt(int i) {
+        return values[i];
+    }
+
+    /**
+     * Returns the array of integers, valid for the first {@link #size()} positions.
+     *
+     * @return array of integers
+     */
+    public int[] getKeys() {
+        return keys;
+    }
+
+    /**
+     * Returns the array of doubles, valid for the first {@link #size()} positions.
+     *
+     * @return array of doubles
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Returns the pairs of the heap as a stream of tuples, in the order in which they are stored.
+     *
+     * @return stream of integer-double pairs
+     */
+    public Stream<Tuple2id> stream() {
+        return IntStream.range(0, size).mapToObj(i -> tuple(keys[i], values[i]));
+    }
+
+    private void siftDown(int i, int n) {
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= n) {
+                return;
+            }
+            int r = l + 1;
+            int m = r < n && compare(r, l) < 0 ? r : l;
+            if (compare(i, m) <= 0) {
+                return;
+            }
+            swap(i, m);
+            i = m;
+        }
+    }
+
+    private int compare(int i, int j) {
+        return compare(values[i], keys[i], values[j], keys[j]);
+    }
+
+    private static int compare(double v1, int k1, double v2, int k2) {
+        int c = Double.compare(v1, v2);
+        if (c != 0) {
+            return c;
+        } else {
+            return Integer.compare(k1, k2);
+        }
+    }
+
+    private void swap(int i, int j) {
+        int k = keys[i];
+        keys[i] = keys[j];
+        keys[j] = k;
+        double v = values[i];
+        values[i] = values[j];
+        values[j] = v;
+    }
+}
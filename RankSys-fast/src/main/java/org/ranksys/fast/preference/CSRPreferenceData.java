@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.core.preference.IdPref;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.jooq.lambda.tuple.Tuple3;
+import org.ranksys.core.util.function.IntDoubleConsumer;
+import org.ranksys.core.util.iterators.ArrayDoubleIterator;
+import org.ranksys.core.util.iterators.ArrayIntIterator;
+
+/**
+ * Implementation of FastPreferenceData backed by compressed sparse row (CSR) arrays. Both the user and the item views are stored as an array of offsets, an array of indices sorted within each row and an array of values, avoiding the per-preference objects of SimpleFastPreferenceData.
+ *
+ * @author agent (agent@local)
+ * @param <U> user type
+ * @param <I> item type
+ */
+public class CSRPreferenceData<U, I> extends IteratorsAbstractFastPreferenceData<U, I> implements FastPointWisePreferenceData<U, I>, Serializable {
+
+    private final int[] uOffsets;
+    private final int[] uIidxs;
+    private final double[] uVs;
+    private final int[] iOffsets;
+    private final int[] iUidxs;
+    private final double[] iVs;
+
+    /**
+     * Constructor with default IdxPref to IdPref converter.
+     *
+     * @param uOffsets offsets of the rows of each user, of length numUsers + 1
+     * @param uIidxs item indices of the user rows
+     * @param uVs values of the user rows
+     * @param iOffsets offsets of the rows of each item, of length numItems + 1
+     * @param iUidxs user indices of the item rows
+     * @param iVs values of the item rows
+     * @param uIndex user index
+     * @param iIndex item index
+     */
+    protected CSRPreferenceData(int[] uOffsets, int[] uIidxs, double[] uVs, int[] iOffsets, int[] iUidxs, double[] iVs,
+            FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        this(uOffsets, uIidxs, uVs, iOffsets, iUidxs, iVs, uIndex, iIndex,
+                (Function<IdxPref, IdPref<I>> & Serializable) p -> new IdPref<>(iIndex.iidx2item(p)),
+                (Function<IdxPref, IdPref<U>> & Serializable) p -> new IdPref<>(uIndex.uidx2user(p)));
+    }
+
+    /**
+     * Constructor with custom IdxPref to IdPref converter.
+     *
+     * @param uOffsets offsets of the rows of each user, of length numUsers + 1
+     * @param uIidxs item indices of the user rows
+     * @param uVs values of the user rows
+     * @param iOffsets offsets of the rows of each item, of length numItems + 1
+     * @param iUidxs user indices of the item rows
+     * @param iVs values of the item rows
+     * @param uIndex user index
+     * @param iIndex item index
+     * @param uPrefFun user IdxPref to IdPref converter
+     * @param iPrefFun item IdxPref to IdPref converter
+     */
+    protected CSRPreferenceData(int[] uOffsets, int[] uIidxs, double[] uVs, int[] iOffsets, int[] iUidxs, double[] iVs,
+            FastUserIndex<U> uIndex, FastItemIndex<I> iIndex,
+            Function<IdxPref, IdPref<I>> uPrefFun, Function<IdxPref, IdPref<U>> iPrefFun) {
+        super(uIndex, iIndex, uPrefFun, iPrefFun);
+        this.uOffsets = uOffsets;
+        this.uIidxs = uIidxs;
+        this.uVs = uVs;
+        this.iOffsets = iOffsets;
+        this.iUidxs = iUidxs;
+        this.iVs = iVs;
+    }
+
+    @Override
+    public int numUsers(int iidx) {
+        return iOffsets[iidx + 1] - iOffsets[iidx];
+    }
+
+    @Override
+    public int numItems(int uidx) {
+        return uOffsets[uidx + 1] - uOffsets[uidx];
+    }
+
+    @Override
+    public int numPreferences() {
+        return uIidxs.length;
+    }
+
+    @Override
+    public IntStream getUidxWithPreferences() {
+        return IntStream.range(0, numUsers())
+                .filter(uidx -> numItems(uidx) > 0);
+    }
+
+    @Override
+    public IntStream getIidxWithPreferences() {
+        return IntStream.range(0, numItems())
+                .filter(iidx -> numUsers(iidx) > 0);
+    }
+
+    @Override
+    public int numUsersWithPreferences() {
+        return (int) getUidxWithPreferences().count();
+    }
+
+    @Override
+    public int numItemsWithPreferences() {
+        return (int) getIidxWithPreferences().count();
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx) {
+        return new ArrayIntIterator(uIidxs, uOffsets[uidx], uOffsets[uidx + 1]);
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx) {
+        return new ArrayDoubleIterator(uVs, uOffsets[uidx], uOffsets[uidx + 1]);
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx) {
+        return new ArrayIntIterator(iUidxs, iOffsets[iidx], iOffsets[iidx + 1]);
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx) {
+        return new ArrayDoubleIterator(iVs, iOffsets[iidx], iOffsets[iidx + 1]);
+    }
+
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer action) {
+        for (int k = uOffsets[uidx]; k < uOffsets[uidx + 1]; k++) {
+            action.accept(uIidxs[k], uVs[k]);
+        }
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer action) {
+        for (int k = iOffsets[iidx]; k < iOffsets[iidx + 1]; k++) {
+            action.accept(iUidxs[k], iVs[k]);
+        }
+    }
+
+    @Override
+    public void forEachUidxIidx(int uidx, IntConsumer action) {
+        for (int k = uOffsets[uidx]; k < uOffsets[uidx + 1]; k++) {
+            action.accept(uIidxs[k]);
+        }
+    }
+
+    @Override
+    public void forEachIidxUidx(int iidx, IntConsumer action) {
+        for (int k = iOffsets[iidx]; k < iOffsets[iidx + 1]; k++) {
+            action.accept(iUidxs[k]);
+        }
+    }
+
+    @Override
+    public Optional<IdxPref> getPreference(int uidx, int iidx) {
+        int i = Arrays.binarySearch(uIidxs, uOffsets[uidx], uOffsets[uidx + 1], iidx);
+
+        if (i < 0) {
+            return Optional.empty();
+        } else {
+            return Optional.of(new IdxPref(iidx, uVs[i]));
+        }
+    }
+
+    @Override
+    public Optional<? extends IdPref<I>> getPreference(U u, I i) {
+        Optional<? extends IdxPref> pref = getPreference(user2uidx(u), item2iidx(i));
+
+        if (!pref.isPresent()) {
+            return Optional.empty();
+        } else {
+            return Optional.of(uPrefFun.apply(pref.get()));
+        }
+    }
+
+    /**
+     * Loads a CSRPreferenceData from a stream of user-item-value triples.
+     *
+     * @param <U> user type
+     * @param <I> item type
+     * @param tuples stream of user-item-value triples
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return an instance of CSRPreferenceData containing the data from the input stream
+     */
+    public static <U, I> CSRPreferenceData<U, I> load(Stream<Tuple3<U, I, Double>> tuples, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        Triples triples = tuples.collect(Triples::new,
+                (t, uiv) -> t.add(uIndex.user2uidx(uiv.v1), iIndex.item2iidx(uiv.v2), uiv.v3),
+                Triples::addAll);
+
+        return load(triples.uidxs.elements(), triples.iidxs.elements(), triples.vs.elements(), triples.uidxs.size(), uIndex, iIndex);
+    }
+
+    /**
+     * Loads a CSRPreferenceData from arrays of user index-item index-value triples. The first pass counts the number of preferences of each user and item, the second one places them in their rows, which are then sorted in parallel.
+     *
+     * @param <U> user type
+     * @param <I> item type
+     * @param uidxs user indices of the triples
+     * @param iidxs item indices of the triples
+     * @param vs values of the triples
+     * @param n number of triples to be read from the arrays
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return an instance of CSRPreferenceData containing the data from the input arrays
+     */
+    public static <U, I> CSRPreferenceData<U, I> load(int[] uidxs, int[] iidxs, double[] vs, int n, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        int numUsers = uIndex.numUsers();
+        int numItems = iIndex.numItems();
+
+        int[] uOffsets = new int[numUsers + 1];
+        for (int j = 0; j < n; j++) {
+            uOffsets[uidxs[j] + 1]++;
+        }
+        for (int uidx = 0; uidx < numUsers; uidx++) {
+            uOffsets[uidx + 1] += uOffsets[uidx];
+        }
+
+        int[] uIidxs = new int[n];
+        double[] uVs = new double[n];
+        int[] uNext = Arrays.copyOf(uOffsets, numUsers);
+        for (int j = 0; j < n; j++) {
+            int k = uNext[uidxs[j]]++;
+            uIidxs[k] = iidxs[j];
+            uVs[k] = vs[j];
+        }
+
+        IntStream.range(0, numUsers).parallel()
+                .forEach(uidx -> sortRow(uIidxs, uVs, uOffsets[uidx], uOffsets[uidx + 1]));
+
+        // item rows are filled in user order, hence they do not need to be sorted
+        int[] iOffsets = new int[numItems + 1];
+        for (int k = 0; k < n; k++) {
+            iOffsets[uIidxs[k] + 1]++;
+        }
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            iOffsets[iidx + 1] += iOffsets[iidx];
+        }
+
+        int[] iUidxs = new int[n];
+        double[] iVs = new double[n];
+        int[] iNext = Arrays.copyOf(iOffsets, numItems);
+        for (int uidx = 0; uidx < numUsers; uidx++) {
+            for (int k = uOffsets[uidx]; k < uOffsets[uidx + 1]; k++) {
+                int j = iNext[uIidxs[k]]++;
+                iUidxs[j] = uidx;
+                iVs[j] = uVs[k];
+            }
+        }
+
+        return new CSRPreferenceData<>(uOffsets, uIidxs, uVs, iOffsets, iUidxs, iVs, uIndex, iIndex);
+    }
+
+    static void sortRow(int[] idxs, double[] vs, int from, int to) {
+        boolean sorted = true;
+        for (int k = from + 1; sorted && k < to; k++) {
+            sorted = idxs[k - 1] <= idxs[k];
+        }
+        if (sorted) {
+            return;
+        }
+
+        it.unimi.dsi.fastutil.Arrays.quickSort(from, to, new AbstractIntComparator() {
+            @Override
+            public int compare(int k1, int k2) {
+                return Integer.compare(idxs[k1], idxs[k2]);
+            }
+        }, (k1, k2) -> {
+            int idx = idxs[k1];
+            idxs[k1] = idxs[k2];
+            idxs[k2] = idx;
+            double v = vs[k1];
+            vs[k1] = vs[k2];
+            vs[k2] = v;
+        });
+    }
+
+    private static class Triples {
+
+        private final IntArrayList uidxs = new IntArrayList();
+        private final IntArrayList iidxs = new IntArrayList();
+        private final DoubleArrayList vs = new DoubleArrayList();
+
+        public void add(int uidx, int iidx, double v) {
+            uidxs.add(uidx);
+            iidxs.add(iidx);
+            vs.add(v);
+        }
+
+        public void addAll(Triples other) {
+            uidxs.addAll(other.uidxs);
+            iidxs.addAll(other.iidxs);
+            vs.addAll(other.vs);
+        }
+    }
+}
@@ -0,0 +1,587 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.core.preference.IdPref;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import es.uam.eps.ir.ranksys.fast.preference.SQLPreferenceData;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+import org.jooq.Condition;
+import org.jooq.Field;
+import org.jooq.Record2;
+import org.jooq.Record3;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.ranksys.core.util.function.IntDoubleConsumer;
+import org.ranksys.core.util.iterators.ArrayDoubleIterator;
+import org.ranksys.core.util.iterators.ArrayIntIterator;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * SQL-backed preference data with read-through caches, for algorithms that access the preferences of users and items one at a time.
+ * <br>
+ * The preferences of users and items are kept in two caches, each bounded by a maximum number of preferences and evicting the least recently used ones. On a miss, the preferences of all the users (or items) in the block of consecutive indices of the requested one are fetched with a single range query, so that a sequential scan of the users issues one query per block. Arbitrary sets of users or items can be prefetched with a single IN query. The user and item indices and the counts of users, items and preferences are fetched once.
+ * <br>
+ * Adding or removing preferences, users or items through this object invalidates the affected entries. Changes made to the database by other means are not seen until {@link #invalidate()} is called.
+ *
+ * @author agent (agent@local)
+ */
+public class CachedSQLPreferenceData extends SQLPreferenceData {
+
+    private final int blockSize;
+    private final Cache userCache;
+    private final Cache itemCache;
+    private volatile Index userIndex;
+    private volatile Index itemIndex;
+    private volatile Stats stats;
+
+    /**
+     * Constructor with caches of one million preferences and blocks of 512 users or items.
+     *
+     * @param ds datasource
+     * @param dialect SQL dialect
+     * @param table table storing the preferences (train, test, etc.)
+     */
+    public CachedSQLPreferenceData(DataSource ds, SQLDialect dialect, String table) {
+        this(ds, dialect, table, 1_000_000, 512);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param ds datasource
+     * @param dialect SQL dialect
+     * @param table table storing the preferences (train, test, etc.)
+     * @param maxCachedPreferences maximum number of preferences in each of the user and item caches
+     * @param blockSize number of consecutive users or items fetched together on a miss
+     */
+    public CachedSQLPreferenceData(DataSource ds, SQLDialect dialect, String table, int maxCachedPreferences, int blockSize) {
+        super(ds, dialect, table);
+        this.blockSize = blockSize;
+        this.userCache = new Cache(maxCachedPreferences);
+        this.itemCache = new Cache(maxCachedPreferences);
+    }
+
+    /**
+     * Discards all the cached data.
+     */
+    public void invalidate() {
+        userCache.clear();
+        itemCache.clear();
+        userIndex = null;
+        itemIndex = null;
+        stats = null;
+    }
+
+    /**
+     * Fetches the preferences of a set of users with a single query, if they are not cached.
+     *
+     * @param uidxs user indices
+     */
+    public void prefetchUsers(int... uidxs) {
+        prefetch(userCache, UIDX, IIDX, uidxs);
+    }
+
+    /**
+     * Fetches the preferences of a set of items with a single query, if they are not cached.
+     *
+     * @param iidxs item indices
+     */
+    public void prefetchItems(int... iidxs) {
+        prefetch(itemCache, IIDX, UIDX, iidxs);
+    }
+
+    private Adjacency user(int uidx) {
+        return get(userCache, UIDX, IIDX, uidx);
+    }
+
+    private Adjacency item(int iidx) {
+        return get(itemCache, IIDX, UIDX, iidx);
+    }
+
+    private Adjacency get(Cache cache, Field<Integer> key, Field<Integer> other, int idx) {
+        Adjacency adj = cache.get(idx);
+        if (adj == null) {
+            int from = idx - idx % blockSize;
+            int to = from + blockSize - 1;
+            adj = load(cache, key, other, key.between(from, to), IntStream.rangeClosed(from, to).toArray()).get(idx);
+        }
+
+        return adj;
+    }
+
+    private void prefetch(Cache cache, Field<Integer> key, Field<Integer> other, int[] idxs) {
+        int[] missing = IntStream.of(idxs).filter(idx -> cache.get(idx) == null).distinct().toArray();
+        if (missing.length > 0) {
+            // inlined, as some databases do not use the index for lists of bind values
+            load(cache, key, other, key.in(IntStream.of(missing).mapToObj(DSL::inline).collect(toList())), missing);
+        }
+    }
+
+    private Int2ObjectMap<Adjacency> load(Cache cache, Field<Integer> key, Field<Integer> other, Condition condition, int[] idxs) {
+        long version = cache.version();
+
+        Int2ObjectMap<IntArrayList> idxls = new Int2ObjectOpenHashMap<>();
+        Int2ObjectMap<DoubleArrayList> vls = new Int2ObjectOpenHashMap<>();
+        for (Record3<Integer, Integer, Double> r : dsl
+                .select(key, other, V)
+                .from(DATA)
+                .where(condition)
+                .orderBy(key, other)
+                .fetch()) {
+            int idx = r.value1();
+            if (!idxls.containsKey(idx)) {
+                idxls.put(idx, new IntArrayList());
+                vls.put(idx, new DoubleArrayList());
+            }
+            idxls.get(idx).add(r.value2().intValue());
+            vls.get(idx).add(r.value3().doubleValue());
+        }
+
+        Int2ObjectMap<Adjacency> loaded = new Int2ObjectOpenHashMap<>();
+        for (int idx : idxs) {
+            IntArrayList idxl = idxls.get(idx);
+            Adjacency adj = idxl == null ? Adjacency.EMPTY : new Adjacency(idxl.toIntArray(), vls.get(idx).toDoubleArray());
+            loaded.put(idx, adj);
+        }
+        cache.putAll(loaded, version);
+
+        return loaded;
+    }
+
+    private Index users() {
+        Index index = userIndex;
+        if (index == null) {
+            index = new Index(dsl.select(UIDX, USER_ID).from(USERS).fetch());
+            userIndex = index;
+        }
+
+        return index;
+    }
+
+    private Index items() {
+        Index index = itemIndex;
+        if (index == null) {
+            index = new Index(dsl.select(IIDX, ITEM_ID).from(ITEMS).fetch());
+            itemIndex = index;
+        }
+
+        return index;
+    }
+
+    private Stats stats() {
+        Stats s = stats;
+        if (s == null) {
+            s = new Stats(super.numPreferences(),
+                    super.getUidxWithPreferences().sorted().toArray(),
+                    super.getIidxWithPreferences().sorted().toArray());
+            stats = s;
+        }
+
+        return s;
+    }
+
+    @Override
+    public int numUsers(int iidx) {
+        return item(iidx).idxs.length;
+    }
+
+    @Override
+    public int numItems(int uidx) {
+        return user(uidx).idxs.length;
+    }
+
+    @Override
+    public IntStream getUidxWithPreferences() {
+        return IntStream.of(stats().uidxs);
+    }
+
+    @Override
+    public IntStream getIidxWithPreferences() {
+        return IntStream.of(stats().iidxs);
+    }
+
+    @Override
+    public Stream<IdxPref> getUidxPreferences(int uidx) {
+        return user(uidx).stream();
+    }
+
+    @Override
+    public Stream<IdxPref> getIidxPreferences(int iidx) {
+        return item(iidx).stream();
+    }
+
+    @Override
+    public int numUsersWithPreferences() {
+        return stats().uidxs.length;
+    }
+
+    @Override
+    public int numItemsWithPreferences() {
+        return stats().iidxs.length;
+    }
+
+    @Override
+    public int numUsers(String i) {
+        int iidx = item2iidx(i);
+        return iidx < 0 ? 0 : numUsers(iidx);
+    }
+
+    @Override
+    public int numItems(String u) {
+        int uidx = user2uidx(u);
+        return uidx < 0 ? 0 : numItems(uidx);
+    }
+
+    @Override
+    public int numPreferences() {
+        return stats().numPreferences;
+    }
+
+    @Override
+    public Stream<String> getUsersWithPreferences() {
+        return getUidxWithPreferences().mapToObj(this::uidx2user);
+    }
+
+    @Override
+    public Stream<String> getItemsWithPreferences() {
+        return getIidxWithPreferences().mapToObj(this::iidx2item);
+    }
+
+    @Override
+    public Stream<IdPref<String>> getUserPreferences(String u) {
+        int uidx = user2uidx(u);
+        if (uidx < 0) {
+            return Stream.empty();
+        }
+        return getUidxPreferences(uidx).map(p -> new IdPref<>(iidx2item(p.v1), p.v2));
+    }
+
+    @Override
+    public Stream<IdPref<String>> getItemPreferences(String i) {
+        int iidx = item2iidx(i);
+        if (iidx < 0) {
+            return Stream.empty();
+        }
+        return getIidxPreferences(iidx).map(p -> new IdPref<>(uidx2user(p.v1), p.v2));
+    }
+
+    @Override
+    public boolean containsUser(String u) {
+        return user2uidx(u) >= 0;
+    }
+
+    @Override
+    public int numUsers() {
+        return users().idxs.length;
+    }
+
+    @Override
+    public Stream<String> getAllUsers() {
+        return getAllUidx().mapToObj(this::uidx2user);
+    }
+
+    @Override
+    public boolean containsItem(String i) {
+        return item2iidx(i) >= 0;
+    }
+
+    @Override
+    public int numItems() {
+        return items().idxs.length;
+    }
+
+    @Override
+    public Stream<String> getAllItems() {
+        return getAllIidx().mapToObj(this::iidx2item);
+    }
+
+    @Override
+    public int user2uidx(String u) {
+        return users().id2idx.getInt(u);
+    }
+
+    @Override
+    public String uidx2user(int uidx) {
+        return users().idx2id.get(uidx);
+    }
+
+    @Override
+    public IntStream getAllUidx() {
+        return IntStream.of(users().idxs);
+    }
+
+    @Override
+    public int item2iidx(String i) {
+        return items().id2idx.getInt(i);
+    }
+
+    @Override
+    public String iidx2item(int iidx) {
+        return items().idx2id.get(iidx);
+    }
+
+    @Override
+    public IntStream getAllIidx() {
+        return IntStream.of(items().idxs);
+    }
+
+    @Override
+    public boolean addUser(String u) {
+        boolean added = super.addUser(u);
+        userIndex = null;
+
+        return added;
+    }
+
+    @Override
+    public boolean removeUser(String u) {
+        int uidx = user2uidx(u);
+        boolean removed = super.removeUser(u);
+        userIndex = null;
+        if (removed) {
+            userCache.invalidate(uidx);
+            itemCache.clear();
+            stats = null;
+        }
+
+        return removed;
+    }
+
+    @Override
+    public boolean addItem(String i) {
+        boolean added = super.addItem(i);
+        itemIndex = null;
+
+        return added;
+    }
+
+    @Override
+    public boolean removeItem(String i) {
+        int iidx = item2iidx(i);
+        boolean removed = super.removeItem(i);
+        itemIndex = null;
+        if (removed) {
+            itemCache.invalidate(iidx);
+            userCache.clear();
+            stats = null;
+        }
+
+        return removed;
+    }
+
+    @Override
+    public boolean addPref(String u, String i, double v, Object n) {
+        boolean added = super.addPref(u, i, v, n);
+        invalidate(u, i);
+
+        return added;
+    }
+
+    @Override
+    public boolean removePref(String u, String i) {
+        boolean removed = super.removePref(u, i);
+        invalidate(u, i);
+
+        return removed;
+    }
+
+    private void invalidate(String u, String i) {
+        userCache.invalidate(user2uidx(u));
+        itemCache.invalidate(item2iidx(i));
+        stats = null;
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx) {
+        Adjacency adj = user(uidx);
+        return new ArrayIntIterator(adj.idxs, 0, adj.idxs.length);
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx) {
+        Adjacency adj = user(uidx);
+        return new ArrayDoubleIterator(adj.vs, 0, adj.vs.length);
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx) {
+        Adjacency adj = item(iidx);
+        return new ArrayIntIterator(adj.idxs, 0, adj.idxs.length);
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx) {
+        Adjacency adj = item(iidx);
+        return new ArrayDoubleIterator(adj.vs, 0, adj.vs.length);
+    }
+
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer action) {
+        user(uidx).forEach(action);
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer action) {
+        item(iidx).forEach(action);
+    }
+
+    @Override
+    public void forEachUidxIidx(int uidx, IntConsumer action) {
+        user(uidx).forEach(action);
+    }
+
+    @Override
+    public void forEachIidxUidx(int iidx, IntConsumer action) {
+        item(iidx).forEach(action);
+    }
+
+    /**
+     * Preferences of a user or item, sorted by the index of the other side.
+     */
+    private static final class Adjacency {
+
+        private static final Adjacency EMPTY = new Adjacency(new int[0], new double[0]);
+
+        private final int[] idxs;
+        private final double[] vs;
+
+        Adjacency(int[] idxs, double[] vs) {
+            this.idxs = idxs;
+            this.vs = vs;
+        }
+
+        Stream<IdxPref> stream() {
+            return IntStream.range(0, idxs.length).mapToObj(k -> new IdxPref(idxs[k], vs[k]));
+        }
+
+        void forEach(IntDoubleConsumer action) {
+            for (int k = 0; k < idxs.length; k++) {
+                action.accept(idxs[k], vs[k]);
+            }
+        }
+
+        void forEach(IntConsumer action) {
+            for (int idx : idxs) {
+                action.accept(idx);
+            }
+        }
+    }
+
+    /**
+     * Least recently used cache of adjacencies, bounded by their total number of preferences. Every invalidation increases a version, so that adjacencies fetched before it are not stored.
+     */
+    private static final class Cache {
+
+        private final long maxWeight;
+        private final LinkedHashMap<Integer, Adjacency> map;
+        private long weight;
+        private long version;
+
+        Cache(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.map = new LinkedHashMap<>(16, 0.75f, true);
+            this.weight = 0;
+            this.version = 0;
+        }
+
+        synchronized Adjacency get(int idx) {
+            return map.get(idx);
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized void putAll(Int2ObjectMap<Adjacency> adjs, long version) {
+            if (version != this.version) {
+                return;
+            }
+            for (Int2ObjectMap.Entry<Adjacency> e : adjs.int2ObjectEntrySet()) {
+                Adjacency old = map.put(e.getIntKey(), e.getValue());
+                weight += weight(e.getValue()) - (old == null ? 0 : weight(old));
+            }
+            Iterator<Map.Entry<Integer, Adjacency>> it = map.entrySet().iterator();
+            while (weight > maxWeight && map.size() > 1) {
+                weight -= weight(it.next().getValue());
+                it.remove();
+            }
+        }
+
+        synchronized void invalidate(int idx) {
+            version++;
+            Adjacency old = map.remove(idx);
+            if (old != null) {
+                weight -= weight(old);
+            }
+        }
+
+        synchronized void clear() {
+            version++;
+            map.clear();
+            weight = 0;
+        }
+
+        private static long weight(Adjacency adj) {
+            return adj.idxs.length + 1;
+        }
+    }
+
+    /**
+     * Snapshot of the users or items table.
+     */
+    private static final class Index {
+
+        private final Object2IntOpenHashMap<String> id2idx;
+        private final Int2ObjectOpenHashMap<String> idx2id;
+        private final int[] idxs;
+
+        Index(Iterable<Record2<Integer, String>> records) {
+            this.id2idx = new Object2IntOpenHashMap<>();
+            this.id2idx.defaultReturnValue(-1);
+            this.idx2id = new Int2ObjectOpenHashMap<>();
+            for (Record2<Integer, String> r : records) {
+                id2idx.put(r.value2(), r.value1().intValue());
+                idx2id.put(r.value1().intValue(), r.value2());
+            }
+            this.idxs = idx2id.keySet().toIntArray();
+            Arrays.sort(idxs);
+        }
+    }
+
+    /**
+     * Cached counts.
+     */
+    private static final class Stats {
+
+        private final int numPreferences;
+        private final int[] uidxs;
+        private final int[] iidxs;
+
+        Stats(int numPreferences, int[] uidxs, int[] iidxs) {
+            this.numPreferences = numPreferences;
+            this.uidxs = uidxs;
+            this.iidxs = iidxs;
+        }
+    }
+}
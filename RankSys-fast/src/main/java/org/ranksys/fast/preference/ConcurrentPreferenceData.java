@@ -0,0 +1,482 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.core.preference.IdPref;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.AbstractFastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.jooq.lambda.tuple.Tuple3;
+import org.ranksys.core.preference.MutablePreferenceData;
+import org.ranksys.core.util.function.IntDoubleConsumer;
+import org.ranksys.core.util.iterators.ArrayDoubleIterator;
+import org.ranksys.core.util.iterators.ArrayIntIterator;
+
+/**
+ * In-memory preference data that accepts new users, items and preferences while it is being read.
+ * <br>
+ * The preferences of every user and item are kept in a segment of parallel arrays of indices, in order of arrival, and values. Appends write past the end of the segment and then publish its new length, growing the arrays when full; removals copy the segment. Segments of more than a few preferences also have an open-addressing hash table of the positions of their indices, which appends fill in place, so that checking for duplicates, finding the preference to remove and {@link #getPreference(int, int)} take constant expected time. Removals, however, copy the arrays and rebuild the table of the segments of both the user and the item while holding their locks, and thus take time linear in their number of preferences. Readers never lock, and every call sees a consistent snapshot of a user or item, although the user and the item views of a new preference are published one after the other. Writes lock the segments of the user and then of the item of the preference, so that writes to different users proceed in parallel.
+ * <br>
+ * Since the indices and the values of a user or item are read in a single snapshot by the stream and forEach methods, but in two by the iterator methods, iterators are not to be used preferentially.
+ * <br>
+ * Users and items are added to the indices on their first preference, or explicitly. Indices are never re-used, hence users and items cannot be removed.
+ *
+ * @author agent (agent@local)
+ * @param <U> user type
+ * @param <I> item type
+ */
+public class ConcurrentPreferenceData<U, I> extends AbstractFastPreferenceData<U, I> implements FastPointWisePreferenceData<U, I>, MutablePreferenceData<U, I> {
+
+    private final UserIndex<U> users;
+    private final ItemIndex<I> items;
+    private final AtomicInteger numPreferences;
+
+    /**
+     * Constructor of an empty preference data.
+     */
+    public ConcurrentPreferenceData() {
+        this(new UserIndex<>(), new ItemIndex<>());
+    }
+
+    private ConcurrentPreferenceData(UserIndex<U> users, ItemIndex<I> items) {
+        super(users, items);
+        this.users = users;
+        this.items = items;
+        this.numPreferences = new AtomicInteger();
+    }
+
+    @Override
+    public boolean addUser(U u) {
+        return users.addNew(u);
+    }
+
+    @Override
+    public boolean removeUser(U u) {
+        throw new UnsupportedOperationException("users cannot be removed");
+    }
+
+    @Override
+    public boolean addItem(I i) {
+        return items.addNew(i);
+    }
+
+    @Override
+    public boolean removeItem(I i) {
+        throw new UnsupportedOperationException("items cannot be removed");
+    }
+
+    /**
+     * Adds a preference. The user and the item are added to the indices if necessary.
+     *
+     * @param u user
+     * @param i item
+     * @param v value
+     * @param other ignored
+     * @param <O> type of additional information
+     * @return true if the preference was added, false if the user already had a preference for the item
+     */
+    @Override
+    public <O> boolean addPref(U u, I i, double v, O other) {
+        int uidx = users.add(u);
+        int iidx = items.add(i);
+        Segment.Holder uHolder = users.holder(uidx);
+        Segment.Holder iHolder = items.holder(iidx);
+
+        synchronized (uHolder) {
+            if (uHolder.segment.indexOf(iidx) >= 0) {
+                return false;
+            }
+            synchronized (iHolder) {
+                uHolder.segment = uHolder.segment.append(iidx, v);
+                iHolder.segment = iHolder.segment.append(uidx, v);
+            }
+        }
+        numPreferences.incrementAndGet();
+
+        return true;
+    }
+
+    @Override
+    public boolean removePref(U u, I i) {
+        int uidx = user2uidx(u);
+        int iidx = item2iidx(i);
+        if (uidx < 0 || iidx < 0) {
+            return false;
+        }
+        Segment.Holder uHolder = users.holder(uidx);
+        Segment.Holder iHolder = items.holder(iidx);
+
+        synchronized (uHolder) {
+            int k = uHolder.segment.indexOf(iidx);
+            if (k < 0) {
+                return false;
+            }
+            synchronized (iHolder) {
+                uHolder.segment = uHolder.segment.remove(k);
+                iHolder.segment = iHolder.segment.remove(iHolder.segment.indexOf(uidx));
+            }
+        }
+        numPreferences.decrementAndGet();
+
+        return true;
+    }
+
+    @Override
+    public int numUsers(int iidx) {
+        return items.segment(iidx).size;
+    }
+
+    @Override
+    public int numItems(int uidx) {
+        return users.segment(uidx).size;
+    }
+
+    @Override
+    public int numPreferences() {
+        return numPreferences.get();
+    }
+
+    @Override
+    public IntStream getUidxWithPreferences() {
+        return IntStream.range(0, numUsers())
+                .filter(uidx -> numItems(uidx) > 0);
+    }
+
+    @Override
+    public IntStream getIidxWithPreferences() {
+        return IntStream.range(0, numItems())
+                .filter(iidx -> numUsers(iidx) > 0);
+    }
+
+    @Override
+    public Stream<? extends IdxPref> getUidxPreferences(int uidx) {
+        return users.segment(uidx).stream();
+    }
+
+    @Override
+    public Stream<? extends IdxPref> getIidxPreferences(int iidx) {
+        return items.segment(iidx).stream();
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx) {
+        Segment s = users.segment(uidx);
+        return new ArrayIntIterator(s.idxs, 0, s.size);
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx) {
+        Segment s = users.segment(uidx);
+        return new ArrayDoubleIterator(s.vs, 0, s.size);
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx) {
+        Segment s = items.segment(iidx);
+        return new ArrayIntIterator(s.idxs, 0, s.size);
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx) {
+        Segment s = items.segment(iidx);
+        return new ArrayDoubleIterator(s.vs, 0, s.size);
+    }
+
+    @Override
+    public boolean useIteratorsPreferentially() {
+        return false;
+    }
+
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer action) {
+        users.segment(uidx).forEach(action);
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer action) {
+        items.segment(iidx).forEach(action);
+    }
+
+    @Override
+    public void forEachUidxIidx(int uidx, IntConsumer action) {
+        users.segment(uidx).forEach(action);
+    }
+
+    @Override
+    public void forEachIidxUidx(int iidx, IntConsumer action) {
+        items.segment(iidx).forEach(action);
+    }
+
+    @Override
+    public Optional<IdxPref> getPreference(int uidx, int iidx) {
+        Segment s = users.segment(uidx);
+        int k = s.indexOf(iidx);
+
+        if (k < 0) {
+            return Optional.empty();
+        } else {
+            return Optional.of(new IdxPref(iidx, s.vs[k]));
+        }
+    }
+
+    @Override
+    public Optional<? extends IdPref<I>> getPreference(U u, I i) {
+        int uidx = user2uidx(u);
+        int iidx = item2iidx(i);
+        if (uidx < 0 || iidx < 0) {
+            return Optional.empty();
+        }
+
+        return getPreference(uidx, iidx).map(uPrefFun);
+    }
+
+    /**
+     * Loads a ConcurrentPreferenceData from a stream of user-item-value triples. Later duplicates of a user-item pair are ignored.
+     *
+     * @param <U> user type
+     * @param <I> item type
+     * @param tuples stream of user-item-value triples
+     * @return an instance of ConcurrentPreferenceData containing the data from the input stream
+     */
+    public static <U, I> ConcurrentPreferenceData<U, I> load(Stream<Tuple3<U, I, Double>> tuples) {
+        ConcurrentPreferenceData<U, I> data = new ConcurrentPreferenceData<>();
+        tuples.forEach(t -> data.addPref(t.v1, t.v2, t.v3, null));
+
+        return data;
+    }
+
+    /**
+     * Preferences of a user or item, in order of arrival. The first size elements of the arrays are never modified once published.
+     * <br>
+     * When the arrays have at least {@link #MIN_TABLE_CAPACITY} elements, the table keeps the position plus one of every index, 0 marking an empty slot, with linear probing. Appends to the same arrays only fill empty slots, hence a reader of an older segment finds its indices in the same probe sequence, and skips the positions beyond its size.
+     */
+    private static final class Segment implements Serializable {
+
+        private static final int MIN_TABLE_CAPACITY = 16;
+        private static final Segment EMPTY = new Segment(new int[0], new double[0], null, 0);
+
+        private final int[] idxs;
+        private final double[] vs;
+        private final int[] table;
+        private final int size;
+
+        Segment(int[] idxs, double[] vs, int[] table, int size) {
+            this.idxs = idxs;
+            this.vs = vs;
+            this.table = table;
+            this.size = size;
+        }
+
+        int indexOf(int idx) {
+            if (table == null) {
+                for (int k = 0; k < size; k++) {
+                    if (idxs[k] == idx) {
+                        return k;
+                    }
+                }
+
+                return -1;
+            }
+
+            int mask = table.length - 1;
+            for (int h = HashCommon.mix(idx) & mask; table[h] != 0; h = (h + 1) & mask) {
+                int k = table[h] - 1;
+                if (k < size && idxs[k] == idx) {
+                    return k;
+                }
+            }
+
+            return -1;
+        }
+
+        Segment append(int idx, double v) {
+            int[] newIdxs = idxs;
+            double[] newVs = vs;
+            int[] newTable = table;
+            if (size == idxs.length) {
+                int capacity = Math.max(4, 2 * size);
+                newIdxs = Arrays.copyOf(idxs, capacity);
+                newVs = Arrays.copyOf(vs, capacity);
+                newTable = table(newIdxs, size);
+            }
+            newIdxs[size] = idx;
+            newVs[size] = v;
+            if (newTable != null) {
+                insert(newTable, idx, size);
+            }
+
+            return new Segment(newIdxs, newVs, newTable, size + 1);
+        }
+
+        Segment remove(int k) {
+            int[] newIdxs = new int[idxs.length];
+            double[] newVs = new double[vs.length];
+            System.arraycopy(idxs, 0, newIdxs, 0, k);
+            System.arraycopy(vs, 0, newVs, 0, k);
+            System.arraycopy(idxs, k + 1, newIdxs, k, size - k - 1);
+            System.arraycopy(vs, k + 1, newVs, k, size - k - 1);
+
+            return new Segment(newIdxs, newVs, table(newIdxs, size - 1), size - 1);
+        }
+
+        private static int[] table(int[] idxs, int size) {
+            if (idxs.length < MIN_TABLE_CAPACITY) {
+                return null;
+            }
+
+            int[] table = new int[2 * idxs.length];
+            for (int k = 0; k < size; k++) {
+                insert(table, idxs[k], k);
+            }
+
+            return table;
+        }
+
+        private static void insert(int[] table, int idx, int k) {
+            int mask = table.length - 1;
+            int h = HashCommon.mix(idx) & mask;
+            while (table[h] != 0) {
+                h = (h + 1) & mask;
+            }
+            table[h] = k + 1;
+        }
+
+        Stream<IdxPref> stream() {
+            return IntStream.range(0, size).mapToObj(k -> new IdxPref(idxs[k], vs[k]));
+        }
+
+        void forEach(IntDoubleConsumer action) {
+            for (int k = 0; k < size; k++) {
+                action.accept(idxs[k], vs[k]);
+            }
+        }
+
+        void forEach(IntConsumer action) {
+            for (int k = 0; k < size; k++) {
+                action.accept(idxs[k]);
+            }
+        }
+
+        /**
+         * Latest segment of a user or item. Writers synchronize on it.
+         */
+        private static final class Holder implements Serializable {
+
+            private volatile Segment segment = EMPTY;
+        }
+    }
+
+    /**
+     * Growing index of users or items, with the segments of their preferences.
+     */
+    private static class Index<T> implements Serializable {
+
+        private final ConcurrentHashMap<T, Integer> t2i = new ConcurrentHashMap<>();
+        private volatile Object[] i2t = new Object[16];
+        private volatile Segment.Holder[] holders = new Segment.Holder[16];
+        private volatile int size = 0;
+
+        synchronized int add(T t) {
+            Integer idx = t2i.get(t);
+            if (idx != null) {
+                return idx;
+            }
+
+            int n = size;
+            if (n == holders.length) {
+                i2t = Arrays.copyOf(i2t, 2 * n);
+                holders = Arrays.copyOf(holders, 2 * n);
+            }
+            i2t[n] = t;
+            holders[n] = new Segment.Holder();
+            size = n + 1;
+            t2i.put(t, n);
+
+            return n;
+        }
+
+        synchronized boolean addNew(T t) {
+            if (t2i.containsKey(t)) {
+                return false;
+            }
+            add(t);
+
+            return true;
+        }
+
+        int get(T t) {
+            Integer idx = t2i.get(t);
+            return idx == null ? -1 : idx;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int idx) {
+            return (T) i2t[idx];
+        }
+
+        int size() {
+            return size;
+        }
+
+        Segment.Holder holder(int idx) {
+            return holders[idx];
+        }
+
+        Segment segment(int idx) {
+            return holders[idx].segment;
+        }
+    }
+
+    private static final class UserIndex<U> extends Index<U> implements FastUserIndex<U> {
+
+        @Override
+        public int numUsers() {
+            return size();
+        }
+
+        @Override
+        public int user2uidx(U u) {
+            return get(u);
+        }
+
+        @Override
+        public U uidx2user(int uidx) {
+            return get(uidx);
+        }
+    }
+
+    private static final class ItemIndex<I> extends Index<I> implements FastItemIndex<I> {
+
+        @Override
+        public int numItems() {
+            return size();
+        }
+
+        @Override
+        public int item2iidx(I i) {
+            return get(i);
+        }
+
+        @Override
+        public I iidx2item(int iidx) {
+            return get(iidx);
+        }
+    }
+}
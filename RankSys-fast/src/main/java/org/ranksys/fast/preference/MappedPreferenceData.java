@@ -0,0 +1,434 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.core.preference.IdPref;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import org.ranksys.core.util.function.IntDoubleConsumer;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Implementation of FastPreferenceData that serves the user and item CSR views directly from a memory-mapped binary file. Opening the file does not read the preferences, which are paged in on demand by the operating system and shared by all the processes mapping the same file.
+ *
+ * The file, written by {@link #write(FastPreferenceData, String)}, consists of a header with the number of users, items and preferences, followed by the offsets, indices (sorted within each row) and values of the user view and the same arrays for the item view. All numbers are little-endian.
+ *
+ * @author agent (agent@local)
+ * @param <U> user type
+ * @param <I> item type
+ */
+public class MappedPreferenceData<U, I> extends IteratorsAbstractFastPreferenceData<U, I> implements FastPointWisePreferenceData<U, I> {
+
+    private static final int MAGIC = 0x52535044;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+    private static final int CHUNK_BITS = 27;
+
+    private final int chunkBits;
+    private final int chunkMask;
+    private final int numPreferences;
+    private final IntBuffer[] uOffsets;
+    private final IntBuffer[] uIidxs;
+    private final DoubleBuffer[] uVs;
+    private final IntBuffer[] iOffsets;
+    private final IntBuffer[] iUidxs;
+    private final DoubleBuffer[] iVs;
+
+    private MappedPreferenceData(int chunkBits, int numPreferences,
+            IntBuffer[] uOffsets, IntBuffer[] uIidxs, DoubleBuffer[] uVs,
+            IntBuffer[] iOffsets, IntBuffer[] iUidxs, DoubleBuffer[] iVs,
+            FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        super(uIndex, iIndex);
+        this.chunkBits = chunkBits;
+        this.chunkMask = (1 << chunkBits) - 1;
+        this.numPreferences = numPreferences;
+        this.uOffsets = uOffsets;
+        this.uIidxs = uIidxs;
+        this.uVs = uVs;
+        this.iOffsets = iOffsets;
+        this.iUidxs = iUidxs;
+        this.iVs = iVs;
+    }
+
+    @Override
+    public int numUsers(int iidx) {
+        return get(iOffsets, iidx + 1) - get(iOffsets, iidx);
+    }
+
+    @Override
+    public int numItems(int uidx) {
+        return get(uOffsets, uidx + 1) - get(uOffsets, uidx);
+    }
+
+    @Override
+    public int numPreferences() {
+        return numPreferences;
+    }
+
+    @Override
+    public IntStream getUidxWithPreferences() {
+        return IntStream.range(0, numUsers())
+                .filter(uidx -> numItems(uidx) > 0);
+    }
+
+    @Override
+    public IntStream getIidxWithPreferences() {
+        return IntStream.range(0, numItems())
+                .filter(iidx -> numUsers(iidx) > 0);
+    }
+
+    @Override
+    public int numUsersWithPreferences() {
+        return (int) getUidxWithPreferences().count();
+    }
+
+    @Override
+    public int numItemsWithPreferences() {
+        return (int) getIidxWithPreferences().count();
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx) {
+        return new MappedIntIterator(uIidxs, get(uOffsets, uidx), get(uOffsets, uidx + 1));
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx) {
+        return new MappedDoubleIterator(uVs, get(uOffsets, uidx), get(uOffsets, uidx + 1));
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx) {
+        return new MappedIntIterator(iUidxs, get(iOffsets, iidx), get(iOffsets, iidx + 1));
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx) {
+        return new MappedDoubleIterator(iVs, get(iOffsets, iidx), get(iOffsets, iidx + 1));
+    }
+
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer action) {
+        int to = get(uOffsets, uidx + 1);
+        for (int k = get(uOffsets, uidx); k < to; k++) {
+            action.accept(get(uIidxs, k), get(uVs, k));
+        }
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer action) {
+        int to = get(iOffsets, iidx + 1);
+        for (int k = get(iOffsets, iidx); k < to; k++) {
+            action.accept(get(iUidxs, k), get(iVs, k));
+        }
+    }
+
+    @Override
+    public void forEachUidxIidx(int uidx, IntConsumer action) {
+        int to = get(uOffsets, uidx + 1);
+        for (int k = get(uOffsets, uidx); k < to; k++) {
+            action.accept(get(uIidxs, k));
+        }
+    }
+
+    @Override
+    public void forEachIidxUidx(int iidx, IntConsumer action) {
+        int to = get(iOffsets, iidx + 1);
+        for (int k = get(iOffsets, iidx); k < to; k++) {
+            action.accept(get(iUidxs, k));
+        }
+    }
+
+    @Override
+    public Optional<IdxPref> getPreference(int uidx, int iidx) {
+        int low = get(uOffsets, uidx);
+        int high = get(uOffsets, uidx + 1) - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Integer.compare(get(uIidxs, mid), iidx);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return Optional.of(new IdxPref(iidx, get(uVs, mid)));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<? extends IdPref<I>> getPreference(U u, I i) {
+        Optional<? extends IdxPref> pref = getPreference(user2uidx(u), item2iidx(i));
+
+        if (!pref.isPresent()) {
+            return Optional.empty();
+        } else {
+            return Optional.of(uPrefFun.apply(pref.get()));
+        }
+    }
+
+    /**
+     * Maps a file created by {@link #write(FastPreferenceData, String)}. The user and item indices must be the ones of the preference data that was written.
+     *
+     * @param <U> user type
+     * @param <I> item type
+     * @param path path to the file
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return preference data backed by the mapped file
+     * @throws IOException when the file cannot be mapped or it does not match the indices
+     */
+    public static <U, I> MappedPreferenceData<U, I> load(String path, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        return load(path, uIndex, iIndex, CHUNK_BITS);
+    }
+
+    /**
+     * Maps a file created by {@link #write(FastPreferenceData, String)} in chunks of 2^chunkBits numbers.
+     *
+     * @param <U> user type
+     * @param <I> item type
+     * @param path path to the file
+     * @param uIndex user index
+     * @param iIndex item index
+     * @param chunkBits base-2 logarithm of the number of ints or doubles per mapped chunk
+     * @return preference data backed by the mapped file
+     * @throws IOException when the file cannot be mapped or it does not match the indices
+     */
+    static <U, I> MappedPreferenceData<U, I> load(String path, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int chunkBits) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), READ)) {
+            ByteBuffer header = channel.map(READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("not a mapped preference data file: " + path);
+            }
+            int numUsers = header.getInt();
+            int numItems = header.getInt();
+            int numPreferences = header.getInt();
+            if (numUsers != uIndex.numUsers() || numItems != iIndex.numItems()) {
+                throw new IOException("user and item indices do not match those of " + path);
+            }
+
+            long position = HEADER_SIZE;
+            IntBuffer[] uOffsets = mapInts(channel, chunkBits, position, numUsers + 1);
+            position += (numUsers + 1) * (long) Integer.BYTES;
+            IntBuffer[] uIidxs = mapInts(channel, chunkBits, position, numPreferences);
+            position += numPreferences * (long) Integer.BYTES;
+            DoubleBuffer[] uVs = mapDoubles(channel, chunkBits, position, numPreferences);
+            position += numPreferences * (long) Double.BYTES;
+            IntBuffer[] iOffsets = mapInts(channel, chunkBits, position, numItems + 1);
+            position += (numItems + 1) * (long) Integer.BYTES;
+            IntBuffer[] iUidxs = mapInts(channel, chunkBits, position, numPreferences);
+            position += numPreferences * (long) Integer.BYTES;
+            DoubleBuffer[] iVs = mapDoubles(channel, chunkBits, position, numPreferences);
+
+            return new MappedPreferenceData<>(chunkBits, numPreferences, uOffsets, uIidxs, uVs, iOffsets, iUidxs, iVs, uIndex, iIndex);
+        }
+    }
+
+    /**
+     * Writes the user and item views of a preference data into a file that can be mapped with {@link #load(String, FastUserIndex, FastItemIndex)}.
+     *
+     * @param data preference data
+     * @param path path to the file
+     * @throws IOException when I/O problems
+     */
+    public static void write(FastPreferenceData<?, ?> data, String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(data.numUsers());
+            buffer.putInt(data.numItems());
+            buffer.putInt(data.numPreferences());
+
+            writeView(data, channel, buffer);
+            writeView(new TransposedPreferenceData<>(data), channel, buffer);
+
+            flush(channel, buffer);
+        }
+    }
+
+    private static void writeView(FastPreferenceData<?, ?> data, FileChannel channel, ByteBuffer buffer) throws IOException {
+        int offset = 0;
+        for (int uidx = 0; uidx < data.numUsers(); uidx++) {
+            putInt(channel, buffer, offset);
+            offset += data.numItems(uidx);
+        }
+        putInt(channel, buffer, offset);
+
+        // indices and values are written in two passes over the rows to avoid keeping the whole view in memory
+        for (boolean values : new boolean[]{false, true}) {
+            int[] idxs = new int[0];
+            double[] vs = new double[0];
+            for (int uidx = 0; uidx < data.numUsers(); uidx++) {
+                int n = data.numItems(uidx);
+                if (idxs.length < n) {
+                    idxs = new int[n];
+                    vs = new double[n];
+                }
+                IntIterator iidxs = data.getUidxIidxs(uidx);
+                DoubleIterator ivs = data.getUidxVs(uidx);
+                for (int k = 0; k < n; k++) {
+                    idxs[k] = iidxs.nextInt();
+                    vs[k] = ivs.nextDouble();
+                }
+                CSRPreferenceData.sortRow(idxs, vs, 0, n);
+
+                for (int k = 0; k < n; k++) {
+                    if (values) {
+                        putDouble(channel, buffer, vs[k]);
+                    } else {
+                        putInt(channel, buffer, idxs[k]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void putInt(FileChannel channel, ByteBuffer buffer, int i) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            flush(channel, buffer);
+        }
+        buffer.putInt(i);
+    }
+
+    private static void putDouble(FileChannel channel, ByteBuffer buffer, double v) throws IOException {
+        if (buffer.remaining() < Double.BYTES) {
+            flush(channel, buffer);
+        }
+        buffer.putDouble(v);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static IntBuffer[] mapInts(FileChannel channel, int chunkBits, long position, int n) throws IOException {
+        IntBuffer[] chunks = new IntBuffer[(n >>> chunkBits) + 1];
+        for (int c = 0; c < chunks.length; c++) {
+            int len = Math.min(n - (c << chunkBits), 1 << chunkBits);
+            long start = position + ((long) c << chunkBits) * Integer.BYTES;
+            chunks[c] = channel.map(READ_ONLY, start, len * (long) Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        return chunks;
+    }
+
+    private static DoubleBuffer[] mapDoubles(FileChannel channel, int chunkBits, long position, int n) throws IOException {
+        DoubleBuffer[] chunks = new DoubleBuffer[(n >>> chunkBits) + 1];
+        for (int c = 0; c < chunks.length; c++) {
+            int len = Math.min(n - (c << chunkBits), 1 << chunkBits);
+            long start = position + ((long) c << chunkBits) * Double.BYTES;
+            chunks[c] = channel.map(READ_ONLY, start, len * (long) Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+        return chunks;
+    }
+
+    private int get(IntBuffer[] chunks, int k) {
+        return chunks[k >>> chunkBits].get(k & chunkMask);
+    }
+
+    private double get(DoubleBuffer[] chunks, int k) {
+        return chunks[k >>> chunkBits].get(k & chunkMask);
+    }
+
+    private class MappedIntIterator implements IntIterator {
+
+        private final IntBuffer[] chunks;
+        private final int to;
+        private int k;
+
+        public MappedIntIterator(IntBuffer[] chunks, int from, int to) {
+            this.chunks = chunks;
+            this.k = from;
+            this.to = to;
+        }
+
+        @Override
+        public int nextInt() {
+            return get(chunks, k++);
+        }
+
+        @Override
+        public int skip(int n) {
+            int j = Math.min(n, to - k);
+            k += j;
+            return j;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return k < to;
+        }
+
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+    }
+
+    private class MappedDoubleIterator implements DoubleIterator {
+
+        private final DoubleBuffer[] chunks;
+        private final int to;
+        private int k;
+
+        public MappedDoubleIterator(DoubleBuffer[] chunks, int from, int to) {
+            this.chunks = chunks;
+            this.k = from;
+            this.to = to;
+        }
+
+        @Override
+        public double nextDouble() {
+            return get(chunks, k++);
+        }
+
+        @Override
+        public int skip(int n) {
+            int j = Math.min(n, to - k);
+            k += j;
+            return j;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return k < to;
+        }
+
+        @Override
+        public Double next() {
+            return nextDouble();
+        }
+    }
+}
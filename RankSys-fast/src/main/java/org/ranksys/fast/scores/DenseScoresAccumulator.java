@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.scores;
+
+import es.uam.eps.ir.ranksys.fast.utils.topn.PrimitiveIntDoubleTopN;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import org.ranksys.core.util.function.IntDoubleConsumer;
+
+/**
+ * Scores accumulator backed by a dense array of scores and a list of the indices that have been touched, so that iterating and resetting only cost as much as the number of indices with a score. It requires about 13 bytes per possible index. Indices beyond the initial number, such as those of items added to a mutable preference data while scores are being accumulated, make the arrays grow.
+ *
+ * @author agent (agent@local)
+ */
+public class DenseScoresAccumulator implements ScoresAccumulator {
+
+    private double[] scores;
+    private boolean[] flags;
+    private int[] touched;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param n number of indices
+     */
+    public DenseScoresAccumulator(int n) {
+        this.scores = new double[n];
+        this.flags = new boolean[n];
+        this.touched = new int[n];
+        this.size = 0;
+    }
+
+    @Override
+    public int capacity() {
+        return scores.length;
+    }
+
+    @Override
+    public void add(int idx, double v) {
+        if (idx >= scores.length) {
+            grow(idx + 1);
+        }
+        if (!flags[idx]) {
+            flags[idx] = true;
+            touched[size++] = idx;
+        }
+        scores[idx] += v;
+    }
+
+    @Override
+    public double get(int idx) {
+        return idx < scores.length ? scores[idx] : 0.0;
+    }
+
+    private void grow(int n) {
+        int capacity = Math.max(n, 2 * scores.length);
+        scores = Arrays.copyOf(scores, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        touched = Arrays.copyOf(touched, capacity);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(IntDoubleConsumer action) {
+        for (int k = 0; k < size; k++) {
+            int idx = touched[k];
+            action.accept(idx, scores[idx]);
+        }
+    }
+
+    @Override
+    public void topN(PrimitiveIntDoubleTopN topN, IntPredicate filter) {
+        for (int k = 0; k < size; k++) {
+            int idx = touched[k];
+            double v = scores[idx];
+            if (v >= topN.threshold() && filter.test(idx)) {
+                topN.add(idx, v);
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (int k = 0; k < size; k++) {
+            int idx = touched[k];
+            scores[idx] = 0.0;
+            flags[idx] = false;
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.scores;
+
+import es.uam.eps.ir.ranksys.fast.utils.topn.PrimitiveIntDoubleTopN;
+import java.util.function.IntPredicate;
+import org.ranksys.core.util.function.IntDoubleConsumer;
+
+/**
+ * Accumulator of scores of users or items identified by index. Only the indices that have been added at least once since the last reset are considered to have a score. Implementations are not thread-safe, but are designed to be reused (e.g. one per thread) by calling {@link #reset()}.
+ *
+ * @author agent (agent@local)
+ */
+public interface ScoresAccumulator {
+
+    /**
+     * Maximum number of indices for which {@link #create(int)} returns a dense accumulator.
+     */
+    int DENSE_MAX_SIZE = 1 << 19;
+
+    /**
+     * Adds a value to the score of an index.
+     *
+     * @param idx index
+     * @param v value to be added
+     */
+    void add(int idx, double v);
+
+    /**
+     * Returns the score of an index.
+     *
+     * @param idx index
+     * @return score of the index, 0.0 if it has none
+     */
+    double get(int idx);
+
+    /**
+     * Returns the number of indices with a score.
+     *
+     * @return number of indices with a score
+     */
+    int size();
+
+    /**
+     * Performs an action over each index-score pair.
+     *
+     * @param action action to be performed
+     */
+    void forEach(IntDoubleConsumer action);
+
+    /**
+     * Adds to a top-n heap the index-score pairs whose index passes a filter.
+     *
+     * @param topN top-n heap
+     * @param filter filter of indices
+     */
+    default void topN(PrimitiveIntDoubleTopN topN, IntPredicate filter) {
+        forEach((idx, v) -> {
+            if (filter.test(idx)) {
+                topN.add(idx, v);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of indices, starting from 0, that the accumulator can hold.
+     *
+     * @return number of indices, Integer.MAX_VALUE if unbounded
+     */
+    default int capacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Removes all the scores.
+     */
+    void reset();
+
+    /**
+     * Creates an accumulator for indices between 0 and n - 1: a dense one if n is not greater than {@link #DENSE_MAX_SIZE}, a sparse one otherwise.
+     *
+     * @param n number of indices
+     * @return scores accumulator
+     */
+    static ScoresAccumulator create(int n) {
+        return n <= DENSE_MAX_SIZE ? new DenseScoresAccumulator(n) : new SparseScoresAccumulator();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.scores;
+
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import org.ranksys.core.util.function.IntDoubleConsumer;
+
+/**
+ * Scores accumulator backed by a hash map, for large sets of indices where a dense array would not pay off.
+ *
+ * @author agent (agent@local)
+ */
+public class SparseScoresAccumulator implements ScoresAccumulator {
+
+    private final Int2DoubleOpenHashMap scores;
+
+    /**
+     * Constructor.
+     */
+    public SparseScoresAccumulator() {
+        this.scores = new Int2DoubleOpenHashMap();
+        this.scores.defaultReturnValue(0.0);
+    }
+
+    @Override
+    public void add(int idx, double v) {
+        scores.addTo(idx, v);
+    }
+
+    @Override
+    public double get(int idx) {
+        return scores.get(idx);
+    }
+
+    @Override
+    public int size() {
+        return scores.size();
+    }
+
+    @Override
+    public void forEach(IntDoubleConsumer action) {
+        for (Int2DoubleMap.Entry e : scores.int2DoubleEntrySet()) {
+            action.accept(e.getIntKey(), e.getDoubleValue());
+        }
+    }
+
+    @Override
+    public void reset() {
+        scores.clear();
+    }
+
+    /**
+     * Returns the map of scores. It is the backing map, not a copy.
+     *
+     * @return map of scores
+     */
+    public Int2DoubleMap getMap() {
+        return scores;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.fast.utils.topn;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Unit test for PrimitiveIntDoubleTopN.
+ *
+ * @author agent (agent@local)
+ */
+public class PrimitiveIntDoubleTopNTest {
+
+    /**
+     * Tests that the sorted pairs, ties included, match those of IntDoubleTopN, also when the heap is reused.
+     */
+    @Test
+    public void simpleTest() {
+        Random rnd = new Random(1L);
+        PrimitiveIntDoubleTopN actual = new PrimitiveIntDoubleTopN(0);
+        Assert.assertFalse(actual.add(1, 1.0));
+        Assert.assertEquals(Double.POSITIVE_INFINITY, actual.threshold(), 0.0);
+
+        for (int capacity : new int[]{1, 10, 100, 1000}) {
+            IntDoubleTopN expected = new IntDoubleTopN(capacity);
+            actual.reset(capacity);
+            for (int k = 0; k < 500; k++) {
+                int key = rnd.nextInt(1000);
+                double value = rnd.nextInt(20);
+                Assert.assertEquals(expected.add(key, value), actual.add(key, value));
+            }
+            Assert.assertEquals(expected.size(), actual.size());
+
+            expected.sort();
+            actual.sort();
+
+            List<Tuple2id> expectedList = expected.reverseStream().collect(toList());
+            List<Tuple2id> actualList = actual.stream().collect(toList());
+            Assert.assertEquals(expectedList, actualList);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.jooq.lambda.tuple.Tuple3;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Unit test for CSRPreferenceData.
+ *
+ * @author agent (agent@local)
+ */
+public class CSRPreferenceDataTest {
+
+    /**
+     * Tests that both views and the point-wise access match those of SimpleFastPreferenceData.
+     */
+    @Test
+    public void simpleTest() {
+        int numUsers = 50;
+        int numItems = 80;
+        FastUserIndex<Integer> uIndex = SimpleFastUserIndex.load(IntStream.range(0, numUsers).boxed());
+        FastItemIndex<Integer> iIndex = SimpleFastItemIndex.load(IntStream.range(0, numItems).boxed());
+
+        Random rnd = new Random(1L);
+        List<Tuple3<Integer, Integer, Double>> tuples = new ArrayList<>();
+        for (int uidx = 0; uidx < numUsers - 1; uidx++) {
+            int u = uidx;
+            List<Integer> items = new ArrayList<>();
+            IntStream.range(0, numItems).forEach(items::add);
+            Collections.shuffle(items, rnd);
+            items.subList(0, 1 + rnd.nextInt(numItems / 2)).forEach(i -> tuples.add(tuple(u, i, (double) rnd.nextInt(5) + 1)));
+        }
+        Collections.shuffle(tuples, rnd);
+
+        SimpleFastPreferenceData<Integer, Integer> expected = SimpleFastPreferenceData.load(tuples.stream(), uIndex, iIndex);
+        CSRPreferenceData<Integer, Integer> actual = CSRPreferenceData.load(tuples.parallelStream(), uIndex, iIndex);
+
+        Assert.assertEquals(expected.numPreferences(), actual.numPreferences());
+        Assert.assertEquals(expected.numUsersWithPreferences(), actual.numUsersWithPreferences());
+        Assert.assertEquals(expected.numItemsWithPreferences(), actual.numItemsWithPreferences());
+        Assert.assertEquals(0, actual.numItems(numUsers - 1));
+
+        for (int uidx = 0; uidx < numUsers; uidx++) {
+            Assert.assertArrayEquals(
+                    expected.getUidxPreferences(uidx).toArray(IdxPref[]::new),
+                    actual.getUidxPreferences(uidx).toArray(IdxPref[]::new));
+        }
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            Assert.assertArrayEquals(
+                    expected.getIidxPreferences(iidx).toArray(IdxPref[]::new),
+                    actual.getIidxPreferences(iidx).toArray(IdxPref[]::new));
+        }
+        for (int uidx = 0; uidx < numUsers - 1; uidx++) {
+            for (int iidx = 0; iidx < numItems; iidx++) {
+                Assert.assertEquals(expected.getPreference(uidx, iidx), actual.getPreference(uidx, iidx));
+            }
+        }
+        Assert.assertFalse(actual.getPreference(numUsers - 1, 0).isPresent());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.preference;
+
+import com.zaxxer.hikari.HikariDataSource;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import es.uam.eps.ir.ranksys.fast.preference.SQLPreferenceData;
+import org.jooq.SQLDialect;
+import org.junit.Test;
+
+import static java.lang.Double.parseDouble;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A test for CachedSQLPreferenceData.
+ *
+ * @author agent (agent@local)
+ */
+public class CachedSQLPreferenceDataTest {
+
+    /**
+     * Test with toy data, comparing with SQLPreferenceData and checking that updates are seen.
+     */
+    @Test
+    public void testToyExample() {
+        String url = "jdbc:h2:mem:cached";
+
+        try (HikariDataSource ds = new HikariDataSource()) {
+            ds.setJdbcUrl(url);
+
+            SQLPreferenceData.create(ds, SQLDialect.H2, "data");
+
+            SQLPreferenceData prefs = new SQLPreferenceData(ds, SQLDialect.H2, "data");
+            CachedSQLPreferenceData cached = new CachedSQLPreferenceData(ds, SQLDialect.H2, "data", 10, 2);
+
+            String[][] data = new String[][]{
+                new String[]{"a", "A", "1"},
+                new String[]{"a", "B", "2"},
+                new String[]{"a", "E", "3"},
+                new String[]{"a", "T", "4"},
+                new String[]{"b", "A", "5"},
+                new String[]{"b", "B", "1"},
+                new String[]{"b", "C", "2"},
+                new String[]{"c", "A", "5"},
+                new String[]{"c", "C", "1"},
+                new String[]{"c", "T", "2"},
+                new String[]{"d", "E", "3"},};
+
+            for (String[] pref : data) {
+                if (!cached.containsUser(pref[0])) {
+                    assertTrue(cached.addUser(pref[0]));
+                }
+                if (!cached.containsItem(pref[1])) {
+                    assertTrue(cached.addItem(pref[1]));
+                }
+                assertTrue(cached.addPref(pref[0], pref[1], parseDouble(pref[2]), null));
+            }
+
+            assertSame(prefs, cached);
+            assertEquals(4, cached.numItems("a"));
+            assertEquals(3, cached.numUsers("A"));
+            assertEquals(-1, cached.user2uidx("z"));
+
+            assertTrue(cached.removePref("a", "B"));
+            assertTrue(cached.addPref("d", "B", 4.0, null));
+            assertSame(prefs, cached);
+            assertEquals(3, cached.numItems("a"));
+
+            assertTrue(cached.removeUser("c"));
+            assertFalse(cached.containsUser("c"));
+            assertSame(prefs, cached);
+            assertEquals(2, cached.numUsers("A"));
+        }
+    }
+
+    private static void assertSame(SQLPreferenceData expected, CachedSQLPreferenceData actual) {
+        assertEquals(expected.numPreferences(), actual.numPreferences());
+        assertEquals(expected.numUsers(), actual.numUsers());
+        assertEquals(expected.numItems(), actual.numItems());
+        assertEquals(expected.numUsersWithPreferences(), actual.numUsersWithPreferences());
+        assertEquals(expected.numItemsWithPreferences(), actual.numItemsWithPreferences());
+
+        expected.getAllUidx().forEach(uidx -> {
+            assertEquals(expected.uidx2user(uidx), actual.uidx2user(uidx));
+            assertEquals(uidx, actual.user2uidx(expected.uidx2user(uidx)));
+            assertArrayEquals(expected.getUidxPreferences(uidx).sorted((p1, p2) -> Integer.compare(p1.v1, p2.v1)).toArray(IdxPref[]::new),
+                    actual.getUidxPreferences(uidx).toArray(IdxPref[]::new));
+        });
+        expected.getAllIidx().forEach(iidx -> {
+            assertEquals(expected.iidx2item(iidx), actual.iidx2item(iidx));
+            assertArrayEquals(expected.getIidxPreferences(iidx).sorted((p1, p2) -> Integer.compare(p1.v1, p2.v1)).toArray(IdxPref[]::new),
+                    actual.getIidxPreferences(iidx).toArray(IdxPref[]::new));
+        });
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for ConcurrentPreferenceData.
+ *
+ * @author agent (agent@local)
+ */
+public class ConcurrentPreferenceDataTest {
+
+    /**
+     * Tests additions and removals of preferences, users and items.
+     */
+    @Test
+    public void simpleTest() {
+        ConcurrentPreferenceData<String, String> data = new ConcurrentPreferenceData<>();
+
+        Assert.assertTrue(data.addUser("u0"));
+        Assert.assertFalse(data.addUser("u0"));
+        Assert.assertTrue(data.addPref("u1", "i0", 2.0, null));
+        Assert.assertTrue(data.addPref("u0", "i0", 1.0, null));
+        Assert.assertTrue(data.addPref("u0", "i1", 3.0, null));
+        Assert.assertFalse(data.addPref("u0", "i1", 4.0, null));
+
+        Assert.assertEquals(2, data.numUsers());
+        Assert.assertEquals(2, data.numItems());
+        Assert.assertEquals(3, data.numPreferences());
+        Assert.assertEquals(0, data.user2uidx("u0"));
+        Assert.assertEquals("i1", data.iidx2item(1));
+        Assert.assertArrayEquals(new IdxPref[]{new IdxPref(0, 1.0), new IdxPref(1, 3.0)}, data.getUidxPreferences(0).toArray(IdxPref[]::new));
+        Assert.assertArrayEquals(new IdxPref[]{new IdxPref(1, 2.0), new IdxPref(0, 1.0)}, data.getIidxPreferences(0).toArray(IdxPref[]::new));
+        Assert.assertEquals(Optional.of(new IdxPref(1, 3.0)), data.getPreference(0, 1));
+
+        Assert.assertTrue(data.removePref("u0", "i0"));
+        Assert.assertFalse(data.removePref("u0", "i0"));
+        Assert.assertFalse(data.removePref("u2", "i0"));
+
+        Assert.assertEquals(2, data.numPreferences());
+        Assert.assertArrayEquals(new IdxPref[]{new IdxPref(1, 3.0)}, data.getUidxPreferences(0).toArray(IdxPref[]::new));
+        Assert.assertArrayEquals(new IdxPref[]{new IdxPref(1, 2.0)}, data.getIidxPreferences(0).toArray(IdxPref[]::new));
+        Assert.assertFalse(data.getPreference("u0", "i0").isPresent());
+        Assert.assertEquals(2, data.numUsersWithPreferences());
+        Assert.assertEquals(2, data.numItemsWithPreferences());
+    }
+
+    /**
+     * Tests additions, duplicates, removals and look-ups of preferences in segments long enough to be hashed, against a map.
+     */
+    @Test
+    public void largeSegmentsTest() {
+        int numUsers = 3;
+        int numItems = 500;
+        ConcurrentPreferenceData<Integer, Integer> data = new ConcurrentPreferenceData<>();
+        Int2DoubleOpenHashMap[] expected = new Int2DoubleOpenHashMap[numUsers];
+        for (int u = 0; u < numUsers; u++) {
+            expected[u] = new Int2DoubleOpenHashMap();
+        }
+
+        Random rnd = new Random(1L);
+        for (int n = 0; n < 20000; n++) {
+            int u = rnd.nextInt(numUsers);
+            int i = rnd.nextInt(numItems);
+            if (rnd.nextInt(3) == 0) {
+                Assert.assertEquals(expected[u].containsKey(i), data.removePref(u, i));
+                expected[u].remove(i);
+            } else {
+                double v = rnd.nextDouble();
+                Assert.assertEquals(!expected[u].containsKey(i), data.addPref(u, i, v, null));
+                if (!expected[u].containsKey(i)) {
+                    expected[u].put(i, v);
+                }
+            }
+        }
+
+        for (int u = 0; u < numUsers; u++) {
+            int uidx = data.user2uidx(u);
+            Assert.assertEquals(expected[u].size(), data.numItems(uidx));
+            for (int i = 0; i < numItems; i++) {
+                int iidx = data.item2iidx(i);
+                Optional<IdxPref> pref = iidx < 0 ? Optional.empty() : data.getPreference(uidx, iidx);
+                if (expected[u].containsKey(i)) {
+                    Assert.assertEquals(Optional.of(new IdxPref(iidx, expected[u].get(i))), pref);
+                } else {
+                    Assert.assertFalse(pref.isPresent());
+                }
+            }
+        }
+        Assert.assertEquals(data.numPreferences(), data.getIidxWithPreferences().map(data::numUsers).sum());
+    }
+
+    /**
+     * Tests that readers see consistent preferences while several threads write, and that no preference is lost.
+     *
+     * @throws InterruptedException when interrupted
+     */
+    @Test
+    public void concurrentTest() throws InterruptedException {
+        int numUsers = 200;
+        int numItems = 100;
+        int numThreads = 4;
+        ConcurrentPreferenceData<Integer, Integer> data = new ConcurrentPreferenceData<>();
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                for (int uidx = 0; uidx < data.numUsers(); uidx++) {
+                    IntOpenHashSet iidxs = new IntOpenHashSet();
+                    int u = data.uidx2user(uidx);
+                    data.forEachUidxPref(uidx, (iidx, v) -> {
+                        if (!iidxs.add(iidx) || v != u * numItems + data.iidx2item(iidx)) {
+                            error.set("inconsistent preferences of user " + u);
+                        }
+                    });
+                }
+            }
+        });
+        reader.start();
+
+        Thread[] writers = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            int t0 = t;
+            writers[t] = new Thread(() -> {
+                for (int u = t0; u < numUsers; u += numThreads) {
+                    for (int i = 0; i < numItems; i++) {
+                        data.addPref(u, i, u * numItems + i, null);
+                        if (i % 3 == 0) {
+                            data.removePref(u, i);
+                        }
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        writing.set(false);
+        reader.join();
+
+        Assert.assertNull(error.get());
+        int numPrefs = numUsers * (numItems - (numItems + 2) / 3);
+        Assert.assertEquals(numPrefs, data.numPreferences());
+        Assert.assertEquals(numPrefs, data.getUidxWithPreferences().map(data::numItems).sum());
+        Assert.assertEquals(numPrefs, data.getIidxWithPreferences().map(data::numUsers).sum());
+        IntStream.range(0, numItems).forEach(i -> Assert.assertEquals(i % 3 == 0 ? 0 : numUsers, data.numUsers(data.item2iidx(i))));
+    }
+}
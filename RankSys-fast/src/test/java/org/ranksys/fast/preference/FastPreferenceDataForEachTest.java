@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.jooq.lambda.tuple.Tuple3;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Unit test for the forEach* methods of the implementations of FastPreferenceData.
+ *
+ * @author agent (agent@local)
+ */
+public class FastPreferenceDataForEachTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FastUserIndex<Integer> uIndex = SimpleFastUserIndex.load(IntStream.range(0, 40).boxed());
+    private final FastItemIndex<Integer> iIndex = SimpleFastItemIndex.load(IntStream.range(0, 60).boxed());
+
+    private List<Tuple3<Integer, Integer, Double>> randomTuples() {
+        Random rnd = new Random(1L);
+        List<Tuple3<Integer, Integer, Double>> tuples = new ArrayList<>();
+        for (int u = 0; u < uIndex.numUsers() - 1; u++) {
+            for (int i = 0; i < iIndex.numItems() - 1; i++) {
+                if (rnd.nextDouble() < 0.2) {
+                    tuples.add(tuple(u, i, (double) rnd.nextInt(5) + 1));
+                }
+            }
+        }
+        return tuples;
+    }
+
+    /**
+     * Checks that the forEach* methods of a preference data pass the same idx-value pairs, in the same order, as getUidxPreferences and getIidxPreferences.
+     *
+     * @param data preference data
+     */
+    public static void assertForEach(FastPreferenceData<?, ?> data) {
+        for (int uidx = 0; uidx < data.numUsers(); uidx++) {
+            List<IdxPref> expected = data.numItems(uidx) == 0 ? new ArrayList<>() : data.getUidxPreferences(uidx).collect(Collectors.toList());
+
+            List<IdxPref> prefs = new ArrayList<>();
+            data.forEachUidxPref(uidx, (iidx, v) -> prefs.add(new IdxPref(iidx, v)));
+            Assert.assertEquals(expected, prefs);
+
+            List<Integer> idxs = new ArrayList<>();
+            data.forEachUidxIidx(uidx, idxs::add);
+            Assert.assertEquals(expected.stream().map(p -> p.v1).collect(Collectors.toList()), idxs);
+        }
+        for (int iidx = 0; iidx < data.numItems(); iidx++) {
+            List<IdxPref> expected = data.numUsers(iidx) == 0 ? new ArrayList<>() : data.getIidxPreferences(iidx).collect(Collectors.toList());
+
+            List<IdxPref> prefs = new ArrayList<>();
+            data.forEachIidxPref(iidx, (uidx, v) -> prefs.add(new IdxPref(uidx, v)));
+            Assert.assertEquals(expected, prefs);
+
+            List<Integer> idxs = new ArrayList<>();
+            data.forEachIidxUidx(iidx, idxs::add);
+            Assert.assertEquals(expected.stream().map(p -> p.v1).collect(Collectors.toList()), idxs);
+        }
+    }
+
+    /**
+     * Tests SimpleFastPreferenceData and its transposition.
+     */
+    @Test
+    public void simpleTest() {
+        SimpleFastPreferenceData<Integer, Integer> data = SimpleFastPreferenceData.load(randomTuples().stream(), uIndex, iIndex);
+
+        assertForEach(data);
+        assertForEach(new TransposedPreferenceData<>(data));
+    }
+
+    /**
+     * Tests CSRPreferenceData and its transposition.
+     */
+    @Test
+    public void csrTest() {
+        CSRPreferenceData<Integer, Integer> data = CSRPreferenceData.load(randomTuples().stream(), uIndex, iIndex);
+
+        assertForEach(data);
+        assertForEach(new TransposedPreferenceData<>(data));
+    }
+
+    /**
+     * Tests MappedPreferenceData.
+     *
+     * @throws IOException when I/O problems
+     */
+    @Test
+    public void mappedTest() throws IOException {
+        String path = new File(folder.getRoot(), "prefs.bin").getPath();
+        MappedPreferenceData.write(SimpleFastPreferenceData.load(randomTuples().stream(), uIndex, iIndex), path);
+
+        assertForEach(MappedPreferenceData.load(path, uIndex, iIndex));
+        assertForEach(MappedPreferenceData.load(path, uIndex, iIndex, 4));
+    }
+}
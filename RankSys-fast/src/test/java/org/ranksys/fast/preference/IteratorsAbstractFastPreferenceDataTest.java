@@ -10,6 +10,10 @@ package org.ranksys.fast.preference;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import it.unimi.dsi.fastutil.doubles.DoubleIterator;
 import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 import org.junit.Assert;
@@ -53,6 +57,30 @@ public class IteratorsAbstractFastPreferenceDataTest {
                 preferences.getIidxPreferences(0).toArray(IdxPref[]::new));
     }
 
+    /**
+     * Tests the default forEach* methods, which read the iterators of preferences.
+     */
+    @Test
+    public void forEachTest() {
+        IteratorsAbstractFastPreferenceData<Integer, Integer> preferences = new MockPreferenceDataTest<>();
+
+        List<IdxPref> prefs = new ArrayList<>();
+        preferences.forEachUidxPref(0, (iidx, v) -> prefs.add(new IdxPref(iidx, v)));
+        Assert.assertEquals(preferences.getUidxPreferences(0).collect(Collectors.toList()), prefs);
+
+        List<Integer> idxs = new ArrayList<>();
+        preferences.forEachUidxIidx(0, idxs::add);
+        Assert.assertEquals(Arrays.asList(8, 9, 11, 12, 35, 45), idxs);
+
+        prefs.clear();
+        preferences.forEachIidxPref(0, (uidx, v) -> prefs.add(new IdxPref(uidx, v)));
+        Assert.assertEquals(preferences.getIidxPreferences(0).collect(Collectors.toList()), prefs);
+
+        idxs.clear();
+        preferences.forEachIidxUidx(0, idxs::add);
+        Assert.assertEquals(Arrays.asList(18, 20, 100, 101, 102), idxs);
+    }
+
     private static class MockPreferenceDataTest<U, I> extends IteratorsAbstractFastPreferenceData<U, I> {
 
         public MockPreferenceDataTest() {
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.jooq.lambda.tuple.Tuple3;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Unit test for MappedPreferenceData.
+ *
+ * @author agent (agent@local)
+ */
+public class MappedPreferenceDataTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final int numUsers = 50;
+    private final int numItems = 80;
+    private final FastUserIndex<Integer> uIndex = SimpleFastUserIndex.load(IntStream.range(0, numUsers).boxed());
+    private final FastItemIndex<Integer> iIndex = SimpleFastItemIndex.load(IntStream.range(0, numItems).boxed());
+
+    private SimpleFastPreferenceData<Integer, Integer> randomData() {
+        Random rnd = new Random(1L);
+        List<Tuple3<Integer, Integer, Double>> tuples = new ArrayList<>();
+        for (int uidx = 0; uidx < numUsers - 1; uidx++) {
+            int u = uidx;
+            List<Integer> items = new ArrayList<>();
+            IntStream.range(0, numItems).forEach(items::add);
+            Collections.shuffle(items, rnd);
+            items.subList(0, 1 + rnd.nextInt(numItems / 2)).forEach(i -> tuples.add(tuple(u, i, (double) rnd.nextInt(5) + 1)));
+        }
+        Collections.shuffle(tuples, rnd);
+
+        return SimpleFastPreferenceData.load(tuples.stream(), uIndex, iIndex);
+    }
+
+    private void assertSameData(SimpleFastPreferenceData<Integer, Integer> expected, MappedPreferenceData<Integer, Integer> actual) {
+        Assert.assertEquals(expected.numPreferences(), actual.numPreferences());
+        Assert.assertEquals(expected.numUsersWithPreferences(), actual.numUsersWithPreferences());
+        Assert.assertEquals(expected.numItemsWithPreferences(), actual.numItemsWithPreferences());
+        Assert.assertEquals(0, actual.numItems(numUsers - 1));
+
+        for (int uidx = 0; uidx < numUsers; uidx++) {
+            Assert.assertEquals(expected.numItems(uidx), actual.numItems(uidx));
+            Assert.assertArrayEquals(
+                    expected.getUidxPreferences(uidx).toArray(IdxPref[]::new),
+                    actual.getUidxPreferences(uidx).toArray(IdxPref[]::new));
+        }
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            Assert.assertEquals(expected.numUsers(iidx), actual.numUsers(iidx));
+            Assert.assertArrayEquals(
+                    expected.getIidxPreferences(iidx).toArray(IdxPref[]::new),
+                    actual.getIidxPreferences(iidx).toArray(IdxPref[]::new));
+        }
+        for (int uidx = 0; uidx < numUsers - 1; uidx++) {
+            for (int iidx = 0; iidx < numItems; iidx++) {
+                Assert.assertEquals(expected.getPreference(uidx, iidx), actual.getPreference(uidx, iidx));
+            }
+        }
+        Assert.assertFalse(actual.getPreference(numUsers - 1, 0).isPresent());
+    }
+
+    /**
+     * Tests that a written and mapped file matches the original SimpleFastPreferenceData.
+     *
+     * @throws IOException when I/O problems
+     */
+    @Test
+    public void roundTripTest() throws IOException {
+        SimpleFastPreferenceData<Integer, Integer> expected = randomData();
+        String path = new File(folder.getRoot(), "prefs.bin").getPath();
+        MappedPreferenceData.write(expected, path);
+
+        assertSameData(expected, MappedPreferenceData.load(path, uIndex, iIndex));
+    }
+
+    /**
+     * Tests that rows split between two mapped chunks, including the binary search of getPreference, are read correctly.
+     *
+     * @throws IOException when I/O problems
+     */
+    @Test
+    public void chunkBoundaryTest() throws IOException {
+        SimpleFastPreferenceData<Integer, Integer> expected = randomData();
+        String path = new File(folder.getRoot(), "prefs.bin").getPath();
+        MappedPreferenceData.write(expected, path);
+
+        for (int chunkBits = 2; chunkBits <= 6; chunkBits++) {
+            assertSameData(expected, MappedPreferenceData.load(path, uIndex, iIndex, chunkBits));
+        }
+    }
+
+    /**
+     * Tests that a file is not mapped with indices of a different size.
+     *
+     * @throws IOException when I/O problems
+     */
+    @Test(expected = IOException.class)
+    public void indexMismatchTest() throws IOException {
+        String path = new File(folder.getRoot(), "prefs.bin").getPath();
+        MappedPreferenceData.write(randomData(), path);
+
+        MappedPreferenceData.load(path, uIndex, SimpleFastItemIndex.load(IntStream.range(0, numItems + 1).boxed()));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.jooq.lambda.tuple.Tuple3;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Random preference data for unit tests. Every user-item pair is drawn in user and item order with a given probability, and its value is then drawn too, so that the data only depends on the seed of the random number generator.
+ *
+ * @author agent (agent@local)
+ */
+public class RandomPreferenceData {
+
+    /**
+     * Probability of a user-item pair.
+     */
+    @FunctionalInterface
+    public interface Density {
+
+        /**
+         * Returns the probability of a user-item pair.
+         *
+         * @param uidx index of the user
+         * @param iidx index of the item
+         * @return probability of the pair
+         */
+        double of(int uidx, int iidx);
+    }
+
+    /**
+     * Value of a user-item pair.
+     */
+    @FunctionalInterface
+    public interface Rating {
+
+        /**
+         * Returns the value of a user-item pair.
+         *
+         * @param uidx index of the user
+         * @param iidx index of the item
+         * @param rnd random number generator
+         * @return value of the pair
+         */
+        double of(int uidx, int iidx, Random rnd);
+    }
+
+    /**
+     * Generates preferences of users 0 to numUsers - 1 for items 0 to numItems - 1, with seed 1.
+     *
+     * @param numUsers number of users
+     * @param numItems number of items
+     * @param density probability of every user-item pair
+     * @param maxRating values are integers between 1 and maxRating, 1.0 for binary data
+     * @return preference data
+     */
+    public static SimpleFastPreferenceData<Integer, Integer> generate(int numUsers, int numItems, double density, int maxRating) {
+        return generate(numUsers, numItems, (uidx, iidx) -> density, maxRating);
+    }
+
+    /**
+     * Generates preferences of users 0 to numUsers - 1 for items 0 to numItems - 1, with seed 1.
+     *
+     * @param numUsers number of users
+     * @param numItems number of items
+     * @param density probability of a user-item pair
+     * @param maxRating values are integers between 1 and maxRating, 1.0 for binary data
+     * @return preference data
+     */
+    public static SimpleFastPreferenceData<Integer, Integer> generate(int numUsers, int numItems, Density density, int maxRating) {
+        return generate(SimpleFastUserIndex.load(IntStream.range(0, numUsers).boxed()),
+                SimpleFastItemIndex.load(IntStream.range(0, numItems).boxed()),
+                new Random(1L), density, ratings(maxRating));
+    }
+
+    /**
+     * Generates preferences of the users and items of two indices.
+     *
+     * @param <U> user type
+     * @param <I> item type
+     * @param users user index
+     * @param items item index
+     * @param rnd random number generator
+     * @param density probability of a user-item pair
+     * @param rating value of a user-item pair
+     * @return preference data
+     */
+    public static <U, I> SimpleFastPreferenceData<U, I> generate(FastUserIndex<U> users, FastItemIndex<I> items, Random rnd, Density density, Rating rating) {
+        List<Tuple3<U, I, Double>> tuples = new ArrayList<>();
+        for (int uidx = 0; uidx < users.numUsers(); uidx++) {
+            for (int iidx = 0; iidx < items.numItems(); iidx++) {
+                if (rnd.nextDouble() < density.of(uidx, iidx)) {
+                    tuples.add(tuple(users.uidx2user(uidx), items.iidx2item(iidx), rating.of(uidx, iidx, rnd)));
+                }
+            }
+        }
+
+        return SimpleFastPreferenceData.load(tuples.stream(), users, items);
+    }
+
+    /**
+     * Returns integer values between 1 and maxRating, or 1.0 without drawing a random number if maxRating is 1.
+     *
+     * @param maxRating maximum value
+     * @return value of the user-item pairs
+     */
+    public static Rating ratings(int maxRating) {
+        return maxRating == 1 ? (uidx, iidx, rnd) -> 1.0 : (uidx, iidx, rnd) -> 1.0 + rnd.nextInt(maxRating);
+    }
+}
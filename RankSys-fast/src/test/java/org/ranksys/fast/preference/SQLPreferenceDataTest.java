@@ -10,10 +10,14 @@ package org.ranksys.fast.preference;
 import com.zaxxer.hikari.HikariDataSource;
 import es.uam.eps.ir.ranksys.fast.preference.SQLPreferenceData;
 import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
 import org.junit.Test;
 
 import static java.lang.Double.parseDouble;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Stream.of;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -89,4 +93,87 @@ public class SQLPreferenceDataTest {
         }
 
     }
+
+    /**
+     * Test of the in-memory snapshot with toy data.
+     */
+    @Test
+    public void testSnapshot() {
+        String url = "jdbc:h2:mem:snapshot";
+
+        try (HikariDataSource ds = new HikariDataSource()) {
+            ds.setJdbcUrl(url);
+
+            SQLPreferenceData.create(ds, SQLDialect.H2, "data");
+
+            SQLPreferenceData prefs = new SQLPreferenceData(ds, SQLDialect.H2, "data");
+
+            String[][] data = new String[][]{
+                new String[]{"a", "A", "1"},
+                new String[]{"a", "B", "2"},
+                new String[]{"b", "E", "3"},
+                new String[]{"c", "B", "4"},
+                new String[]{"b", "A", "5"},
+                new String[]{"c", "E", "1"},
+                new String[]{"a", "E", "2"},
+            };
+
+            for (String[] pref : data) {
+                if (!prefs.containsUser(pref[0])) {
+                    assertTrue(prefs.addUser(pref[0]));
+                }
+                if (!prefs.containsItem(pref[1])) {
+                    assertTrue(prefs.addItem(pref[1]));
+                }
+                assertTrue(prefs.addPref(pref[0], pref[1], parseDouble(pref[2]), null));
+            }
+            prefs.addUser("d");
+            assertTrue(prefs.removeUser("b"));
+
+            CSRPreferenceData<String, String> snapshot = prefs.snapshot(2);
+
+            assertEquals(prefs.numUsers(), snapshot.numUsers());
+            assertEquals(prefs.numItems(), snapshot.numItems());
+            assertEquals(prefs.numPreferences(), snapshot.numPreferences());
+            assertEquals(prefs.numUsersWithPreferences(), snapshot.numUsersWithPreferences());
+            prefs.getAllUidx().forEach(uidx -> assertEquals(
+                    prefs.getUidxPreferences(uidx).map(p -> prefs.iidx2item(p.v1) + ":" + p.v2).sorted().collect(toList()),
+                    snapshot.getUserPreferences(prefs.uidx2user(uidx)).map(p -> p.v1 + ":" + p.v2).sorted().collect(toList())));
+            prefs.getAllIidx().forEach(iidx -> assertEquals(
+                    prefs.getIidxPreferences(iidx).map(p -> prefs.uidx2user(p.v1) + ":" + p.v2).sorted().collect(toList()),
+                    snapshot.getItemPreferences(prefs.iidx2item(iidx)).map(p -> p.v1 + ":" + p.v2).sorted().collect(toList())));
+        }
+    }
+
+    /**
+     * Tests that the snapshot skips preferences whose user or item is not in the indices, as those added after the indices were read under a weak isolation level.
+     */
+    @Test
+    public void testSnapshotUnknownIndices() {
+        String url = "jdbc:h2:mem:snapshotUnknown";
+
+        try (HikariDataSource ds = new HikariDataSource()) {
+            ds.setJdbcUrl(url);
+
+            SQLPreferenceData.create(ds, SQLDialect.H2, "data");
+
+            SQLPreferenceData prefs = new SQLPreferenceData(ds, SQLDialect.H2, "data");
+            assertTrue(prefs.addUser("a"));
+            assertTrue(prefs.addItem("A"));
+            assertTrue(prefs.addPref("a", "A", 1.0, null));
+
+            int uidx = prefs.user2uidx("a");
+            int iidx = prefs.item2iidx("A");
+            DSL.using(ds, SQLDialect.H2).execute("SET REFERENTIAL_INTEGRITY FALSE");
+            DSL.using(ds, SQLDialect.H2).execute("INSERT INTO DATA (UIDX, IIDX, V) VALUES (?, ?, 2.0)", uidx + 1, iidx);
+            DSL.using(ds, SQLDialect.H2).execute("INSERT INTO DATA (UIDX, IIDX, V) VALUES (?, ?, 3.0)", uidx, iidx + 1);
+
+            CSRPreferenceData<String, String> snapshot = prefs.snapshot();
+
+            assertEquals(1, snapshot.numUsers());
+            assertEquals(1, snapshot.numItems());
+            assertEquals(1, snapshot.numPreferences());
+            assertEquals(asList("A:1.0"), snapshot.getUserPreferences("a").map(p -> p.v1 + ":" + p.v2).collect(toList()));
+        }
+    }
 }
@@ -52,6 +52,42 @@ public class StreamsAbstractFastPreferenceDataTest {
         assertEquals(vs, Arrays.asList(6.0, 5.0, 4.0, 3.0, 2.0));
     }
 
+    /**
+     * Tests the default forEach* methods, which read the streams of preferences.
+     */
+    @Test
+    public void forEachTest() {
+        StreamsAbstractFastPreferenceData<Integer, Integer> preferences = new MockPreferenceDataTest<>();
+
+        List<Integer> idxs = new ArrayList<>();
+        List<Double> vs = new ArrayList<>();
+
+        preferences.forEachUidxPref(0, (iidx, v) -> {
+            idxs.add(iidx);
+            vs.add(v);
+        });
+        assertEquals(idxs, Arrays.asList(8, 9, 11, 12, 35, 45));
+        assertEquals(vs, Arrays.asList(1.0, 2.0, 3.0, 4.0, 5.0, 6.0));
+
+        idxs.clear();
+        preferences.forEachUidxIidx(0, idxs::add);
+        assertEquals(idxs, Arrays.asList(8, 9, 11, 12, 35, 45));
+
+        idxs.clear();
+        vs.clear();
+
+        preferences.forEachIidxPref(0, (uidx, v) -> {
+            idxs.add(uidx);
+            vs.add(v);
+        });
+        assertEquals(idxs, Arrays.asList(18, 20, 100, 101, 102));
+        assertEquals(vs, Arrays.asList(6.0, 5.0, 4.0, 3.0, 2.0));
+
+        idxs.clear();
+        preferences.forEachIidxUidx(0, idxs::add);
+        assertEquals(idxs, Arrays.asList(18, 20, 100, 101, 102));
+    }
+
     private static class MockPreferenceDataTest<U, I> extends StreamsAbstractFastPreferenceData<U, I> {
 
         public MockPreferenceDataTest() {
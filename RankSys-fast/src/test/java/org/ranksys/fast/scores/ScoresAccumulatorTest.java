@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fast.scores;
+
+import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.fast.utils.topn.PrimitiveIntDoubleTopN;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Unit test for DenseScoresAccumulator and SparseScoresAccumulator.
+ *
+ * @author agent (agent@local)
+ */
+public class ScoresAccumulatorTest {
+
+    private static final int N = 1000;
+
+    private static void fill(ScoresAccumulator scores, Int2DoubleOpenHashMap expected, Random rnd) {
+        for (int k = 0; k < 300; k++) {
+            int idx = rnd.nextInt(N);
+            // integer values, so that there are ties and sums do not depend on the order of addition
+            double v = rnd.nextInt(10);
+            scores.add(idx, v);
+            expected.addTo(idx, v);
+        }
+    }
+
+    private static void assertScores(Int2DoubleOpenHashMap expected, ScoresAccumulator actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int idx = 0; idx < N; idx++) {
+            Assert.assertEquals(expected.get(idx), actual.get(idx), 0.0);
+        }
+
+        Int2DoubleOpenHashMap visited = new Int2DoubleOpenHashMap();
+        actual.forEach((idx, v) -> Assert.assertEquals(0.0, visited.put(idx, v), 0.0));
+        Assert.assertEquals(expected, visited);
+    }
+
+    private static void assertTopN(Int2DoubleOpenHashMap expected, ScoresAccumulator actual, int n, IntPredicate filter) {
+        IntDoubleTopN expectedTopN = new IntDoubleTopN(n);
+        expected.int2DoubleEntrySet().forEach(e -> {
+            if (filter.test(e.getIntKey())) {
+                expectedTopN.add(e.getIntKey(), e.getDoubleValue());
+            }
+        });
+        expectedTopN.sort();
+        List<Tuple2id> expectedList = expectedTopN.reverseStream().collect(toList());
+
+        PrimitiveIntDoubleTopN actualTopN = new PrimitiveIntDoubleTopN(n);
+        actual.topN(actualTopN, filter);
+        actualTopN.sort();
+        List<Tuple2id> actualList = actualTopN.stream().collect(toList());
+
+        Assert.assertEquals(expectedList, actualList);
+    }
+
+    private static void test(ScoresAccumulator scores) {
+        Random rnd = new Random(1L);
+        for (int round = 0; round < 5; round++) {
+            Int2DoubleOpenHashMap expected = new Int2DoubleOpenHashMap();
+            fill(scores, expected, rnd);
+
+            assertScores(expected, scores);
+            assertTopN(expected, scores, 10, idx -> true);
+            assertTopN(expected, scores, 10, idx -> idx % 3 != 0);
+            assertTopN(expected, scores, N, idx -> idx % 2 == 0);
+
+            scores.reset();
+            assertScores(new Int2DoubleOpenHashMap(), scores);
+        }
+    }
+
+    /**
+     * Tests adding, reading, top-n selection and re-use after reset of the dense accumulator.
+     */
+    @Test
+    public void denseTest() {
+        test(new DenseScoresAccumulator(N));
+    }
+
+    /**
+     * Tests that a dense accumulator for fewer indices than those added grows to hold them.
+     */
+    @Test
+    public void denseGrowTest() {
+        DenseScoresAccumulator scores = new DenseScoresAccumulator(1);
+        test(scores);
+        Assert.assertTrue(scores.capacity() >= N);
+    }
+
+    /**
+     * Tests adding, reading, top-n selection and re-use after reset of the sparse accumulator.
+     */
+    @Test
+    public void sparseTest() {
+        test(new SparseScoresAccumulator());
+    }
+
+    /**
+     * Tests the choice of accumulator by size.
+     */
+    @Test
+    public void createTest() {
+        Assert.assertTrue(ScoresAccumulator.create(N) instanceof DenseScoresAccumulator);
+        Assert.assertTrue(ScoresAccumulator.create(ScoresAccumulator.DENSE_MAX_SIZE + 1) instanceof SparseScoresAccumulator);
+    }
+}
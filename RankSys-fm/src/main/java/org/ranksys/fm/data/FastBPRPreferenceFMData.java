@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fm.data;
+
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.ranksys.javafm.FMInstance;
+import org.ranksys.javafm.data.FMData;
+
+/**
+ * Samples user preferences for a BPR-like loss minimisation from primitive arrays. The preferences are copied into sorted compressed rows by user, so that triples can be drawn without allocations by {@link #sample(Random, int[])}, which is what the parallel learner of RankSys uses. It can also be streamed as FM instances, as {@link BPRPreferenceFMData}.
+ *
+ * @author agent (agent@local)
+ */
+public class FastBPRPreferenceFMData implements FMData {
+
+    private static final double[] UIJ_VALUES = {1.0, 2.0, 3.0};
+
+    private final int numUsers;
+    private final int numItems;
+    private final int[] offsets;
+    private final int[] prefUidxs;
+    private final int[] prefIidxs;
+    private final int[] negIidxs;
+    private final Random rnd;
+
+    /**
+     * Constructor.
+     *
+     * @param prefs preference data
+     */
+    public FastBPRPreferenceFMData(FastPreferenceData<?, ?> prefs) {
+        this(prefs, new Random());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param prefs preference data
+     * @param rnd random number generator for shuffling and streaming
+     */
+    public FastBPRPreferenceFMData(FastPreferenceData<?, ?> prefs, Random rnd) {
+        this.numUsers = prefs.numUsers();
+        this.numItems = prefs.numItems();
+        this.rnd = rnd;
+
+        this.offsets = new int[numUsers + 1];
+        for (int uidx = 0; uidx < numUsers; uidx++) {
+            offsets[uidx + 1] = offsets[uidx] + prefs.numItems(uidx);
+        }
+        this.prefUidxs = new int[offsets[numUsers]];
+        this.prefIidxs = new int[offsets[numUsers]];
+        prefs.getUidxWithPreferences().parallel().forEach(uidx -> {
+            int[] j = {offsets[uidx]};
+            prefs.forEachUidxIidx(uidx, iidx -> {
+                prefUidxs[j[0]] = uidx;
+                prefIidxs[j[0]] = iidx;
+                j[0]++;
+            });
+            IntArrays.quickSort(prefIidxs, offsets[uidx], offsets[uidx + 1]);
+        });
+
+        this.negIidxs = prefs.getIidxWithPreferences().toArray();
+    }
+
+    @Override
+    public int numFeatures() {
+        return numUsers + numItems;
+    }
+
+    @Override
+    public int numInstances() {
+        return prefIidxs.length;
+    }
+
+    /**
+     * Returns the number of users, which is the offset of the item features.
+     *
+     * @return number of users
+     */
+    public int numUsers() {
+        return numUsers;
+    }
+
+    @Override
+    public void shuffle() {
+    }
+
+    /**
+     * Draws a triple (user, positive item, negative item) by choosing a preference uniformly at random and an item with preferences that the user has not rated.
+     *
+     * @param rnd random number generator
+     * @param uij buffer of length 3 where the indices of the user, positive and negative item are written
+     * @return false if the user has rated all the items, so that there is no negative item, true otherwise
+     */
+    public boolean sample(Random rnd, int[] uij) {
+        int p = rnd.nextInt(prefIidxs.length);
+        int uidx = prefUidxs[p];
+        int from = offsets[uidx];
+        int to = offsets[uidx + 1];
+        if (to - from >= negIidxs.length) {
+            return false;
+        }
+
+        int jidx;
+        do {
+            jidx = negIidxs[rnd.nextInt(negIidxs.length)];
+        } while (Arrays.binarySearch(prefIidxs, from, to, jidx) >= 0);
+
+        uij[0] = uidx;
+        uij[1] = prefIidxs[p];
+        uij[2] = jidx;
+
+        return true;
+    }
+
+    /**
+     * Streams as many sampled triples as preferences. Every instance is drawn
+     * with its own buffer and random number generator, seeded from the
+     * generator of this object and the position of the instance, so that the
+     * stream can be consumed in parallel.
+     *
+     * @return stream of FM instances of sampled triples
+     */
+    @Override
+    public Stream<? extends FMInstance> stream() {
+        long seed = rnd.nextLong();
+
+        return IntStream.range(0, numInstances())
+                .mapToObj(n -> {
+                    int[] uij = new int[3];
+                    if (!sample(new Random(seed ^ (n * 0x9E3779B97F4A7C15L)), uij)) {
+                        return null;
+                    }
+                    return new FMInstance(1.0, new int[]{uij[0], uij[1] + numUsers, uij[2] + numUsers}, UIJ_VALUES);
+                })
+                .filter(Objects::nonNull);
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fm.learner;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import org.ranksys.fm.data.FastBPRPreferenceFMData;
+import org.ranksys.javafm.FM;
+import org.ranksys.javafm.data.FMData;
+import org.ranksys.javafm.learner.FMLearner;
+
+/**
+ * Learner for PreferenceFMs using Bayesian Probabilistic Ranking, with parallel stochastic gradient descent.
+ * <br>
+ * Every iteration draws as many (user, positive item, negative item) triples as preferences, split among a number of threads with their own random number generators. Threads update the parameters of the factorisation machine without locks, as in Hogwild, and neither triples nor instances are allocated. The result is a standard PreferenceFM, so it can be used with FMRecommender.
+ *
+ * @author agent (agent@local)
+ */
+public class ParallelBPRLearner<U, I> extends PreferenceFMLearner<U, I> {
+
+    private static final Logger LOG = Logger.getLogger(ParallelBPRLearner.class.getName());
+
+    private final double learnRate;
+    private final int numIter;
+    private final double regW;
+    private final double regM;
+    private final int numThreads;
+    private final long seed;
+
+    /**
+     * Constructor with as many threads as available processors and seed 1.
+     *
+     * @param learnRate    learning rate (shrinkage)
+     * @param numIter      number of iterations
+     * @param regW         regularisation parameter for the feature biase
+     * @param regM         regularisation parameter for factorisation
+     * @param users        user index
+     * @param items        item index
+     */
+    public ParallelBPRLearner(double learnRate, int numIter, double regW, double regM, FastUserIndex<U> users, FastItemIndex<I> items) {
+        this(learnRate, numIter, regW, regM, Runtime.getRuntime().availableProcessors(), 1L, users, items);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param learnRate    learning rate (shrinkage)
+     * @param numIter      number of iterations
+     * @param regW         regularisation parameter for the feature biase
+     * @param regM         regularisation parameter for factorisation
+     * @param numThreads   number of threads
+     * @param seed         seed of the random number generators of the threads
+     * @param users        user index
+     * @param items        item index
+     */
+    public ParallelBPRLearner(double learnRate, int numIter, double regW, double regM, int numThreads, long seed, FastUserIndex<U> users, FastItemIndex<I> items) {
+        super(users, items);
+        this.learnRate = learnRate;
+        this.numIter = numIter;
+        this.regW = regW;
+        this.regM = regM;
+        this.numThreads = numThreads;
+        this.seed = seed;
+    }
+
+    @Override
+    protected FMLearner<FMData> getLearner() {
+        return new ParallelBPR();
+    }
+
+    @Override
+    protected FMData toFMData(FastPreferenceData<U, I> preferences) {
+        return new FastBPRPreferenceFMData(preferences, new Random(seed));
+    }
+
+    /**
+     * BPR learner over FastBPRPreferenceFMData.
+     */
+    private class ParallelBPR implements FMLearner<FMData> {
+
+        @Override
+        public double error(FM fm, FMData data) {
+            FastBPRPreferenceFMData bprData = bprData(data);
+            int nu = bprData.numUsers();
+            double[] w = fm.getW();
+            double[][] m = fm.getM();
+
+            Random rnd = new Random(seed);
+            int[] uij = new int[3];
+            double error = 0.0;
+            int n = 0;
+            for (int s = 0; s < bprData.numInstances(); s++) {
+                if (bprData.sample(rnd, uij)) {
+                    double diff = diff(w, m, uij[0], uij[1] + nu, uij[2] + nu);
+                    error += Math.log1p(Math.exp(-diff));
+                    n++;
+                }
+            }
+
+            return n == 0 ? 0.0 : error / n;
+        }
+
+        @Override
+        public void learn(FM fm, FMData data) {
+            FastBPRPreferenceFMData bprData = bprData(data);
+            int nu = bprData.numUsers();
+            int numSamples = bprData.numInstances();
+            double[] w = fm.getW();
+            double[][] m = fm.getM();
+
+            for (int t = 1; t <= numIter; t++) {
+                long time0 = System.nanoTime();
+
+                int iter = t;
+                IntStream.range(0, numThreads).parallel().forEach(thread -> {
+                    Random rnd = new Random(seed + iter * (long) numThreads + thread);
+                    int[] uij = new int[3];
+                    int from = (int) ((long) numSamples * thread / numThreads);
+                    int to = (int) ((long) numSamples * (thread + 1) / numThreads);
+                    for (int s = from; s < to; s++) {
+                        if (bprData.sample(rnd, uij)) {
+                            update(w, m, uij[0], uij[1] + nu, uij[2] + nu);
+                        }
+                    }
+                });
+
+                long time1 = System.nanoTime() - time0;
+
+                LOG.log(Level.INFO, String.format("iteration n = %3d t = %.2fs", iter, time1 / 1_000_000_000.0));
+                LOG.log(Level.FINE, () -> String.format("iteration n = %3d e = %.6f", iter, error(fm, data)));
+            }
+        }
+
+        private FastBPRPreferenceFMData bprData(FMData data) {
+            if (!(data instanceof FastBPRPreferenceFMData)) {
+                throw new IllegalArgumentException("ParallelBPRLearner requires FastBPRPreferenceFMData");
+            }
+
+            return (FastBPRPreferenceFMData) data;
+        }
+
+        private double diff(double[] w, double[][] m, int u, int i, int j) {
+            double[] mu = m[u];
+            double[] mi = m[i];
+            double[] mj = m[j];
+
+            double diff = w[i] - w[j];
+            for (int k = 0; k < mu.length; k++) {
+                diff += mu[k] * (mi[k] - mj[k]);
+            }
+
+            return diff;
+        }
+
+        private void update(double[] w, double[][] m, int u, int i, int j) {
+            double z = 1.0 / (1.0 + Math.exp(diff(w, m, u, i, j)));
+
+            w[i] += learnRate * (z - regW * w[i]);
+            w[j] += learnRate * (-z - regW * w[j]);
+
+            double[] mu = m[u];
+            double[] mi = m[i];
+            double[] mj = m[j];
+            for (int k = 0; k < mu.length; k++) {
+                double muk = mu[k];
+                double mik = mi[k];
+                double mjk = mj[k];
+                mu[k] += learnRate * (z * (mik - mjk) - regM * muk);
+                mi[k] += learnRate * (z * muk - regM * mik);
+                mj[k] += learnRate * (-z * muk - regM * mjk);
+            }
+        }
+    }
+}
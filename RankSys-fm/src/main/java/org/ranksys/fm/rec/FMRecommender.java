@@ -7,32 +7,33 @@
  */
 package org.ranksys.fm.rec;
 
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import es.uam.eps.ir.ranksys.fast.FastRecommendation;
-import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
-import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.rec.MFRecommender;
 import es.uam.eps.ir.ranksys.rec.fast.AbstractFastRecommender;
-import org.ranksys.core.util.tuples.Tuple2id;
+import es.uam.eps.ir.ranksys.rec.fast.FastBatchRecommender;
 import org.ranksys.fm.PreferenceFM;
+import org.ranksys.javafm.FM;
 
 import java.util.List;
+import java.util.function.IntFunction;
 import java.util.function.IntPredicate;
 import java.util.stream.IntStream;
 
-import static java.lang.Float.NaN;
-import static java.util.Comparator.comparingDouble;
-import static java.util.stream.Collectors.toList;
-import static org.ranksys.core.util.tuples.Tuples.tuple;
-
 /**
  * A recommender using a factorisation machine.
+ * <br>
+ * For a user and an item, the factorisation machine predicts b + w_u + w_i + &lt;v_u, v_i&gt;, which is the inner product of the extended vectors (v_u, 1, b + w_u) and (v_i, w_i, 1). These vectors are copied once into a matrix factorization, so that items are scored, individually or in batches of users, as in {@link MFRecommender}. Later changes to the factorisation machine are not seen by the recommender.
  *
  * @author Saúl Vargas (Saul@VargasSandoval.es)
  * @param <U> user type
  * @param <I> item type
  */
-public class FMRecommender<U, I> extends AbstractFastRecommender<U, I> {
+public class FMRecommender<U, I> extends AbstractFastRecommender<U, I> implements FastBatchRecommender<U, I> {
 
-    private final PreferenceFM fm;
+    private final MFRecommender<U, I> mf;
 
     /**
      * Constructor.
@@ -41,7 +42,37 @@ public class FMRecommender<U, I> extends AbstractFastRecommender<U, I> {
      */
     public FMRecommender(PreferenceFM<U, I> fm) {
         super(fm, fm);
-        this.fm = fm;
+        this.mf = new MFRecommender<>(fm, fm, toFactorization(fm));
+    }
+
+    private static <U, I> Factorization<U, I> toFactorization(PreferenceFM<U, I> prefFm) {
+        FM fm = prefFm.getFM();
+        double b = fm.getB();
+        double[] w = fm.getW();
+        double[][] m = fm.getM();
+        int numUsers = prefFm.numUsers();
+        int numItems = prefFm.numItems();
+        int K = m.length == 0 ? 0 : m[0].length;
+
+        DoubleMatrix2D userMatrix = new DenseDoubleMatrix2D(numUsers, K + 2);
+        for (int uidx = 0; uidx < numUsers; uidx++) {
+            for (int k = 0; k < K; k++) {
+                userMatrix.setQuick(uidx, k, m[uidx][k]);
+            }
+            userMatrix.setQuick(uidx, K, 1.0);
+            userMatrix.setQuick(uidx, K + 1, b + w[uidx]);
+        }
+
+        DoubleMatrix2D itemMatrix = new DenseDoubleMatrix2D(numItems, K + 2);
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            for (int k = 0; k < K; k++) {
+                itemMatrix.setQuick(iidx, k, m[iidx + numUsers][k]);
+            }
+            itemMatrix.setQuick(iidx, K, w[iidx + numUsers]);
+            itemMatrix.setQuick(iidx, K + 1, 1.0);
+        }
+
+        return new Factorization<>(prefFm, prefFm, userMatrix, itemMatrix, K + 2);
     }
 
     @Override
@@ -49,28 +80,22 @@ public class FMRecommender<U, I> extends AbstractFastRecommender<U, I> {
         if (maxLength == 0) {
             maxLength = numItems();
         }
-        IntDoubleTopN topN = new IntDoubleTopN(maxLength);
 
-        getAllIidx()
-                .filter(filter)
-                .forEach(iidx -> topN.add(iidx, fm.predict(uidx, new IdxPref(iidx, NaN))));
-
-        topN.sort();
+        return mf.getRecommendation(uidx, maxLength, filter);
+    }
 
-        List<Tuple2id> items = topN.reverseStream()
-                .collect(toList());
+    @Override
+    public List<FastRecommendation> getRecommendations(int[] uidxs, int maxLength, IntFunction<IntPredicate> filters) {
+        if (maxLength == 0) {
+            maxLength = numItems();
+        }
 
-        return new FastRecommendation(uidx, items);
+        return mf.getRecommendations(uidxs, maxLength, filters);
     }
 
     @Override
     public FastRecommendation getRecommendation(int uidx, IntStream candidates) {
-        List<Tuple2id> items = candidates
-                .mapToObj(iidx -> tuple(iidx, fm.predict(uidx, new IdxPref(iidx, NaN))))
-                .sorted(comparingDouble(Tuple2id::v2).reversed())
-                .collect(toList());
-
-        return new FastRecommendation(uidx, items);
+        return mf.getRecommendation(uidx, candidates);
     }
 
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fm.data;
+
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static java.util.stream.Collectors.toList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ranksys.fast.preference.RandomPreferenceData;
+import org.ranksys.javafm.FMInstance;
+
+/**
+ * Unit test for FastBPRPreferenceFMData.
+ *
+ * @author agent (agent@local)
+ */
+public class FastBPRPreferenceFMDataTest {
+
+    private static final int NUM_USERS = 50;
+    private static final int NUM_ITEMS = 30;
+
+    /**
+     * Random preferences, where user 0 has rated all the items.
+     */
+    private static FastPreferenceData<Integer, Integer> randomData() {
+        return RandomPreferenceData.generate(NUM_USERS, NUM_ITEMS, (uidx, iidx) -> uidx == 0 ? 1.0 : 0.2, 1);
+    }
+
+    private static List<IntSet> ratedItems(FastPreferenceData<Integer, Integer> data) {
+        List<IntSet> rated = new ArrayList<>();
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            IntSet items = new IntOpenHashSet();
+            data.getUidxPreferences(uidx).forEach(iv -> items.add(iv.v1));
+            rated.add(items);
+        }
+
+        return rated;
+    }
+
+    /**
+     * Tests that the sampled positive items are rated by the user, that the
+     * negative items are never rated by the user, and that no triple is drawn
+     * for a user who has rated all the items.
+     */
+    @Test
+    public void testSample() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        List<IntSet> rated = ratedItems(data);
+        FastBPRPreferenceFMData bprData = new FastBPRPreferenceFMData(data, new Random(1L));
+
+        Random rnd = new Random(1L);
+        int[] uij = new int[3];
+        int numFalse = 0;
+        for (int s = 0; s < 100_000; s++) {
+            if (bprData.sample(rnd, uij)) {
+                assertTrue(rated.get(uij[0]).contains(uij[1]));
+                assertFalse(rated.get(uij[0]).contains(uij[2]));
+                assertNotEquals(0, uij[0]);
+            } else {
+                numFalse++;
+            }
+        }
+
+        double p0 = NUM_ITEMS / (double) data.numPreferences();
+        assertEquals(100_000 * p0, numFalse, 0.2 * 100_000 * p0);
+    }
+
+    /**
+     * Tests that the streamed instances are valid triples, and that the
+     * stream gives the same instances when consumed in parallel as when
+     * consumed sequentially.
+     */
+    @Test
+    public void testStream() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        List<IntSet> rated = ratedItems(data);
+
+        List<FMInstance> sequential = new FastBPRPreferenceFMData(data, new Random(1L)).stream().collect(toList());
+        List<FMInstance> parallel = new FastBPRPreferenceFMData(data, new Random(1L)).stream().parallel().collect(toList());
+
+        assertEquals(data.numPreferences() - NUM_ITEMS, sequential.size(), 0.5 * NUM_ITEMS);
+        assertEquals(sequential.size(), parallel.size());
+        for (int n = 0; n < sequential.size(); n++) {
+            int[] is = sequential.get(n).getIs();
+            assertArrayEquals(is, parallel.get(n).getIs());
+            assertTrue(rated.get(is[0]).contains(is[1] - NUM_USERS));
+            assertFalse(rated.get(is[0]).contains(is[2] - NUM_USERS));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fm.learner;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ranksys.fast.preference.RandomPreferenceData;
+import org.ranksys.fm.PreferenceFM;
+import org.ranksys.javafm.FM;
+
+/**
+ * Unit test for ParallelBPRLearner.
+ *
+ * @author agent (agent@local)
+ */
+public class ParallelBPRLearnerTest {
+
+    private static final int NUM_USERS = 100;
+    private static final int NUM_ITEMS = 60;
+
+    /**
+     * Preferences of two groups of users for two groups of items.
+     */
+    private static FastPreferenceData<Integer, Integer> randomData(FastUserIndex<Integer> users, FastItemIndex<Integer> items) {
+        return RandomPreferenceData.generate(users, items, new Random(1L), (uidx, iidx) -> uidx % 2 == iidx % 2 ? 0.4 : 0.05, RandomPreferenceData.ratings(1));
+    }
+
+    /**
+     * Tests that training lowers the BPR loss, with one and several threads.
+     */
+    @Test
+    public void testLoss() {
+        FastUserIndex<Integer> users = SimpleFastUserIndex.load(IntStream.range(0, NUM_USERS).boxed());
+        FastItemIndex<Integer> items = SimpleFastItemIndex.load(IntStream.range(0, NUM_ITEMS).boxed());
+        FastPreferenceData<Integer, Integer> data = randomData(users, items);
+
+        for (int numThreads : new int[]{1, 4}) {
+            ParallelBPRLearner<Integer, Integer> learner = new ParallelBPRLearner<>(0.05, 20, 0.01, 0.01, numThreads, 1L, users, items);
+            FM fm = new FM(NUM_USERS + NUM_ITEMS, 5, new Random(1L), 0.1);
+
+            double loss0 = learner.getLearner().error(fm, learner.toFMData(data));
+            learner.learn(new PreferenceFM<>(users, items, fm), data);
+            double loss1 = learner.getLearner().error(fm, learner.toFMData(data));
+
+            assertTrue(numThreads + " threads: " + loss1 + " vs " + loss0, loss1 < 0.8 * loss0);
+        }
+    }
+}
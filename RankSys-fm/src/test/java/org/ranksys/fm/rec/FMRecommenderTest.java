@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.fm.rec;
+
+import es.uam.eps.ir.ranksys.fast.FastRecommendation;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ranksys.core.util.tuples.Tuple2id;
+import org.ranksys.fast.preference.RandomPreferenceData;
+import org.ranksys.fm.PreferenceFM;
+import org.ranksys.fm.learner.ParallelBPRLearner;
+import org.ranksys.javafm.FM;
+
+/**
+ * Unit test for FMRecommender.
+ *
+ * @author agent (agent@local)
+ */
+public class FMRecommenderTest {
+
+    private static final int NUM_USERS = 40;
+    private static final int NUM_ITEMS = 70;
+    private static final int K = 4;
+
+    private static final FastUserIndex<Integer> USERS = SimpleFastUserIndex.load(IntStream.range(0, NUM_USERS).boxed());
+    private static final FastItemIndex<Integer> ITEMS = SimpleFastItemIndex.load(IntStream.range(0, NUM_ITEMS).boxed());
+
+    private static PreferenceFM<Integer, Integer> randomFM() {
+        Random rnd = new Random(1L);
+        double[] w = new double[NUM_USERS + NUM_ITEMS];
+        double[][] m = new double[NUM_USERS + NUM_ITEMS][K];
+        for (int f = 0; f < w.length; f++) {
+            w[f] = rnd.nextGaussian();
+            for (int k = 0; k < K; k++) {
+                m[f][k] = rnd.nextGaussian();
+            }
+        }
+
+        return new PreferenceFM<>(USERS, ITEMS, new FM(rnd.nextGaussian(), w, m));
+    }
+
+    private static void assertScores(PreferenceFM<Integer, Integer> fm, FastRecommendation recommendation) {
+        double prev = Double.POSITIVE_INFINITY;
+        for (Tuple2id iv : recommendation.getIidxs()) {
+            assertEquals(fm.predict(recommendation.getUidx(), new IdxPref(iv.v1, 1.0)), iv.v2, 1e-9);
+            assertTrue(iv.v2 <= prev);
+            prev = iv.v2;
+        }
+    }
+
+    /**
+     * Tests that the scores of the recommendations, individual, by candidates
+     * and in batches, are the predictions of the factorisation machine.
+     */
+    @Test
+    public void testScores() {
+        PreferenceFM<Integer, Integer> fm = randomFM();
+        FMRecommender<Integer, Integer> recommender = new FMRecommender<>(fm);
+
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            FastRecommendation recommendation = recommender.getRecommendation(uidx, 0, iidx -> true);
+            assertEquals(NUM_ITEMS, recommendation.getIidxs().size());
+            assertScores(fm, recommendation);
+
+            int u = uidx;
+            FastRecommendation filtered = recommender.getRecommendation(uidx, 10, iidx -> iidx % 3 != u % 3);
+            assertEquals(10, filtered.getIidxs().size());
+            filtered.getIidxs().forEach(iv -> assertNotEquals(u % 3, iv.v1 % 3));
+            assertScores(fm, filtered);
+
+            FastRecommendation candidates = recommender.getRecommendation(uidx, IntStream.range(0, NUM_ITEMS).filter(iidx -> iidx % 2 == 0));
+            assertEquals(NUM_ITEMS / 2, candidates.getIidxs().size());
+            candidates.getIidxs().forEach(iv -> assertEquals(0, iv.v1 % 2));
+            assertScores(fm, candidates);
+        }
+
+        List<FastRecommendation> batch = recommender.getRecommendations(IntStream.range(0, NUM_USERS).toArray(), 5, uidx -> iidx -> true);
+        assertEquals(NUM_USERS, batch.size());
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            assertEquals(uidx, batch.get(uidx).getUidx());
+            assertEquals(5, batch.get(uidx).getIidxs().size());
+            assertScores(fm, batch.get(uidx));
+        }
+    }
+
+    /**
+     * Tests that the recommender is a snapshot of the factorisation machine:
+     * later training of the machine is not seen by the recommender, but by a
+     * new one.
+     */
+    @Test
+    public void testSnapshot() {
+        PreferenceFM<Integer, Integer> fm = randomFM();
+        FMRecommender<Integer, Integer> recommender = new FMRecommender<>(fm);
+        List<FastRecommendation> before = new ArrayList<>();
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            before.add(recommender.getRecommendation(uidx, 0, iidx -> true));
+        }
+        PreferenceFM<Integer, Integer> snapshot = randomFM();
+
+        FastPreferenceData<Integer, Integer> data = RandomPreferenceData.generate(USERS, ITEMS, new Random(1L), (uidx, iidx) -> 0.2, RandomPreferenceData.ratings(1));
+        new ParallelBPRLearner<>(0.05, 5, 0.01, 0.01, 1, 1L, USERS, ITEMS).learn(fm, data);
+
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            FastRecommendation after = recommender.getRecommendation(uidx, 0, iidx -> true);
+            assertEquals(before.get(uidx).getIidxs(), after.getIidxs());
+            assertScores(snapshot, after);
+        }
+
+        FMRecommender<Integer, Integer> retrained = new FMRecommender<>(fm);
+        int changed = 0;
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            FastRecommendation recommendation = retrained.getRecommendation(uidx, 0, iidx -> true);
+            assertScores(fm, recommendation);
+            if (!recommendation.getIidxs().equals(before.get(uidx).getIidxs())) {
+                changed++;
+            }
+        }
+        assertEquals(NUM_USERS, changed);
+    }
+}
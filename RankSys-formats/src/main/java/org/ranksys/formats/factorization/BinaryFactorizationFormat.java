@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.formats.factorization;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.util.zip.CRC32;
+import org.ranksys.mf.matrix.FloatDenseMatrix2D;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Binary matrix factorisation format. The file consists of a header with the number of users, items and latent factors, the precision of the values (4 or 8 bytes) and the size of the checksummed blocks, followed by the user and item matrices in row-major order. When checksums are enabled, every matrix is followed by the CRC32 of each of its blocks. All numbers are little-endian.
+ * <br>
+ * Factorizations can be read from a stream into the heap or, with {@link #load(String, FastUserIndex, FastItemIndex)}, memory-mapped from a file without parsing it. Serving nodes that only need the item matrix can load it alone with {@link #loadItemMatrix(InputStream)} or {@link #loadItemMatrix(String)}.
+ *
+ * @author agent (agent@local)
+ */
+public class BinaryFactorizationFormat implements FactorizationFormat {
+
+    private static final int MAGIC = 0x5253464d;
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final int precision;
+    private final boolean checksums;
+
+    /**
+     * Returns an instance of this class with single precision and checksums.
+     *
+     * @return an instance of BinaryFactorizationFormat
+     */
+    public static BinaryFactorizationFormat get() {
+        return get(false, true);
+    }
+
+    /**
+     * Returns an instance of this class. The precision and checksums only affect the saving of factorizations, loading reads them from the header of the file.
+     *
+     * @param doublePrecision whether values are saved with double or single precision
+     * @param checksums whether the CRC32 of the blocks of the matrices is saved
+     * @return an instance of BinaryFactorizationFormat
+     */
+    public static BinaryFactorizationFormat get(boolean doublePrecision, boolean checksums) {
+        return new BinaryFactorizationFormat(doublePrecision ? Double.BYTES : Float.BYTES, checksums);
+    }
+
+    private BinaryFactorizationFormat(int precision, boolean checksums) {
+        this.precision = precision;
+        this.checksums = checksums;
+    }
+
+    @Override
+    public <U, I> void save(Factorization<U, I> factorization, OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(factorization.numUsers());
+        buffer.putInt(factorization.numItems());
+        buffer.putInt(factorization.getK());
+        buffer.putInt(precision);
+        buffer.putInt(checksums ? BLOCK_SIZE : 0);
+        buffer.flip();
+        write(channel, buffer);
+
+        writeMatrix(factorization.getUserMatrix(), channel, buffer);
+        writeMatrix(factorization.getItemMatrix(), channel, buffer);
+
+        out.flush();
+    }
+
+    @Override
+    public <U, I> Factorization<U, I> load(InputStream in, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(in);
+
+        Header header = new Header(channel);
+        DoubleMatrix2D userMatrix = readMatrix(channel, header, header.numUsers);
+        DoubleMatrix2D itemMatrix = readMatrix(channel, header, header.numItems);
+
+        return new Factorization<>(uIndex, iIndex, userMatrix, itemMatrix, header.K);
+    }
+
+    /**
+     * Memory-maps a factorization file. The matrices are read-only and are paged in by the operating system as they are accessed, so checksums are not verified. Factorizations saved with double precision cannot be mapped and are read into the heap.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param path path of the file
+     * @param uIndex fast user index
+     * @param iIndex fast item index
+     * @return a factorization backed by the file
+     * @throws IOException when IO error
+     */
+    public <U, I> Factorization<U, I> load(String path, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), READ)) {
+            Header header = new Header(channel);
+            DoubleMatrix2D userMatrix = mapMatrix(channel, header, header.userMatrixPosition(), header.numUsers);
+            DoubleMatrix2D itemMatrix = mapMatrix(channel, header, header.itemMatrixPosition(), header.numItems);
+
+            return new Factorization<>(uIndex, iIndex, userMatrix, itemMatrix, header.K);
+        }
+    }
+
+    /**
+     * Reads only the item matrix of a factorization from a stream, skipping the user matrix.
+     *
+     * @param in input stream
+     * @return item matrix, one row per item
+     * @throws IOException when IO error
+     */
+    public DoubleMatrix2D loadItemMatrix(InputStream in) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(in);
+
+        Header header = new Header(channel);
+        skip(channel, header.itemMatrixPosition() - header.userMatrixPosition());
+
+        return readMatrix(channel, header, header.numItems);
+    }
+
+    /**
+     * Memory-maps only the item matrix of a factorization file, as in {@link #load(String, FastUserIndex, FastItemIndex)}.
+     *
+     * @param path path of the file
+     * @return item matrix, one row per item
+     * @throws IOException when IO error
+     */
+    public DoubleMatrix2D loadItemMatrix(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), READ)) {
+            Header header = new Header(channel);
+
+            return mapMatrix(channel, header, header.itemMatrixPosition(), header.numItems);
+        }
+    }
+
+    private void writeMatrix(DoubleMatrix2D matrix, WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        int[] sums = new int[numBlocks((long) matrix.rows() * matrix.columns() * precision, BLOCK_SIZE)];
+        int block = 0;
+
+        buffer.clear();
+        for (int row = 0; row < matrix.rows(); row++) {
+            for (int column = 0; column < matrix.columns(); column++) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    if (checksums) {
+                        sums[block++] = checksum(crc, buffer);
+                    }
+                    write(channel, buffer);
+                }
+                if (precision == Float.BYTES) {
+                    buffer.putFloat((float) matrix.getQuick(row, column));
+                } else {
+                    buffer.putDouble(matrix.getQuick(row, column));
+                }
+            }
+        }
+        buffer.flip();
+        if (checksums && buffer.hasRemaining()) {
+            sums[block++] = checksum(crc, buffer);
+        }
+        write(channel, buffer);
+
+        if (checksums) {
+            for (int sum : sums) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    write(channel, buffer);
+                }
+                buffer.putInt(sum);
+            }
+            buffer.flip();
+            write(channel, buffer);
+        }
+    }
+
+    private static DoubleMatrix2D readMatrix(ReadableByteChannel channel, Header header, int rows) throws IOException {
+        FloatDenseMatrix2D floatMatrix = null;
+        double[] elements = null;
+        if (header.precision == Float.BYTES) {
+            floatMatrix = FloatDenseMatrix2D.heap(rows, header.K);
+        } else if ((long) rows * header.K <= Integer.MAX_VALUE) {
+            elements = new double[rows * header.K];
+        } else {
+            throw new IOException("double precision matrix of " + rows + " x " + header.K + " is too large to be read");
+        }
+
+        int blockSize = header.blockSize > 0 ? header.blockSize : BLOCK_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(blockSize).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        int[] sums = new int[numBlocks(header.matrixBytes(rows), blockSize)];
+        int block = 0;
+
+        long remaining = header.matrixBytes(rows);
+        long cell = 0;
+        while (remaining > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(blockSize, remaining));
+            read(channel, buffer);
+            remaining -= buffer.limit();
+
+            if (header.blockSize > 0) {
+                sums[block++] = checksum(crc, buffer);
+            }
+
+            // blocks hold whole values, which are copied in bulk into the storage of the matrix
+            if (floatMatrix != null) {
+                FloatBuffer values = buffer.asFloatBuffer();
+                int n = values.remaining();
+                floatMatrix.put(cell, values);
+                cell += n;
+            } else {
+                DoubleBuffer values = buffer.asDoubleBuffer();
+                int n = values.remaining();
+                values.get(elements, (int) cell, n);
+                cell += n;
+            }
+        }
+
+        if (header.blockSize > 0) {
+            buffer.limit(0);
+            for (int b = 0; b < sums.length; b++) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    buffer.limit(Math.min(blockSize, (sums.length - b) * Integer.BYTES));
+                    read(channel, buffer);
+                }
+                if (buffer.getInt() != sums[b]) {
+                    throw new IOException("checksum mismatch in block " + b + " of binary factorization");
+                }
+            }
+        }
+
+        if (floatMatrix != null) {
+            return floatMatrix;
+        } else {
+            return new RowMajorDoubleMatrix2D(rows, header.K, elements);
+        }
+    }
+
+    private static DoubleMatrix2D mapMatrix(FileChannel channel, Header header, long position, int rows) throws IOException {
+        if (header.precision == Float.BYTES) {
+            return FloatDenseMatrix2D.map(channel, READ_ONLY, position, rows, header.K);
+        } else {
+            channel.position(position);
+
+            return readMatrix(channel, header, rows);
+        }
+    }
+
+    private static int checksum(CRC32 crc, ByteBuffer buffer) {
+        crc.reset();
+        crc.update(buffer.duplicate());
+
+        return (int) crc.getValue();
+    }
+
+    private static int numBlocks(long bytes, int blockSize) {
+        return (int) ((bytes + blockSize - 1) / blockSize);
+    }
+
+    private static void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void read(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("unexpected end of binary factorization");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void skip(ReadableByteChannel channel, long bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        while (bytes > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BLOCK_SIZE, bytes));
+            read(channel, buffer);
+            bytes -= buffer.limit();
+        }
+    }
+
+    /**
+     * Header of a binary factorization.
+     */
+    private static final class Header {
+
+        private final int size;
+        private final int numUsers;
+        private final int numItems;
+        private final int K;
+        private final int precision;
+        private final int blockSize;
+
+        Header(ReadableByteChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            read(channel, buffer);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("not a binary factorization file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported binary factorization version " + version);
+            }
+
+            buffer = ByteBuffer.allocate(5 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            read(channel, buffer);
+            this.size = 7 * Integer.BYTES;
+            this.numUsers = buffer.getInt();
+            this.numItems = buffer.getInt();
+            this.K = buffer.getInt();
+            this.precision = buffer.getInt();
+            this.blockSize = buffer.getInt();
+
+            if (precision != Float.BYTES && precision != Double.BYTES) {
+                throw new IOException("unsupported precision " + precision);
+            }
+            if (blockSize < 0 || blockSize % Double.BYTES != 0) {
+                throw new IOException("invalid block size " + blockSize);
+            }
+        }
+
+        long matrixBytes(int rows) {
+            return (long) rows * K * precision;
+        }
+
+        long checksumBytes(int rows) {
+            return blockSize > 0 ? (long) numBlocks(matrixBytes(rows), blockSize) * Integer.BYTES : 0;
+        }
+
+        long userMatrixPosition() {
+            return size;
+        }
+
+        long itemMatrixPosition() {
+            return size + matrixBytes(numUsers) + checksumBytes(numUsers);
+        }
+    }
+
+    /**
+     * Dense double matrix over an array of values that has been read in row-major order.
+     */
+    private static final class RowMajorDoubleMatrix2D extends DenseDoubleMatrix2D {
+
+        RowMajorDoubleMatrix2D(int rows, int columns, double[] elements) {
+            super(rows, columns, elements, 0, 0, columns, 1);
+        }
+    }
+}
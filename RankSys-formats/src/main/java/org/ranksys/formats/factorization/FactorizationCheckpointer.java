@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.formats.factorization;
+
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.OptionalInt;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.ranksys.mf.train.FactorizationMonitor;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/**
+ * Training monitor that periodically saves the factorization to a directory with a factorization format, and resumes the training from the latest checkpoint in the directory, if any. Checkpoints are written to a temporary file that is atomically renamed, so that a crash while saving does not corrupt the latest checkpoint, and older checkpoints are deleted.
+ * <br>
+ * A resumed training gives the same model as an uninterrupted one only if the format is lossless, which is why the checkpoints are saved by default with the double precision {@link BinaryFactorizationFormat}. A single precision format truncates the matrices of the checkpoint and the resumed training diverges slightly.
+ *
+ * @author agent (agent@local)
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public class FactorizationCheckpointer<U, I> implements FactorizationMonitor<U, I> {
+
+    private static final Logger LOG = Logger.getLogger(FactorizationCheckpointer.class.getName());
+    private static final String PREFIX = "factorization-";
+
+    private final FactorizationFormat format;
+    private final Path directory;
+    private final int every;
+
+    /**
+     * Constructor with the double precision binary format.
+     *
+     * @param directory directory of the checkpoints, created if it does not exist
+     * @param every number of iterations between checkpoints
+     */
+    public FactorizationCheckpointer(String directory, int every) {
+        this(BinaryFactorizationFormat.get(true, true), directory, every);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param format format of the checkpoints, which should be lossless for exact resumes
+     * @param directory directory of the checkpoints, created if it does not exist
+     * @param every number of iterations between checkpoints
+     */
+    public FactorizationCheckpointer(FactorizationFormat format, String directory, int every) {
+        this.format = format;
+        this.directory = Paths.get(directory);
+        this.every = every;
+    }
+
+    @Override
+    public int resume(Factorization<U, I> factorization) {
+        try {
+            OptionalInt latest = checkpoints().max();
+            if (!latest.isPresent()) {
+                return 0;
+            }
+
+            int iter = latest.getAsInt();
+            Factorization<U, I> checkpoint;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(path(iter)))) {
+                checkpoint = format.load(in, factorization, factorization);
+            }
+            factorization.getUserMatrix().assign(checkpoint.getUserMatrix());
+            factorization.getItemMatrix().assign(checkpoint.getItemMatrix());
+
+            LOG.log(Level.INFO, String.format("resuming after iteration n = %3d", iter));
+
+            return iter;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public boolean iteration(int iter, Factorization<U, I> factorization) {
+        if (iter % every == 0) {
+            try {
+                save(iter, factorization);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        return false;
+    }
+
+    private void save(int iter, Factorization<U, I> factorization) throws IOException {
+        Path tmp = directory.resolve(PREFIX + iter + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+            format.save(factorization, out);
+        }
+        Files.move(tmp, path(iter), ATOMIC_MOVE);
+
+        int[] older = checkpoints().filter(i -> i != iter).toArray();
+        for (int i : older) {
+            Files.delete(path(i));
+        }
+    }
+
+    private Path path(int iter) {
+        return directory.resolve(PREFIX + iter);
+    }
+
+    private IntStream checkpoints() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            int[] iters = files
+                    .map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches(PREFIX + "\\d+"))
+                    .mapToInt(name -> Integer.parseInt(name.substring(PREFIX.length())))
+                    .toArray();
+
+            return IntStream.of(iters);
+        }
+    }
+}
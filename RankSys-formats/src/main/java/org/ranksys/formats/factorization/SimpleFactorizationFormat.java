@@ -7,6 +7,7 @@
  */
 package org.ranksys.formats.factorization;
 
+import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
@@ -45,7 +46,7 @@ public class SimpleFactorizationFormat implements FactorizationFormat {
     private SimpleFactorizationFormat() {
     }
 
-    private static void saveDenseDoubleMatrix2D(OutputStream stream, DenseDoubleMatrix2D matrix) throws IOException {
+    private static void saveDenseDoubleMatrix2D(OutputStream stream, DoubleMatrix2D matrix) throws IOException {
         BufferedWriter out = new BufferedWriter(new OutputStreamWriter(stream));
         double[][] m = matrix.toArray();
         for (double[] pu : m) {
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.formats.preference;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import org.ranksys.fast.preference.MappedPreferenceData;
+import org.ranksys.formats.parsing.Parser;
+
+/**
+ * Binary format for preference data that is memory-mapped when read. The preferences are stored as described in {@link MappedPreferenceData}, and the identifiers of users and items are stored in two text files, one per line in index order, so that the indices are preserved when read back.
+ *
+ * @author agent (agent@local)
+ */
+public class MappedPreferencesFormat {
+
+    /**
+     * Gets an instance of this class.
+     *
+     * @return instance of this class
+     */
+    public static MappedPreferencesFormat get() {
+        return new MappedPreferencesFormat();
+    }
+
+    /**
+     * Saves a FastPreferenceData instance in three files for the users, items and preferences, respectively.
+     *
+     * @param <U> user type
+     * @param <I> item type
+     * @param prefData preferences
+     * @param up path to users file
+     * @param ip path to items file
+     * @param pp path to preferences file
+     * @throws IOException when I/O problems
+     */
+    public <U, I> void write(FastPreferenceData<U, I> prefData, String up, String ip, String pp) throws IOException {
+        writeIds(prefData.numUsers(), prefData::uidx2user, up);
+        writeIds(prefData.numItems(), prefData::iidx2item, ip);
+        MappedPreferenceData.write(prefData, pp);
+    }
+
+    /**
+     * Reads the files written by {@link #write(FastPreferenceData, String, String, String)}. The identifiers are parsed, but the preferences are mapped into memory without being read.
+     *
+     * @param <U> user type
+     * @param <I> item type
+     * @param up path to users file
+     * @param upp user parser
+     * @param ip path to items file
+     * @param ipp item parser
+     * @param pp path to preferences file
+     * @return preference data backed by the mapped preferences file
+     * @throws IOException when I/O problems
+     */
+    public <U, I> MappedPreferenceData<U, I> read(String up, Parser<U> upp, String ip, Parser<I> ipp, String pp) throws IOException {
+        FastUserIndex<U> uIndex = SimpleFastUserIndex.load(readIds(up, upp).stream());
+        FastItemIndex<I> iIndex = SimpleFastItemIndex.load(readIds(ip, ipp).stream());
+
+        return MappedPreferenceData.load(pp, uIndex, iIndex);
+    }
+
+    private static void writeIds(int n, IntFunction<?> idx2id, String path) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path)))) {
+            for (int idx = 0; idx < n; idx++) {
+                writer.write(idx2id.apply(idx).toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    private static <T> List<T> readIds(String path, Parser<T> parser) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path)))) {
+            return reader.lines()
+                    .map(parser)
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.formats.factorization;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for BinaryFactorizationFormat.
+ *
+ * @author agent (agent@local)
+ */
+public class BinaryFactorizationFormatTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // the user matrix spans several checksummed blocks of 64 KiB in both precisions
+    private final int numUsers = 3001;
+    private final int numItems = 517;
+    private final int K = 7;
+    private final FastUserIndex<Integer> uIndex = SimpleFastUserIndex.load(IntStream.range(0, numUsers).boxed());
+    private final FastItemIndex<Integer> iIndex = SimpleFastItemIndex.load(IntStream.range(0, numItems).boxed());
+    private final Factorization<Integer, Integer> factorization;
+
+    /**
+     * Constructor that creates a random factorization.
+     */
+    public BinaryFactorizationFormatTest() {
+        Random rnd = new Random(1L);
+        DenseDoubleMatrix2D p = new DenseDoubleMatrix2D(numUsers, K);
+        p.assign(x -> rnd.nextGaussian());
+        DenseDoubleMatrix2D q = new DenseDoubleMatrix2D(numItems, K);
+        q.assign(x -> rnd.nextGaussian());
+        factorization = new Factorization<>(uIndex, iIndex, p, q, K);
+    }
+
+    private static void assertMatrix(DoubleMatrix2D expected, DoubleMatrix2D actual, boolean doublePrecision) {
+        Assert.assertEquals(expected.rows(), actual.rows());
+        Assert.assertEquals(expected.columns(), actual.columns());
+        for (int row = 0; row < expected.rows(); row++) {
+            for (int column = 0; column < expected.columns(); column++) {
+                double v = expected.getQuick(row, column);
+                Assert.assertEquals(doublePrecision ? v : (float) v, actual.getQuick(row, column), 0.0);
+            }
+        }
+    }
+
+    private void assertFactorization(Factorization<Integer, Integer> actual, boolean doublePrecision) {
+        Assert.assertEquals(K, actual.getK());
+        assertMatrix(factorization.getUserMatrix(), actual.getUserMatrix(), doublePrecision);
+        assertMatrix(factorization.getItemMatrix(), actual.getItemMatrix(), doublePrecision);
+    }
+
+    private byte[] save(BinaryFactorizationFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        format.save(factorization, out);
+
+        return out.toByteArray();
+    }
+
+    private String write(byte[] bytes) throws IOException {
+        File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+
+        return file.getPath();
+    }
+
+    /**
+     * Tests saving and loading, from a stream and by mapping a file, in single and double precision and with and without checksums.
+     *
+     * @throws IOException when IO error
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (boolean doublePrecision : new boolean[]{false, true}) {
+            for (boolean checksums : new boolean[]{false, true}) {
+                BinaryFactorizationFormat format = BinaryFactorizationFormat.get(doublePrecision, checksums);
+                byte[] bytes = save(format);
+                String path = write(bytes);
+
+                assertFactorization(format.load(new ByteArrayInputStream(bytes), uIndex, iIndex), doublePrecision);
+                assertFactorization(format.load(path, uIndex, iIndex), doublePrecision);
+                // precision is read from the header, not from the format instance
+                assertFactorization(BinaryFactorizationFormat.get(!doublePrecision, !checksums).load(new ByteArrayInputStream(bytes), uIndex, iIndex), doublePrecision);
+            }
+        }
+    }
+
+    /**
+     * Tests loading only the item matrix, from a stream and by mapping a file.
+     *
+     * @throws IOException when IO error
+     */
+    @Test
+    public void testLoadItemMatrix() throws IOException {
+        for (boolean doublePrecision : new boolean[]{false, true}) {
+            for (boolean checksums : new boolean[]{false, true}) {
+                BinaryFactorizationFormat format = BinaryFactorizationFormat.get(doublePrecision, checksums);
+                byte[] bytes = save(format);
+
+                assertMatrix(factorization.getItemMatrix(), format.loadItemMatrix(new ByteArrayInputStream(bytes)), doublePrecision);
+                assertMatrix(factorization.getItemMatrix(), format.loadItemMatrix(write(bytes)), doublePrecision);
+            }
+        }
+    }
+
+    /**
+     * Tests that a corrupted value is detected by the checksums when reading from a stream.
+     *
+     * @throws IOException when IO error
+     */
+    @Test
+    public void testChecksumMismatch() throws IOException {
+        for (boolean doublePrecision : new boolean[]{false, true}) {
+            BinaryFactorizationFormat format = BinaryFactorizationFormat.get(doublePrecision, true);
+            byte[] bytes = save(format);
+            bytes[7 * Integer.BYTES + 70_000] ^= 0x10;
+
+            try {
+                format.load(new ByteArrayInputStream(bytes), uIndex, iIndex);
+                Assert.fail("corrupted user matrix was loaded");
+            } catch (IOException ex) {
+                Assert.assertTrue(ex.getMessage().startsWith("checksum mismatch"));
+            }
+
+            // the item matrix is not affected
+            assertMatrix(factorization.getItemMatrix(), format.loadItemMatrix(new ByteArrayInputStream(bytes)), doublePrecision);
+        }
+    }
+
+    /**
+     * Tests that files that are not binary factorizations are rejected.
+     *
+     * @throws IOException when IO error
+     */
+    @Test(expected = IOException.class)
+    public void testBadMagic() throws IOException {
+        byte[] bytes = save(BinaryFactorizationFormat.get());
+        bytes[0] ^= 0x01;
+
+        BinaryFactorizationFormat.get().load(new ByteArrayInputStream(bytes), uIndex, iIndex);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.formats.factorization;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.als.HKVFactorizer;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.rules.TemporaryFolder;
+import org.ranksys.fast.preference.RandomPreferenceData;
+import org.ranksys.mf.train.FactorizationMonitor;
+
+/**
+ * Unit test for FactorizationCheckpointer.
+ *
+ * @author agent (agent@local)
+ */
+public class FactorizationCheckpointerTest {
+
+    private static final int NUM_USERS = 80;
+    private static final int NUM_ITEMS = 40;
+    private static final int K = 4;
+
+    /**
+     * Temporary folder for the checkpoints.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static FastPreferenceData<Integer, Integer> randomData() {
+        return RandomPreferenceData.generate(NUM_USERS, NUM_ITEMS, 0.2, 5);
+    }
+
+    private static Factorization<Integer, Integer> randomFactorization(FastPreferenceData<Integer, Integer> data, long seed) {
+        Random rnd = new Random(seed);
+        DoubleMatrix2D p = new DenseDoubleMatrix2D(NUM_USERS, K).assign(x -> 0.5 * rnd.nextDouble());
+        DoubleMatrix2D q = new DenseDoubleMatrix2D(NUM_ITEMS, K).assign(x -> 0.5 * rnd.nextDouble());
+
+        return new Factorization<>(data, data, p, q, K);
+    }
+
+    private static HKVFactorizer<Integer, Integer> factorizer(int numIter) {
+        return new HKVFactorizer<>(0.1, x -> 1 + 40 * x, numIter);
+    }
+
+    private static void assertSameMatrix(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), 0.0);
+            }
+        }
+    }
+
+    private static FactorizationMonitor<Integer, Integer> stopAt(int n, List<Integer> iters) {
+        return (iter, f) -> {
+            iters.add(iter);
+            return iter == n;
+        };
+    }
+
+    /**
+     * Tests that a checkpoint is written every n iterations, that only the
+     * latest one is kept and that it contains the matrices of its iteration.
+     *
+     * @throws IOException when IO error
+     */
+    @Test
+    public void testCheckpoints() throws IOException {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        File dir = folder.newFolder();
+
+        Factorization<Integer, Integer> factorization = randomFactorization(data, 1L);
+        DoubleMatrix2D[] snapshot = new DoubleMatrix2D[2];
+        FactorizationCheckpointer<Integer, Integer> checkpointer = new FactorizationCheckpointer<>(dir.getPath(), 2);
+        FactorizationMonitor<Integer, Integer> recorder = (iter, f) -> {
+            if (iter == 6) {
+                snapshot[0] = f.getUserMatrix().copy();
+                snapshot[1] = f.getItemMatrix().copy();
+            }
+            return false;
+        };
+        factorizer(7).factorize(factorization, data, checkpointer.and(recorder));
+
+        String[] files = dir.list();
+        assertArrayEquals(new String[]{"factorization-6"}, files);
+
+        Factorization<Integer, Integer> checkpoint;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(dir.toPath().resolve("factorization-6")))) {
+            checkpoint = BinaryFactorizationFormat.get().load(in, data, data);
+        }
+        assertSameMatrix(snapshot[0], checkpoint.getUserMatrix());
+        assertSameMatrix(snapshot[1], checkpoint.getItemMatrix());
+    }
+
+    /**
+     * Tests that nothing is restored from an empty directory.
+     *
+     * @throws IOException when IO error
+     */
+    @Test
+    public void testResumeEmpty() throws IOException {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        File dir = folder.newFolder();
+
+        Factorization<Integer, Integer> factorization = randomFactorization(data, 1L);
+        DoubleMatrix2D p = factorization.getUserMatrix().copy();
+        DoubleMatrix2D q = factorization.getItemMatrix().copy();
+
+        assertEquals(0, new FactorizationCheckpointer<Integer, Integer>(dir.getPath(), 2).resume(factorization));
+        assertSameMatrix(p, factorization.getUserMatrix());
+        assertSameMatrix(q, factorization.getItemMatrix());
+    }
+
+    /**
+     * Tests that a training interrupted after a checkpoint and resumed from it
+     * runs only the remaining iterations and gives exactly the same model as
+     * an uninterrupted training.
+     *
+     * @throws IOException when IO error
+     */
+    @Test
+    public void testResume() throws IOException {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        File dir = folder.newFolder();
+
+        Factorization<Integer, Integer> expected = randomFactorization(data, 1L);
+        factorizer(8).factorize(expected, data);
+
+        List<Integer> iters1 = new ArrayList<>();
+        Factorization<Integer, Integer> interrupted = randomFactorization(data, 1L);
+        factorizer(8).factorize(interrupted, data, new FactorizationCheckpointer<Integer, Integer>(dir.getPath(), 2).and(stopAt(5, iters1)));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), iters1);
+
+        List<Integer> iters2 = new ArrayList<>();
+        Factorization<Integer, Integer> resumed = randomFactorization(data, 2L);
+        factorizer(8).factorize(resumed, data, new FactorizationCheckpointer<Integer, Integer>(dir.getPath(), 2).and(stopAt(-1, iters2)));
+        assertEquals(Arrays.asList(5, 6, 7, 8), iters2);
+
+        assertSameMatrix(expected.getUserMatrix(), resumed.getUserMatrix());
+        assertSameMatrix(expected.getItemMatrix(), resumed.getItemMatrix());
+    }
+}
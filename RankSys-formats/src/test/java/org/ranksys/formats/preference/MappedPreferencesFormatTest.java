@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.formats.preference;
+
+import es.uam.eps.ir.ranksys.core.preference.IdPref;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.jooq.lambda.tuple.Tuple3;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ranksys.fast.preference.MappedPreferenceData;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+import static org.ranksys.formats.parsing.Parsers.ip;
+
+/**
+ * Unit test for MappedPreferencesFormat.
+ *
+ * @author agent (agent@local)
+ */
+public class MappedPreferencesFormatTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that the identifiers and preferences read back match the written ones.
+     *
+     * @throws IOException when I/O problems
+     */
+    @Test
+    public void roundTripTest() throws IOException {
+        FastUserIndex<Integer> uIndex = SimpleFastUserIndex.load(IntStream.range(0, 30).map(u -> 1000 + 7 * u).boxed());
+        FastItemIndex<Integer> iIndex = SimpleFastItemIndex.load(IntStream.range(0, 40).map(i -> 5 * i).boxed());
+
+        Random rnd = new Random(1L);
+        List<Tuple3<Integer, Integer, Double>> tuples = new ArrayList<>();
+        for (int uidx = 0; uidx < uIndex.numUsers(); uidx++) {
+            for (int iidx = 0; iidx < iIndex.numItems(); iidx++) {
+                if (rnd.nextDouble() < 0.2) {
+                    tuples.add(tuple(uIndex.uidx2user(uidx), iIndex.iidx2item(iidx), (double) rnd.nextInt(5) + 1));
+                }
+            }
+        }
+        SimpleFastPreferenceData<Integer, Integer> expected = SimpleFastPreferenceData.load(tuples.stream(), uIndex, iIndex);
+
+        String usersPath = new File(folder.getRoot(), "users.txt").getPath();
+        String itemsPath = new File(folder.getRoot(), "items.txt").getPath();
+        String prefsPath = new File(folder.getRoot(), "prefs.bin").getPath();
+        MappedPreferencesFormat.get().write(expected, usersPath, itemsPath, prefsPath);
+        MappedPreferenceData<Integer, Integer> actual = MappedPreferencesFormat.get().read(usersPath, ip, itemsPath, ip, prefsPath);
+
+        Assert.assertEquals(uIndex.getAllUsers().collect(Collectors.toList()), actual.getAllUsers().collect(Collectors.toList()));
+        Assert.assertEquals(iIndex.getAllItems().collect(Collectors.toList()), actual.getAllItems().collect(Collectors.toList()));
+        Assert.assertEquals(expected.numPreferences(), actual.numPreferences());
+        expected.getUsersWithPreferences().forEach(u -> {
+            Assert.assertEquals(
+                    expected.getUserPreferences(u).map(IdPref::v1).sorted().collect(Collectors.toList()),
+                    actual.getUserPreferences(u).map(IdPref::v1).collect(Collectors.toList()));
+            expected.getUserPreferences(u).forEach(pref -> {
+                Assert.assertEquals(pref.v2, actual.getPreference(u, pref.v1).get().v2, 0.0);
+            });
+        });
+    }
+}
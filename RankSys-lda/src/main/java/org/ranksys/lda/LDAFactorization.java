@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.lda;
+
+import cc.mallet.topics.ParallelTopicModel;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import static java.lang.Math.min;
+import static java.util.stream.IntStream.range;
+
+/**
+ * LDA topic model as a matrix factorization, with a user matrix of p(z|u) and an item matrix of p(i|z). The inner product of a user and an item vector is the probability of the item for the user according to the model.
+ * <br>
+ * The probabilities are extracted once from the packed counts of a Mallet topic model, or computed by {@link WeightedLDAEstimator}. Later changes to the topic model are not seen by the factorization.
+ *
+ * @author agent (agent@local)
+ *
+ * @param <U> user type
+ * @param <I> item type
+ */
+public class LDAFactorization<U, I> extends Factorization<U, I> {
+
+    /**
+     * Constructor.
+     *
+     * @param uIndex user index
+     * @param iIndex item index
+     * @param topicModel LDA topic model, estimated with one instance per user as in {@link LDAModelEstimator}
+     */
+    public LDAFactorization(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, ParallelTopicModel topicModel) {
+        super(uIndex, iIndex, userMatrix(uIndex, topicModel), itemMatrix(iIndex, topicModel), topicModel.getNumTopics());
+    }
+
+    /**
+     * Constructor from already computed probabilities.
+     *
+     * @param uIndex user index
+     * @param iIndex item index
+     * @param pu_z matrix of p(z|u)
+     * @param piz matrix of p(i|z)
+     */
+    LDAFactorization(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, DoubleMatrix2D pu_z, DoubleMatrix2D piz) {
+        super(uIndex, iIndex, pu_z, piz, pu_z.columns());
+    }
+
+    private static <U> DoubleMatrix2D userMatrix(FastUserIndex<U> uIndex, ParallelTopicModel topicModel) {
+        DoubleMatrix2D pu_z = new DenseDoubleMatrix2D(uIndex.numUsers(), topicModel.getNumTopics());
+
+        range(0, min(uIndex.numUsers(), topicModel.getData().size())).parallel().forEach(uidx -> {
+            double[] pz_U = topicModel.getTopicProbabilities(uidx);
+            for (int z = 0; z < pz_U.length; z++) {
+                pu_z.setQuick(uidx, z, pz_U[z]);
+            }
+        });
+
+        return pu_z;
+    }
+
+    private static <I> DoubleMatrix2D itemMatrix(FastItemIndex<I> iIndex, ParallelTopicModel topicModel) {
+        DoubleMatrix2D piz = new DenseDoubleMatrix2D(iIndex.numItems(), topicModel.getNumTopics());
+
+        range(0, min(iIndex.numItems(), topicModel.typeTopicCounts.length)).parallel().forEach(iidx -> {
+            int[] qi = topicModel.typeTopicCounts[iidx];
+            for (int j = 0; j < qi.length && qi[j] > 0; j++) {
+                int z = qi[j] & topicModel.topicMask;
+                int n = qi[j] >> topicModel.topicBits;
+                piz.setQuick(iidx, z, n / (double) topicModel.tokensPerTopic[z]);
+            }
+        });
+
+        return piz;
+    }
+}
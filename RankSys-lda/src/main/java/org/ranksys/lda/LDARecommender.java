@@ -8,28 +8,22 @@
 package org.ranksys.lda;
 
 import cc.mallet.topics.ParallelTopicModel;
-import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
-import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
-import es.uam.eps.ir.ranksys.rec.fast.AbstractFastRecommender;
-import static java.lang.Math.min;
-import java.util.List;
-import java.util.function.IntPredicate;
-import static java.util.stream.Collectors.toList;
-import org.ranksys.core.util.tuples.Tuple2id;
+import es.uam.eps.ir.ranksys.mf.rec.MFRecommender;
+import org.ranksys.mf.ann.HNSWIndex;
 
 /**
  * LDA recommender.  See ParallelTopicModel in Mallet (http://mallet.cs.umass.edu/) for more details.
+ * <br>
+ * The topic model is converted into a {@link LDAFactorization}, so that items are scored as in a matrix factorization recommender, including its batch and approximate retrieval paths.
  *
  * @author Saúl Vargas (Saul.Vargas@glasgow.ac.uk)
- * 
+ *
  * @param <U> user type
  * @param <I> item type
  */
-public class LDARecommender<U, I> extends AbstractFastRecommender<U, I> {
-
-    private final ParallelTopicModel topicModel;
+public class LDARecommender<U, I> extends MFRecommender<U, I> {
 
     /**
      * Constructor
@@ -39,44 +33,31 @@ public class LDARecommender<U, I> extends AbstractFastRecommender<U, I> {
      * @param topicModel LDA topic model
      */
     public LDARecommender(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, ParallelTopicModel topicModel) {
-        super(uIndex, iIndex);
-        this.topicModel = topicModel;
+        this(uIndex, iIndex, new LDAFactorization<>(uIndex, iIndex, topicModel));
     }
 
-    @Override
-    public FastRecommendation getRecommendation(int uidx, int maxLength, IntPredicate filter) {
-
-        IntDoubleTopN topN = new IntDoubleTopN(min(maxLength, numItems()));
-
-        for (int iidx = 0; iidx < numItems(); iidx++) {
-            if (filter.test(iidx)) {
-                topN.add(iidx, score(topicModel, uidx, iidx));
-            }
-        }
-
-        topN.sort();
-
-        List<Tuple2id> items = topN.reverseStream()
-                .collect(toList());
-
-        return new FastRecommendation(uidx, items);
+    /**
+     * Constructor
+     *
+     * @param uIndex user index
+     * @param iIndex item index
+     * @param factorization LDA topic model as a matrix factorization
+     */
+    public LDARecommender(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, LDAFactorization<U, I> factorization) {
+        super(uIndex, iIndex, factorization);
     }
 
-    private double score(ParallelTopicModel topicModel, int uidx, int iidx) {
-        double[] pu = topicModel.getTopicProbabilities(uidx);
-        int[] qi = topicModel.typeTopicCounts[iidx];
-
-        double score = 0.0;
-        int i = 0;
-        while (i < qi.length && qi[i] > 0) {
-            int z = qi[i] & topicModel.topicMask;
-            int n = qi[i] >> topicModel.topicBits;
-
-            score += pu[z] * (n / (double) topicModel.tokensPerTopic[z]);
-            i++;
-        }
-        
-        return score;
+    /**
+     * Constructor with approximate retrieval of candidate items.
+     *
+     * @param uIndex user index
+     * @param iIndex item index
+     * @param factorization LDA topic model as a matrix factorization
+     * @param index inner product index over the item matrix of the factorization
+     * @param ef number of candidates to retrieve from the index
+     */
+    public LDARecommender(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, LDAFactorization<U, I> factorization, HNSWIndex index, int ef) {
+        super(uIndex, iIndex, factorization, index, ef);
     }
-    
+
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.lda;
+
+import cc.mallet.topics.ParallelTopicModel;
+import es.uam.eps.ir.ranksys.fast.FastRecommendation;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import java.io.IOException;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ranksys.core.util.tuples.Tuple2id;
+import org.ranksys.fast.preference.RandomPreferenceData;
+
+/**
+ * Unit test for LDARecommender.
+ *
+ * @author agent (agent@local)
+ */
+public class LDARecommenderTest {
+
+    private static final int NUM_USERS = 60;
+    private static final int NUM_ITEMS = 80;
+
+    /**
+     * Preferences of three groups of users for three groups of items, with
+     * integer ratings that become the number of tokens of every item.
+     */
+    private static FastPreferenceData<Integer, Integer> randomData() {
+        return RandomPreferenceData.generate(NUM_USERS, NUM_ITEMS, (uidx, iidx) -> uidx % 3 == iidx % 3 ? 0.3 : 0.05, 3);
+    }
+
+    /**
+     * Score of the recommender before the factorization: p(z|u) of the user
+     * times the p(i|z) of the packed counts of the item, walked for every
+     * pair.
+     */
+    private static double typeTopicCountsScore(ParallelTopicModel topicModel, int uidx, int iidx) {
+        double[] pu = topicModel.getTopicProbabilities(uidx);
+        int[] qi = topicModel.typeTopicCounts[iidx];
+
+        double score = 0.0;
+        int i = 0;
+        while (i < qi.length && qi[i] > 0) {
+            int z = qi[i] & topicModel.topicMask;
+            int n = qi[i] >> topicModel.topicBits;
+
+            score += pu[z] * (n / (double) topicModel.tokensPerTopic[z]);
+            i++;
+        }
+
+        return score;
+    }
+
+    /**
+     * Tests that the scores of the recommender, for all the items and by
+     * candidates, are those of the walk over the packed counts of the topic
+     * model.
+     *
+     * @throws IOException when internal IO error of Mallet
+     */
+    @Test
+    public void testScores() throws IOException {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        ParallelTopicModel topicModel = LDAModelEstimator.estimate(data, 5, 0.1, 0.01, 50, 10);
+
+        LDARecommender<Integer, Integer> recommender = new LDARecommender<>(data, data, topicModel);
+
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            FastRecommendation recommendation = recommender.getRecommendation(uidx, NUM_ITEMS, iidx -> true);
+            assertEquals(NUM_ITEMS, recommendation.getIidxs().size());
+            double prev = Double.POSITIVE_INFINITY;
+            for (Tuple2id iv : recommendation.getIidxs()) {
+                assertEquals(typeTopicCountsScore(topicModel, uidx, iv.v1), iv.v2, 1e-12);
+                assertTrue(iv.v2 <= prev);
+                prev = iv.v2;
+            }
+
+            int u = uidx;
+            FastRecommendation candidates = recommender.getRecommendation(uidx, IntStream.range(0, NUM_ITEMS).filter(iidx -> iidx % 4 == u % 4));
+            assertEquals(NUM_ITEMS / 4, candidates.getIidxs().size());
+            for (Tuple2id iv : candidates.getIidxs()) {
+                assertEquals(u % 4, iv.v1 % 4);
+                assertEquals(typeTopicCountsScore(topicModel, uidx, iv.v1), iv.v2, 1e-12);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.lda;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import org.junit.Test;
+import org.ranksys.fast.preference.RandomPreferenceData;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for WeightedLDAEstimator.
+ *
+ * @author agent (agent@local)
+ */
+public class WeightedLDAEstimatorTest {
+
+    private static final int NUM_USERS = 60;
+    private static final int NUM_ITEMS = 80;
+    private static final int K = 5;
+
+    /**
+     * Preferences of three groups of users for three groups of items, with
+     * ratings from 1 to 5.
+     */
+    private static FastPreferenceData<Integer, Integer> randomData() {
+        return RandomPreferenceData.generate(NUM_USERS, NUM_ITEMS, (uidx, iidx) -> uidx % 3 == iidx % 3 ? 0.3 : 0.05, 5);
+    }
+
+    /**
+     * Checks that the counts of the sampler are those of the topic
+     * assignments of the preferences, and that the user and item counts add
+     * up to the values of their preferences.
+     */
+    private static void assertCounts(FastPreferenceData<Integer, Integer> data, WeightedLDAEstimator.Sampler sampler) {
+        double[] nuz = new double[NUM_USERS * K];
+        double[] niz = new double[NUM_ITEMS * K];
+        double[] nz = new double[K];
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            for (int j = sampler.uOffsets[uidx]; j < sampler.uOffsets[uidx + 1]; j++) {
+                int z = sampler.zs[j];
+                assertTrue(z >= 0 && z < K);
+                nuz[uidx * K + z] += sampler.vs[j];
+                niz[sampler.iidxs[j] * K + z] += sampler.vs[j];
+                nz[z] += sampler.vs[j];
+            }
+        }
+        assertArrayEquals(nuz, sampler.nuz, 1e-9);
+        assertArrayEquals(niz, sampler.niz, 1e-9);
+        assertArrayEquals(nz, sampler.nz, 1e-9);
+
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            double nu = 0.0;
+            for (int z = 0; z < K; z++) {
+                nu += sampler.nuz[uidx * K + z];
+            }
+            assertEquals(data.getUidxPreferences(uidx).mapToDouble(iv -> iv.v2).sum(), nu, 1e-9);
+        }
+        for (int iidx = 0; iidx < NUM_ITEMS; iidx++) {
+            double ni = 0.0;
+            for (int z = 0; z < K; z++) {
+                ni += sampler.niz[iidx * K + z];
+            }
+            assertEquals(data.getIidxPreferences(iidx).mapToDouble(iv -> iv.v2).sum(), ni, 1e-9);
+        }
+    }
+
+    /**
+     * Tests that the counts are consistent with the topic assignments after
+     * the random initialization and after every sweep of the sampler.
+     */
+    @Test
+    public void testCounts() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        WeightedLDAEstimator.Sampler sampler = new WeightedLDAEstimator.Sampler(data, K, 0.1, 0.01, 1L);
+        assertEquals(data.numPreferences(), sampler.zs.length);
+
+        assertCounts(data, sampler);
+        for (int t = 0; t < 10; t++) {
+            sampler.sweep();
+            assertCounts(data, sampler);
+        }
+    }
+
+    /**
+     * Tests that the rows of p(z|u) and the distributions p(i|z) of every
+     * topic sum to 1, with and without burn-in.
+     */
+    @Test
+    public void testProbabilities() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+
+        for (LDAFactorization<Integer, Integer> factorization : new LDAFactorization[]{
+            WeightedLDAEstimator.estimate(data, K, 0.1, 0.01, 20, 1L),
+            WeightedLDAEstimator.estimate(data, K, 0.1, 0.01, 20, 10, 1L)}) {
+            DoubleMatrix2D pu_z = factorization.getUserMatrix();
+            DoubleMatrix2D piz = factorization.getItemMatrix();
+
+            for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+                assertEquals(1.0, pu_z.viewRow(uidx).zSum(), 1e-9);
+            }
+            for (int z = 0; z < K; z++) {
+                assertEquals(1.0, piz.viewColumn(z).zSum(), 1e-9);
+            }
+            assertTrue(pu_z.aggregate((x, y) -> Math.min(x, y), x -> x) >= 0.0);
+            assertTrue(piz.aggregate((x, y) -> Math.min(x, y), x -> x) >= 0.0);
+        }
+    }
+
+    /**
+     * Tests that the estimates are the average of those of the states of the
+     * sampler after the burn-in period, and that without burn-in they are
+     * those of the final state.
+     */
+    @Test
+    public void testBurnin() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        int numIterations = 12;
+        int burninPeriod = 8;
+
+        WeightedLDAEstimator.Sampler sampler = new WeightedLDAEstimator.Sampler(data, K, 0.1, 0.01, 1L);
+        DoubleMatrix2D pu_z = new DenseDoubleMatrix2D(NUM_USERS, K);
+        DoubleMatrix2D piz = new DenseDoubleMatrix2D(NUM_ITEMS, K);
+        DoubleMatrix2D lastPu_z = new DenseDoubleMatrix2D(NUM_USERS, K);
+        DoubleMatrix2D lastPiz = new DenseDoubleMatrix2D(NUM_ITEMS, K);
+        for (int t = 1; t <= numIterations; t++) {
+            sampler.sweep();
+            if (t > burninPeriod) {
+                sampler.addEstimates(pu_z, piz);
+            }
+        }
+        sampler.addEstimates(lastPu_z, lastPiz);
+        pu_z.assign(x -> x / (numIterations - burninPeriod));
+        piz.assign(x -> x / (numIterations - burninPeriod));
+
+        LDAFactorization<Integer, Integer> averaged = WeightedLDAEstimator.estimate(data, K, 0.1, 0.01, numIterations, burninPeriod, 1L);
+        assertEquals(pu_z, averaged.getUserMatrix());
+        assertEquals(piz, averaged.getItemMatrix());
+
+        LDAFactorization<Integer, Integer> last = WeightedLDAEstimator.estimate(data, K, 0.1, 0.01, numIterations, 1L);
+        assertEquals(lastPu_z, last.getUserMatrix());
+        assertEquals(lastPiz, last.getItemMatrix());
+        assertNotEquals(lastPu_z, averaged.getUserMatrix());
+
+        try {
+            WeightedLDAEstimator.estimate(data, K, 0.1, 0.01, numIterations, numIterations, 1L);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
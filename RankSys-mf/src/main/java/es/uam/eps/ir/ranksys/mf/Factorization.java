@@ -10,12 +10,14 @@ package es.uam.eps.ir.ranksys.mf;
 
 import cern.colt.function.DoubleFunction;
 import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import java.util.function.BiFunction;
 
 /**
- * Matrix factorization.
+ * Matrix factorization. The user and item matrices are dense {@link DenseDoubleMatrix2D} by default, but any other dense colt matrix can be used, such as the single precision, off-heap or memory-mapped {@link org.ranksys.mf.matrix.FloatDenseMatrix2D}.
  *
  * @author Saúl Vargas (saul.vargas@uam.es)
  *
@@ -27,12 +29,12 @@ public class Factorization<U, I> implements FastItemIndex<I>, FastUserIndex<U> {
     /**
      * user matrix
      */
-    protected final DenseDoubleMatrix2D userMatrix;
+    protected final DoubleMatrix2D userMatrix;
 
     /**
      * item matrix
      */
-    protected final DenseDoubleMatrix2D itemMatrix;
+    protected final DoubleMatrix2D itemMatrix;
 
     /**
      * dimensionality of the vector space
@@ -58,9 +60,22 @@ public class Factorization<U, I> implements FastItemIndex<I>, FastUserIndex<U> {
      * @param initFunction function to initialize the cells of the matrices
      */
     public Factorization(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, DoubleFunction initFunction) {
-        this.userMatrix = new DenseDoubleMatrix2D(uIndex.numUsers(), K);
+        this(uIndex, iIndex, K, initFunction, DenseDoubleMatrix2D::new);
+    }
+
+    /**
+     * Constructor with a custom storage of the matrices.
+     *
+     * @param uIndex fast user index
+     * @param iIndex fast item index
+     * @param K dimension of the latent feature space
+     * @param initFunction function to initialize the cells of the matrices
+     * @param matrixFactory function that creates an empty matrix with the given numbers of rows and columns, such as FloatDenseMatrix2D::direct
+     */
+    public Factorization(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, DoubleFunction initFunction, BiFunction<Integer, Integer, DoubleMatrix2D> matrixFactory) {
+        this.userMatrix = matrixFactory.apply(uIndex.numUsers(), K);
         this.userMatrix.assign(initFunction);
-        this.itemMatrix = new DenseDoubleMatrix2D(iIndex.numItems(), K);
+        this.itemMatrix = matrixFactory.apply(iIndex.numItems(), K);
         this.itemMatrix.assign(initFunction);
         this.K = K;
         this.uIndex = uIndex;
@@ -76,7 +91,7 @@ public class Factorization<U, I> implements FastItemIndex<I>, FastUserIndex<U> {
      * @param itemMatrix item matrix
      * @param K dimension of the latent feature space
      */
-    public Factorization(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, DenseDoubleMatrix2D userMatrix, DenseDoubleMatrix2D itemMatrix, int K) {
+    public Factorization(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, DoubleMatrix2D userMatrix, DoubleMatrix2D itemMatrix, int K) {
         this.userMatrix = userMatrix;
         this.itemMatrix = itemMatrix;
         this.K = K;
@@ -159,7 +174,7 @@ public class Factorization<U, I> implements FastItemIndex<I>, FastUserIndex<U> {
      *
      * @return the whole user matrix
      */
-    public DenseDoubleMatrix2D getUserMatrix() {
+    public DoubleMatrix2D getUserMatrix() {
         return userMatrix;
     }
 
@@ -168,7 +183,7 @@ public class Factorization<U, I> implements FastItemIndex<I>, FastUserIndex<U> {
      *
      * @return the whole item matrix
      */
-    public DenseDoubleMatrix2D getItemMatrix() {
+    public DoubleMatrix2D getItemMatrix() {
         return itemMatrix;
     }
 
@@ -9,7 +9,7 @@
 package es.uam.eps.ir.ranksys.mf.als;
 
 import cern.colt.function.DoubleFunction;
-import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.DoubleMatrix2D;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.mf.Factorization;
 import es.uam.eps.ir.ranksys.mf.Factorizer;
@@ -19,6 +19,7 @@ import static java.lang.Math.sqrt;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.IntStream;
+import org.ranksys.mf.train.FactorizationMonitor;
 
 /**
  * Generic alternating least-squares factorizer.
@@ -46,8 +47,8 @@ public abstract class ALSFactorizer<U, I> extends Factorizer<U, I> {
     @Override
     public double error(Factorization<U, I> factorization, FastPreferenceData<U, I> data) {
 
-        DenseDoubleMatrix2D p = factorization.getUserMatrix();
-        DenseDoubleMatrix2D q = factorization.getItemMatrix();
+        DoubleMatrix2D p = factorization.getUserMatrix();
+        DoubleMatrix2D q = factorization.getItemMatrix();
 
         return error(p, q, data);
     }
@@ -62,16 +63,30 @@ public abstract class ALSFactorizer<U, I> extends Factorizer<U, I> {
 
     @Override
     public void factorize(Factorization<U, I> factorization, FastPreferenceData<U, I> data) {
+        factorize(factorization, data, (iter, f) -> false);
+    }
 
-        DenseDoubleMatrix2D p = factorization.getUserMatrix();
-        DenseDoubleMatrix2D q = factorization.getItemMatrix();
+    /**
+     * Calculates the factorization by using a previously generated matrix
+     * factorization, under the control of a monitor that can resume a
+     * previous training, checkpoint it or stop it early.
+     *
+     * @param factorization matrix factorization
+     * @param data preference data
+     * @param monitor training monitor
+     */
+    public void factorize(Factorization<U, I> factorization, FastPreferenceData<U, I> data, FactorizationMonitor<U, I> monitor) {
+
+        DoubleMatrix2D p = factorization.getUserMatrix();
+        DoubleMatrix2D q = factorization.getItemMatrix();
 
         IntSet uidxs = new IntOpenHashSet(data.getUidxWithPreferences().toArray());
         IntStream.range(0, p.rows()).filter(uidx -> !uidxs.contains(uidx)).forEach(uidx -> p.viewRow(uidx).assign(0.0));
         IntSet iidxs = new IntOpenHashSet(data.getIidxWithPreferences().toArray());
         IntStream.range(0, q.rows()).filter(iidx -> !iidxs.contains(iidx)).forEach(iidx -> q.viewRow(iidx).assign(0.0));
 
-        for (int t = 1; t <= numIter; t++) {
+        int t0 = monitor.resume(factorization);
+        for (int t = t0 + 1; t <= numIter; t++) {
             long time0 = System.nanoTime();
 
             set_minQ(q, p, data);
@@ -82,6 +97,11 @@ public abstract class ALSFactorizer<U, I> extends Factorizer<U, I> {
 
             LOG.log(Level.INFO, String.format("iteration n = %3d t = %.2fs", iter, time1 / 1_000_000_000.0));
             LOG.log(Level.FINE, () -> String.format("iteration n = %3d e = %.6f", iter, error(factorization, data)));
+
+            if (monitor.iteration(iter, factorization)) {
+                LOG.log(Level.INFO, String.format("stopping after iteration n = %3d", iter));
+                break;
+            }
         }
     }
 
@@ -93,7 +113,7 @@ public abstract class ALSFactorizer<U, I> extends Factorizer<U, I> {
      * @param data preference data
      * @return squared loss
      */
-    protected abstract double error(DenseDoubleMatrix2D p, DenseDoubleMatrix2D q, FastPreferenceData<U, I> data);
+    protected abstract double error(DoubleMatrix2D p, DoubleMatrix2D q, FastPreferenceData<U, I> data);
 
     /**
      * User matrix least-squares step.
@@ -102,7 +122,7 @@ public abstract class ALSFactorizer<U, I> extends Factorizer<U, I> {
      * @param q item matrix
      * @param data preference data
      */
-    protected abstract void set_minP(DenseDoubleMatrix2D p, DenseDoubleMatrix2D q, FastPreferenceData<U, I> data);
+    protected abstract void set_minP(DoubleMatrix2D p, DoubleMatrix2D q, FastPreferenceData<U, I> data);
 
     /**
      * Item matrix least-squares step.
@@ -111,5 +131,5 @@ public abstract class ALSFactorizer<U, I> extends Factorizer<U, I> {
      * @param p user matrix
      * @param data preference data
      */
-    protected abstract void set_minQ(DenseDoubleMatrix2D q, DenseDoubleMatrix2D p, FastPreferenceData<U, I> data);
+    protected abstract void set_minQ(DoubleMatrix2D q, DoubleMatrix2D p, FastPreferenceData<U, I> data);
 }
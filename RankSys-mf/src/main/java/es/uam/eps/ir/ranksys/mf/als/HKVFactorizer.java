@@ -16,6 +16,7 @@ import cern.colt.matrix.linalg.Algebra;
 import cern.colt.matrix.linalg.LUDecompositionQuick;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
+import java.util.Arrays;
 import java.util.function.DoubleUnaryOperator;
 
 /**
@@ -23,6 +24,15 @@ import java.util.function.DoubleUnaryOperator;
  *
  * Y. Hu, Y. Koren, C. Volinsky. Collaborative filtering for implicit feedback
  * datasets. ICDM 2008.
+ *
+ * Optionally, the least-squares problem of every row can be approximately
+ * solved with a few steps of the conjugate gradient method, warm-started from
+ * the previous value of the row, instead of a LU decomposition. This avoids
+ * the K x K matrices per row and reduces the cost per iteration from O(K^3) to
+ * O(K^2 + n K) per row, where n is the number of preferences of the row.
+ *
+ * G. Takács, I. Pilászy, D. Tikk. Applications of the conjugate gradient
+ * method for implicit feedback collaborative filtering. RecSys 2011.
  * 
  * @author Saúl Vargas (saul.vargas@uam.es)
  * 
@@ -35,6 +45,7 @@ public class HKVFactorizer<U, I> extends ALSFactorizer<U, I> {
     private final double lambdaP;
     private final double lambdaQ;
     private final DoubleUnaryOperator confidence;
+    private final int cgSteps;
 
     /**
      * Constructor. Same regularization factor for user and item matrices.
@@ -56,14 +67,29 @@ public class HKVFactorizer<U, I> extends ALSFactorizer<U, I> {
      * @param numIter number of iterations
      */
     public HKVFactorizer(double lambdaP, double lambdaQ, DoubleUnaryOperator confidence, int numIter) {
+        this(lambdaP, lambdaQ, confidence, numIter, 0);
+    }
+
+    /**
+     * Constructor. Different regularization factors for user and item matrices
+     * and, if cgSteps is positive, conjugate gradient solver.
+     *
+     * @param lambdaP regularization factor for user matrix
+     * @param lambdaQ regularization factor for item matrix
+     * @param confidence confidence function
+     * @param numIter number of iterations
+     * @param cgSteps number of conjugate gradient steps per row, or 0 for an exact solution by LU decomposition
+     */
+    public HKVFactorizer(double lambdaP, double lambdaQ, DoubleUnaryOperator confidence, int numIter, int cgSteps) {
         super(numIter);
         this.lambdaP = lambdaP;
         this.lambdaQ = lambdaQ;
         this.confidence = confidence;
+        this.cgSteps = cgSteps;
     }
 
     @Override
-    public double error(DenseDoubleMatrix2D p, DenseDoubleMatrix2D q, FastPreferenceData<U, I> data) {
+    public double error(DoubleMatrix2D p, DoubleMatrix2D q, FastPreferenceData<U, I> data) {
         // TODO: add regularization
         
         return data.getUidxWithPreferences().parallel().mapToDouble(uidx -> {
@@ -85,16 +111,24 @@ public class HKVFactorizer<U, I> extends ALSFactorizer<U, I> {
     }
 
     @Override
-    public void set_minP(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, FastPreferenceData<U, I> data) {
-        set_min(p, q, confidence, lambdaP, data);
+    public void set_minP(final DoubleMatrix2D p, final DoubleMatrix2D q, FastPreferenceData<U, I> data) {
+        if (cgSteps > 0) {
+            set_minCG(p, q, confidence, lambdaP, cgSteps, data);
+        } else {
+            set_min(p, q, confidence, lambdaP, data);
+        }
     }
 
     @Override
-    public void set_minQ(final DenseDoubleMatrix2D q, final DenseDoubleMatrix2D p, FastPreferenceData<U, I> data) {
-        set_min(q, p, confidence, lambdaQ, new TransposedPreferenceData<>(data));
+    public void set_minQ(final DoubleMatrix2D q, final DoubleMatrix2D p, FastPreferenceData<U, I> data) {
+        if (cgSteps > 0) {
+            set_minCG(q, p, confidence, lambdaQ, cgSteps, new TransposedPreferenceData<>(data));
+        } else {
+            set_min(q, p, confidence, lambdaQ, new TransposedPreferenceData<>(data));
+        }
     }
 
-    private static <U, I, O> void set_min(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, DoubleUnaryOperator confidence, double lambda, FastPreferenceData<U, I> data) {
+    private static <U, I, O> void set_min(final DoubleMatrix2D p, final DoubleMatrix2D q, DoubleUnaryOperator confidence, double lambda, FastPreferenceData<U, I> data) {
         final int K = p.columns();
 
         DenseDoubleMatrix2D A1P = new DenseDoubleMatrix2D(K, K);
@@ -133,4 +167,157 @@ public class HKVFactorizer<U, I> extends ALSFactorizer<U, I> {
         });
     }
 
+    private static <U, I> void set_minCG(final DoubleMatrix2D p, final DoubleMatrix2D q, DoubleUnaryOperator confidence, double lambda, int cgSteps, FastPreferenceData<U, I> data) {
+        final int K = p.columns();
+
+        DenseDoubleMatrix2D A1P = new DenseDoubleMatrix2D(K, K);
+        q.zMult(q, A1P, 1.0, 0.0, true, false);
+        for (int k = 0; k < K; k++) {
+            A1P.setQuick(k, k, lambda + A1P.getQuick(k, k));
+        }
+        double[] gram = new double[K * K];
+        for (int k = 0; k < K; k++) {
+            for (int l = 0; l < K; l++) {
+                gram[k * K + l] = A1P.getQuick(k, l);
+            }
+        }
+
+        ThreadLocal<CGBuffers> buffers = ThreadLocal.withInitial(() -> new CGBuffers(K));
+
+        data.getUidxWithPreferences().parallel().forEach(uidx -> {
+            CGBuffers buf = buffers.get();
+            double[] x = buf.x;
+            double[] r = buf.r;
+            double[] d = buf.d;
+            double[] Ad = buf.Ad;
+
+            buf.n = 0;
+            Arrays.fill(r, 0.0);
+            data.forEachUidxPref(uidx, (iidx, rui) -> {
+                double cui = confidence.applyAsDouble(rui);
+                int offset = buf.add(q, iidx, cui - 1.0);
+                double[] qs = buf.qs;
+                for (int k = 0; k < K; k++) {
+                    r[k] += rui * cui * qs[offset + k];
+                }
+            });
+
+            for (int k = 0; k < K; k++) {
+                x[k] = p.getQuick(uidx, k);
+            }
+
+            // r = b - A x, d = r
+            multiply(gram, buf, x, Ad);
+            double rr = 0.0;
+            for (int k = 0; k < K; k++) {
+                r[k] -= Ad[k];
+                d[k] = r[k];
+                rr += r[k] * r[k];
+            }
+
+            for (int step = 0; step < cgSteps && rr > 1e-20; step++) {
+                multiply(gram, buf, d, Ad);
+                double dAd = 0.0;
+                for (int k = 0; k < K; k++) {
+                    dAd += d[k] * Ad[k];
+                }
+                double alpha = rr / dAd;
+                double rr1 = 0.0;
+                for (int k = 0; k < K; k++) {
+                    x[k] += alpha * d[k];
+                    r[k] -= alpha * Ad[k];
+                    rr1 += r[k] * r[k];
+                }
+                double beta = rr1 / rr;
+                for (int k = 0; k < K; k++) {
+                    d[k] = r[k] + beta * d[k];
+                }
+                rr = rr1;
+            }
+
+            for (int k = 0; k < K; k++) {
+                p.setQuick(uidx, k, x[k]);
+            }
+        });
+    }
+
+    /**
+     * Computes y = A v without materializing A = gram + sum_i w_i q_i q_i^T,
+     * where the sum runs over the preferences of the row.
+     */
+    private static void multiply(double[] gram, CGBuffers buf, double[] v, double[] y) {
+        final double[] qs = buf.qs;
+        final int K = v.length;
+        for (int k = 0; k < K; k++) {
+            double s = 0.0;
+            int offset = k * K;
+            for (int l = 0; l < K; l++) {
+                s += gram[offset + l] * v[l];
+            }
+            y[k] = s;
+        }
+        for (int j = 0; j < buf.n; j++) {
+            int offset = j * K;
+            double s = 0.0;
+            for (int k = 0; k < K; k++) {
+                s += qs[offset + k] * v[k];
+            }
+            s *= buf.ws[j];
+            for (int k = 0; k < K; k++) {
+                y[k] += s * qs[offset + k];
+            }
+        }
+    }
+
+    /**
+     * Per-thread vectors of the conjugate gradient solver and the preferences
+     * of the current row, with a copy of the rows of the opposite matrix they
+     * refer to, so that only the rows touched by the current row are read.
+     */
+    private static final class CGBuffers {
+
+        private final int K;
+        private final double[] x;
+        private final double[] r;
+        private final double[] d;
+        private final double[] Ad;
+        private double[] qs;
+        private double[] ws;
+        private int n;
+
+        CGBuffers(int K) {
+            this.K = K;
+            this.x = new double[K];
+            this.r = new double[K];
+            this.d = new double[K];
+            this.Ad = new double[K];
+            this.qs = new double[16 * K];
+            this.ws = new double[16];
+            this.n = 0;
+        }
+
+        /**
+         * Adds a preference of the current row and copies the corresponding
+         * row of the opposite matrix.
+         *
+         * @param q opposite matrix
+         * @param iidx index of the row of q
+         * @param w weight of the preference
+         * @return offset of the copy of the row in qs
+         */
+        int add(DoubleMatrix2D q, int iidx, double w) {
+            if (n == ws.length) {
+                ws = Arrays.copyOf(ws, 2 * n);
+                qs = Arrays.copyOf(qs, 2 * n * K);
+            }
+            int offset = n * K;
+            for (int k = 0; k < K; k++) {
+                qs[offset + k] = q.getQuick(iidx, k);
+            }
+            ws[n] = w;
+            n++;
+
+            return offset;
+        }
+    }
 }
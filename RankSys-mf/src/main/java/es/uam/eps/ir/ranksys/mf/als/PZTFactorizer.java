@@ -68,7 +68,7 @@ public class PZTFactorizer<U, I> extends ALSFactorizer<U, I> {
     }
 
     @Override
-    public double error(DenseDoubleMatrix2D p, DenseDoubleMatrix2D q, FastPreferenceData<U, I> data) {
+    public double error(DoubleMatrix2D p, DoubleMatrix2D q, FastPreferenceData<U, I> data) {
         // TODO: add regularization, unify with HKVFactorizer's error
         
         return data.getUidxWithPreferences().parallel().mapToDouble(uidx -> {
@@ -90,23 +90,23 @@ public class PZTFactorizer<U, I> extends ALSFactorizer<U, I> {
     }
 
     @Override
-    public void set_minP(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, FastPreferenceData<U, I> data) {
+    public void set_minP(final DoubleMatrix2D p, final DoubleMatrix2D q, FastPreferenceData<U, I> data) {
         set_min(p, q, confidence, lambdaP, data);
     }
 
     @Override
-    public void set_minQ(final DenseDoubleMatrix2D q, final DenseDoubleMatrix2D p, FastPreferenceData<U, I> data) {
+    public void set_minQ(final DoubleMatrix2D q, final DoubleMatrix2D p, FastPreferenceData<U, I> data) {
         set_min(q, p, confidence, lambdaQ, new TransposedPreferenceData<>(data));
     }
 
-    private static <U, I> void set_min(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, DoubleUnaryOperator confidence, double lambda, FastPreferenceData<U, I> data) {
+    private static <U, I> void set_min(final DoubleMatrix2D p, final DoubleMatrix2D q, DoubleUnaryOperator confidence, double lambda, FastPreferenceData<U, I> data) {
         DoubleMatrix2D gt = getGt(p, q, lambda);
 
         data.getUidxWithPreferences().parallel()
                 .forEach(uidx -> prepareRR1(1, p.viewRow(uidx), gt, q, data.numItems(uidx), data.getUidxPreferences(uidx), confidence, lambda));
     }
 
-    private static DoubleMatrix2D getGt(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, double lambda) {
+    private static DoubleMatrix2D getGt(final DoubleMatrix2D p, final DoubleMatrix2D q, double lambda) {
         final int K = p.columns();
 
         DenseDoubleMatrix2D A1 = new DenseDoubleMatrix2D(K, K);
@@ -11,7 +11,6 @@ package es.uam.eps.ir.ranksys.mf.plsa;
 import cern.colt.function.DoubleFunction;
 import cern.colt.matrix.DoubleMatrix1D;
 import cern.colt.matrix.DoubleMatrix2D;
-import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 
 import static cern.jet.math.Functions.identity;
 import static cern.jet.math.Functions.mult;
@@ -22,20 +21,18 @@ import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import org.ranksys.fast.preference.StreamsAbstractFastPreferenceData;
 import es.uam.eps.ir.ranksys.mf.Factorization;
 import es.uam.eps.ir.ranksys.mf.Factorizer;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 import static java.lang.Math.sqrt;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import org.ranksys.mf.matrix.FloatDenseMatrix2D;
+import org.ranksys.mf.train.FactorizationMonitor;
 
 /**
  * Probabilistic Latent Semantic Analysis of Hofmann.
@@ -51,20 +48,32 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
     private static final Logger LOG = Logger.getLogger(PLSAFactorizer.class.getName());
 
     private final int numIter;
+    private final boolean parallelMaximization;
 
     /**
-     * Constructor.
+     * Constructor with a parallel maximization step.
      *
      * @param numIter number of expectation-maximization steps
      */
     public PLSAFactorizer(int numIter) {
+        this(numIter, true);
+    }
+
+    /**
+     * Constructor. The parallel maximization step accumulates p(z|u) by user and p(i|z) by item in two lock-free passes over the preferences. The sequential one does a single pass on a single thread, which only pays off on one core.
+     *
+     * @param numIter number of expectation-maximization steps
+     * @param parallelMaximization whether the maximization step runs in parallel
+     */
+    public PLSAFactorizer(int numIter, boolean parallelMaximization) {
         this.numIter = numIter;
+        this.parallelMaximization = parallelMaximization;
     }
 
     @Override
     public double error(Factorization<U, I> factorization, FastPreferenceData<U, I> data) {
-        DenseDoubleMatrix2D pu_z = factorization.getUserMatrix();
-        DenseDoubleMatrix2D piz = factorization.getItemMatrix();
+        DoubleMatrix2D pu_z = factorization.getUserMatrix();
+        DoubleMatrix2D piz = factorization.getItemMatrix();
 
         return data.getUidxWithPreferences().parallel().mapToDouble(uidx -> {
             DoubleMatrix1D pU_z = pu_z.viewRow(uidx);
@@ -86,8 +95,21 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
 
     @Override
     public void factorize(Factorization<U, I> factorization, FastPreferenceData<U, I> data) {
-        DenseDoubleMatrix2D pu_z = factorization.getUserMatrix();
-        DenseDoubleMatrix2D piz = factorization.getItemMatrix();
+        factorize(factorization, data, (iter, f) -> false);
+    }
+
+    /**
+     * Calculates the factorization by using a previously generated matrix
+     * factorization, under the control of a monitor that can resume a
+     * previous training, checkpoint it or stop it early.
+     *
+     * @param factorization matrix factorization
+     * @param data preference data
+     * @param monitor training monitor
+     */
+    public void factorize(Factorization<U, I> factorization, FastPreferenceData<U, I> data, FactorizationMonitor<U, I> monitor) {
+        DoubleMatrix2D pu_z = factorization.getUserMatrix();
+        DoubleMatrix2D piz = factorization.getItemMatrix();
 
         IntSet uidxs = new IntOpenHashSet(data.getUidxWithPreferences().toArray());
         IntStream.range(0, pu_z.rows()).filter(uidx -> !uidxs.contains(uidx)).forEach(uidx -> pu_z.viewRow(uidx).assign(0.0));
@@ -99,7 +121,8 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
         normalizePuz(pu_z);
         normalizePiz(piz);
 
-        for (int t = 1; t <= numIter; t++) {
+        int t0 = monitor.resume(factorization);
+        for (int t = t0 + 1; t <= numIter; t++) {
             long time0 = System.nanoTime();
 
             expectation(pu_z, piz, plsaData);
@@ -110,6 +133,11 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
 
             LOG.log(Level.INFO, String.format("iteration n = %3d t = %.2fs", iter, time1 / 1_000_000_000.0));
             LOG.log(Level.FINE, () -> String.format("iteration n = %3d e = %.6f", iter, error(factorization, data)));
+
+            if (monitor.iteration(iter, factorization)) {
+                LOG.log(Level.INFO, String.format("stopping after iteration n = %3d", iter));
+                break;
+            }
         }
     }
 
@@ -120,60 +148,112 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
      * @param piz    matrix of p(i|z)
      * @param qzData PLSA preference data (variational probability Q(z))
      */
-    protected void expectation(final DenseDoubleMatrix2D pz_u, final DenseDoubleMatrix2D piz, PLSAPreferenceData<U, I> qzData) {
-        qzData.getUidxWithPreferences().parallel()
-                .forEach(uidx -> qzData.getUidxPreferences(uidx)
-                        .forEach(iqz -> {
-                            int iidx = iqz.v1;
-                            double[] qz = ((PLSAPreferenceData.PLSAIdxPref) iqz).qz;
-                            for (int z = 0; z < qz.length; z++) {
-                                qz[z] = piz.getQuick(iidx, z) * pz_u.getQuick(uidx, z);
-                            }
-                            normalizeQz(qz);
-                        }));
+    protected void expectation(final DoubleMatrix2D pz_u, final DoubleMatrix2D piz, PLSAPreferenceData<U, I> qzData) {
+        final FloatDenseMatrix2D qz = qzData.qz;
+        final int K = qz.columns();
+
+        qzData.getUidxWithPreferences().parallel().forEach(uidx -> {
+            double[] pz_U = pz_u.viewRow(uidx).toArray();
+            double[] qZ = new double[K];
+            float[] qzRow = new float[K];
+
+            for (int j = qzData.uOffsets[uidx]; j < qzData.uOffsets[uidx + 1]; j++) {
+                int iidx = qzData.iidxs[j];
+                double norm = 0;
+                for (int z = 0; z < K; z++) {
+                    qZ[z] = piz.getQuick(iidx, z) * pz_U[z];
+                    norm += qZ[z];
+                }
+                for (int z = 0; z < K; z++) {
+                    qzRow[z] = (float) (qZ[z] / norm);
+                }
+                qz.put((long) j * K, qzRow, 0, K);
+            }
+        });
     }
 
     /**
-     * Maximization step of the EM algorithm.
+     * Maximization step of the EM algorithm. By default the user and item
+     * matrices are accumulated in parallel in two passes, by user and by
+     * item, so that every thread writes to its own rows and no
+     * synchronization is needed. The sequential step accumulates them in a
+     * single pass by user.
      *
      * @param pu_z   matrix of p(z|u)
      * @param piz    matrix of p(i|z)
      * @param qzData PLSA preference data (variational probability Q(z))
      */
-    protected void maximization(DenseDoubleMatrix2D pu_z, final DenseDoubleMatrix2D piz, final PLSAPreferenceData<U, I> qzData) {
-        Int2ObjectMap<Lock> lockMap = new Int2ObjectOpenHashMap<>();
-        qzData.getIidxWithPreferences().forEach(iidx -> lockMap.put(iidx, new ReentrantLock()));
-
+    protected void maximization(DoubleMatrix2D pu_z, final DoubleMatrix2D piz, final PLSAPreferenceData<U, I> qzData) {
         pu_z.assign(0.0);
         piz.assign(0.0);
 
-        qzData.getUidxWithPreferences().parallel().forEach(uidx -> {
-            final DoubleMatrix1D pz_U = pu_z.viewRow(uidx);
+        if (parallelMaximization) {
+            parallelMaximization(pu_z, piz, qzData);
+        } else {
+            sequentialMaximization(pu_z, piz, qzData);
+        }
 
-            qzData.getUidxPreferences(uidx).forEach(iqz -> {
-                int iidx = iqz.v1;
-                double v = iqz.v2;
-                double[] qz = ((PLSAPreferenceData.PLSAIdxPref) iqz).qz;
-                Lock lock = lockMap.get(iidx);
+        normalizePuz(pu_z);
+        normalizePiz(piz);
+    }
 
-                for (int z = 0; z < qz.length; z++) {
-                    double r = qz[z] * v;
-                    pz_U.setQuick(z, pz_U.getQuick(z) + r);
+    private void sequentialMaximization(DoubleMatrix2D pu_z, final DoubleMatrix2D piz, final PLSAPreferenceData<U, I> qzData) {
+        final FloatDenseMatrix2D qz = qzData.qz;
+        final int K = qz.columns();
+        final float[] qzRow = new float[K];
+
+        qzData.getUidxWithPreferences().forEach(uidx -> {
+            double[] pz_U = new double[K];
+
+            for (int j = qzData.uOffsets[uidx]; j < qzData.uOffsets[uidx + 1]; j++) {
+                int iidx = qzData.iidxs[j];
+                double v = qzData.vs[j];
+                qz.get((long) j * K, qzRow, 0, K);
+                for (int z = 0; z < K; z++) {
+                    double r = qzRow[z] * v;
+                    pz_U[z] += r;
+                    piz.setQuick(iidx, z, piz.getQuick(iidx, z) + r);
                 }
-                lock.lock();
-                try {
-                    for (int z = 0; z < qz.length; z++) {
-                        double r = qz[z] * v;
-                        piz.setQuick(iidx, z, piz.getQuick(iidx, z) + r);
-                    }
-                } finally {
-                    lock.unlock();
+            }
+
+            pu_z.viewRow(uidx).assign(pz_U);
+        });
+    }
+
+    private void parallelMaximization(DoubleMatrix2D pu_z, final DoubleMatrix2D piz, final PLSAPreferenceData<U, I> qzData) {
+        final FloatDenseMatrix2D qz = qzData.qz;
+        final int K = qz.columns();
+
+        qzData.getUidxWithPreferences().parallel().forEach(uidx -> {
+            double[] pz_U = new double[K];
+            float[] qzRow = new float[K];
+
+            for (int j = qzData.uOffsets[uidx]; j < qzData.uOffsets[uidx + 1]; j++) {
+                double v = qzData.vs[j];
+                qz.get((long) j * K, qzRow, 0, K);
+                for (int z = 0; z < K; z++) {
+                    pz_U[z] += qzRow[z] * v;
                 }
-            });
+            }
+
+            pu_z.viewRow(uidx).assign(pz_U);
         });
 
-        normalizePuz(pu_z);
-        normalizePiz(piz);
+        qzData.getIidxWithPreferences().parallel().forEach(iidx -> {
+            double[] pI_z = new double[K];
+            float[] qzRow = new float[K];
+
+            for (int l = qzData.iOffsets[iidx]; l < qzData.iOffsets[iidx + 1]; l++) {
+                int j = qzData.iPrefs[l];
+                double v = qzData.vs[j];
+                qz.get((long) j * K, qzRow, 0, K);
+                for (int z = 0; z < K; z++) {
+                    pI_z[z] += qzRow[z] * v;
+                }
+            }
+
+            piz.viewRow(iidx).assign(pI_z);
+        });
     }
 
     /**
@@ -197,18 +277,14 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
         piz.assign(mult(1 / piz.aggregate(plus, identity)));
     }
 
-    private static void normalizeQz(double[] qz) {
-        double norm = 0;
-        for (double x : qz) {
-            norm += x;
-        }
-        for (int i = 0; i < qz.length; i++) {
-            qz[i] /= norm;
-        }
-    }
-
     /**
-     * PLSA preference data (variational probability Q(z))
+     * PLSA preference data (variational probability Q(z)). The preferences
+     * are stored by user in compressed sparse row arrays, and the variational
+     * probabilities in a single precision slab with one row per preference, in
+     * the same order, which is read and written a row at a time with bulk
+     * copies. The preferences of every item are kept as offsets into
+     * the user arrays, so that both steps of the EM algorithm are linear scans
+     * without hash lookups.
      *
      * @param <U> user type
      * @param <I> item type
@@ -216,7 +292,12 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
     protected static class PLSAPreferenceData<U, I> extends StreamsAbstractFastPreferenceData<U, I> {
 
         private final FastPreferenceData<U, I> data;
-        private final Long2ObjectOpenHashMap<double[]> qz;
+        private final int[] uOffsets;
+        private final int[] iidxs;
+        private final double[] vs;
+        private final int[] iOffsets;
+        private final int[] iPrefs;
+        private final FloatDenseMatrix2D qz;
 
         /**
          * Constructor.
@@ -227,19 +308,41 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
         PLSAPreferenceData(FastPreferenceData<U, I> data, int K) {
             super(data, data);
             this.data = data;
-            this.qz = new Long2ObjectOpenHashMap<>();
-            data.getUidxWithPreferences()
-                    .forEach(uidx -> data.getUidxPreferences(uidx)
-                            .forEach(pref -> putQz(uidx, pref.v1, new double[K])));
 
-        }
+            int numUsers = data.numUsers();
+            int numItems = data.numItems();
 
-        private double[] getQz(int uidx, int iidx) {
-            return qz.get(uidx * data.numItems() + iidx);
-        }
+            this.uOffsets = new int[numUsers + 1];
+            for (int uidx = 0; uidx < numUsers; uidx++) {
+                uOffsets[uidx + 1] = uOffsets[uidx] + data.numItems(uidx);
+            }
+            int numPrefs = uOffsets[numUsers];
+
+            this.iidxs = new int[numPrefs];
+            this.vs = new double[numPrefs];
+            data.getUidxWithPreferences().parallel().forEach(uidx -> {
+                int[] j = {uOffsets[uidx]};
+                data.forEachUidxPref(uidx, (iidx, v) -> {
+                    iidxs[j[0]] = iidx;
+                    vs[j[0]] = v;
+                    j[0]++;
+                });
+            });
+
+            this.iOffsets = new int[numItems + 1];
+            for (int j = 0; j < numPrefs; j++) {
+                iOffsets[iidxs[j] + 1]++;
+            }
+            for (int iidx = 0; iidx < numItems; iidx++) {
+                iOffsets[iidx + 1] += iOffsets[iidx];
+            }
+            this.iPrefs = new int[numPrefs];
+            int[] next = Arrays.copyOf(iOffsets, numItems);
+            for (int j = 0; j < numPrefs; j++) {
+                iPrefs[next[iidxs[j]]++] = j;
+            }
 
-        private double[] putQz(int uidx, int iidx, double[] v) {
-            return qz.put(uidx * data.numItems() + iidx, v);
+            this.qz = FloatDenseMatrix2D.heap(numPrefs, K);
         }
 
         @Override
@@ -263,44 +366,18 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
         }
 
         @Override
-        public Stream<IdxPref> getUidxPreferences(int uidx) {
-            return data.getUidxPreferences(uidx)
-                    .map(pref -> new PLSAIdxPref(pref.v1, pref.v2, getQz(uidx, pref.v1)));
+        public Stream<? extends IdxPref> getUidxPreferences(int uidx) {
+            return data.getUidxPreferences(uidx);
         }
 
         @Override
-        public Stream<IdxPref> getIidxPreferences(int iidx) {
-            return data.getIidxPreferences(iidx)
-                    .map(pref -> new PLSAIdxPref(pref.v1, pref.v2, getQz(pref.v1, iidx)));
+        public Stream<? extends IdxPref> getIidxPreferences(int iidx) {
+            return data.getIidxPreferences(iidx);
         }
 
         @Override
         public int numPreferences() {
             return data.numPreferences();
         }
-
-        /**
-         * PLSA preference data by index.
-         */
-        private class PLSAIdxPref extends IdxPref {
-
-            /**
-             * Variational probabilities Q(z)
-             */
-            private final double[] qz;
-
-            /**
-             * Constructor.
-             *
-             * @param idx   index
-             * @param value value
-             * @param qz    variational probabilities values
-             */
-            PLSAIdxPref(int idx, double value, double[] qz) {
-                super(idx, value);
-                this.qz = qz;
-            }
-
-        }
     }
 }
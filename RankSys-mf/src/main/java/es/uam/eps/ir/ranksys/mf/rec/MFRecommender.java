@@ -9,34 +9,47 @@
 package es.uam.eps.ir.ranksys.mf.rec;
 
 import cern.colt.matrix.DoubleMatrix1D;
-import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.DoubleMatrix2D;
 import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
-import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.fast.utils.topn.PrimitiveIntDoubleTopN;
 import es.uam.eps.ir.ranksys.rec.fast.AbstractFastRecommender;
+import es.uam.eps.ir.ranksys.rec.fast.FastBatchRecommender;
 import es.uam.eps.ir.ranksys.mf.Factorization;
 import static java.lang.Math.min;
 import java.util.ArrayList;
+import java.util.Arrays;
 import static java.util.Comparator.comparingDouble;
 import java.util.List;
+import java.util.function.IntFunction;
 import java.util.function.IntPredicate;
 import static java.util.stream.Collectors.toList;
 import java.util.stream.IntStream;
 import org.ranksys.core.util.tuples.Tuple2id;
 import static org.ranksys.core.util.tuples.Tuples.tuple;
+import org.ranksys.mf.ann.HNSWIndex;
 
 /**
  * Matrix factorization recommender. Scores are calculated as the inner product of user and item vectors.
+ * <br>
+ * Optionally, an approximate inner product index over the item vectors can be used to retrieve candidate items, which are then re-scored exactly, instead of scoring all the items.
+ * <br>
+ * Recommendations for blocks of users are computed by multiplying the matrix of their vectors by tiles of the item matrix, so that each tile is reused for all users while it is in cache.
  *
  * @author Saúl Vargas (saul.vargas@uam.es)
  *
  * @param <U> type of the users
  * @param <I> type of the items
  */
-public class MFRecommender<U, I> extends AbstractFastRecommender<U, I> {
+public class MFRecommender<U, I> extends AbstractFastRecommender<U, I> implements FastBatchRecommender<U, I> {
+
+    private static final int TILE_SIZE = 512;
 
     private final Factorization<U, I> factorization;
+    private final HNSWIndex index;
+    private final int ef;
+    private final ThreadLocal<PrimitiveIntDoubleTopN[]> heaps;
 
     /**
      * Constructor.
@@ -46,8 +59,24 @@ public class MFRecommender<U, I> extends AbstractFastRecommender<U, I> {
      * @param factorization matrix factorization
      */
     public MFRecommender(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, Factorization<U, I> factorization) {
+        this(uIndex, iIndex, factorization, null, 0);
+    }
+
+    /**
+     * Constructor with approximate retrieval of candidate items. For each recommendation, max(ef, maxLength) candidates are retrieved from the index before filtering, so ef should be large enough to leave maxLength items after removing those excluded by the filter.
+     *
+     * @param uIndex fast user index
+     * @param iIndex fast item index
+     * @param factorization matrix factorization
+     * @param index inner product index over the item matrix of the factorization, or null for exact scoring of all items
+     * @param ef number of candidates to retrieve from the index
+     */
+    public MFRecommender(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, Factorization<U, I> factorization, HNSWIndex index, int ef) {
         super(uIndex, iIndex);
         this.factorization = factorization;
+        this.index = index;
+        this.ef = ef;
+        this.heaps = ThreadLocal.withInitial(() -> new PrimitiveIntDoubleTopN[0]);
     }
 
     @Override
@@ -59,23 +88,165 @@ public class MFRecommender<U, I> extends AbstractFastRecommender<U, I> {
             return new FastRecommendation(uidx, new ArrayList<>());
         }
 
-        IntDoubleTopN topN = new IntDoubleTopN(min(maxLength, factorization.numItems()));
+        PrimitiveIntDoubleTopN topN = heaps(1)[0];
+        topN.reset(min(maxLength, factorization.numItems()));
 
-        DoubleMatrix1D r = factorization.getItemMatrix().zMult(pu, null);
-        for (int iidx = 0; iidx < r.size(); iidx++) {
-            if (filter.test(iidx)) {
-                topN.add(iidx, r.getQuick(iidx));
+        if (index != null) {
+            DoubleMatrix2D q = factorization.getItemMatrix();
+            for (int iidx : index.search(pu, Math.max(ef, maxLength))) {
+                if (filter.test(iidx)) {
+                    topN.add(iidx, q.viewRow(iidx).zDotProduct(pu));
+                }
+            }
+        } else {
+            DoubleMatrix1D r = factorization.getItemMatrix().zMult(pu, null);
+            for (int iidx = 0; iidx < r.size(); iidx++) {
+                double s = r.getQuick(iidx);
+                if (s >= topN.threshold() && filter.test(iidx)) {
+                    topN.add(iidx, s);
+                }
             }
         }
 
         topN.sort();
 
-        List<Tuple2id> items = topN.reverseStream()
+        List<Tuple2id> items = topN.stream()
                 .collect(toList());
 
         return new FastRecommendation(uidx, items);
     }
 
+    @Override
+    public List<FastRecommendation> getRecommendations(int[] uidxs, int maxLength, IntFunction<IntPredicate> filters) {
+        if (index != null) {
+            List<FastRecommendation> recs = new ArrayList<>(uidxs.length);
+            for (int uidx : uidxs) {
+                recs.add(getRecommendation(uidx, maxLength, filters.apply(uidx)));
+            }
+            return recs;
+        }
+
+        DoubleMatrix2D q = factorization.getItemMatrix();
+        int numItems = q.rows();
+        int K = q.columns();
+
+        int[] rows = new int[uidxs.length];
+        int numRows = 0;
+        for (int b = 0; b < uidxs.length; b++) {
+            rows[b] = factorization.getUserVector(uidx2user(uidxs[b])) == null ? -1 : numRows++;
+        }
+
+        double[] p = new double[numRows * K];
+        PrimitiveIntDoubleTopN[] topNs = heaps(numRows);
+        IntPredicate[] rowFilters = new IntPredicate[numRows];
+        for (int b = 0; b < uidxs.length; b++) {
+            int r = rows[b];
+            if (r >= 0) {
+                DoubleMatrix1D pu = factorization.getUserVector(uidx2user(uidxs[b]));
+                for (int k = 0; k < K; k++) {
+                    p[r * K + k] = pu.getQuick(k);
+                }
+                topNs[r].reset(min(maxLength, numItems));
+                rowFilters[r] = filters.apply(uidxs[b]);
+            }
+        }
+
+        double[] tile = new double[TILE_SIZE * K];
+        double[] scores = new double[numRows * TILE_SIZE];
+        for (int from = 0; from < numItems && numRows > 0; from += TILE_SIZE) {
+            int size = min(TILE_SIZE, numItems - from);
+            for (int j = 0; j < size; j++) {
+                for (int k = 0; k < K; k++) {
+                    tile[j * K + k] = q.getQuick(from + j, k);
+                }
+            }
+            multiply(p, numRows, tile, size, K, scores);
+
+            for (int r = 0; r < numRows; r++) {
+                PrimitiveIntDoubleTopN topN = topNs[r];
+                IntPredicate filter = rowFilters[r];
+                for (int j = 0; j < size; j++) {
+                    double v = scores[r * TILE_SIZE + j];
+                    if (v >= topN.threshold() && filter.test(from + j)) {
+                        topN.add(from + j, v);
+                    }
+                }
+            }
+        }
+
+        List<FastRecommendation> recs = new ArrayList<>(uidxs.length);
+        for (int b = 0; b < uidxs.length; b++) {
+            if (rows[b] < 0) {
+                recs.add(new FastRecommendation(uidxs[b], new ArrayList<>()));
+            } else {
+                PrimitiveIntDoubleTopN topN = topNs[rows[b]];
+                topN.sort();
+                recs.add(new FastRecommendation(uidxs[b], topN.stream().collect(toList())));
+            }
+        }
+
+        return recs;
+    }
+
+    /**
+     * Returns at least n heaps of the current thread, which are re-used between calls.
+     */
+    private PrimitiveIntDoubleTopN[] heaps(int n) {
+        PrimitiveIntDoubleTopN[] topNs = heaps.get();
+        if (topNs.length < n) {
+            int length = topNs.length;
+            topNs = Arrays.copyOf(topNs, n);
+            for (int r = length; r < n; r++) {
+                topNs[r] = new PrimitiveIntDoubleTopN(0);
+            }
+            heaps.set(topNs);
+        }
+
+        return topNs;
+    }
+
+    /**
+     * Multiplies a block of user vectors by a tile of item vectors, both stored by rows. Four users are processed at once so that each item value loaded is used four times.
+     */
+    private static void multiply(double[] p, int numRows, double[] tile, int size, int K, double[] scores) {
+        int r = 0;
+        for (; r + 4 <= numRows; r += 4) {
+            int p0 = r * K;
+            int p1 = p0 + K;
+            int p2 = p1 + K;
+            int p3 = p2 + K;
+            for (int j = 0; j < size; j++) {
+                int t = j * K;
+                double s0 = 0.0;
+                double s1 = 0.0;
+                double s2 = 0.0;
+                double s3 = 0.0;
+                for (int k = 0; k < K; k++) {
+                    double v = tile[t + k];
+                    s0 += p[p0 + k] * v;
+                    s1 += p[p1 + k] * v;
+                    s2 += p[p2 + k] * v;
+                    s3 += p[p3 + k] * v;
+                }
+                scores[r * TILE_SIZE + j] = s0;
+                scores[(r + 1) * TILE_SIZE + j] = s1;
+                scores[(r + 2) * TILE_SIZE + j] = s2;
+                scores[(r + 3) * TILE_SIZE + j] = s3;
+            }
+        }
+        for (; r < numRows; r++) {
+            int p0 = r * K;
+            for (int j = 0; j < size; j++) {
+                int t = j * K;
+                double s0 = 0.0;
+                for (int k = 0; k < K; k++) {
+                    s0 += p[p0 + k] * tile[t + k];
+                }
+                scores[r * TILE_SIZE + j] = s0;
+            }
+        }
+    }
+
     @Override
     public FastRecommendation getRecommendation(int uidx, IntStream candidates) {
         DoubleMatrix1D pu;
@@ -85,7 +256,7 @@ public class MFRecommender<U, I> extends AbstractFastRecommender<U, I> {
             return new FastRecommendation(uidx, new ArrayList<>());
         }
         
-        DenseDoubleMatrix2D q = factorization.getItemMatrix();
+        DoubleMatrix2D q = factorization.getItemMatrix();
         
         List<Tuple2id> items = candidates
                 .mapToObj(iidx -> tuple(iidx, q.viewRow(iidx).zDotProduct(pu)))
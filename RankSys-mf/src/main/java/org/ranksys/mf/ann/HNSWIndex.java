@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.ann;
+
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.utils.topn.PrimitiveIntDoubleTopN;
+import java.util.Arrays;
+import java.util.Random;
+import org.ranksys.mf.matrix.FloatDenseMatrix2D;
+
+/**
+ * Hierarchical navigable small world (HNSW) graph for approximate maximum inner product search over the rows of an item matrix, such as that of a {@link es.uam.eps.ir.ranksys.mf.Factorization}.
+ * <br>
+ * Inner product search is reduced to nearest neighbour search by appending to every item vector an extra coordinate that makes all their norms equal to the maximum one; the query gets a zero in that coordinate, so inner products with the query are unchanged. Vectors are stored as floats in a {@link FloatDenseMatrix2D}, which is addressed with long offsets and can thus exceed 2^31 cells, so scores of the returned items should be re-computed exactly by the caller if needed.
+ * <br>
+ * The graph is built sequentially and deterministically for a given seed. Searches are thread-safe. Recall and latency are controlled by the maximum number of links per node (m), the size of the candidate lists during construction (efConstruction) and during search (ef).
+ * <br>
+ * Malkov, Y.A., Yashunin, D.A. Efficient and robust approximate nearest neighbor search using Hierarchical Navigable Small World graphs. arXiv:1603.09320.
+ * <br>
+ * Bachrach, Y., et al. Speeding up the Xbox recommender system using a Euclidean transformation for inner-product spaces. RecSys 2014.
+ *
+ * @author agent (agent@local)
+ */
+public class HNSWIndex {
+
+    private final int numItems;
+    private final int stride;
+    private final FloatDenseMatrix2D vectors;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int[][][] links;
+    private int entryPoint;
+    private int maxLevel;
+    private final ThreadLocal<Searcher> searchers;
+
+    /**
+     * Constructor with 16 links per node, 200 candidates during construction and seed 1.
+     *
+     * @param itemMatrix item matrix, one row per item
+     */
+    public HNSWIndex(DoubleMatrix2D itemMatrix) {
+        this(itemMatrix, 16, 200, 1L);
+    }
+
+    /**
+     * Constructor. Builds the graph.
+     *
+     * @param itemMatrix item matrix, one row per item
+     * @param m maximum number of links per node in the upper layers, twice as many in the bottom one
+     * @param efConstruction size of the candidate lists during construction
+     * @param seed seed for the random levels of the nodes
+     */
+    public HNSWIndex(DoubleMatrix2D itemMatrix, int m, int efConstruction, long seed) {
+        this.numItems = itemMatrix.rows();
+        this.stride = itemMatrix.columns() + 1;
+        this.vectors = FloatDenseMatrix2D.heap(numItems, stride);
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.links = new int[numItems][][];
+        this.entryPoint = -1;
+        this.maxLevel = -1;
+        this.searchers = ThreadLocal.withInitial(() -> new Searcher(numItems, Math.max(efConstruction, maxM0 + 1)));
+
+        double[] norm2 = new double[numItems];
+        double maxNorm2 = 0.0;
+        float[] row = new float[stride];
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            for (int k = 0; k < stride - 1; k++) {
+                double v = itemMatrix.getQuick(iidx, k);
+                row[k] = (float) v;
+                norm2[iidx] += v * v;
+            }
+            vectors.put((long) iidx * stride, row, 0, stride - 1);
+            maxNorm2 = Math.max(maxNorm2, norm2[iidx]);
+        }
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            vectors.setQuick(iidx, stride - 1, Math.sqrt(maxNorm2 - norm2[iidx]));
+        }
+
+        Random rnd = new Random(seed);
+        double mL = 1 / Math.log(Math.max(m, 2));
+        Searcher searcher = searchers.get();
+        double[] q = new double[stride];
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            int level = (int) (-Math.log(1.0 - rnd.nextDouble()) * mL);
+            vectors.get((long) iidx * stride, row, 0, stride);
+            for (int k = 0; k < stride; k++) {
+                q[k] = row[k];
+            }
+            insert(iidx, level, q, searcher);
+        }
+    }
+
+    /**
+     * Returns the number of items in the index.
+     *
+     * @return number of items
+     */
+    public int numItems() {
+        return numItems;
+    }
+
+    /**
+     * Searches the items with highest inner product with a query vector.
+     *
+     * @param qv query vector, such as a user vector
+     * @param ef size of the candidate list, and maximum number of items returned
+     * @return indices of the approximate ef items with highest inner product, in no particular order
+     */
+    public int[] search(DoubleMatrix1D qv, int ef) {
+        if (entryPoint < 0 || ef <= 0) {
+            return new int[0];
+        }
+
+        double[] q = new double[stride];
+        for (int k = 0; k < stride - 1; k++) {
+            q[k] = qv.getQuick(k);
+        }
+
+        Searcher searcher = searchers.get();
+        int ep = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            ep = searcher.greedy(q, ep, level);
+        }
+        PrimitiveIntDoubleTopN results = searcher.searchLayer(q, ep, ef, 0);
+
+        return Arrays.copyOf(results.getKeys(), results.size());
+    }
+
+    private void insert(int node, int level, double[] q, Searcher searcher) {
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxM(l) + 1];
+        }
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = searcher.greedy(q, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            PrimitiveIntDoubleTopN results = searcher.searchLayer(q, ep, efConstruction, l);
+            results.sort();
+            ep = results.getKeyAt(0);
+
+            int[] neighbors = links[node][l];
+            neighbors[0] = select(results.getKeys(), results.getValues(), results.size(), m, neighbors, searcher);
+            for (int i = 1; i <= neighbors[0]; i++) {
+                connect(neighbors[i], node, l, searcher);
+            }
+        }
+
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    private void connect(int node, int neighbor, int level, Searcher searcher) {
+        int[] neighbors = links[node][level];
+        int maxM = maxM(level);
+        if (neighbors[0] < maxM) {
+            neighbors[++neighbors[0]] = neighbor;
+            return;
+        }
+
+        PrimitiveIntDoubleTopN candidates = searcher.candidates;
+        candidates.reset(maxM + 1);
+        candidates.add(neighbor, searcher.sim(node, neighbor));
+        for (int i = 1; i <= neighbors[0]; i++) {
+            candidates.add(neighbors[i], searcher.sim(node, neighbors[i]));
+        }
+        candidates.sort();
+        neighbors[0] = select(candidates.getKeys(), candidates.getValues(), candidates.size(), maxM, neighbors, searcher);
+    }
+
+    /**
+     * Neighbor selection heuristic: a candidate, in decreasing order of similarity with the base node, is discarded when it is more similar to an already selected neighbor than to the base node. Discarded candidates fill the remaining links, if any.
+     */
+    private int select(int[] ids, double[] sims, int size, int maxM, int[] out, Searcher searcher) {
+        int[] discarded = searcher.discarded;
+        int numSelected = 0;
+        int numDiscarded = 0;
+        for (int i = 0; i < size && numSelected < maxM; i++) {
+            int c = ids[i];
+            boolean good = true;
+            for (int j = 1; j <= numSelected; j++) {
+                if (searcher.sim(c, out[j]) > sims[i]) {
+                    good = false;
+                    break;
+                }
+            }
+            if (good) {
+                out[++numSelected] = c;
+            } else {
+                discarded[numDiscarded++] = c;
+            }
+        }
+        for (int i = 0; i < numDiscarded && numSelected < maxM; i++) {
+            out[++numSelected] = discarded[i];
+        }
+
+        return numSelected;
+    }
+
+    private int maxM(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    /**
+     * Per-thread search state: visited marks, a max-heap of candidates to expand, the bounded list of results and buffers for the vectors being compared.
+     */
+    private final class Searcher {
+
+        private final int[] visited;
+        private int epoch;
+        private int[] heapIds;
+        private double[] heapSims;
+        private int heapSize;
+        private final PrimitiveIntDoubleTopN results;
+        private final PrimitiveIntDoubleTopN candidates;
+        private final int[] discarded;
+        private final float[] row1;
+        private final float[] row2;
+
+        Searcher(int n, int capacity) {
+            this.visited = new int[n];
+            this.epoch = 0;
+            this.heapIds = new int[capacity];
+            this.heapSims = new double[capacity];
+            this.heapSize = 0;
+            this.results = new PrimitiveIntDoubleTopN(capacity);
+            this.candidates = new PrimitiveIntDoubleTopN(maxM0 + 1);
+            this.discarded = new int[Math.max(efConstruction, maxM0 + 1)];
+            this.row1 = new float[stride];
+            this.row2 = new float[stride];
+        }
+
+        double sim(double[] q, int node) {
+            vectors.get((long) node * stride, row1, 0, stride);
+            double s = 0.0;
+            for (int k = 0; k < stride; k++) {
+                s += q[k] * row1[k];
+            }
+
+            return s;
+        }
+
+        double sim(int node1, int node2) {
+            vectors.get((long) node1 * stride, row1, 0, stride);
+            vectors.get((long) node2 * stride, row2, 0, stride);
+            double s = 0.0;
+            for (int k = 0; k < stride; k++) {
+                s += row1[k] * row2[k];
+            }
+
+            return s;
+        }
+
+        int greedy(double[] q, int ep, int level) {
+            PrimitiveIntDoubleTopN best = searchLayer(q, ep, 1, level);
+
+            return best.getKeyAt(0);
+        }
+
+        PrimitiveIntDoubleTopN searchLayer(double[] q, int ep, int ef, int level) {
+            if (++epoch == 0) {
+                Arrays.fill(visited, 0);
+                epoch = 1;
+            }
+
+            results.reset(ef);
+            heapSize = 0;
+
+            visited[ep] = epoch;
+            double s = sim(q, ep);
+            results.add(ep, s);
+            push(ep, s);
+
+            while (heapSize > 0) {
+                if (heapSims[0] < results.threshold()) {
+                    break;
+                }
+                int c = pop();
+                int[] neighbors = links[c][level];
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    int e = neighbors[i];
+                    if (visited[e] != epoch) {
+                        visited[e] = epoch;
+                        double se = sim(q, e);
+                        if (results.add(e, se)) {
+                            push(e, se);
+                        }
+                    }
+                }
+            }
+
+            return results;
+        }
+
+        private void push(int id, double sim) {
+            if (heapSize == heapIds.length) {
+                heapIds = Arrays.copyOf(heapIds, 2 * heapSize);
+                heapSims = Arrays.copyOf(heapSims, 2 * heapSize);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int p = (i - 1) / 2;
+                if (heapSims[p] >= sim) {
+                    break;
+                }
+                heapIds[i] = heapIds[p];
+                heapSims[i] = heapSims[p];
+                i = p;
+            }
+            heapIds[i] = id;
+            heapSims[i] = sim;
+        }
+
+        private int pop() {
+            int top = heapIds[0];
+            int id = heapIds[--heapSize];
+            double sim = heapSims[heapSize];
+            int i = 0;
+            while (true) {
+                int l = 2 * i + 1;
+                if (l >= heapSize) {
+                    break;
+                }
+                int r = l + 1;
+                int c = r < heapSize && heapSims[r] > heapSims[l] ? r : l;
+                if (heapSims[c] <= sim) {
+                    break;
+                }
+                heapIds[i] = heapIds[c];
+                heapSims[i] = heapSims[c];
+                i = c;
+            }
+            heapIds[i] = id;
+            heapSims[i] = sim;
+
+            return top;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.matrix;
+
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.AbstractMatrix1D;
+import cern.colt.matrix.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+
+/**
+ * Row or column view of a {@link FloatDenseMatrix2D}.
+ *
+ * @author agent (agent@local)
+ */
+class FloatDenseMatrix1D extends DoubleMatrix1D {
+
+    private final FloatStorage storage;
+    private long base;
+
+    FloatDenseMatrix1D(FloatStorage storage, long base, int size, int stride) {
+        this.storage = storage;
+        this.base = base;
+        setUp(size, 0, stride);
+    }
+
+    private long offset(int index) {
+        return base + zero + (long) index * stride;
+    }
+
+    @Override
+    public double getQuick(int index) {
+        return storage.get(offset(index));
+    }
+
+    @Override
+    public void setQuick(int index, double value) {
+        storage.set(offset(index), (float) value);
+    }
+
+    @Override
+    protected AbstractMatrix1D vPart(int index, int width) {
+        checkRange(index, width);
+        base += (long) index * stride;
+        size = width;
+        isNoView = false;
+
+        return this;
+    }
+
+    @Override
+    protected AbstractMatrix1D vFlip() {
+        if (size > 0) {
+            base += (long) (size - 1) * stride;
+            stride = -stride;
+            isNoView = false;
+        }
+
+        return this;
+    }
+
+    @Override
+    public DoubleMatrix1D like(int size) {
+        return new DenseDoubleMatrix1D(size);
+    }
+
+    @Override
+    public DoubleMatrix2D like2D(int rows, int columns) {
+        return new DenseDoubleMatrix2D(rows, columns);
+    }
+
+    @Override
+    protected DoubleMatrix1D viewSelectionLike(int[] offsets) {
+        throw new UnsupportedOperationException("selection views are not supported");
+    }
+}
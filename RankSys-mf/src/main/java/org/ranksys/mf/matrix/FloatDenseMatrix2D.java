@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.matrix;
+
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.AbstractMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Dense colt matrix that stores its cells as single precision floats in row-major order, halving the memory of {@link DenseDoubleMatrix2D}. The storage can be on the heap, off-heap in direct buffers or in a memory-mapped file, in which case the matrix is paged in on demand and can exceed the available heap. Values are converted to and from doubles on access, so it can be used wherever a DoubleMatrix2D is expected, such as in the factorizers.
+ * <br>
+ * Rows and columns can be viewed as usual, but selection views are not supported. New matrices created by this one (like, like1D) are double precision dense matrices.
+ * <br>
+ * The number of cells can exceed 2^31 - 1: cells are addressed with long offsets, including those of row, column and part views, so that the only limit is that of each dimension. Colt methods that compute with the number of cells as an int, such as {@link #size()} or {@link #toArray()}, are not meaningful for such matrices.
+ *
+ * @author agent (agent@local)
+ */
+public class FloatDenseMatrix2D extends DoubleMatrix2D {
+
+    private final FloatStorage storage;
+    private long base;
+
+    private FloatDenseMatrix2D(FloatStorage storage, long base, int rows, int columns) {
+        this.storage = storage;
+        this.base = base;
+        // not setUp(rows, columns), which rejects matrices of more than 2^31 - 1 cells
+        this.rows = rows;
+        this.columns = columns;
+        this.rowZero = 0;
+        this.columnZero = 0;
+        this.rowStride = columns;
+        this.columnStride = 1;
+        this.isNoView = true;
+    }
+
+    private static long cells(int rows, int columns) {
+        if (rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("negative size");
+        }
+
+        return (long) rows * columns;
+    }
+
+    /**
+     * Creates a matrix on the heap.
+     *
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return matrix of zeros
+     */
+    public static FloatDenseMatrix2D heap(int rows, int columns) {
+        return new FloatDenseMatrix2D(FloatStorage.heap(cells(rows, columns)), 0L, rows, columns);
+    }
+
+    /**
+     * Creates a matrix in direct (off-heap) memory.
+     *
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return matrix of zeros
+     */
+    public static FloatDenseMatrix2D direct(int rows, int columns) {
+        return new FloatDenseMatrix2D(FloatStorage.direct(cells(rows, columns)), 0L, rows, columns);
+    }
+
+    /**
+     * Maps a matrix from a file, where it is stored in row-major order as little-endian floats.
+     *
+     * @param channel file channel
+     * @param mode mapping mode, READ_ONLY for matrices that are not going to be modified
+     * @param position position in the file of the first cell
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return matrix backed by the file
+     * @throws IOException when the file cannot be mapped
+     */
+    public static FloatDenseMatrix2D map(FileChannel channel, FileChannel.MapMode mode, long position, int rows, int columns) throws IOException {
+        return new FloatDenseMatrix2D(FloatStorage.map(channel, mode, position, cells(rows, columns)), 0L, rows, columns);
+    }
+
+    private long offset(int row, int column) {
+        return base + rowZero + (long) row * rowStride + columnZero + (long) column * columnStride;
+    }
+
+    /**
+     * Copies floats in bulk into consecutive cells of the matrix in row-major order, as when loading it. Views are not supported.
+     *
+     * @param cell index of the first cell, row * columns() + column
+     * @param src floats to be copied, which are consumed
+     */
+    public void put(long cell, FloatBuffer src) {
+        if (!isNoView) {
+            throw new UnsupportedOperationException("bulk copies into views are not supported");
+        }
+        storage.put(base + cell, src);
+    }
+
+    /**
+     * Copies floats in bulk from consecutive cells of the matrix in row-major order, such as one or several whole rows, without converting them to doubles. Views are not supported.
+     *
+     * @param cell index of the first cell, row * columns() + column
+     * @param dst destination array
+     * @param offset offset in the destination array
+     * @param length number of cells to be copied
+     */
+    public void get(long cell, float[] dst, int offset, int length) {
+        if (!isNoView) {
+            throw new UnsupportedOperationException("bulk copies from views are not supported");
+        }
+        storage.get(base + cell, dst, offset, length);
+    }
+
+    /**
+     * Copies floats in bulk into consecutive cells of the matrix in row-major order, such as one or several whole rows. Views are not supported.
+     *
+     * @param cell index of the first cell, row * columns() + column
+     * @param src source array
+     * @param offset offset in the source array
+     * @param length number of cells to be copied
+     */
+    public void put(long cell, float[] src, int offset, int length) {
+        if (!isNoView) {
+            throw new UnsupportedOperationException("bulk copies into views are not supported");
+        }
+        storage.put(base + cell, src, offset, length);
+    }
+
+    @Override
+    public double getQuick(int row, int column) {
+        return storage.get(offset(row, column));
+    }
+
+    @Override
+    public void setQuick(int row, int column, double value) {
+        storage.set(offset(row, column), (float) value);
+    }
+
+    @Override
+    public DoubleMatrix1D viewRow(int row) {
+        checkRow(row);
+
+        return new FloatDenseMatrix1D(storage, offset(row, 0), columns, columnStride);
+    }
+
+    @Override
+    public DoubleMatrix1D viewColumn(int column) {
+        checkColumn(column);
+
+        return new FloatDenseMatrix1D(storage, offset(0, column), rows, rowStride);
+    }
+
+    @Override
+    protected AbstractMatrix2D vPart(int row, int column, int height, int width) {
+        checkBox(row, column, height, width);
+        base += (long) row * rowStride + (long) column * columnStride;
+        rows = height;
+        columns = width;
+        isNoView = false;
+
+        return this;
+    }
+
+    @Override
+    protected AbstractMatrix2D vRowFlip() {
+        if (rows > 0) {
+            base += (long) (rows - 1) * rowStride;
+            rowStride = -rowStride;
+            isNoView = false;
+        }
+
+        return this;
+    }
+
+    @Override
+    protected AbstractMatrix2D vColumnFlip() {
+        if (columns > 0) {
+            base += (long) (columns - 1) * columnStride;
+            columnStride = -columnStride;
+            isNoView = false;
+        }
+
+        return this;
+    }
+
+    @Override
+    public DoubleMatrix2D like(int rows, int columns) {
+        return new DenseDoubleMatrix2D(rows, columns);
+    }
+
+    @Override
+    public DoubleMatrix1D like1D(int size) {
+        return new DenseDoubleMatrix1D(size);
+    }
+
+    @Override
+    protected DoubleMatrix1D like1D(int size, int zero, int stride) {
+        return new FloatDenseMatrix1D(storage, base + zero, size, stride);
+    }
+
+    @Override
+    protected DoubleMatrix2D viewSelectionLike(int[] rowOffsets, int[] columnOffsets) {
+        throw new UnsupportedOperationException("selection views are not supported");
+    }
+
+    @Override
+    public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, double alpha, double beta, boolean transposeA) {
+        if (transposeA) {
+            return super.zMult(y, z, alpha, beta, transposeA);
+        }
+        if (z == null) {
+            z = new DenseDoubleMatrix1D(rows);
+            beta = 0.0;
+        }
+        if (columns != y.size() || rows > z.size()) {
+            throw new IllegalArgumentException("Incompatible args: " + toStringShort() + ", " + y.toStringShort() + ", " + z.toStringShort());
+        }
+
+        double[] ya = y.toArray();
+        for (int row = 0; row < rows; row++) {
+            long offset = offset(row, 0);
+            double s = 0.0;
+            for (int column = 0; column < columns; column++) {
+                s += storage.get(offset + (long) column * columnStride) * ya[column];
+            }
+            z.setQuick(row, alpha * s + beta * z.getQuick(row));
+        }
+
+        return z;
+    }
+}
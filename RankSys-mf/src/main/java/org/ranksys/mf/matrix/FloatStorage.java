@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.matrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Array of floats split into chunks of float buffers, so that it can hold more than 2^31 values and be backed by the heap, direct memory or a memory-mapped file.
+ *
+ * @author agent (agent@local)
+ */
+class FloatStorage {
+
+    private static final int CHUNK_BITS = 28;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final FloatBuffer[] chunks;
+
+    private FloatStorage(FloatBuffer[] chunks) {
+        this.chunks = chunks;
+    }
+
+    static FloatStorage heap(long n) {
+        FloatBuffer[] chunks = new FloatBuffer[numChunks(n)];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = FloatBuffer.wrap(new float[chunkLength(n, c)]);
+        }
+
+        return new FloatStorage(chunks);
+    }
+
+    static FloatStorage direct(long n) {
+        FloatBuffer[] chunks = new FloatBuffer[numChunks(n)];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = ByteBuffer.allocateDirect(chunkLength(n, c) * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+
+        return new FloatStorage(chunks);
+    }
+
+    static FloatStorage map(FileChannel channel, FileChannel.MapMode mode, long position, long n) throws IOException {
+        FloatBuffer[] chunks = new FloatBuffer[numChunks(n)];
+        for (int c = 0; c < chunks.length; c++) {
+            long start = position + ((long) c << CHUNK_BITS) * Float.BYTES;
+            chunks[c] = channel.map(mode, start, chunkLength(n, c) * (long) Float.BYTES).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+
+        return new FloatStorage(chunks);
+    }
+
+    float get(long i) {
+        return chunks[(int) (i >>> CHUNK_BITS)].get((int) (i & CHUNK_MASK));
+    }
+
+    void set(long i, float v) {
+        chunks[(int) (i >>> CHUNK_BITS)].put((int) (i & CHUNK_MASK), v);
+    }
+
+    void put(long i, FloatBuffer src) {
+        while (src.hasRemaining()) {
+            FloatBuffer chunk = chunks[(int) (i >>> CHUNK_BITS)].duplicate();
+            chunk.position((int) (i & CHUNK_MASK));
+            int n = Math.min(src.remaining(), chunk.remaining());
+            FloatBuffer part = src.duplicate();
+            part.limit(part.position() + n);
+            chunk.put(part);
+            src.position(src.position() + n);
+            i += n;
+        }
+    }
+
+    void get(long i, float[] dst, int offset, int length) {
+        while (length > 0) {
+            FloatBuffer chunk = chunks[(int) (i >>> CHUNK_BITS)];
+            int start = (int) (i & CHUNK_MASK);
+            int n = Math.min(length, chunk.limit() - start);
+            if (chunk.hasArray()) {
+                System.arraycopy(chunk.array(), chunk.arrayOffset() + start, dst, offset, n);
+            } else {
+                for (int k = 0; k < n; k++) {
+                    dst[offset + k] = chunk.get(start + k);
+                }
+            }
+            i += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    void put(long i, float[] src, int offset, int length) {
+        while (length > 0) {
+            FloatBuffer chunk = chunks[(int) (i >>> CHUNK_BITS)];
+            int start = (int) (i & CHUNK_MASK);
+            int n = Math.min(length, chunk.limit() - start);
+            if (chunk.hasArray()) {
+                System.arraycopy(src, offset, chunk.array(), chunk.arrayOffset() + start, n);
+            } else {
+                for (int k = 0; k < n; k++) {
+                    chunk.put(start + k, src[offset + k]);
+                }
+            }
+            i += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private static int numChunks(long n) {
+        return (int) ((n + CHUNK_MASK) >>> CHUNK_BITS);
+    }
+
+    private static int chunkLength(long n, int c) {
+        return (int) Math.min(1L << CHUNK_BITS, n - ((long) c << CHUNK_BITS));
+    }
+}
@@ -0,0 +1,12 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+/**
+ * Colt matrices with compact, off-heap or memory-mapped storage for latent factors.
+ */
+package org.ranksys.mf.matrix;
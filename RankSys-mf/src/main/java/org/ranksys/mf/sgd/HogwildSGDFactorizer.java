@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.sgd;
+
+import cern.colt.function.DoubleFunction;
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.Factorizer;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import org.ranksys.mf.matrix.FloatDenseMatrix2D;
+import org.ranksys.mf.train.FactorizationMonitor;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Matrix factorization of explicit ratings by parallel stochastic gradient descent on the regularized squared error, without locks.
+ * <br>
+ * In every iteration (epoch), the preferences are split in as many blocks as threads, and every thread visits its block in an order shuffled by its own random number generator. Threads update the shared user and item vectors without synchronization, which is safe enough in practice because ratings are sparse and two threads rarely update the same vector at the same time. The updates are computed in single precision and applied directly to the matrices of the factorization, which are not copied: the rows of {@link FloatDenseMatrix2D} matrices are read and written with bulk copies from their storage, those of other matrices cell by cell.
+ * <br>
+ * F. Niu, B. Recht, C. Ré, S. J. Wright. Hogwild!: A Lock-Free Approach to Parallelizing Stochastic Gradient Descent. NIPS 2011.
+ *
+ * @author agent (agent@local)
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public class HogwildSGDFactorizer<U, I> extends Factorizer<U, I> {
+
+    private static final Logger LOG = Logger.getLogger(HogwildSGDFactorizer.class.getName());
+
+    private final double lambda;
+    private final IntToDoubleFunction learningRate;
+    private final int numIter;
+    private final int numThreads;
+    private final long seed;
+
+    /**
+     * Constructor with an exponentially decaying learning rate, as many threads as available processors and seed 1.
+     *
+     * @param lambda regularization factor
+     * @param learningRate learning rate of the first iteration
+     * @param decay factor by which the learning rate is multiplied after every iteration
+     * @param numIter number of iterations
+     */
+    public HogwildSGDFactorizer(double lambda, double learningRate, double decay, int numIter) {
+        this(lambda, iter -> learningRate * Math.pow(decay, iter - 1), numIter, Runtime.getRuntime().availableProcessors(), 1L);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param lambda regularization factor
+     * @param learningRate learning rate as a function of the iteration, starting at 1
+     * @param numIter number of iterations
+     * @param numThreads number of blocks of preferences processed in parallel
+     * @param seed seed of the initialization and of the random number generators of the threads
+     */
+    public HogwildSGDFactorizer(double lambda, IntToDoubleFunction learningRate, int numIter, int numThreads, long seed) {
+        this.lambda = lambda;
+        this.learningRate = learningRate;
+        this.numIter = numIter;
+        this.numThreads = numThreads;
+        this.seed = seed;
+    }
+
+    /**
+     * Mean squared error of the ratings.
+     *
+     * @param factorization matrix factorization
+     * @param data preference data
+     * @return mean squared error
+     */
+    @Override
+    public double error(Factorization<U, I> factorization, FastPreferenceData<U, I> data) {
+        DoubleMatrix2D p = factorization.getUserMatrix();
+        DoubleMatrix2D q = factorization.getItemMatrix();
+
+        return data.getUidxWithPreferences().parallel().mapToDouble(uidx -> {
+            DoubleMatrix1D pu = p.viewRow(uidx);
+            double[] err = {0.0};
+            data.forEachUidxPref(uidx, (iidx, v) -> {
+                double e = v - pu.zDotProduct(q.viewRow(iidx));
+                err[0] += e * e;
+            });
+            return err[0];
+        }).sum() / data.numPreferences();
+    }
+
+    /**
+     * Creates and calculates a factorization with single precision matrices.
+     *
+     * @param K size of the latent feature space.
+     * @param data preference data
+     * @return a matrix factorization
+     */
+    @Override
+    public Factorization<U, I> factorize(int K, FastPreferenceData<U, I> data) {
+        Random rnd = new Random(seed);
+        DoubleFunction init = x -> sqrt(1.0 / K) * rnd.nextDouble();
+        Factorization<U, I> factorization = new Factorization<>(data, data, K, init, FloatDenseMatrix2D::heap);
+        factorize(factorization, data);
+        return factorization;
+    }
+
+    @Override
+    public void factorize(Factorization<U, I> factorization, FastPreferenceData<U, I> data) {
+        factorize(factorization, data, (iter, f) -> false);
+    }
+
+    /**
+     * Calculates the factorization by using a previously generated matrix
+     * factorization, under the control of a monitor that can resume a
+     * previous training, checkpoint it or stop it early.
+     *
+     * @param factorization matrix factorization
+     * @param data preference data
+     * @param monitor training monitor
+     */
+    public void factorize(Factorization<U, I> factorization, FastPreferenceData<U, I> data, FactorizationMonitor<U, I> monitor) {
+        DoubleMatrix2D p = factorization.getUserMatrix();
+        DoubleMatrix2D q = factorization.getItemMatrix();
+        int K = factorization.getK();
+
+        int t0 = monitor.resume(factorization);
+
+        Rows ps = Rows.of(p);
+        Rows qs = Rows.of(q);
+
+        int numPrefs = data.numPreferences();
+        int[] uidxs = new int[numPrefs];
+        int[] iidxs = new int[numPrefs];
+        float[] vs = new float[numPrefs];
+        int[] j = {0};
+        data.getUidxWithPreferences().forEach(uidx -> data.forEachUidxPref(uidx, (iidx, v) -> {
+            uidxs[j[0]] = uidx;
+            iidxs[j[0]] = iidx;
+            vs[j[0]] = (float) v;
+            j[0]++;
+        }));
+
+        int[] order = IntArrays.shuffle(IntStream.range(0, numPrefs).toArray(), new Random(seed));
+
+        for (int t = t0 + 1; t <= numIter; t++) {
+            long time0 = System.nanoTime();
+
+            int iter = t;
+            float eta = (float) learningRate.applyAsDouble(iter);
+            float lambdaf = (float) lambda;
+            IntStream.range(0, numThreads).parallel().forEach(thread -> {
+                int from = (int) ((long) numPrefs * thread / numThreads);
+                int to = (int) ((long) numPrefs * (thread + 1) / numThreads);
+                Random rnd = new Random(seed + iter * (long) numThreads + thread);
+                IntArrays.shuffle(order, from, to, rnd);
+
+                float[] pu = new float[K];
+                float[] qi = new float[K];
+                for (int l = from; l < to; l++) {
+                    int o = order[l];
+                    ps.get(uidxs[o], pu);
+                    qs.get(iidxs[o], qi);
+                    update(pu, qi, K, vs[o], eta, lambdaf);
+                    ps.put(uidxs[o], pu);
+                    qs.put(iidxs[o], qi);
+                }
+            });
+
+            long time1 = System.nanoTime() - time0;
+
+            LOG.log(Level.INFO, String.format("iteration n = %3d t = %.2fs", iter, time1 / 1_000_000_000.0));
+            LOG.log(Level.FINE, () -> String.format("iteration n = %3d u/s = %.0f", iter, numPrefs / (time1 / 1_000_000_000.0)));
+            LOG.log(Level.FINE, () -> String.format("iteration n = %3d e = %.6f", iter, error(factorization, data)));
+
+            if (monitor.iteration(iter, factorization)) {
+                LOG.log(Level.INFO, String.format("stopping after iteration n = %3d", iter));
+                break;
+            }
+        }
+    }
+
+    private static void update(float[] pu, float[] qi, int K, float v, float eta, float lambda) {
+        float e = v;
+        for (int k = 0; k < K; k++) {
+            e -= pu[k] * qi[k];
+        }
+        for (int k = 0; k < K; k++) {
+            float puk = pu[k];
+            float qik = qi[k];
+            pu[k] = puk + eta * (e * qik - lambda * puk);
+            qi[k] = qik + eta * (e * puk - lambda * qik);
+        }
+    }
+
+    /**
+     * Access to the rows of a matrix as single precision vectors.
+     */
+    private static abstract class Rows {
+
+        abstract void get(int row, float[] dst);
+
+        abstract void put(int row, float[] src);
+
+        static Rows of(DoubleMatrix2D m) {
+            int K = m.columns();
+            if (m instanceof FloatDenseMatrix2D) {
+                FloatDenseMatrix2D fm = (FloatDenseMatrix2D) m;
+
+                return new Rows() {
+
+                    @Override
+                    void get(int row, float[] dst) {
+                        fm.get((long) row * K, dst, 0, K);
+                    }
+
+                    @Override
+                    void put(int row, float[] src) {
+                        fm.put((long) row * K, src, 0, K);
+                    }
+                };
+            } else {
+                return new Rows() {
+
+                    @Override
+                    void get(int row, float[] dst) {
+                        for (int k = 0; k < K; k++) {
+                            dst[k] = (float) m.getQuick(row, k);
+                        }
+                    }
+
+                    @Override
+                    void put(int row, float[] src) {
+                        for (int k = 0; k < K; k++) {
+                            m.setQuick(row, k, src[k]);
+                        }
+                    }
+                };
+            }
+        }
+    }
+}
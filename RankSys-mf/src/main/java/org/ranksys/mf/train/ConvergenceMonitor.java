@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.train;
+
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.Factorizer;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jooq.lambda.tuple.Tuple;
+
+/**
+ * Early stopping monitor. Computes the error of the factorizer after every iteration and stops the training when the relative improvement over the best error so far is below a tolerance for a number of consecutive iterations.
+ * <br>
+ * In order to keep it cheap, the error can be computed on the preferences of a random sample of the users.
+ *
+ * @author agent (agent@local)
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public class ConvergenceMonitor<U, I> implements FactorizationMonitor<U, I> {
+
+    private static final Logger LOG = Logger.getLogger(ConvergenceMonitor.class.getName());
+
+    private final Factorizer<U, I> factorizer;
+    private final FastPreferenceData<U, I> sample;
+    private final double tolerance;
+    private final int patience;
+    private double bestError;
+    private int numBad;
+
+    /**
+     * Constructor that computes the error on all the preferences and stops at the first iteration without enough improvement.
+     *
+     * @param factorizer factorizer whose error is monitored
+     * @param data preference data
+     * @param tolerance minimum relative improvement of the error
+     */
+    public ConvergenceMonitor(Factorizer<U, I> factorizer, FastPreferenceData<U, I> data, double tolerance) {
+        this(factorizer, data, 1.0, tolerance, 1, 1L);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param factorizer factorizer whose error is monitored
+     * @param data preference data
+     * @param sampleRate fraction of the users whose preferences are used to compute the error
+     * @param tolerance minimum relative improvement of the error
+     * @param patience number of consecutive iterations without enough improvement before stopping
+     * @param seed seed of the sample of users
+     */
+    public ConvergenceMonitor(Factorizer<U, I> factorizer, FastPreferenceData<U, I> data, double sampleRate, double tolerance, int patience, long seed) {
+        this.factorizer = factorizer;
+        this.tolerance = tolerance;
+        this.patience = patience;
+        this.bestError = Double.NaN;
+        this.numBad = 0;
+
+        if (sampleRate >= 1.0) {
+            this.sample = data;
+        } else {
+            Random rnd = new Random(seed);
+            this.sample = SimpleFastPreferenceData.load(data.getUsersWithPreferences()
+                    .filter(u -> rnd.nextDouble() < sampleRate)
+                    .flatMap(u -> data.getUserPreferences(u).map(iv -> Tuple.tuple(u, iv.v1, iv.v2))),
+                    data, data);
+        }
+    }
+
+    @Override
+    public boolean iteration(int iter, Factorization<U, I> factorization) {
+        double error = factorizer.error(factorization, sample);
+        LOG.log(Level.INFO, String.format("iteration n = %3d e = %.6f", iter, error));
+
+        if (Double.isNaN(bestError)) {
+            bestError = error;
+            return false;
+        }
+
+        if ((bestError - error) / Math.abs(bestError) < tolerance) {
+            numBad++;
+        } else {
+            numBad = 0;
+        }
+        bestError = Math.min(bestError, error);
+
+        return numBad >= patience;
+    }
+}
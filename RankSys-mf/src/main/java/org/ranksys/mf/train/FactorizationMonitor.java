@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.train;
+
+import es.uam.eps.ir.ranksys.mf.Factorization;
+
+/**
+ * Monitor of the iterations of a factorizer. It is notified after every iteration, can stop the training and can restore a factorization from a previous, interrupted training.
+ *
+ * @author agent (agent@local)
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public interface FactorizationMonitor<U, I> {
+
+    /**
+     * Called before the first iteration. Restores the matrices of the factorization from a previous training, if any.
+     *
+     * @param factorization factorization to be trained
+     * @return number of iterations already completed, 0 if nothing was restored
+     */
+    default int resume(Factorization<U, I> factorization) {
+        return 0;
+    }
+
+    /**
+     * Called after every iteration.
+     *
+     * @param iter number of the iteration, starting at 1
+     * @param factorization factorization after the iteration
+     * @return true if the training should stop, false otherwise
+     */
+    boolean iteration(int iter, Factorization<U, I> factorization);
+
+    /**
+     * Combines this monitor with another one. The factorization is restored by the first monitor that restores it, both monitors are notified of every iteration and the training stops when any of them says so.
+     *
+     * @param other another monitor
+     * @return combined monitor
+     */
+    default FactorizationMonitor<U, I> and(FactorizationMonitor<U, I> other) {
+        FactorizationMonitor<U, I> first = this;
+
+        return new FactorizationMonitor<U, I>() {
+
+            @Override
+            public int resume(Factorization<U, I> factorization) {
+                int iter = first.resume(factorization);
+                return iter > 0 ? iter : other.resume(factorization);
+            }
+
+            @Override
+            public boolean iteration(int iter, Factorization<U, I> factorization) {
+                boolean stop1 = first.iteration(iter, factorization);
+                boolean stop2 = other.iteration(iter, factorization);
+                return stop1 || stop2;
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.mf.als;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+import org.junit.Test;
+import org.ranksys.fast.preference.RandomPreferenceData;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for HKVFactorizer.
+ *
+ * @author agent (agent@local)
+ */
+public class HKVFactorizerTest {
+
+    private static final int NUM_USERS = 60;
+    private static final int NUM_ITEMS = 40;
+    private static final int K = 8;
+    private static final DoubleUnaryOperator CONFIDENCE = x -> 1 + 40 * x;
+
+    private static FastPreferenceData<Integer, Integer> randomData() {
+        return RandomPreferenceData.generate(NUM_USERS, NUM_ITEMS, 0.2, 5);
+    }
+
+    private static DoubleMatrix2D randomMatrix(int rows, Random rnd) {
+        DoubleMatrix2D m = new DenseDoubleMatrix2D(rows, K);
+        m.assign(x -> Math.sqrt(1.0 / K) * rnd.nextDouble());
+        return m;
+    }
+
+    private static double distance(DoubleMatrix2D a, DoubleMatrix2D b) {
+        double d = 0.0;
+        for (int r = 0; r < a.rows(); r++) {
+            for (int c = 0; c < a.columns(); c++) {
+                double x = a.getQuick(r, c) - b.getQuick(r, c);
+                d += x * x;
+            }
+        }
+        return Math.sqrt(d);
+    }
+
+    /**
+     * Tests that the conjugate gradient steps converge towards the exact
+     * solution of the least-squares problem by LU decomposition, for both the
+     * user and item steps. In exact arithmetic K steps would be enough; 2 K
+     * absorb the rounding errors.
+     */
+    @Test
+    public void testConjugateGradientConvergence() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        Random rnd = new Random(1L);
+        DoubleMatrix2D p0 = randomMatrix(NUM_USERS, rnd);
+        DoubleMatrix2D q0 = randomMatrix(NUM_ITEMS, rnd);
+
+        DoubleMatrix2D pLU = p0.copy();
+        new HKVFactorizer<Integer, Integer>(0.1, 0.1, CONFIDENCE, 1, 0).set_minP(pLU, q0, data);
+        DoubleMatrix2D qLU = q0.copy();
+        new HKVFactorizer<Integer, Integer>(0.1, 0.1, CONFIDENCE, 1, 0).set_minQ(qLU, p0, data);
+
+        double prevP = distance(p0, pLU);
+        double prevQ = distance(q0, qLU);
+        for (int cgSteps : new int[]{1, 2, 4, K, 2 * K}) {
+            HKVFactorizer<Integer, Integer> factorizer = new HKVFactorizer<>(0.1, 0.1, CONFIDENCE, 1, cgSteps);
+
+            DoubleMatrix2D p = p0.copy();
+            factorizer.set_minP(p, q0, data);
+            double dP = distance(p, pLU);
+            assertTrue(cgSteps + " steps: " + dP + " > " + prevP, dP <= prevP);
+            prevP = dP;
+
+            DoubleMatrix2D q = q0.copy();
+            factorizer.set_minQ(q, p0, data);
+            double dQ = distance(q, qLU);
+            assertTrue(cgSteps + " steps: " + dQ + " > " + prevQ, dQ <= prevQ);
+            prevQ = dQ;
+        }
+
+        assertEquals(0.0, prevP, 1e-6);
+        assertEquals(0.0, prevQ, 1e-6);
+    }
+
+    /**
+     * Tests that a full training with conjugate gradient steps reaches a loss
+     * close to that of the exact least-squares training.
+     */
+    @Test
+    public void testConjugateGradientFactorization() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        Random rnd = new Random(1L);
+        DoubleMatrix2D p0 = randomMatrix(NUM_USERS, rnd);
+        DoubleMatrix2D q0 = randomMatrix(NUM_ITEMS, rnd);
+
+        HKVFactorizer<Integer, Integer> lu = new HKVFactorizer<>(0.1, 0.1, CONFIDENCE, 10, 0);
+        DoubleMatrix2D pLU = p0.copy();
+        DoubleMatrix2D qLU = q0.copy();
+        for (int t = 0; t < 10; t++) {
+            lu.set_minQ(qLU, pLU, data);
+            lu.set_minP(pLU, qLU, data);
+        }
+
+        HKVFactorizer<Integer, Integer> cg = new HKVFactorizer<>(0.1, 0.1, CONFIDENCE, 10, 3);
+        DoubleMatrix2D pCG = p0.copy();
+        DoubleMatrix2D qCG = q0.copy();
+        for (int t = 0; t < 10; t++) {
+            cg.set_minQ(qCG, pCG, data);
+            cg.set_minP(pCG, qCG, data);
+        }
+
+        double e0 = lu.error(p0, q0, data);
+        double eLU = lu.error(pLU, qLU, data);
+        double eCG = cg.error(pCG, qCG, data);
+
+        assertTrue(eLU < e0);
+        assertTrue(eCG < e0);
+        assertEquals(eLU, eCG, 0.05 * (e0 - eLU));
+    }
+}
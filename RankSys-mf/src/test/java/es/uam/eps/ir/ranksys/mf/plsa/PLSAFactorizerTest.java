@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.mf.plsa;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.ranksys.fast.preference.RandomPreferenceData;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for PLSAFactorizer.
+ *
+ * @author agent (agent@local)
+ */
+public class PLSAFactorizerTest {
+
+    private static final int NUM_USERS = 100;
+    private static final int NUM_ITEMS = 60;
+    private static final int K = 5;
+
+    private static FastPreferenceData<Integer, Integer> randomData() {
+        return RandomPreferenceData.generate(NUM_USERS, NUM_ITEMS, 0.15, 5);
+    }
+
+    private static Factorization<Integer, Integer> randomFactorization(FastPreferenceData<Integer, Integer> data) {
+        Random rnd = new Random(1L);
+        DoubleMatrix2D p = new DenseDoubleMatrix2D(NUM_USERS, K).assign(x -> rnd.nextDouble());
+        DoubleMatrix2D q = new DenseDoubleMatrix2D(NUM_ITEMS, K).assign(x -> rnd.nextDouble());
+
+        return new Factorization<>(data, data, p, q, K);
+    }
+
+    private static void assertMatrixEquals(DoubleMatrix2D expected, DoubleMatrix2D actual, double delta) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), delta);
+            }
+        }
+    }
+
+    /**
+     * Tests that the sequential and parallel maximization steps give the
+     * same model, and that the training lowers the error.
+     */
+    @Test
+    public void testParallelMaximization() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+
+        Factorization<Integer, Integer> sequential = randomFactorization(data);
+        new PLSAFactorizer<Integer, Integer>(10, false).factorize(sequential, data);
+
+        Factorization<Integer, Integer> parallel = randomFactorization(data);
+        new PLSAFactorizer<Integer, Integer>(10, true).factorize(parallel, data);
+
+        assertMatrixEquals(sequential.getUserMatrix(), parallel.getUserMatrix(), 1e-9);
+        assertMatrixEquals(sequential.getItemMatrix(), parallel.getItemMatrix(), 1e-9);
+
+        PLSAFactorizer<Integer, Integer> factorizer = new PLSAFactorizer<>(1);
+        Factorization<Integer, Integer> one = randomFactorization(data);
+        factorizer.factorize(one, data);
+        assertTrue(factorizer.error(sequential, data) < factorizer.error(one, data));
+    }
+
+    /**
+     * Tests that the variational probabilities in the single precision slab
+     * give the same model as a reference implementation that keeps them in
+     * double precision in a map per user, as PLSA did before the slab.
+     */
+    @Test
+    public void testSlabMatchesMaps() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        int numIter = 10;
+
+        Factorization<Integer, Integer> factorization = randomFactorization(data);
+        new PLSAFactorizer<Integer, Integer>(numIter).factorize(factorization, data);
+
+        Factorization<Integer, Integer> reference = randomFactorization(data);
+        double[][] pu_z = reference.getUserMatrix().toArray();
+        double[][] piz = reference.getItemMatrix().toArray();
+        List<Int2ObjectOpenHashMap<double[]>> qz = new ArrayList<>();
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            Int2ObjectOpenHashMap<double[]> qzU = new Int2ObjectOpenHashMap<>();
+            data.getUidxPreferences(uidx).forEach(iv -> qzU.put(iv.v1, new double[K]));
+            qz.add(qzU);
+        }
+
+        normalize(pu_z, piz);
+        for (int t = 0; t < numIter; t++) {
+            for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+                int u = uidx;
+                data.getUidxPreferences(uidx).forEach(iv -> {
+                    double[] qZ = qz.get(u).get(iv.v1);
+                    double norm = 0;
+                    for (int z = 0; z < K; z++) {
+                        qZ[z] = piz[iv.v1][z] * pu_z[u][z];
+                        norm += qZ[z];
+                    }
+                    for (int z = 0; z < K; z++) {
+                        qZ[z] /= norm;
+                    }
+                });
+            }
+
+            for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+                Arrays.fill(pu_z[uidx], 0.0);
+            }
+            for (int iidx = 0; iidx < NUM_ITEMS; iidx++) {
+                Arrays.fill(piz[iidx], 0.0);
+            }
+            for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+                int u = uidx;
+                data.getUidxPreferences(uidx).forEach(iv -> {
+                    double[] qZ = qz.get(u).get(iv.v1);
+                    for (int z = 0; z < K; z++) {
+                        pu_z[u][z] += qZ[z] * iv.v2;
+                        piz[iv.v1][z] += qZ[z] * iv.v2;
+                    }
+                });
+            }
+            normalize(pu_z, piz);
+        }
+
+        assertMatrixEquals(new DenseDoubleMatrix2D(pu_z), factorization.getUserMatrix(), 1e-6);
+        assertMatrixEquals(new DenseDoubleMatrix2D(piz), factorization.getItemMatrix(), 1e-6);
+    }
+
+    private static void normalize(double[][] pu_z, double[][] piz) {
+        for (int z = 0; z < K; z++) {
+            double sum = 0;
+            for (double[] pU_z : pu_z) {
+                sum += pU_z[z];
+            }
+            for (double[] pU_z : pu_z) {
+                pU_z[z] /= sum;
+            }
+        }
+
+        double sum = 0;
+        for (double[] pI_z : piz) {
+            for (double p : pI_z) {
+                sum += p;
+            }
+        }
+        for (double[] pI_z : piz) {
+            for (int z = 0; z < K; z++) {
+                pI_z[z] /= sum;
+            }
+        }
+    }
+}
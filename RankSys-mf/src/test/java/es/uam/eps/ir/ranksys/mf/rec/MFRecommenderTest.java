@@ -13,13 +13,21 @@ import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
 import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.fast.FastRecommendation;
+import es.uam.eps.ir.ranksys.rec.runner.fast.FastFilterRecommenderRunner;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
 import java.util.function.IntPredicate;
+import static java.util.stream.Collectors.toList;
 import java.util.stream.IntStream;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import org.ranksys.core.util.tuples.Tuple2id;
+import org.ranksys.core.util.tuples.Tuple2od;
 import static org.ranksys.core.util.tuples.Tuples.tuple;
 
 /**
@@ -85,6 +93,8 @@ public class MFRecommenderTest {
         );
         
         assertEquals(expected, result);
+
+        assertTrue(recommender.getRecommendation(0, 0, filter).getIidxs().isEmpty());
     }
 
     /**
@@ -104,4 +114,81 @@ public class MFRecommenderTest {
         
         assertEquals(expected, result);
     }
+
+    /**
+     * Creates a recommender with random user and item vectors, in which the last users have no vector in the factorization.
+     */
+    private static MFRecommender<Integer, Integer> randomRecommender(int numUsers, int numUsersWithVectors, int numItems, int K) {
+        FastUserIndex<Integer> uIndex = SimpleFastUserIndex.load(IntStream.range(0, numUsers).boxed());
+        FastUserIndex<Integer> fIndex = SimpleFastUserIndex.load(IntStream.range(0, numUsersWithVectors).boxed());
+        FastItemIndex<Integer> iIndex = SimpleFastItemIndex.load(IntStream.range(0, numItems).boxed());
+
+        Random rnd = new Random(1L);
+        DenseDoubleMatrix2D p = new DenseDoubleMatrix2D(numUsersWithVectors, K);
+        p.assign(x -> rnd.nextGaussian());
+        DenseDoubleMatrix2D q = new DenseDoubleMatrix2D(numItems, K);
+        q.assign(x -> rnd.nextGaussian());
+        Factorization<Integer, Integer> factorization = new Factorization<Integer, Integer>(fIndex, iIndex, p, q, K) {
+        };
+
+        return new MFRecommender<>(uIndex, iIndex, factorization);
+    }
+
+    private static void assertSameRecommendation(List<Tuple2id> expected, List<Tuple2id> actual) {
+        assertEquals(expected.stream().map(Tuple2id::v1).collect(toList()), actual.stream().map(Tuple2id::v1).collect(toList()));
+        for (int n = 0; n < expected.size(); n++) {
+            assertEquals(expected.get(n).v2, actual.get(n).v2, 1e-9);
+        }
+    }
+
+    /**
+     * Tests that the batch recommendation method returns the same items as the per-user one, for users with and without vectors and with per-user filters, across several tiles of items.
+     */
+    @Test
+    public void testBatch() {
+        int numUsers = 70;
+        int numItems = 1100;
+        MFRecommender<Integer, Integer> batchRecommender = randomRecommender(numUsers, 60, numItems, 8);
+        IntFunction<IntPredicate> filters = uidx -> iidx -> (iidx + uidx) % (2 + uidx % 3) != 0;
+
+        int[] uidxs = IntStream.range(0, numUsers).map(uidx -> (uidx * 7) % numUsers).toArray();
+        for (int maxLength : new int[]{1, 10, numItems}) {
+            List<FastRecommendation> recs = batchRecommender.getRecommendations(uidxs, maxLength, filters);
+
+            assertEquals(uidxs.length, recs.size());
+            for (int b = 0; b < uidxs.length; b++) {
+                int uidx = uidxs[b];
+                FastRecommendation expected = batchRecommender.getRecommendation(uidx, maxLength, filters.apply(uidx));
+                assertEquals(uidx, recs.get(b).getUidx());
+                assertSameRecommendation(expected.getIidxs(), recs.get(b).getIidxs());
+                if (uidx >= 60) {
+                    assertTrue(recs.get(b).getIidxs().isEmpty());
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that the runner issues blocks of users to the batch method with the same result as the per-user method.
+     */
+    @Test
+    public void testBatchRunner() {
+        int numUsers = 70;
+        int numItems = 600;
+        MFRecommender<Integer, Integer> recommender = randomRecommender(numUsers, 60, numItems, 5);
+        FastUserIndex<Integer> uIndex = SimpleFastUserIndex.load(IntStream.range(0, numUsers).boxed());
+        FastItemIndex<Integer> iIndex = SimpleFastItemIndex.load(IntStream.range(0, numItems).boxed());
+
+        Map<Integer, List<Tuple2od<Integer>>> recs = new ConcurrentHashMap<>();
+        new FastFilterRecommenderRunner<>(uIndex, iIndex, IntStream.range(0, numUsers).boxed(), user -> iidx -> iidx % (2 + user % 5) != 0, 20, 16)
+                .run(recommender, rec -> recs.put(rec.getUser(), rec.getItems()));
+
+        assertEquals(numUsers, recs.size());
+        for (int uidx = 0; uidx < numUsers; uidx++) {
+            int u = uidx;
+            List<Tuple2id> expected = recommender.getRecommendation(uidx, 20, iidx -> iidx % (2 + u % 5) != 0).getIidxs();
+            List<Tuple2id> actual = recs.get(uidx).stream().map(t -> tuple((int) t.v1, t.v2)).collect(toList());
+            assertSameRecommendation(expected, actual);
+        }
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.ann;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.rec.MFRecommender;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for HNSWIndex.
+ *
+ * @author agent (agent@local)
+ */
+public class HNSWIndexTest {
+
+    /**
+     * Tests that the recommendations of MFRecommender with an index recover most of the exact ones, and that their scores are exact.
+     */
+    @Test
+    public void testRecall() {
+        int numUsers = 100;
+        int numItems = 3000;
+        int maxLength = 10;
+        FastUserIndex<Integer> uIndex = SimpleFastUserIndex.load(IntStream.range(0, numUsers).boxed());
+        FastItemIndex<Integer> iIndex = SimpleFastItemIndex.load(IntStream.range(0, numItems).boxed());
+
+        Random rnd = new Random(1L);
+        Factorization<Integer, Integer> factorization = new Factorization<>(uIndex, iIndex, 10, x -> rnd.nextGaussian());
+
+        HNSWIndex index = new HNSWIndex(factorization.getItemMatrix(), 16, 100, 1L);
+        assertEquals(numItems, index.numItems());
+
+        MFRecommender<Integer, Integer> exact = new MFRecommender<>(uIndex, iIndex, factorization);
+        MFRecommender<Integer, Integer> approximate = new MFRecommender<>(uIndex, iIndex, factorization, index, 100);
+
+        int hits = 0;
+        for (int uidx = 0; uidx < numUsers; uidx++) {
+            List<Tuple2id> expected = exact.getRecommendation(uidx, maxLength, iidx -> iidx % 3 != 0).getIidxs();
+            List<Tuple2id> actual = approximate.getRecommendation(uidx, maxLength, iidx -> iidx % 3 != 0).getIidxs();
+            assertEquals(maxLength, actual.size());
+
+            IntOpenHashSet expectedSet = new IntOpenHashSet();
+            expected.forEach(t -> expectedSet.add(t.v1));
+            for (int i = 0; i < actual.size(); i++) {
+                assertTrue(actual.get(i).v1 % 3 != 0);
+                if (expectedSet.contains(actual.get(i).v1)) {
+                    hits++;
+                }
+                double score = factorization.getItemMatrix().viewRow(actual.get(i).v1).zDotProduct(factorization.getUserMatrix().viewRow(uidx));
+                assertEquals(score, actual.get(i).v2, 1e-12);
+            }
+        }
+
+        assertTrue(hits >= 0.9 * numUsers * maxLength);
+    }
+}
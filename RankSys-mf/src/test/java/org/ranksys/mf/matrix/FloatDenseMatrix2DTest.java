@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.matrix;
+
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for FloatDenseMatrix2D.
+ *
+ * @author agent (agent@local)
+ */
+public class FloatDenseMatrix2DTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that cells, row and column views and products match those of a DenseDoubleMatrix2D with the same values, in heap and direct storage.
+     */
+    @Test
+    public void testViews() {
+        int rows = 37;
+        int columns = 11;
+        Random rnd = new Random(1L);
+        DenseDoubleMatrix2D expected = new DenseDoubleMatrix2D(rows, columns);
+        expected.assign(x -> (float) rnd.nextGaussian());
+
+        for (DoubleMatrix2D actual : new DoubleMatrix2D[]{FloatDenseMatrix2D.heap(rows, columns), FloatDenseMatrix2D.direct(rows, columns)}) {
+            actual.assign(expected);
+            assertEquals(rows, actual.rows());
+            assertEquals(columns, actual.columns());
+
+            for (int row = 0; row < rows; row++) {
+                assertArrayEquals(expected.viewRow(row).toArray(), actual.viewRow(row).toArray(), 0.0);
+            }
+            for (int column = 0; column < columns; column++) {
+                assertArrayEquals(expected.viewColumn(column).toArray(), actual.viewColumn(column).toArray(), 0.0);
+            }
+            assertArrayEquals(expected.viewPart(3, 2, 10, 5).viewDice().viewRow(4).toArray(), actual.viewPart(3, 2, 10, 5).viewDice().viewRow(4).toArray(), 0.0);
+            assertArrayEquals(expected.viewRowFlip().viewColumnFlip().viewColumn(2).toArray(), actual.viewRowFlip().viewColumnFlip().viewColumn(2).toArray(), 0.0);
+            assertArrayEquals(expected.viewColumn(6).viewPart(4, 20).viewFlip().toArray(), actual.viewColumn(6).viewPart(4, 20).viewFlip().toArray(), 0.0);
+
+            DoubleMatrix1D y = new DenseDoubleMatrix1D(columns).assign(x -> rnd.nextGaussian());
+            assertArrayEquals(expected.zMult(y, null).toArray(), actual.zMult(y, null).toArray(), 1e-12);
+            DoubleMatrix1D x = new DenseDoubleMatrix1D(rows).assign(v -> rnd.nextGaussian());
+            assertArrayEquals(expected.zMult(x, null, 1.0, 0.0, true).toArray(), actual.zMult(x, null, 1.0, 0.0, true).toArray(), 1e-12);
+
+            actual.viewRow(5).assign(0.5);
+            assertEquals(0.5, actual.getQuick(5, 7), 0.0);
+            actual.viewColumn(3).assign(0.25);
+            assertEquals(0.25, actual.getQuick(20, 3), 0.0);
+        }
+    }
+
+    /**
+     * Tests the bulk copies of cells from and into float arrays, in heap and direct storage.
+     */
+    @Test
+    public void testBulk() {
+        int rows = 37;
+        int columns = 11;
+        Random rnd = new Random(1L);
+        float[] cells = new float[3 * columns + 4];
+        for (int k = 0; k < cells.length; k++) {
+            cells[k] = (float) rnd.nextGaussian();
+        }
+
+        for (FloatDenseMatrix2D matrix : new FloatDenseMatrix2D[]{FloatDenseMatrix2D.heap(rows, columns), FloatDenseMatrix2D.direct(rows, columns)}) {
+            matrix.put(5L * columns, cells, 2, 3 * columns);
+            for (int k = 0; k < 3 * columns; k++) {
+                assertEquals(cells[2 + k], matrix.getQuick(5 + k / columns, k % columns), 0.0);
+            }
+            assertEquals(0.0, matrix.getQuick(4, columns - 1), 0.0);
+            assertEquals(0.0, matrix.getQuick(8, 0), 0.0);
+
+            float[] row = new float[columns + 1];
+            matrix.get(6L * columns, row, 1, columns);
+            for (int k = 0; k < columns; k++) {
+                assertEquals(matrix.getQuick(6, k), row[1 + k], 0.0);
+            }
+
+            try {
+                ((FloatDenseMatrix2D) matrix.viewRowFlip()).get(0L, row, 0, columns);
+                fail();
+            } catch (UnsupportedOperationException ex) {
+            }
+        }
+    }
+
+    /**
+     * Tests a matrix of more than 2^31 cells mapped from a sparse file, of which only the written pages are allocated.
+     *
+     * @throws IOException when the file cannot be mapped
+     */
+    @Test
+    public void testLargeMapped() throws IOException {
+        int rows = (1 << 24) + 3;
+        int columns = 128;
+        assertTrue((long) rows * columns > Integer.MAX_VALUE);
+
+        File file = new File(folder.getRoot(), "large.bin");
+        try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE)) {
+            FloatDenseMatrix2D matrix = FloatDenseMatrix2D.map(channel, READ_WRITE, 0L, rows, columns);
+            assertEquals(rows, matrix.rows());
+            assertEquals(columns, matrix.columns());
+
+            matrix.setQuick(rows - 1, columns - 1, 1.5);
+            matrix.setQuick(rows - 2, 3, -2.5);
+            matrix.viewRow(rows - 3).assign(0.75);
+            matrix.viewColumn(7).setQuick(rows - 1, 4.0);
+
+            assertEquals(1.5, matrix.getQuick(rows - 1, columns - 1), 0.0);
+            assertEquals(-2.5, matrix.viewRow(rows - 2).getQuick(3), 0.0);
+            assertEquals(0.75, matrix.getQuick(rows - 3, 100), 0.0);
+            assertEquals(4.0, matrix.getQuick(rows - 1, 7), 0.0);
+            assertEquals(1.5, matrix.viewColumn(columns - 1).getQuick(rows - 1), 0.0);
+            assertEquals(-2.5, matrix.viewDice().viewColumn(rows - 2).getQuick(3), 0.0);
+            assertEquals(-2.5, matrix.viewPart(rows - 10, 2, 10, 4).getQuick(8, 1), 0.0);
+            assertEquals(1.5, matrix.viewRowFlip().getQuick(0, columns - 1), 0.0);
+            assertEquals(0.75, matrix.viewColumn(50).viewPart(rows - 5, 5).getQuick(2), 0.0);
+            assertEquals(0.0, matrix.getQuick(0, 0), 0.0);
+
+            DoubleMatrix1D y = new DenseDoubleMatrix1D(columns).assign(1.0);
+            DoubleMatrix1D z = matrix.viewPart(rows - 3, 0, 3, columns).zMult(y, null);
+            assertArrayEquals(new double[]{0.75 * columns, -2.5, 1.5 + 4.0}, z.toArray(), 1e-9);
+
+            // bulk copies across the boundary of two chunks of the storage
+            float[] src = new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+            long cell = (1L << 28) - 5;
+            matrix.put(cell, src, 0, src.length);
+            assertEquals(5.0, matrix.getQuick((int) ((cell + 4) / columns), (int) ((cell + 4) % columns)), 0.0);
+            assertEquals(6.0, matrix.getQuick((int) ((cell + 5) / columns), (int) ((cell + 5) % columns)), 0.0);
+            float[] dst = new float[src.length];
+            matrix.get(cell, dst, 0, dst.length);
+            assertArrayEquals(src, dst, 0.0f);
+        }
+    }
+}
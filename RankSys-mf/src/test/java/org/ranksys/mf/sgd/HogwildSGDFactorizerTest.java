@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.sgd;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ranksys.fast.preference.RandomPreferenceData;
+import org.ranksys.mf.matrix.FloatDenseMatrix2D;
+
+/**
+ * Unit test for HogwildSGDFactorizer.
+ *
+ * @author agent (agent@local)
+ */
+public class HogwildSGDFactorizerTest {
+
+    private static final int NUM_USERS = 200;
+    private static final int NUM_ITEMS = 100;
+    private static final int RANK = 3;
+
+    /**
+     * Ratings of a random rank-3 model plus noise, for a random 30% of the
+     * user-item pairs.
+     */
+    private static FastPreferenceData<Integer, Integer> randomData() {
+        Random rnd = new Random(1L);
+        double[][] x = new double[NUM_USERS][RANK];
+        double[][] y = new double[NUM_ITEMS][RANK];
+        for (double[] xu : x) {
+            for (int k = 0; k < RANK; k++) {
+                xu[k] = rnd.nextGaussian();
+            }
+        }
+        for (double[] yi : y) {
+            for (int k = 0; k < RANK; k++) {
+                yi[k] = rnd.nextGaussian();
+            }
+        }
+
+        return RandomPreferenceData.generate(
+                SimpleFastUserIndex.load(IntStream.range(0, NUM_USERS).boxed()),
+                SimpleFastItemIndex.load(IntStream.range(0, NUM_ITEMS).boxed()),
+                rnd, (uidx, iidx) -> 0.3, (uidx, iidx, r) -> {
+                    double v = 3.0 + 0.1 * r.nextGaussian();
+                    for (int k = 0; k < RANK; k++) {
+                        v += x[uidx][k] * y[iidx][k];
+                    }
+                    return v;
+                });
+    }
+
+    private static double meanPredictorError(FastPreferenceData<Integer, Integer> data) {
+        double mean = data.getUidxWithPreferences()
+                .mapToDouble(uidx -> data.getUidxPreferences(uidx).mapToDouble(iv -> iv.v2).sum())
+                .sum() / data.numPreferences();
+
+        return data.getUidxWithPreferences()
+                .mapToDouble(uidx -> data.getUidxPreferences(uidx).mapToDouble(iv -> (iv.v2 - mean) * (iv.v2 - mean)).sum())
+                .sum() / data.numPreferences();
+    }
+
+    /**
+     * Tests that the training error falls well below that of the mean
+     * predictor and decreases with the iterations, with one and several
+     * blocks of preferences.
+     */
+    @Test
+    public void testConvergence() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        double e0 = meanPredictorError(data);
+
+        for (int numThreads : new int[]{1, 4}) {
+            HogwildSGDFactorizer<Integer, Integer> factorizer5 = new HogwildSGDFactorizer<>(0.01, iter -> 0.02, 5, numThreads, 1L);
+            HogwildSGDFactorizer<Integer, Integer> factorizer40 = new HogwildSGDFactorizer<>(0.01, iter -> 0.02, 40, numThreads, 1L);
+
+            double e5 = factorizer5.error(factorizer5.factorize(6, data), data);
+            double e40 = factorizer40.error(factorizer40.factorize(6, data), data);
+
+            assertTrue(numThreads + " threads: " + e40 + " >= " + e5, e40 < e5);
+            assertTrue(numThreads + " threads: " + e40 + " vs " + e0, e40 < 0.1 * e0);
+        }
+    }
+
+    /**
+     * Tests that the training works the same on single precision matrices,
+     * whose rows are copied in bulk, as on double precision ones, whose cells
+     * are accessed one by one.
+     */
+    @Test
+    public void testMatrixTypes() {
+        FastPreferenceData<Integer, Integer> data = randomData();
+        HogwildSGDFactorizer<Integer, Integer> factorizer = new HogwildSGDFactorizer<>(0.01, iter -> 0.02, 10, 1, 1L);
+
+        Random rnd = new Random(1L);
+        DoubleMatrix2D p0 = new DenseDoubleMatrix2D(NUM_USERS, 6).assign(x -> (float) (0.4 * rnd.nextDouble()));
+        DoubleMatrix2D q0 = new DenseDoubleMatrix2D(NUM_ITEMS, 6).assign(x -> (float) (0.4 * rnd.nextDouble()));
+
+        Factorization<Integer, Integer> doubles = new Factorization<>(data, data, p0.copy(), q0.copy(), 6);
+        factorizer.factorize(doubles, data);
+
+        Factorization<Integer, Integer> floats = new Factorization<>(data, data,
+                FloatDenseMatrix2D.heap(NUM_USERS, 6).assign(p0), FloatDenseMatrix2D.heap(NUM_ITEMS, 6).assign(q0), 6);
+        factorizer.factorize(floats, data);
+
+        for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+            assertArrayEquals(doubles.getUserMatrix().viewRow(uidx).toArray(), floats.getUserMatrix().viewRow(uidx).toArray(), 0.0);
+        }
+        for (int iidx = 0; iidx < NUM_ITEMS; iidx++) {
+            assertArrayEquals(doubles.getItemMatrix().viewRow(iidx).toArray(), floats.getItemMatrix().viewRow(iidx).toArray(), 0.0);
+        }
+    }
+}
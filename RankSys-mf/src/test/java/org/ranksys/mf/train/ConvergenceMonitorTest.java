@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.ranksys.mf.train;
+
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import es.uam.eps.ir.ranksys.mf.Factorizer;
+import es.uam.eps.ir.ranksys.mf.als.HKVFactorizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.ranksys.fast.preference.RandomPreferenceData;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for ConvergenceMonitor.
+ *
+ * @author agent (agent@local)
+ */
+public class ConvergenceMonitorTest {
+
+    private static FastPreferenceData<Integer, Integer> randomData(int numUsers, int numItems) {
+        return RandomPreferenceData.generate(numUsers, numItems, 0.2, 1);
+    }
+
+    /**
+     * Factorizer whose error is a scripted sequence of values.
+     */
+    private static class ScriptedFactorizer extends Factorizer<Integer, Integer> {
+
+        private final double[] errors;
+        private int n = 0;
+
+        ScriptedFactorizer(double... errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public double error(Factorization<Integer, Integer> factorization, FastPreferenceData<Integer, Integer> data) {
+            return errors[n++];
+        }
+
+        @Override
+        public Factorization<Integer, Integer> factorize(int K, FastPreferenceData<Integer, Integer> data) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void factorize(Factorization<Integer, Integer> factorization, FastPreferenceData<Integer, Integer> data) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Tests that the monitor stops after as many consecutive iterations
+     * without enough improvement as its patience, and that an improvement
+     * resets the count.
+     */
+    @Test
+    public void testPatience() {
+        FastPreferenceData<Integer, Integer> data = randomData(10, 10);
+        Factorization<Integer, Integer> factorization = new Factorization<>(data, data, new DenseDoubleMatrix2D(10, 2), new DenseDoubleMatrix2D(10, 2), 2);
+
+        // improvements over the best error: 50%, 0.5%, 50%, 0.4%, -8%, 0.1%
+        ScriptedFactorizer factorizer = new ScriptedFactorizer(1.0, 0.5, 0.4975, 0.25, 0.249, 0.27, 0.2488);
+        ConvergenceMonitor<Integer, Integer> monitor = new ConvergenceMonitor<>(factorizer, data, 1.0, 0.01, 3, 1L);
+
+        assertFalse(monitor.iteration(1, factorization));
+        assertFalse(monitor.iteration(2, factorization));
+        assertFalse(monitor.iteration(3, factorization));
+        assertFalse(monitor.iteration(4, factorization));
+        assertFalse(monitor.iteration(5, factorization));
+        assertFalse(monitor.iteration(6, factorization));
+        assertTrue(monitor.iteration(7, factorization));
+    }
+
+    /**
+     * Tests that a training under the monitor stops before the maximum
+     * number of iterations at the first iteration that does not improve the
+     * error enough.
+     */
+    @Test
+    public void testEarlyStopping() {
+        FastPreferenceData<Integer, Integer> data = randomData(100, 50);
+        HKVFactorizer<Integer, Integer> factorizer = new HKVFactorizer<>(0.1, x -> 1 + 10 * x, 100);
+
+        Random rnd = new Random(1L);
+        Factorization<Integer, Integer> factorization = new Factorization<>(data, data, 4, x -> 0.5 * rnd.nextDouble());
+
+        double tolerance = 1e-4;
+        List<Double> errors = new ArrayList<>();
+        FactorizationMonitor<Integer, Integer> recorder = (iter, f) -> {
+            errors.add(factorizer.error(f, data));
+            return false;
+        };
+        factorizer.factorize(factorization, data, recorder.and(new ConvergenceMonitor<>(factorizer, data, tolerance)));
+
+        int n = errors.size();
+        assertTrue(n > 1);
+        assertTrue(n < 100);
+
+        double best = errors.get(0);
+        for (int t = 1; t < n - 1; t++) {
+            assertTrue((best - errors.get(t)) / best >= tolerance);
+            best = Math.min(best, errors.get(t));
+        }
+        assertTrue((best - errors.get(n - 1)) / best < tolerance);
+    }
+}
@@ -12,7 +12,8 @@ import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.rec.fast.FastRankingRecommender;
 import es.uam.eps.ir.ranksys.nn.item.neighborhood.ItemNeighborhood;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import org.ranksys.fast.scores.ScoresAccumulator;
+import org.ranksys.fast.scores.SparseScoresAccumulator;
 
 import static java.lang.Math.pow;
 
@@ -71,16 +72,19 @@ public class ItemNeighborhoodRecommender<U, I> extends FastRankingRecommender<U,
      */
     @Override
     public Int2DoubleMap getScoresMap(int uidx) {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-        data.getUidxPreferences(uidx)
-                .forEach(jp -> neighborhood.getNeighbors(jp.v1)
-                        .forEach(is -> {
-                            double w = pow(is.v2, q);
-                            scoresMap.addTo(is.v1, w * jp.v2);
-                        }));
+        SparseScoresAccumulator scores = new SparseScoresAccumulator();
+        getScores(uidx, scores);
 
-        return scoresMap;
+        return scores.getMap();
+    }
+
+    @Override
+    public void getScores(int uidx, ScoresAccumulator scores) {
+        data.forEachUidxPref(uidx, (jidx, jv) -> neighborhood.getNeighbors(jidx)
+                .forEach(is -> {
+                    double w = pow(is.v2, q);
+                    scores.add(is.v1, w * jv);
+                }));
     }
 
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.nn.item.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.nn.item.sim.ItemSimilarity;
+import es.uam.eps.ir.ranksys.nn.sim.IncrementalTopK;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Top-k item neighborhood that is updated online with new preferences. See {@link IncrementalTopK}.
+ * <br>
+ * Preferences of users that are not in the user index are accepted too. Only the neighborhoods are updated: recommenders using this neighborhood, such as {@link es.uam.eps.ir.ranksys.nn.item.ItemNeighborhoodRecommender}, read the preferences of the target user from their own preference data.
+ *
+ * @author agent (agent@local)
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public class IncrementalItemNeighborhood<U, I> extends ItemNeighborhood<I> {
+
+    private final FastUserIndex<U> uIndex;
+    private final Object2IntOpenHashMap<U> newUsers;
+
+    /**
+     * Constructor.
+     *
+     * @param uIndex user index of the preference data of the similarity
+     * @param similarity item similarity, a vector or set similarity
+     * @param k number of highest similar items to consider neighbors
+     */
+    public IncrementalItemNeighborhood(FastUserIndex<U> uIndex, ItemSimilarity<I> similarity, int k) {
+        super(similarity, new IncrementalTopK(similarity.similarity(), k));
+        this.uIndex = uIndex;
+        this.newUsers = new Object2IntOpenHashMap<>();
+        this.newUsers.defaultReturnValue(-1);
+    }
+
+    @Override
+    public IncrementalTopK neighborhood() {
+        return (IncrementalTopK) neighborhood;
+    }
+
+    /**
+     * Adds a preference, or changes its value, and updates the neighborhoods.
+     *
+     * @param u user
+     * @param i item
+     * @param v value
+     * @return true if the preference was added or its value changed, false otherwise or if the item is not in the index
+     */
+    public synchronized boolean addPref(U u, I i, double v) {
+        int iidx = item2iidx(i);
+        if (iidx < 0) {
+            return false;
+        }
+
+        return neighborhood().set(iidx, uidx(u), v);
+    }
+
+    /**
+     * Removes a preference and updates the neighborhoods.
+     *
+     * @param u user
+     * @param i item
+     * @return true if the preference was removed, false otherwise
+     */
+    public synchronized boolean removePref(U u, I i) {
+        int iidx = item2iidx(i);
+        if (iidx < 0) {
+            return false;
+        }
+
+        return neighborhood().remove(iidx, uidx(u));
+    }
+
+    /**
+     * Returns the current neighborhoods, which are not affected by later updates.
+     *
+     * @return item neighborhood
+     */
+    public ItemNeighborhood<I> snapshot() {
+        return new ItemNeighborhood<>(iIndex, neighborhood().snapshot());
+    }
+
+    private int uidx(U u) {
+        int uidx = uIndex.user2uidx(u);
+        if (uidx < 0) {
+            uidx = newUsers.getInt(u);
+            if (uidx < 0) {
+                uidx = uIndex.numUsers() + newUsers.size();
+                newUsers.put(u, uidx);
+            }
+        }
+
+        return uidx;
+    }
+}
@@ -8,10 +8,12 @@
 package es.uam.eps.ir.ranksys.nn.item.neighborhood;
 
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.nn.item.sim.ItemSimilarity;
 import es.uam.eps.ir.ranksys.nn.neighborhood.CachedNeighborhood;
 import es.uam.eps.ir.ranksys.nn.neighborhood.ThresholdNeighborhood;
 import es.uam.eps.ir.ranksys.nn.neighborhood.TopKNeighborhood;
+import es.uam.eps.ir.ranksys.nn.sim.AllPairsTopK;
 import org.jooq.lambda.tuple.Tuple2;
 import org.ranksys.core.util.tuples.Tuple2od;
 
@@ -50,6 +52,49 @@ public class ItemNeighborhoods {
         return new ItemNeighborhood<>(similarity, new ThresholdNeighborhood(similarity.similarity(), threshold));
     }
 
+    /**
+     * Cached top-k item neighborhood computed in batch for all items. Equivalent to cached(topK(similarity, k)), but much faster.
+     *
+     * @param similarity item similarity, a vector or set similarity
+     * @param k          number of highest similar items to consider neighbors
+     * @param <I>        item type
+     * @return item neighborhood
+     * @see AllPairsTopK
+     */
+    public static <I> ItemNeighborhood<I> cachedTopK(ItemSimilarity<I> similarity, int k) {
+        return new ItemNeighborhood<>(similarity, new AllPairsTopK(similarity.similarity(), k).compute());
+    }
+
+    /**
+     * Cached top-k item neighborhood computed in batch for all items, pruning neighbors with low support or similarity.
+     *
+     * @param similarity item similarity, a vector or set similarity
+     * @param k          number of highest similar items to consider neighbors
+     * @param minSupport minimum number of users in common with neighbors
+     * @param minSim     minimum similarity of neighbors
+     * @param <I>        item type
+     * @return item neighborhood
+     * @see AllPairsTopK
+     */
+    public static <I> ItemNeighborhood<I> cachedTopK(ItemSimilarity<I> similarity, int k, int minSupport, double minSim) {
+        return new ItemNeighborhood<>(similarity, new AllPairsTopK(similarity.similarity(), k, minSupport, minSim, 256).compute());
+    }
+
+    /**
+     * Top-k item neighborhood that can be updated online with new preferences.
+     *
+     * @param users      user index of the preference data of the similarity
+     * @param similarity item similarity, a vector or set similarity
+     * @param k          number of highest similar items to consider neighbors
+     * @param <U>        user type
+     * @param <I>        item type
+     * @return item neighborhood
+     * @see IncrementalItemNeighborhood
+     */
+    public static <U, I> IncrementalItemNeighborhood<U, I> incrementalTopK(FastUserIndex<U> users, ItemSimilarity<I> similarity, int k) {
+        return new IncrementalItemNeighborhood<>(users, similarity, k);
+    }
+
     /**
      * Cached item neighborhood. Calculates and then caches the neighborhood.
      *
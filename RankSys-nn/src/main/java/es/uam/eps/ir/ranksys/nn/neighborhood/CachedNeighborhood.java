@@ -74,6 +74,17 @@ public class CachedNeighborhood implements Neighborhood {
         });
     }
 
+    /**
+     * Constructor that caches already materialized neighborhoods. The lists are used as they are, not copied.
+     *
+     * @param idxla lists of neighbor indices, one per user/item, or null if none
+     * @param simla lists of neighbor similarities, one per user/item, or null if none
+     */
+    public CachedNeighborhood(IntArrayList[] idxla, DoubleArrayList[] simla) {
+        this.idxla = idxla;
+        this.simla = simla;
+    }
+
     /**
      * Returns the neighborhood of a user/index.
      *
@@ -8,8 +8,9 @@
  */
 package es.uam.eps.ir.ranksys.nn.neighborhood;
 
-import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.fast.utils.topn.PrimitiveIntDoubleTopN;
 import es.uam.eps.ir.ranksys.nn.sim.Similarity;
+import static java.util.stream.Collectors.toList;
 import java.util.stream.Stream;
 import org.ranksys.core.util.tuples.Tuple2id;
 
@@ -22,6 +23,7 @@ public class TopKNeighborhood implements Neighborhood {
 
     private final Similarity sim;
     private final int k;
+    private final ThreadLocal<PrimitiveIntDoubleTopN> topNs;
 
     /**
      * Constructor.
@@ -32,6 +34,7 @@ public class TopKNeighborhood implements Neighborhood {
     public TopKNeighborhood(Similarity sim, int k) {
         this.sim = sim;
         this.k = k;
+        this.topNs = ThreadLocal.withInitial(() -> new PrimitiveIntDoubleTopN(k));
     }
 
     /**
@@ -43,9 +46,11 @@ public class TopKNeighborhood implements Neighborhood {
     @Override
     public Stream<Tuple2id> getNeighbors(int idx) {
 
-        IntDoubleTopN topN = new IntDoubleTopN(k);
-        sim.similarElems(idx).forEach(topN::add);
+        PrimitiveIntDoubleTopN topN = topNs.get();
+        topN.reset();
+        sim.similarElems(idx).forEach(t -> topN.add(t.v1, t.v2));
 
-        return topN.stream();
+        // the heap is re-used by the next call in this thread, so its pairs are copied out
+        return topN.stream().collect(toList()).stream();
     }
 }
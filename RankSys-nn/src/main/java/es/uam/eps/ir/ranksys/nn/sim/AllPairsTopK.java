@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.nn.sim;
+
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.utils.topn.PrimitiveIntDoubleTopN;
+import es.uam.eps.ir.ranksys.nn.neighborhood.CachedNeighborhood;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+import org.ranksys.core.util.function.IntDoubleConsumer;
+
+/**
+ * Batch computation of the top-k neighborhoods of all the users (or items, if the preference data is transposed) of a {@link VectorSimilarity} or a {@link SetSimilarity}. Rather than computing each row independently through {@link Similarity#similarElems(int)}, the preferences are copied once into compressed sparse row arrays and the inner products/intersections of each row with all the others are computed by sparse-sparse products over them. Rows are processed in blocks in parallel, each thread re-using the same accumulators for all its rows.
+ * <br>
+ * Optionally, neighbors with fewer than a minimum number of co-rated items/users (support) or with a similarity below a minimum can be pruned before entering the top-k.
+ * <br>
+ * For large data sets, columns (items, for user neighborhoods) with more than a maximum number of entries, whose cost is quadratic in their length, can be excluded from the generation of candidate neighbors: only an evenly spaced sample of the entries of such a column is proposed as candidates. The sample starts at a pseudo-random offset derived from the row and the column, so that different rows are proposed different entries of the same column, and the sampling is reproducible. The similarities of the candidates are still exact, as the contributions of the long columns are added afterwards by looking them up in the row of each candidate, and this completion can be skipped for candidates whose similarity is bounded below the current k-th one or the minimum similarity. Neighbors that only share long columns with a row may be missed, so the neighborhoods are approximate.
+ *
+ * @author agent (agent@local)
+ */
+public class AllPairsTopK {
+
+    private final Similarity sim;
+    private final int k;
+    private final int minSupport;
+    private final double minSim;
+    private final int maxColumnLength;
+    private final boolean prune;
+    private final int blockSize;
+
+    /**
+     * Constructor with no pruning.
+     *
+     * @param sim vector or set similarity
+     * @param k maximum size of the neighborhoods
+     */
+    public AllPairsTopK(Similarity sim, int k) {
+        this(sim, k, 1, Double.NEGATIVE_INFINITY, 256);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param sim vector or set similarity
+     * @param k maximum size of the neighborhoods
+     * @param minSupport minimum number of co-rated items/users of neighbors
+     * @param minSim minimum similarity of neighbors
+     * @param blockSize number of consecutive rows processed by each parallel task
+     */
+    public AllPairsTopK(Similarity sim, int k, int minSupport, double minSim, int blockSize) {
+        this(sim, k, minSupport, minSim, Integer.MAX_VALUE, false, blockSize);
+    }
+
+    /**
+     * Constructor with sampling of long columns. Pruning by upper bounds requires a similarity that does not decrease with the inner product or the intersection, such as the cosine and Jaccard similarities, but not the log-likelihood one.
+     *
+     * @param sim vector or set similarity
+     * @param k maximum size of the neighborhoods
+     * @param minSupport minimum number of co-rated items/users of neighbors
+     * @param minSim minimum similarity of neighbors
+     * @param maxColumnLength number of entries of a column above which it is sampled to generate candidates
+     * @param prune if true, candidates whose upper bound of the similarity cannot enter the top-k are not completed
+     * @param blockSize number of consecutive rows processed by each parallel task
+     */
+    public AllPairsTopK(Similarity sim, int k, int minSupport, double minSim, int maxColumnLength, boolean prune, int blockSize) {
+        this.sim = sim;
+        this.k = k;
+        this.minSupport = minSupport;
+        this.minSim = minSim;
+        this.maxColumnLength = maxColumnLength;
+        this.prune = prune;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Checks whether a similarity can be computed by this class.
+     *
+     * @param sim similarity
+     * @return true if sim is a vector or set similarity, false otherwise
+     */
+    public static boolean supports(Similarity sim) {
+        return sim instanceof VectorSimilarity || sim instanceof SetSimilarity;
+    }
+
+    /**
+     * Computes the top-k neighborhoods. Neighbors are sorted by decreasing similarity.
+     *
+     * @return cached neighborhood
+     */
+    public CachedNeighborhood compute() {
+        if (sim instanceof VectorSimilarity) {
+            VectorSimilarity vsim = (VectorSimilarity) sim;
+            double[] norm2 = new double[vsim.data.numUsers()];
+            Arrays.setAll(norm2, idx -> vsim.dense ? vsim.norm2Array[idx] : vsim.norm2Map.get(idx));
+            CSR rows = new CSR(vsim.data, false);
+
+            return compute(rows, (idx1, idx2, product, support) -> vsim.sim(product, norm2[idx1], norm2[idx2]));
+        } else if (sim instanceof SetSimilarity) {
+            SetSimilarity ssim = (SetSimilarity) sim;
+            CSR rows = new CSR(ssim.data, true);
+
+            return compute(rows, (idx1, idx2, product, support) -> ssim.sim(support, rows.length(idx1), rows.length(idx2)));
+        } else {
+            throw new UnsupportedOperationException("only vector and set similarities are supported");
+        }
+    }
+
+    private CachedNeighborhood compute(CSR rows, PairScorer scorer) {
+        int n = rows.numRows;
+        rows.splitLongColumns(maxColumnLength);
+        IntArrayList[] idxla = new IntArrayList[n];
+        DoubleArrayList[] simla = new DoubleArrayList[n];
+
+        ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(n, rows.transposed.numRows));
+        int numBlocks = (n + blockSize - 1) / blockSize;
+        IntStream.range(0, numBlocks).parallel().forEach(b -> {
+            Workspace ws = workspaces.get();
+            int to = Math.min(n, (b + 1) * blockSize);
+            for (int idx1 = b * blockSize; idx1 < to; idx1++) {
+                ws.accumulate(rows, idx1);
+                ws.select(rows, idx1, scorer);
+                idxla[idx1] = IntArrayList.wrap(Arrays.copyOf(ws.topN.getKeys(), ws.topN.size()));
+                simla[idx1] = DoubleArrayList.wrap(Arrays.copyOf(ws.topN.getValues(), ws.topN.size()));
+            }
+        });
+
+        return new CachedNeighborhood(idxla, simla);
+    }
+
+    /**
+     * Similarity of a pair of rows given their inner product and their number of common columns.
+     */
+    @FunctionalInterface
+    private interface PairScorer {
+
+        double score(int idx1, int idx2, double product, int support);
+    }
+
+    /**
+     * Per-thread accumulators of products and supports, with the list of touched rows, and the values of the long columns of the current row.
+     */
+    private final class Workspace {
+
+        private final double[] products;
+        private final int[] supports;
+        private final int[] stamps;
+        private final int[] touched;
+        private int size;
+        private final double[] colVs;
+        private final int[] colStamps;
+        private int stamp;
+        private final PrimitiveIntDoubleTopN topN;
+
+        Workspace(int n, int m) {
+            this.products = new double[n];
+            this.supports = new int[n];
+            this.stamps = new int[n];
+            this.touched = new int[n];
+            this.size = 0;
+            this.colVs = new double[m];
+            this.colStamps = new int[m];
+            this.stamp = 0;
+            this.topN = new PrimitiveIntDoubleTopN(k);
+        }
+
+        void accumulate(CSR rows, int idx1) {
+            CSR cols = rows.transposed;
+            stamp++;
+            for (int p = rows.offsets[idx1]; p < rows.splits[idx1]; p++) {
+                int c = rows.idxs[p];
+                colVs[c] = rows.vs[p];
+                colStamps[c] = stamp;
+                int length = cols.length(c);
+                double step = length / (double) maxColumnLength;
+                double start = (HashCommon.mix((long) idx1 * cols.numRows + c) >>> 11) * 0x1.0p-53;
+                for (int j = 0; j < maxColumnLength; j++) {
+                    touch(cols.idxs[cols.offsets[c] + Math.min(length - 1, (int) ((j + start) * step))]);
+                }
+            }
+            for (int p = rows.splits[idx1]; p < rows.offsets[idx1 + 1]; p++) {
+                int c = rows.idxs[p];
+                double w = rows.vs[p];
+                for (int q = cols.offsets[c]; q < cols.offsets[c + 1]; q++) {
+                    int idx2 = cols.idxs[q];
+                    touch(idx2);
+                    supports[idx2]++;
+                    products[idx2] += w * cols.vs[q];
+                }
+            }
+        }
+
+        private void touch(int idx2) {
+            if (stamps[idx2] != stamp) {
+                stamps[idx2] = stamp;
+                touched[size++] = idx2;
+            }
+        }
+
+        void select(CSR rows, int idx1, PairScorer scorer) {
+            boolean complete = rows.splits[idx1] > rows.offsets[idx1];
+            topN.reset();
+            for (int t = 0; t < size; t++) {
+                int idx2 = touched[t];
+                boolean pruned = idx2 == idx1 || complete && prune && bounded(rows, idx1, idx2, scorer);
+                if (!pruned) {
+                    if (complete) {
+                        complete(rows, idx2);
+                    }
+                    if (supports[idx2] >= minSupport) {
+                        double s = scorer.score(idx1, idx2, products[idx2], supports[idx2]);
+                        if (s >= minSim) {
+                            topN.add(idx2, s);
+                        }
+                    }
+                }
+                products[idx2] = 0.0;
+                supports[idx2] = 0;
+            }
+            size = 0;
+            topN.sort();
+        }
+
+        /**
+         * Adds the contributions of the long columns of the current row to a candidate.
+         */
+        private void complete(CSR rows, int idx2) {
+            for (int q = rows.offsets[idx2]; q < rows.splits[idx2]; q++) {
+                int c = rows.idxs[q];
+                if (colStamps[c] == stamp) {
+                    supports[idx2]++;
+                    products[idx2] += colVs[c] * rows.vs[q];
+                }
+            }
+        }
+
+        /**
+         * Checks whether a candidate cannot enter the top-k whatever its contributions from long columns, which are bounded by the Cauchy-Schwarz inequality and by the number of long columns of the two rows.
+         */
+        private boolean bounded(CSR rows, int idx1, int idx2, PairScorer scorer) {
+            int maxSupport = supports[idx2] + Math.min(rows.splits[idx1] - rows.offsets[idx1], rows.splits[idx2] - rows.offsets[idx2]);
+            if (maxSupport < minSupport) {
+                return true;
+            }
+            double maxProduct = products[idx2] + Math.sqrt(rows.longNorm2[idx1] * rows.longNorm2[idx2]);
+            double bound = scorer.score(idx1, idx2, maxProduct, maxSupport);
+
+            return bound < minSim || bound < topN.threshold();
+        }
+    }
+
+    /**
+     * Compressed sparse rows of the users of a preference data, linked to the compressed sparse rows of its items.
+     */
+    private static final class CSR {
+
+        private final int numRows;
+        private final int[] offsets;
+        private final int[] idxs;
+        private final double[] vs;
+        private int[] splits;
+        private double[] longNorm2;
+        private CSR transposed;
+
+        CSR(FastPreferenceData<?, ?> data, boolean binary) {
+            this(data.numUsers(), data::numItems, data::forEachUidxPref, data.numPreferences(), binary);
+            this.transposed = new CSR(data.numItems(), data::numUsers, data::forEachIidxPref, data.numPreferences(), binary);
+            this.transposed.transposed = this;
+        }
+
+        private CSR(int numRows, IntUnaryOperator lengths, RowReader reader, int nnz, boolean binary) {
+            this.numRows = numRows;
+            this.offsets = new int[numRows + 1];
+            for (int idx = 0; idx < numRows; idx++) {
+                offsets[idx + 1] = offsets[idx] + lengths.applyAsInt(idx);
+            }
+            this.idxs = new int[nnz];
+            this.vs = new double[nnz];
+            IntStream.range(0, numRows).parallel().forEach(idx -> {
+                int[] p = {offsets[idx]};
+                reader.read(idx, (j, v) -> {
+                    idxs[p[0]] = j;
+                    vs[p[0]++] = binary ? 1.0 : v;
+                });
+            });
+        }
+
+        int length(int idx) {
+            return offsets[idx + 1] - offsets[idx];
+        }
+
+        /**
+         * Moves the entries of each row in columns longer than maxColumnLength to the beginning of the row, up to splits[idx], and computes their squared norm.
+         */
+        void splitLongColumns(int maxColumnLength) {
+            this.splits = Arrays.copyOf(offsets, numRows);
+            this.longNorm2 = new double[numRows];
+            IntStream.range(0, numRows).parallel().forEach(idx -> {
+                for (int p = offsets[idx]; p < offsets[idx + 1]; p++) {
+                    if (transposed.length(idxs[p]) > maxColumnLength) {
+                        int q = splits[idx]++;
+                        int j = idxs[p];
+                        idxs[p] = idxs[q];
+                        idxs[q] = j;
+                        double v = vs[p];
+                        vs[p] = vs[q];
+                        vs[q] = v;
+                        longNorm2[idx] += v * v;
+                    }
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+
+        void read(int idx, IntDoubleConsumer action);
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.nn.sim;
+
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.utils.topn.PrimitiveIntDoubleTopN;
+import es.uam.eps.ir.ranksys.nn.neighborhood.CachedNeighborhood;
+import es.uam.eps.ir.ranksys.nn.neighborhood.Neighborhood;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import static java.util.stream.IntStream.range;
+import static java.util.stream.Stream.empty;
+import static org.ranksys.core.util.tuples.Tuples.tuple;
+
+/**
+ * Top-k neighborhoods of all the users (or items, if the preference data is transposed) of a {@link VectorSimilarity} or a {@link SetSimilarity} that are kept up to date as preferences are added or removed.
+ * <br>
+ * The inner products and supports (number of common columns) of all the pairs of rows that co-occur in some column are kept as sufficient statistics, together with the squared norm and length of every row. A change in a cell of a row updates the statistics of the pairs formed with the other rows of the column, re-computes the neighborhood of the row and patches the neighborhoods of its co-occurring rows, which are only re-computed when one of their neighbors falls below the rest of candidates.
+ * <br>
+ * Updates are serialized. Neighborhoods are immutable and replaced atomically, so that concurrent readers never see a partially updated one. For reads that must be consistent across several neighborhoods, such as those of a whole recommendation, see {@link #snapshot()}.
+ *
+ * @author agent (agent@local)
+ */
+public class IncrementalTopK implements Neighborhood {
+
+    private final Scorer scorer;
+    private final int k;
+    private final int n;
+    private final Int2ObjectOpenHashMap<Int2DoubleOpenHashMap> cols;
+    private final Int2DoubleOpenHashMap[] products;
+    private final Int2IntOpenHashMap[] supports;
+    private final double[] norm2;
+    private final int[] lengths;
+    private final AtomicReferenceArray<Row> rows;
+    private final ThreadLocal<PrimitiveIntDoubleTopN> topNs;
+
+    /**
+     * Constructor. Computes the initial neighborhoods from the preference data of the similarity.
+     *
+     * @param sim vector or set similarity
+     * @param k maximum size of the neighborhoods
+     */
+    public IncrementalTopK(Similarity sim, int k) {
+        FastPreferenceData<?, ?> data;
+        if (sim instanceof VectorSimilarity) {
+            data = ((VectorSimilarity) sim).data;
+        } else if (sim instanceof SetSimilarity) {
+            data = ((SetSimilarity) sim).data;
+        } else {
+            throw new UnsupportedOperationException("only vector and set similarities are supported");
+        }
+
+        this.k = k;
+        this.n = data.numUsers();
+        this.cols = new Int2ObjectOpenHashMap<>();
+        this.products = new Int2DoubleOpenHashMap[n];
+        this.supports = new Int2IntOpenHashMap[n];
+        this.norm2 = new double[n];
+        this.lengths = new int[n];
+        this.rows = new AtomicReferenceArray<>(n);
+        this.topNs = ThreadLocal.withInitial(() -> new PrimitiveIntDoubleTopN(k));
+
+        if (sim instanceof VectorSimilarity) {
+            VectorSimilarity vsim = (VectorSimilarity) sim;
+            this.scorer = (idx1, idx2, product, support) -> vsim.sim(product, norm2[idx1], norm2[idx2]);
+        } else {
+            SetSimilarity ssim = (SetSimilarity) sim;
+            this.scorer = (idx1, idx2, product, support) -> ssim.sim(support, lengths[idx1], lengths[idx2]);
+        }
+
+        data.getUidxWithPreferences().forEach(idx -> data.forEachUidxPref(idx, (col, v) -> {
+            column(col).put(idx, v);
+            norm2[idx] += v * v;
+            lengths[idx]++;
+        }));
+
+        range(0, n).parallel().forEach(idx1 -> {
+            Int2DoubleOpenHashMap product = new Int2DoubleOpenHashMap();
+            Int2IntOpenHashMap support = new Int2IntOpenHashMap();
+            data.forEachUidxPref(idx1, (col, v1) -> {
+                for (Int2DoubleMap.Entry e : cols.get(col).int2DoubleEntrySet()) {
+                    int idx2 = e.getIntKey();
+                    if (idx2 != idx1) {
+                        product.addTo(idx2, v1 * e.getDoubleValue());
+                        support.addTo(idx2, 1);
+                    }
+                }
+            });
+            products[idx1] = product;
+            supports[idx1] = support;
+        });
+
+        range(0, n).parallel().forEach(this::recompute);
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return number of rows
+     */
+    public int numRows() {
+        return n;
+    }
+
+    /**
+     * Sets the value of a cell, adding it if it did not exist, and updates the neighborhoods.
+     *
+     * @param idx index of the row (user, or item if transposed)
+     * @param col index of the column (item, or user if transposed), possibly not seen before
+     * @param v value
+     * @return true if the cell was added or its value changed, false otherwise
+     */
+    public synchronized boolean set(int idx, int col, double v) {
+        Int2DoubleOpenHashMap column = column(col);
+        boolean added = !column.containsKey(idx);
+        double old = added ? 0.0 : column.get(idx);
+        if (!added && old == v) {
+            return false;
+        }
+
+        double dv = v - old;
+        for (Int2DoubleMap.Entry e : column.int2DoubleEntrySet()) {
+            int idx2 = e.getIntKey();
+            if (idx2 != idx) {
+                double dp = dv * e.getDoubleValue();
+                products[idx].addTo(idx2, dp);
+                products[idx2].addTo(idx, dp);
+                if (added) {
+                    supports[idx].addTo(idx2, 1);
+                    supports[idx2].addTo(idx, 1);
+                }
+            }
+        }
+
+        column.put(idx, v);
+        norm2[idx] += v * v - old * old;
+        if (added) {
+            lengths[idx]++;
+        }
+
+        update(idx, new IntArrayList());
+
+        return true;
+    }
+
+    /**
+     * Removes a cell and updates the neighborhoods.
+     *
+     * @param idx index of the row (user, or item if transposed)
+     * @param col index of the column (item, or user if transposed)
+     * @return true if the cell was removed, false if it did not exist
+     */
+    public synchronized boolean remove(int idx, int col) {
+        Int2DoubleOpenHashMap column = cols.get(col);
+        if (column == null || !column.containsKey(idx)) {
+            return false;
+        }
+
+        double old = column.remove(idx);
+        IntArrayList dropped = new IntArrayList();
+        for (Int2DoubleMap.Entry e : column.int2DoubleEntrySet()) {
+            int idx2 = e.getIntKey();
+            double dp = -old * e.getDoubleValue();
+            if (supports[idx].addTo(idx2, -1) == 1) {
+                products[idx].remove(idx2);
+                supports[idx].remove(idx2);
+                products[idx2].remove(idx);
+                supports[idx2].remove(idx);
+                dropped.add(idx2);
+            } else {
+                products[idx].addTo(idx2, dp);
+                products[idx2].addTo(idx, dp);
+                supports[idx2].addTo(idx, -1);
+            }
+        }
+        if (column.isEmpty()) {
+            cols.remove(col);
+        }
+
+        norm2[idx] -= old * old;
+        lengths[idx]--;
+
+        update(idx, dropped);
+
+        return true;
+    }
+
+    /**
+     * Returns the current neighborhoods. Later updates are not seen by the returned neighborhood.
+     *
+     * @return neighborhood
+     */
+    public synchronized CachedNeighborhood snapshot() {
+        IntArrayList[] idxla = new IntArrayList[n];
+        DoubleArrayList[] simla = new DoubleArrayList[n];
+        for (int idx = 0; idx < n; idx++) {
+            Row row = rows.get(idx);
+            idxla[idx] = IntArrayList.wrap(row.idxs);
+            simla[idx] = DoubleArrayList.wrap(row.sims);
+        }
+
+        return new CachedNeighborhood(idxla, simla);
+    }
+
+    /**
+     * Returns the current neighborhood of a user/item, sorted by decreasing similarity.
+     *
+     * @param idx user/item whose neighborhood is returned
+     * @return stream of user/item-similarity pairs
+     */
+    @Override
+    public Stream<Tuple2id> getNeighbors(int idx) {
+        if (idx < 0) {
+            return empty();
+        }
+        Row row = rows.get(idx);
+
+        return range(0, row.idxs.length).mapToObj(i -> tuple(row.idxs[i], row.sims[i]));
+    }
+
+    private Int2DoubleOpenHashMap column(int col) {
+        Int2DoubleOpenHashMap column = cols.get(col);
+        if (column == null) {
+            column = new Int2DoubleOpenHashMap();
+            cols.put(col, column);
+        }
+
+        return column;
+    }
+
+    private void update(int idx, IntArrayList dropped) {
+        recompute(idx);
+        for (int idx2 : products[idx].keySet()) {
+            patch(idx2, idx, true);
+        }
+        for (int idx2 : dropped) {
+            patch(idx2, idx, false);
+        }
+    }
+
+    private void recompute(int idx1) {
+        PrimitiveIntDoubleTopN topN = topNs.get();
+        topN.reset();
+        for (Int2DoubleMap.Entry e : products[idx1].int2DoubleEntrySet()) {
+            int idx2 = e.getIntKey();
+            topN.add(idx2, scorer.score(idx1, idx2, e.getDoubleValue(), supports[idx1].get(idx2)));
+        }
+        topN.sort();
+
+        rows.set(idx1, new Row(Arrays.copyOf(topN.getKeys(), topN.size()), Arrays.copyOf(topN.getValues(), topN.size())));
+    }
+
+    /**
+     * Updates the neighborhood of a row after a change in the similarity with one of its candidates.
+     */
+    private void patch(int idx1, int idx2, boolean present) {
+        Row row = rows.get(idx1);
+        int size = row.idxs.length;
+        int pos = 0;
+        while (pos < size && row.idxs[pos] != idx2) {
+            pos++;
+        }
+        int numCandidates = products[idx1].size();
+
+        if (!present) {
+            if (pos == size) {
+                return;
+            }
+            if (numCandidates >= size) {
+                recompute(idx1);
+                return;
+            }
+            int[] idxs = new int[size - 1];
+            double[] sims = new double[size - 1];
+            System.arraycopy(row.idxs, 0, idxs, 0, pos);
+            System.arraycopy(row.sims, 0, sims, 0, pos);
+            System.arraycopy(row.idxs, pos + 1, idxs, pos, size - pos - 1);
+            System.arraycopy(row.sims, pos + 1, sims, pos, size - pos - 1);
+            rows.set(idx1, new Row(idxs, sims));
+            return;
+        }
+
+        double s = scorer.score(idx1, idx2, products[idx1].get(idx2), supports[idx1].get(idx2));
+        int[] idxs;
+        double[] sims;
+        if (pos < size) {
+            if (s < row.sims[size - 1] && numCandidates > size) {
+                recompute(idx1);
+                return;
+            }
+            idxs = row.idxs.clone();
+            sims = row.sims.clone();
+        } else if (size < k) {
+            idxs = Arrays.copyOf(row.idxs, size + 1);
+            sims = Arrays.copyOf(row.sims, size + 1);
+            idxs[size] = idx2;
+        } else if (size > 0 && s > row.sims[size - 1]) {
+            pos = size - 1;
+            idxs = row.idxs.clone();
+            sims = row.sims.clone();
+            idxs[pos] = idx2;
+        } else {
+            return;
+        }
+        sims[pos] = s;
+
+        while (pos > 0 && sims[pos - 1] < sims[pos]) {
+            swap(idxs, sims, pos - 1, pos);
+            pos--;
+        }
+        while (pos < idxs.length - 1 && sims[pos + 1] > sims[pos]) {
+            swap(idxs, sims, pos, pos + 1);
+            pos++;
+        }
+
+        rows.set(idx1, new Row(idxs, sims));
+    }
+
+    private static void swap(int[] idxs, double[] sims, int i, int j) {
+        int idx = idxs[i];
+        idxs[i] = idxs[j];
+        idxs[j] = idx;
+        double sim = sims[i];
+        sims[i] = sims[j];
+        sims[j] = sim;
+    }
+
+    /**
+     * Similarity of a pair of rows given their inner product and their number of common columns.
+     */
+    @FunctionalInterface
+    private interface Scorer {
+
+        double score(int idx1, int idx2, double product, int support);
+    }
+
+    /**
+     * Immutable neighborhood of a row.
+     */
+    private static final class Row {
+
+        private final int[] idxs;
+        private final double[] sims;
+
+        Row(int[] idxs, double[] sims) {
+            this.idxs = idxs;
+            this.sims = sims;
+        }
+    }
+}
@@ -9,16 +9,16 @@
 package es.uam.eps.ir.ranksys.nn.sim;
 
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
-import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import it.unimi.dsi.fastutil.ints.Int2IntMap;
 import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.IntToDoubleFunction;
-import static java.util.stream.IntStream.range;
 import java.util.stream.Stream;
 import org.ranksys.core.util.tuples.Tuple2id;
+import org.ranksys.fast.scores.DenseScoresAccumulator;
 import static org.ranksys.core.util.tuples.Tuples.tuple;
 
 /**
@@ -38,6 +38,8 @@ public abstract class SetSimilarity implements Similarity {
      */
     protected final boolean dense;
 
+    private final ThreadLocal<DenseScoresAccumulator> accumulators;
+
     /**
      * Constructor.
      *
@@ -47,20 +49,23 @@ public abstract class SetSimilarity implements Similarity {
     public SetSimilarity(FastPreferenceData<?, ?> data, boolean dense) {
         this.data = data;
         this.dense = dense;
+        this.accumulators = ThreadLocal.withInitial(() -> new DenseScoresAccumulator(data.numUsers()));
     }
 
     @Override
     public IntToDoubleFunction similarity(int idx1) {
         IntSet set = new IntOpenHashSet();
-        data.getUidxPreferences(idx1).map(IdxPref::v1).forEach(set::add);
+        data.forEachUidxIidx(idx1, set::add);
 
         return idx2 -> {
-            int coo = (int) data.getUidxPreferences(idx2)
-                    .map(IdxPref::v1)
-                    .filter(set::contains)
-                    .count();
-
-            return sim(coo, set.size(), data.numItems(idx2));
+            int[] coo = new int[1];
+            data.forEachUidxIidx(idx2, iidx -> {
+                if (set.contains(iidx)) {
+                    coo[0]++;
+                }
+            });
+
+            return sim(coo[0], set.size(), data.numItems(idx2));
         };
     }
 
@@ -68,94 +73,53 @@ public abstract class SetSimilarity implements Similarity {
         Int2IntOpenHashMap intersectionMap = new Int2IntOpenHashMap();
         intersectionMap.defaultReturnValue(0);
 
-        data.getUidxPreferences(idx1)
-                .forEach(ip -> data.getIidxPreferences(ip.v1)
-                        .forEach(up -> intersectionMap.addTo(up.v1, 1)));
+        data.forEachUidxIidx(idx1, iidx -> data.forEachIidxUidx(iidx, vidx -> intersectionMap.addTo(vidx, 1)));
 
         intersectionMap.remove(idx1);
 
         return intersectionMap;
     }
 
-    private int[] getIntersectionArray(int idx1) {
-        int[] intersectionMap = new int[data.numUsers()];
-
-        data.getUidxPreferences(idx1)
-                .forEach(ip -> data.getIidxPreferences(ip.v1)
-                        .forEach(up -> intersectionMap[up.v1]++));
-
-        intersectionMap[idx1] = 0;
-
-        return intersectionMap;
-    }
-
-    private Int2IntMap getFasterIntersectionMap(int uidx) {
-        Int2IntOpenHashMap intersectionMap = new Int2IntOpenHashMap();
-        intersectionMap.defaultReturnValue(0);
-
-        IntIterator iidxs = data.getUidxIidxs(uidx);
-        while (iidxs.hasNext()) {
-            IntIterator vidxs = data.getIidxUidxs(iidxs.nextInt());
-            while (vidxs.hasNext()) {
-                intersectionMap.addTo(vidxs.nextInt(), 1);
-            }
+    private DenseScoresAccumulator accumulator() {
+        DenseScoresAccumulator acc = accumulators.get();
+        if (acc.capacity() < data.numUsers()) {
+            acc = new DenseScoresAccumulator(data.numUsers());
+            accumulators.set(acc);
         }
 
-        intersectionMap.remove(uidx);
-
-        return intersectionMap;
+        return acc;
     }
 
-    private int[] getFasterIntersectionArray(int uidx) {
-        int[] intersectionMap = new int[data.numUsers()];
+    private List<Tuple2id> getDenseSimilarElems(int idx1, int na) {
+        DenseScoresAccumulator intersections = accumulator();
 
-        IntIterator iidxs = data.getUidxIidxs(uidx);
-        while (iidxs.hasNext()) {
-            IntIterator vidxs = data.getIidxUidxs(iidxs.nextInt());
-            while (vidxs.hasNext()) {
-                intersectionMap[vidxs.nextInt()]++;
-            }
-        }
+        data.forEachUidxIidx(idx1, iidx -> data.forEachIidxUidx(iidx, vidx -> intersections.add(vidx, 1.0)));
 
-        intersectionMap[uidx] = 0;
+        List<Tuple2id> similarElems = new ArrayList<>();
+        intersections.forEach((vidx, coo) -> {
+            if (vidx != idx1) {
+                similarElems.add(tuple(vidx, sim((int) coo, na, data.numItems(vidx))));
+            }
+        });
+        intersections.reset();
 
-        return intersectionMap;
+        return similarElems;
     }
 
     @Override
     public Stream<Tuple2id> similarElems(int idx1) {
         int na = data.numItems(idx1);
 
-        if (data.useIteratorsPreferentially()) {
-            if (dense) {
-                int[] intersectionMap = getFasterIntersectionArray(idx1);
-                return range(0, intersectionMap.length)
-                        .filter(i -> intersectionMap[i] != 0)
-                        .mapToObj(i -> tuple(i, sim(intersectionMap[i], na, data.numItems(i))));
-            } else {
-                return getFasterIntersectionMap(idx1).int2IntEntrySet().stream()
-                        .map(e -> {
-                            int idx2 = e.getIntKey();
-                            int coo = e.getIntValue();
-                            int nb = data.numItems(idx2);
-                            return tuple(idx2, sim(coo, na, nb));
-                        });
-            }
+        if (dense) {
+            return getDenseSimilarElems(idx1, na).stream();
         } else {
-            if (dense) {
-                int[] intersectionMap = getIntersectionArray(idx1);
-                return range(0, intersectionMap.length)
-                        .filter(i -> intersectionMap[i] != 0)
-                        .mapToObj(i -> tuple(i, sim(intersectionMap[i], na, data.numItems(i))));
-            } else {
-                return getIntersectionMap(idx1).int2IntEntrySet().stream()
-                        .map(e -> {
-                            int idx2 = e.getIntKey();
-                            int coo = e.getIntValue();
-                            int nb = data.numItems(idx2);
-                            return tuple(idx2, sim(coo, na, nb));
-                        });
-            }
+            return getIntersectionMap(idx1).int2IntEntrySet().stream()
+                    .map(e -> {
+                        int idx2 = e.getIntKey();
+                        int coo = e.getIntValue();
+                        int nb = data.numItems(idx2);
+                        return tuple(idx2, sim(coo, na, nb));
+                    });
         }
     }
 
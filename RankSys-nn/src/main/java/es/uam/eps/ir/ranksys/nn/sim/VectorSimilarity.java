@@ -9,17 +9,16 @@
 package es.uam.eps.ir.ranksys.nn.sim;
 
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
-import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
-import it.unimi.dsi.fastutil.doubles.DoubleIterator;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntIterator;
 import org.ranksys.core.util.tuples.Tuple2id;
+import org.ranksys.fast.scores.DenseScoresAccumulator;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.IntToDoubleFunction;
 import java.util.stream.Stream;
 
-import static java.util.stream.IntStream.range;
 import static org.ranksys.core.util.tuples.Tuples.tuple;
 
 /**
@@ -49,6 +48,8 @@ public abstract class VectorSimilarity implements Similarity {
      */
     protected final double[] norm2Array;
 
+    private final ThreadLocal<DenseScoresAccumulator> accumulators;
+
     /**
      * Constructor. Uses maps for internal calculation.
      *
@@ -58,6 +59,7 @@ public abstract class VectorSimilarity implements Similarity {
     public VectorSimilarity(FastPreferenceData<?, ?> data, boolean dense) {
         this.data = data;
         this.dense = dense;
+        this.accumulators = ThreadLocal.withInitial(() -> new DenseScoresAccumulator(data.numUsers()));
         if (dense) {
             this.norm2Map = null;
             this.norm2Array = new double[data.numUsers()];
@@ -73,16 +75,15 @@ public abstract class VectorSimilarity implements Similarity {
     @Override
     public IntToDoubleFunction similarity(int idx1) {
         Int2DoubleOpenHashMap map = new Int2DoubleOpenHashMap();
-        data.getUidxPreferences(idx1).forEach(iv -> map.put(iv.v1, iv.v2));
+        data.forEachUidxPref(idx1, map::put);
 
-        double norm2A = norm2Map.get(idx1);
+        double norm2A = dense ? norm2Array[idx1] : norm2Map.get(idx1);
 
         return idx2 -> {
-            double product = data.getUidxPreferences(idx2)
-                    .mapToDouble(iv -> iv.v2 * map.get(iv.v1))
-                    .sum();
+            double[] product = new double[1];
+            data.forEachUidxPref(idx2, (iidx, iv) -> product[0] += iv * map.get(iidx));
 
-            return sim(product, norm2A, norm2Map.get(idx2));
+            return sim(product[0], norm2A, dense ? norm2Array[idx2] : norm2Map.get(idx2));
         };
     }
 
@@ -90,81 +91,51 @@ public abstract class VectorSimilarity implements Similarity {
         Int2DoubleOpenHashMap productMap = new Int2DoubleOpenHashMap();
         productMap.defaultReturnValue(0.0);
 
-        if (data.useIteratorsPreferentially()) {
-            IntIterator iidxs = data.getUidxIidxs(uidx);
-            DoubleIterator ivs = data.getUidxVs(uidx);
-            while (iidxs.hasNext()) {
-                int iidx = iidxs.nextInt();
-                double iv = ivs.nextDouble();
-                IntIterator vidxs = data.getIidxUidxs(iidx);
-                DoubleIterator vvs = data.getIidxVs(iidx);
-                while (vidxs.hasNext()) {
-                    productMap.addTo(vidxs.nextInt(), iv * vvs.nextDouble());
-                }
-            }
-        } else {
-            data.getUidxPreferences(uidx)
-                    .forEach(ip -> data.getIidxPreferences(ip.v1)
-                            .forEach(up -> productMap.addTo(up.v1, ip.v2 * up.v2)));
-        }
+        data.forEachUidxPref(uidx, (iidx, iv) -> data.forEachIidxPref(iidx, (vidx, vv) -> productMap.addTo(vidx, iv * vv)));
 
         productMap.remove(uidx);
 
         return productMap;
     }
 
-    private double[] getProductArray(int uidx) {
-        double[] productArray = new double[data.numUsers()];
-
-        if (data.useIteratorsPreferentially()) {
-            IntIterator iidxs = data.getUidxIidxs(uidx);
-            DoubleIterator ivs = data.getUidxVs(uidx);
-            while (iidxs.hasNext()) {
-                int iidx = iidxs.nextInt();
-                double iv = ivs.nextDouble();
-                IntIterator vidxs = data.getIidxUidxs(iidx);
-                DoubleIterator vvs = data.getIidxVs(iidx);
-                while (vidxs.hasNext()) {
-                    productArray[vidxs.nextInt()] += iv * vvs.nextDouble();
-                }
-            }
-        } else {
-            data.getUidxPreferences(uidx)
-                    .forEach(ip -> data.getIidxPreferences(ip.v1)
-                            .forEach(up -> productArray[up.v1] += ip.v2 * up.v2));
+    private DenseScoresAccumulator accumulator() {
+        DenseScoresAccumulator acc = accumulators.get();
+        if (acc.capacity() < data.numUsers()) {
+            acc = new DenseScoresAccumulator(data.numUsers());
+            accumulators.set(acc);
         }
 
-        productArray[uidx] = 0.0;
+        return acc;
+    }
+
+    private List<Tuple2id> getDenseSimilarElems(int uidx) {
+        double norm2A = norm2Array[uidx];
+        DenseScoresAccumulator products = accumulator();
 
-        return productArray;
+        data.forEachUidxPref(uidx, (iidx, iv) -> data.forEachIidxPref(iidx, (vidx, vv) -> products.add(vidx, iv * vv)));
+
+        List<Tuple2id> similarElems = new ArrayList<>();
+        products.forEach((vidx, product) -> {
+            if (vidx != uidx && product != 0.0) {
+                similarElems.add(tuple(vidx, sim(product, norm2A, norm2Array[vidx])));
+            }
+        });
+        products.reset();
+
+        return similarElems;
     }
 
     private double getNorm2(int uidx) {
-        if (data.useIteratorsPreferentially()) {
-            DoubleIterator ivs = data.getUidxVs(uidx);
-            double sum = 0;
-            while (ivs.hasNext()) {
-                double iv = ivs.nextDouble();
-                sum += iv * iv;
-            }
-            return sum;
-        } else {
-            return data.getUidxPreferences(uidx)
-                    .mapToDouble(IdxPref::v2)
-                    .map(x -> x * x)
-                    .sum();
-        }
+        double[] sum = new double[1];
+        data.forEachUidxPref(uidx, (iidx, iv) -> sum[0] += iv * iv);
+
+        return sum[0];
     }
 
     @Override
     public Stream<Tuple2id> similarElems(int idx1) {
         if (dense) {
-            double norm2A = norm2Array[idx1];
-
-            double[] productArray = getProductArray(idx1);
-            return range(0, productArray.length)
-                    .filter(idx2 -> productArray[idx2] != 0.0)
-                    .mapToObj(idx2 -> tuple(idx2, sim(productArray[idx2], norm2A, norm2Array[idx2])));
+            return getDenseSimilarElems(idx1).stream();
         } else {
             double norm2A = norm2Map.get(idx1);
 
@@ -12,7 +12,8 @@ import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.rec.fast.FastRankingRecommender;
 import es.uam.eps.ir.ranksys.nn.user.neighborhood.UserNeighborhood;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import org.ranksys.fast.scores.ScoresAccumulator;
+import org.ranksys.fast.scores.SparseScoresAccumulator;
 import static java.lang.Math.pow;
 
 /**
@@ -71,16 +72,17 @@ public class UserNeighborhoodRecommender<U, I> extends FastRankingRecommender<U,
      */
     @Override
     public Int2DoubleMap getScoresMap(int uidx) {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
+        SparseScoresAccumulator scores = new SparseScoresAccumulator();
+        getScores(uidx, scores);
+
+        return scores.getMap();
+    }
+
+    @Override
+    public void getScores(int uidx, ScoresAccumulator scores) {
         neighborhood.getNeighbors(uidx).forEach(vs -> {
             double w = pow(vs.v2, q);
-            data.getUidxPreferences(vs.v1).forEach(iv -> {
-                double p = w * iv.v2;
-                scoresMap.addTo(iv.v1, p);
-            });
+            data.forEachUidxPref(vs.v1, (iidx, iv) -> scores.add(iidx, w * iv));
         });
-
-        return scoresMap;
     }
 }
@@ -11,6 +11,7 @@ import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.nn.neighborhood.CachedNeighborhood;
 import es.uam.eps.ir.ranksys.nn.neighborhood.ThresholdNeighborhood;
 import es.uam.eps.ir.ranksys.nn.neighborhood.TopKNeighborhood;
+import es.uam.eps.ir.ranksys.nn.sim.AllPairsTopK;
 import es.uam.eps.ir.ranksys.nn.user.sim.UserSimilarity;
 import org.jooq.lambda.tuple.Tuple2;
 import org.ranksys.core.util.tuples.Tuple2od;
@@ -50,6 +51,36 @@ public class UserNeighborhoods {
         return new UserNeighborhood<>(similarity, new ThresholdNeighborhood(similarity.similarity(), threshold));
     }
 
+    /**
+     * Cached top-k user neighborhood computed in batch for all users. Equivalent to cached(topK(similarity, k)), but much faster.
+     *
+     * @param similarity user similarity, a vector or set similarity
+     * @param k          number of highest similar users to consider neighbors
+     * @param <U>        user type
+     * @return user neighborhood
+     * @see AllPairsTopK
+     */
+    public static <U> UserNeighborhood<U> cachedTopK(UserSimilarity<U> similarity, int k) {
+        return new UserNeighborhood<>(similarity, new AllPairsTopK(similarity.similarity(), k).compute());
+    }
+
+    /**
+     * Cached top-k user neighborhood computed in batch for all users, for large numbers of users. Items with more than a maximum number of users only propose a sample of them as candidate neighbors, and neighbors with low support or similarity are pruned.
+     *
+     * @param similarity   user similarity, a vector or set similarity
+     * @param k            number of highest similar users to consider neighbors
+     * @param minSupport   minimum number of items in common with neighbors
+     * @param minSim       minimum similarity of neighbors
+     * @param maxItemUsers number of users of an item above which they are sampled to generate candidates
+     * @param prune        if true, candidates are discarded by an upper bound of their similarity, which requires a similarity that does not decrease with the inner product or intersection
+     * @param <U>          user type
+     * @return user neighborhood
+     * @see AllPairsTopK
+     */
+    public static <U> UserNeighborhood<U> cachedTopK(UserSimilarity<U> similarity, int k, int minSupport, double minSim, int maxItemUsers, boolean prune) {
+        return new UserNeighborhood<>(similarity, new AllPairsTopK(similarity.similarity(), k, minSupport, minSim, maxItemUsers, prune, 256).compute());
+    }
+
     /**
      * Cached user neighborhood. Calculates and then caches the neighborhood.
      *
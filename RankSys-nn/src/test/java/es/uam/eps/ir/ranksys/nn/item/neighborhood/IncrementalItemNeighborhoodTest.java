@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.nn.item.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.ranksys.nn.item.sim.ItemSimilarities;
+import es.uam.eps.ir.ranksys.nn.item.sim.ItemSimilarity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+import org.jooq.lambda.tuple.Tuple3;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import static java.util.Comparator.comparingDouble;
+import static java.util.stream.Collectors.toList;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Unit test for IncrementalItemNeighborhood.
+ *
+ * @author agent (agent@local)
+ */
+public class IncrementalItemNeighborhoodTest {
+
+    private static final double DELTA = 1e-9;
+    private static final int NUM_USERS = 150;
+    private static final int NUM_NEW_USERS = 30;
+    private static final int NUM_ITEMS = 100;
+    private static final int K = 10;
+
+    private final FastItemIndex<Integer> iIndex = SimpleFastItemIndex.load(IntStream.range(0, NUM_ITEMS).boxed());
+    private final Map<Integer, Map<Integer, Double>> prefs = new TreeMap<>();
+    private final Random rnd = new Random(1L);
+
+    /**
+     * Constructor that generates random ratings with skewed item popularity.
+     */
+    public IncrementalItemNeighborhoodTest() {
+        for (int u = 0; u < NUM_USERS; u++) {
+            for (int i = 0; i < NUM_ITEMS; i++) {
+                if (rnd.nextDouble() < 2.0 / (i + 4)) {
+                    prefs.computeIfAbsent(u, u2 -> new TreeMap<>()).put(i, (double) rnd.nextInt(5) + 1);
+                }
+            }
+        }
+    }
+
+    private SimpleFastPreferenceData<Integer, Integer> data(int numUsers) {
+        FastUserIndex<Integer> uIndex = SimpleFastUserIndex.load(IntStream.range(0, numUsers).boxed());
+        List<Tuple3<Integer, Integer, Double>> tuples = new ArrayList<>();
+        prefs.forEach((u, up) -> up.forEach((i, v) -> tuples.add(tuple(u, i, v))));
+
+        return SimpleFastPreferenceData.load(tuples.stream(), uIndex, iIndex);
+    }
+
+    /**
+     * Applies random additions, changes and removals of preferences, also of users not in the initial index, to the neighborhood and to the expected preferences.
+     */
+    private void update(IncrementalItemNeighborhood<Integer, Integer> neighborhood, int numEvents) {
+        for (int e = 0; e < numEvents; e++) {
+            int u = rnd.nextInt(NUM_USERS + NUM_NEW_USERS);
+            int i = rnd.nextInt(NUM_ITEMS);
+            Map<Integer, Double> up = prefs.computeIfAbsent(u, u2 -> new TreeMap<>());
+            if (up.containsKey(i) && rnd.nextBoolean()) {
+                up.remove(i);
+                Assert.assertTrue(neighborhood.removePref(u, i));
+            } else {
+                double v = (double) rnd.nextInt(5) + 1;
+                Double old = up.put(i, v);
+                Assert.assertEquals(old == null || old != v, neighborhood.addPref(u, i, v));
+            }
+        }
+    }
+
+    private static List<Tuple2id> sorted(ItemNeighborhood<Integer> neighborhood, int iidx) {
+        return neighborhood.getNeighbors(iidx)
+                .sorted(comparingDouble(Tuple2id::v2).reversed())
+                .collect(toList());
+    }
+
+    private void test(BiFunction<SimpleFastPreferenceData<Integer, Integer>, Boolean, ItemSimilarity<Integer>> simFactory) {
+        SimpleFastPreferenceData<Integer, Integer> initial = data(NUM_USERS);
+        IncrementalItemNeighborhood<Integer, Integer> neighborhood = ItemNeighborhoods.incrementalTopK(initial, simFactory.apply(initial, true), K);
+
+        update(neighborhood, 3000);
+
+        ItemSimilarity<Integer> sim = simFactory.apply(data(NUM_USERS + NUM_NEW_USERS), true);
+        ItemNeighborhood<Integer> expected = ItemNeighborhoods.cachedTopK(sim, K);
+        for (int iidx = 0; iidx < NUM_ITEMS; iidx++) {
+            List<Tuple2id> expectedList = sorted(expected, iidx);
+            List<Tuple2id> actualList = sorted(neighborhood, iidx);
+
+            Assert.assertEquals(expectedList.size(), actualList.size());
+            for (int n = 0; n < expectedList.size(); n++) {
+                Tuple2id nb = actualList.get(n);
+                Assert.assertEquals(expectedList.get(n).v2, nb.v2, DELTA);
+                Assert.assertNotEquals(iidx, nb.v1);
+                Assert.assertEquals(sim.similarity().similarity(iidx, nb.v1), nb.v2, DELTA);
+            }
+        }
+    }
+
+    /**
+     * Tests that, after random updates, the neighborhoods of the vector cosine similarity are those of the batch top-k computation over the final preferences.
+     */
+    @Test
+    public void vectorCosineTest() {
+        test(ItemSimilarities::vectorCosine);
+    }
+
+    /**
+     * Tests that, after random updates, the neighborhoods of the set Jaccard similarity are those of the batch top-k computation over the final preferences.
+     */
+    @Test
+    public void setJaccardTest() {
+        test(ItemSimilarities::setJaccard);
+    }
+
+    /**
+     * Tests that a snapshot is not affected by later updates, which are seen by the incremental neighborhood.
+     */
+    @Test
+    public void snapshotTest() {
+        SimpleFastPreferenceData<Integer, Integer> initial = data(NUM_USERS);
+        IncrementalItemNeighborhood<Integer, Integer> neighborhood = ItemNeighborhoods.incrementalTopK(initial, ItemSimilarities.vectorCosine(initial, true), K);
+
+        ItemNeighborhood<Integer> snapshot = neighborhood.snapshot();
+        List<List<Tuple2id>> before = IntStream.range(0, NUM_ITEMS)
+                .mapToObj(iidx -> snapshot.getNeighbors(iidx).collect(toList()))
+                .collect(toList());
+
+        update(neighborhood, 500);
+
+        int changed = 0;
+        for (int iidx = 0; iidx < NUM_ITEMS; iidx++) {
+            Assert.assertEquals(before.get(iidx), snapshot.getNeighbors(iidx).collect(toList()));
+            if (!before.get(iidx).equals(neighborhood.getNeighbors(iidx).collect(toList()))) {
+                changed++;
+            }
+        }
+        Assert.assertTrue(changed > 0);
+    }
+}
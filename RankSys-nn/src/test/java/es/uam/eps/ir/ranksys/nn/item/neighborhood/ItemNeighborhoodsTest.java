@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.nn.item.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.ranksys.nn.item.sim.ItemSimilarities;
+import es.uam.eps.ir.ranksys.nn.item.sim.ItemSimilarity;
+import java.util.List;
+import java.util.function.BiFunction;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ranksys.core.util.tuples.Tuple2id;
+import org.ranksys.fast.preference.RandomPreferenceData;
+
+import static java.util.Comparator.comparingDouble;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Unit test for ItemNeighborhoods.
+ *
+ * @author agent (agent@local)
+ */
+public class ItemNeighborhoodsTest {
+
+    private static final double DELTA = 1e-9;
+
+    private final SimpleFastPreferenceData<Integer, Integer> data;
+
+    /**
+     * Constructor that generates random ratings with skewed item popularity.
+     */
+    public ItemNeighborhoodsTest() {
+        data = RandomPreferenceData.generate(150, 100, (uidx, iidx) -> 2.0 / (iidx + 4), 5);
+    }
+
+    private static List<Tuple2id> sorted(ItemNeighborhood<Integer> neighborhood, int iidx) {
+        return neighborhood.getNeighbors(iidx)
+                .sorted(comparingDouble(Tuple2id::v2).reversed())
+                .collect(toList());
+    }
+
+    /**
+     * Checks that two neighborhoods have the same similarities and that those of the actual one are the exact similarities of each pair. Neighbors tied at the k-th similarity may differ by rounding.
+     */
+    private static void assertSameNeighborhoods(ItemSimilarity<Integer> sim, ItemNeighborhood<Integer> expected, ItemNeighborhood<Integer> actual) {
+        for (int iidx = 0; iidx < sim.numItems(); iidx++) {
+            List<Tuple2id> expectedList = sorted(expected, iidx);
+            List<Tuple2id> actualList = sorted(actual, iidx);
+
+            Assert.assertEquals(expectedList.size(), actualList.size());
+            for (int n = 0; n < expectedList.size(); n++) {
+                Tuple2id nb = actualList.get(n);
+                Assert.assertEquals(expectedList.get(n).v2, nb.v2, DELTA);
+                Assert.assertNotEquals(iidx, nb.v1);
+                Assert.assertEquals(sim.similarity().similarity(iidx, nb.v1), nb.v2, DELTA);
+            }
+        }
+    }
+
+    private void test(BiFunction<SimpleFastPreferenceData<Integer, Integer>, Boolean, ItemSimilarity<Integer>> simFactory) {
+        for (boolean dense : new boolean[]{true, false}) {
+            ItemSimilarity<Integer> sim = simFactory.apply(data, dense);
+            for (int k : new int[]{1, 10, 200}) {
+                assertSameNeighborhoods(sim,
+                        ItemNeighborhoods.cached(ItemNeighborhoods.topK(sim, k)),
+                        ItemNeighborhoods.cachedTopK(sim, k));
+            }
+        }
+    }
+
+    /**
+     * Tests that the batch top-k neighborhoods of the vector cosine similarity are those of the item-by-item computation.
+     */
+    @Test
+    public void vectorCosineTest() {
+        test(ItemSimilarities::vectorCosine);
+    }
+
+    /**
+     * Tests that the batch top-k neighborhoods of the set cosine similarity are those of the item-by-item computation.
+     */
+    @Test
+    public void setCosineTest() {
+        test((data, dense) -> ItemSimilarities.setCosine(data, 0.5, dense));
+    }
+
+    /**
+     * Tests that the batch top-k neighborhoods of the set Jaccard similarity are those of the item-by-item computation.
+     */
+    @Test
+    public void setJaccardTest() {
+        test(ItemSimilarities::setJaccard);
+    }
+
+    /**
+     * Tests that the batch top-k neighborhoods of the vector Jaccard similarity are those of the item-by-item computation.
+     */
+    @Test
+    public void vectorJaccardTest() {
+        test(ItemSimilarities::vectorJaccard);
+    }
+}
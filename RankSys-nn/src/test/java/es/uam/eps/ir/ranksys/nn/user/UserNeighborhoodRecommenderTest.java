@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.nn.user;
+
+import es.uam.eps.ir.ranksys.core.Recommendation;
+import es.uam.eps.ir.ranksys.nn.user.neighborhood.UserNeighborhoods;
+import es.uam.eps.ir.ranksys.nn.user.sim.UserSimilarities;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ranksys.fast.preference.ConcurrentPreferenceData;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Unit test for UserNeighborhoodRecommender.
+ *
+ * @author agent (agent@local)
+ */
+public class UserNeighborhoodRecommenderTest {
+
+    private static UserNeighborhoodRecommender<String, String> recommender(ConcurrentPreferenceData<String, String> data) {
+        return new UserNeighborhoodRecommender<>(data, UserNeighborhoods.topK(UserSimilarities.setJaccard(data, false), 10), 1);
+    }
+
+    /**
+     * Tests that the recommendations over a ConcurrentPreferenceData include the items added after the first recommendation.
+     */
+    @Test
+    public void testNewItems() {
+        ConcurrentPreferenceData<String, String> data = new ConcurrentPreferenceData<>();
+        UserNeighborhoodRecommender<String, String> recommender = recommender(data);
+
+        data.addPref("u1", "i1", 1.0, null);
+        Assert.assertTrue(recommender.getRecommendation("u1", 10).getItems().isEmpty());
+
+        data.addPref("u2", "i1", 1.0, null);
+        data.addPref("u2", "i2", 1.0, null);
+        data.addPref("u2", "i3", 1.0, null);
+        Recommendation<String, String> recommendation = recommender.getRecommendation("u1", 10);
+        Assert.assertEquals(3, recommendation.getItems().size());
+        Assert.assertTrue(recommendation.getItems().stream().map(iv -> iv.v1).collect(toList()).contains("i3"));
+    }
+
+    /**
+     * Tests that recommendations can be computed while users and items are being added by another thread.
+     *
+     * @throws InterruptedException when interrupted
+     */
+    @Test
+    public void testConcurrentNewItems() throws InterruptedException {
+        ConcurrentPreferenceData<String, String> data = new ConcurrentPreferenceData<>();
+        UserNeighborhoodRecommender<String, String> recommender = recommender(data);
+        data.addPref("u0", "i0", 1.0, null);
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            Random rnd = new Random(1L);
+            try {
+                while (writing.get()) {
+                    recommender.getRecommendation(data.uidx2user(rnd.nextInt(data.numUsers())), 10);
+                }
+            } catch (Throwable ex) {
+                error.set(ex);
+            }
+        });
+        reader.start();
+
+        Random rnd = new Random(1L);
+        for (int n = 1; n < 5000; n++) {
+            data.addPref("u" + rnd.nextInt(50), "i" + n, 1.0, null);
+            data.addPref("u" + rnd.nextInt(50), "i" + rnd.nextInt(n), 1.0, null);
+        }
+        writing.set(false);
+        reader.join();
+
+        Assert.assertNull(error.get());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.nn.user.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.ranksys.nn.user.sim.UserSimilarities;
+import es.uam.eps.ir.ranksys.nn.user.sim.UserSimilarity;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ranksys.core.util.tuples.Tuple2id;
+import org.ranksys.fast.preference.RandomPreferenceData;
+
+import static java.util.Comparator.comparingDouble;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Unit test for UserNeighborhoods.
+ *
+ * @author agent (agent@local)
+ */
+public class UserNeighborhoodsTest {
+
+    private static final double DELTA = 1e-9;
+    private static final int NUM_USERS = 150;
+    private static final int NUM_ITEMS = 100;
+    private static final int K = 10;
+
+    private final SimpleFastPreferenceData<Integer, Integer> data;
+
+    /**
+     * Constructor that generates random ratings with skewed item popularity, so that the most popular items have many more users than the rest.
+     */
+    public UserNeighborhoodsTest() {
+        data = RandomPreferenceData.generate(NUM_USERS, NUM_ITEMS, (uidx, iidx) -> 2.0 / (iidx + 4), 5);
+    }
+
+    private static List<Tuple2id> sorted(UserNeighborhood<Integer> neighborhood, int uidx) {
+        return neighborhood.getNeighbors(uidx)
+                .sorted(comparingDouble(Tuple2id::v2).reversed())
+                .collect(toList());
+    }
+
+    /**
+     * Checks that two neighborhoods have the same similarities and that those of the actual one are the exact similarities of each pair. Neighbors tied at the k-th similarity may differ by rounding.
+     */
+    private static void assertSameNeighborhoods(UserSimilarity<Integer> sim, UserNeighborhood<Integer> expected, UserNeighborhood<Integer> actual) {
+        for (int uidx = 0; uidx < sim.numUsers(); uidx++) {
+            List<Tuple2id> expectedList = sorted(expected, uidx);
+            List<Tuple2id> actualList = sorted(actual, uidx);
+
+            Assert.assertEquals(expectedList.size(), actualList.size());
+            for (int n = 0; n < expectedList.size(); n++) {
+                Tuple2id nb = actualList.get(n);
+                Assert.assertEquals(expectedList.get(n).v2, nb.v2, DELTA);
+                Assert.assertNotEquals(uidx, nb.v1);
+                Assert.assertEquals(sim.similarity().similarity(uidx, nb.v1), nb.v2, DELTA);
+            }
+        }
+    }
+
+    private void test(BiFunction<SimpleFastPreferenceData<Integer, Integer>, Boolean, UserSimilarity<Integer>> simFactory) {
+        int maxItemUsers = IntStream.range(0, NUM_ITEMS).map(data::numUsers).max().getAsInt();
+        for (boolean dense : new boolean[]{true, false}) {
+            UserSimilarity<Integer> sim = simFactory.apply(data, dense);
+            UserNeighborhood<Integer> exact = UserNeighborhoods.cachedTopK(sim, K);
+            assertSameNeighborhoods(sim, UserNeighborhoods.cached(UserNeighborhoods.topK(sim, K)), exact);
+
+            for (boolean prune : new boolean[]{false, true}) {
+                assertSameNeighborhoods(sim, exact, UserNeighborhoods.cachedTopK(sim, K, 1, Double.NEGATIVE_INFINITY, maxItemUsers, prune));
+            }
+
+            UserNeighborhood<Integer> capped = UserNeighborhoods.cachedTopK(sim, K, 2, 0.05, 10, false);
+            assertSameNeighborhoods(sim, capped, UserNeighborhoods.cachedTopK(sim, K, 2, 0.05, 10, true));
+        }
+    }
+
+    /**
+     * Tests that, for the vector cosine similarity, sampling long columns has no effect when no column is capped, and that pruning does not change the neighborhoods when they are.
+     */
+    @Test
+    public void vectorCosineTest() {
+        test(UserSimilarities::vectorCosine);
+    }
+
+    /**
+     * Tests that, for the set Jaccard similarity, sampling long columns has no effect when no column is capped, and that pruning does not change the neighborhoods when they are.
+     */
+    @Test
+    public void setJaccardTest() {
+        test(UserSimilarities::setJaccard);
+    }
+}
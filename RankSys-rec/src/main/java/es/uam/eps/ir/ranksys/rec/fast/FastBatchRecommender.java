@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.rec.fast;
+
+import es.uam.eps.ir.ranksys.fast.FastRecommendation;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Fast recommender that can generate the recommendations of a block of users at once, which is more efficient than generating them one by one when the scores of many users can be computed together.
+ *
+ * @author agent (agent@local)
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public interface FastBatchRecommender<U, I> extends FastRecommender<U, I> {
+
+    /**
+     * Filter recommendation for a block of users. Equivalent to calling {@link #getRecommendation(int, int, IntPredicate)} for each user.
+     *
+     * @param uidxs indices of the users to be issued a recommendation
+     * @param maxLength maximum length of recommendation
+     * @param filters provider of the (fast) filter of each user index
+     * @return list of (fast) recommendations, in the same order as uidxs
+     */
+    List<FastRecommendation> getRecommendations(int[] uidxs, int maxLength, IntFunction<IntPredicate> filters);
+}
@@ -8,7 +8,7 @@
  */
 package es.uam.eps.ir.ranksys.rec.fast;
 
-import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.fast.utils.topn.PrimitiveIntDoubleTopN;
 import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.function.IntPredicate;
 import static java.util.stream.Collectors.toList;
 import org.ranksys.core.util.tuples.Tuple2id;
+import org.ranksys.fast.scores.ScoresAccumulator;
 
 /**
  * Recommender for top-n recommendations. It selects and orders the items whose
@@ -31,6 +32,9 @@ import org.ranksys.core.util.tuples.Tuple2id;
  */
 public abstract class FastRankingRecommender<U, I> extends AbstractFastRecommender<U, I> {
 
+    private final ThreadLocal<ScoresAccumulator> accumulators;
+    private final ThreadLocal<PrimitiveIntDoubleTopN> topNs;
+
     /**
      * Constructor.
      *
@@ -39,6 +43,8 @@ public abstract class FastRankingRecommender<U, I> extends AbstractFastRecommend
      */
     public FastRankingRecommender(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
         super(uIndex, iIndex);
+        this.accumulators = ThreadLocal.withInitial(() -> ScoresAccumulator.create(numItems()));
+        this.topNs = ThreadLocal.withInitial(() -> new PrimitiveIntDoubleTopN(0));
     }
 
     @Override
@@ -47,25 +53,39 @@ public abstract class FastRankingRecommender<U, I> extends AbstractFastRecommend
             return new FastRecommendation(uidx, new ArrayList<>(0));
         }
 
-        Int2DoubleMap scoresMap = getScoresMap(uidx);
+        ScoresAccumulator scores = accumulator(accumulators);
+        scores.reset();
+        getScores(uidx, scores);
 
-        final IntDoubleTopN topN = new IntDoubleTopN(min(maxLength, scoresMap.size()));
-        scoresMap.int2DoubleEntrySet().forEach(e -> {
-            int iidx = e.getIntKey();
-            double score = e.getDoubleValue();
-            if (filter.test(iidx)) {
-                topN.add(iidx, score);
-            }
-        });
+        final PrimitiveIntDoubleTopN topN = topNs.get();
+        topN.reset(min(maxLength, scores.size()));
+        scores.topN(topN, filter);
+        scores.reset();
 
         topN.sort();
 
-        List<Tuple2id> items = topN.reverseStream()
+        List<Tuple2id> items = topN.stream()
                 .collect(toList());
 
         return new FastRecommendation(uidx, items);
     }
 
+    /**
+     * Returns the accumulator of item scores of the current thread, which is re-created if items have been added to the index since it was created.
+     *
+     * @param accumulators per-thread accumulators
+     * @return accumulator for all the items in the index
+     */
+    protected ScoresAccumulator accumulator(ThreadLocal<ScoresAccumulator> accumulators) {
+        ScoresAccumulator scores = accumulators.get();
+        if (scores.capacity() < numItems()) {
+            scores = ScoresAccumulator.create(numItems());
+            accumulators.set(scores);
+        }
+
+        return scores;
+    }
+
     /**
      * Returns a map of item-score pairs.
      *
@@ -73,4 +93,15 @@ public abstract class FastRankingRecommender<U, I> extends AbstractFastRecommend
      * @return a map of item-score pairs
      */
     public abstract Int2DoubleMap getScoresMap(int uidx);
+
+    /**
+     * Adds the item scores of a user to an accumulator. This default implementation copies the map of {@link #getScoresMap(int)}: subclasses can override it to write directly into the accumulator, which can be a dense one re-used between users.
+     *
+     * @param uidx index of the user whose scores are predicted
+     * @param scores accumulator of item scores
+     */
+    public void getScores(int uidx, ScoresAccumulator scores) {
+        getScoresMap(uidx).int2DoubleEntrySet()
+                .forEach(e -> scores.add(e.getIntKey(), e.getDoubleValue()));
+    }
 }
@@ -15,6 +15,7 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -49,4 +50,19 @@ public abstract class AbstractRecommenderRunner<U, I> implements RecommenderRunn
     protected void run(Function<U, Recommendation<U, I>> recProvider, Consumer<Recommendation<U, I>> consumer) {
         users.parallelStream().forEach(user -> consumer.accept(recProvider.apply(user)));
     }
+
+    /**
+     * Prints the recommendations, generating them for blocks of consecutive users at once.
+     *
+     * @param batchSize maximum number of users in each block
+     * @param recProvider function that provides the recommendations of a block of users by calling a recommender
+     * @param consumer recommendation consumer
+     */
+    protected void runBatches(int batchSize, Function<List<U>, List<Recommendation<U, I>>> recProvider, Consumer<Recommendation<U, I>> consumer) {
+        int numBatches = (users.size() + batchSize - 1) / batchSize;
+        IntStream.range(0, numBatches).parallel().forEach(b -> {
+            List<U> batch = users.subList(b * batchSize, Math.min(users.size(), (b + 1) * batchSize));
+            recProvider.apply(batch).forEach(consumer);
+        });
+    }
 }
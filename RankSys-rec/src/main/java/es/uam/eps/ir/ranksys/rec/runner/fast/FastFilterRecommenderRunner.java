@@ -13,8 +13,10 @@ import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.rec.Recommender;
+import es.uam.eps.ir.ranksys.rec.fast.FastBatchRecommender;
 import es.uam.eps.ir.ranksys.rec.fast.FastRecommender;
 import es.uam.eps.ir.ranksys.rec.runner.AbstractRecommenderRunner;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntPredicate;
@@ -23,7 +25,8 @@ import java.util.stream.Stream;
 
 /**
  * Fast filter runner. It creates recommendations by using the filter method in the
- * fast recommenders.
+ * fast recommenders. Recommenders implementing {@link FastBatchRecommender} are
+ * issued blocks of users instead.
  *
  * @author Saúl Vargas (saul.vargas@uam.es)
  * 
@@ -36,6 +39,7 @@ public class FastFilterRecommenderRunner<U, I> extends AbstractRecommenderRunner
     private final FastItemIndex<I> itemIndex;
     private final Function<U, IntPredicate> userFilter;
     private final int maxLength;
+    private final int batchSize;
 
     /**
      * Constructor.
@@ -47,22 +51,52 @@ public class FastFilterRecommenderRunner<U, I> extends AbstractRecommenderRunner
      * @param maxLength maximum length of the recommendation lists, 0 for no limit
      */
     public FastFilterRecommenderRunner(FastUserIndex<U> userIndex, FastItemIndex<I> itemIndex, Stream<U> users, Function<U, IntPredicate> userFilter, int maxLength) {
+        this(userIndex, itemIndex, users, userFilter, maxLength, 64);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param userIndex fast user index
+     * @param itemIndex fast item index
+     * @param users target users
+     * @param userFilter item filter provider for each user
+     * @param maxLength maximum length of the recommendation lists, 0 for no limit
+     * @param batchSize number of users in each block for batch recommenders
+     */
+    public FastFilterRecommenderRunner(FastUserIndex<U> userIndex, FastItemIndex<I> itemIndex, Stream<U> users, Function<U, IntPredicate> userFilter, int maxLength, int batchSize) {
         super(users);
         this.userIndex = userIndex;
         this.itemIndex = itemIndex;
         this.userFilter = userFilter;
         this.maxLength = maxLength;
+        this.batchSize = batchSize;
     }
 
     @Override
     public void run(Recommender<U, I> recommender, Consumer<Recommendation<U, I>> consumer) {
-        run(user -> {
-            FastRecommendation rec = ((FastRecommender<U, I>) recommender).getRecommendation(userIndex.user2uidx(user), maxLength, userFilter.apply(user));
-            
-            return new Recommendation<>(userIndex.uidx2user(rec.getUidx()), rec.getIidxs().stream()
-                    .map(itemIndex::iidx2item)
-                    .collect(toList()));
-        }, consumer);
+        if (recommender instanceof FastBatchRecommender) {
+            runBatches(batchSize, batch -> {
+                int[] uidxs = batch.stream().mapToInt(userIndex::user2uidx).toArray();
+                List<FastRecommendation> recs = ((FastBatchRecommender<U, I>) recommender).getRecommendations(uidxs, maxLength, uidx -> userFilter.apply(userIndex.uidx2user(uidx)));
+
+                return recs.stream()
+                        .map(this::toRecommendation)
+                        .collect(toList());
+            }, consumer);
+        } else {
+            run(user -> {
+                FastRecommendation rec = ((FastRecommender<U, I>) recommender).getRecommendation(userIndex.user2uidx(user), maxLength, userFilter.apply(user));
+
+                return toRecommendation(rec);
+            }, consumer);
+        }
+    }
+
+    private Recommendation<U, I> toRecommendation(FastRecommendation rec) {
+        return new Recommendation<>(userIndex.uidx2user(rec.getUidx()), rec.getIidxs().stream()
+                .map(itemIndex::iidx2item)
+                .collect(toList()));
     }
 
 }
@@ -11,6 +11,7 @@ import es.uam.eps.ir.ranksys.rec.fast.FastRankingRecommender;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import java.util.Map.Entry;
+import org.ranksys.fast.scores.ScoresAccumulator;
 
 /**
  * Ensemble of recommenders, performs a linear combination of the scores
@@ -25,6 +26,7 @@ import java.util.Map.Entry;
 public class FastEnsembleRecommender<U, I> extends FastRankingRecommender<U, I> {
 
     private final Iterable<Entry<FastRankingRecommender<U, I>, Double>> recommenders;
+    private final ThreadLocal<ScoresAccumulator> partials;
 
     /**
      * Constructor.
@@ -34,6 +36,7 @@ public class FastEnsembleRecommender<U, I> extends FastRankingRecommender<U, I>
     public FastEnsembleRecommender(Iterable<Entry<FastRankingRecommender<U, I>, Double>> recommenders) {
         super(getFirst(recommenders), getFirst(recommenders));
         this.recommenders = recommenders;
+        this.partials = ThreadLocal.withInitial(() -> ScoresAccumulator.create(numItems()));
     }
 
     private static <U, I> FastRankingRecommender<U, I> getFirst(Iterable<Entry<FastRankingRecommender<U, I>, Double>> recommenders) {
@@ -58,4 +61,16 @@ public class FastEnsembleRecommender<U, I> extends FastRankingRecommender<U, I>
         return scoresMap;
     }
 
+    @Override
+    public void getScores(int uidx, ScoresAccumulator scores) {
+        ScoresAccumulator partial = accumulator(partials);
+        for (Entry<FastRankingRecommender<U, I>, Double> rw : recommenders) {
+            double w = rw.getValue();
+            partial.reset();
+            rw.getKey().getScores(uidx, partial);
+            partial.forEach((iidx, v) -> scores.add(iidx, w * v));
+        }
+        partial.reset();
+    }
+
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 RankSys http://ranksys.org
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.ranksys.rec.fast;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ranksys.core.util.tuples.Tuple2id;
+import org.ranksys.fast.scores.ScoresAccumulator;
+import org.ranksys.rec.fast.FastEnsembleRecommender;
+
+import static java.lang.Math.min;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Unit test for FastRankingRecommender and FastEnsembleRecommender.
+ *
+ * @author agent (agent@local)
+ */
+public class FastRankingRecommenderTest {
+
+    private static final int NUM_USERS = 20;
+    private static final int NUM_ITEMS = 200;
+
+    private static final FastUserIndex<Integer> USERS = SimpleFastUserIndex.load(IntStream.range(0, NUM_USERS).boxed());
+    private static final FastItemIndex<Integer> ITEMS = SimpleFastItemIndex.load(IntStream.range(0, NUM_ITEMS).boxed());
+
+    /**
+     * Recommender with random scores, which are integers to produce ties. Optionally, it writes them directly into the accumulator instead of going through the map.
+     */
+    private static class MockRecommender extends FastRankingRecommender<Integer, Integer> {
+
+        private final long seed;
+        private final boolean direct;
+
+        public MockRecommender(long seed, boolean direct) {
+            super(USERS, ITEMS);
+            this.seed = seed;
+            this.direct = direct;
+        }
+
+        @Override
+        public Int2DoubleMap getScoresMap(int uidx) {
+            Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
+            Random rnd = new Random(seed * NUM_USERS + uidx);
+            int n = uidx == 0 ? 0 : rnd.nextInt(NUM_ITEMS);
+            for (int k = 0; k < n; k++) {
+                scoresMap.addTo(rnd.nextInt(NUM_ITEMS), rnd.nextInt(20) - 5);
+            }
+            return scoresMap;
+        }
+
+        @Override
+        public void getScores(int uidx, ScoresAccumulator scores) {
+            if (direct) {
+                getScoresMap(uidx).int2DoubleEntrySet().forEach(e -> scores.add(e.getIntKey(), e.getDoubleValue()));
+            } else {
+                super.getScores(uidx, scores);
+            }
+        }
+    }
+
+    /**
+     * Top-n selection over the map of scores, as it was done before accumulators were introduced.
+     */
+    private static List<Tuple2id> expected(FastRankingRecommender<Integer, Integer> recommender, int uidx, int maxLength, IntPredicate filter) {
+        Int2DoubleMap scoresMap = recommender.getScoresMap(uidx);
+        IntDoubleTopN topN = new IntDoubleTopN(min(maxLength, scoresMap.size()));
+        scoresMap.int2DoubleEntrySet().forEach(e -> {
+            if (filter.test(e.getIntKey())) {
+                topN.add(e.getIntKey(), e.getDoubleValue());
+            }
+        });
+        topN.sort();
+
+        return topN.reverseStream().collect(toList());
+    }
+
+    private static void assertRankings(FastRankingRecommender<Integer, Integer> recommender) {
+        List<IntPredicate> filters = Arrays.asList(iidx -> true, iidx -> iidx % 3 != 0);
+        for (int maxLength : new int[]{10, NUM_ITEMS}) {
+            for (IntPredicate filter : filters) {
+                for (int uidx = 0; uidx < NUM_USERS; uidx++) {
+                    Assert.assertEquals(
+                            expected(recommender, uidx, maxLength, filter),
+                            recommender.getRecommendation(uidx, maxLength, filter).getIidxs());
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that rankings through the accumulators match those of the map of scores.
+     */
+    @Test
+    public void rankingTest() {
+        assertRankings(new MockRecommender(1L, false));
+        assertRankings(new MockRecommender(2L, true));
+    }
+
+    /**
+     * Tests that ensemble rankings match those of the weighted sum of maps of scores.
+     */
+    @Test
+    public void ensembleTest() {
+        List<Entry<FastRankingRecommender<Integer, Integer>, Double>> recommenders = Arrays.asList(
+                new SimpleEntry<>(new MockRecommender(1L, false), 1.0),
+                new SimpleEntry<>(new MockRecommender(2L, true), 2.0),
+                new SimpleEntry<>(new MockRecommender(3L, false), -0.5));
+
+        assertRankings(new FastEnsembleRecommender<>(recommenders));
+    }
+}